@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The declaration of a custom tag by an ISMODULE tag.
+ *
+ * Compiled templates that are generated with
+ * {@link ISMLCompilerConfiguration#getCustomTagRegistry()} declare one static
+ * descriptor for each custom tag whose declaration is known at compile time
+ * and pass it to
+ * <code>processOpenTag(ServletResponse, PageContext, CustomTagModule, TagParameter[], int)</code>
+ * of the template base class instead of the name of the tag. The base class
+ * includes the module template directly, without looking up the tag in the
+ * declarations of the request.
+ */
+
+public final class CustomTagModule
+{
+    /**
+     * The name of the tag in lower case, without the <code>is</code> prefix.
+     */
+
+    private final String name;
+
+    /**
+     * The name of the module template.
+     */
+
+    private final String template;
+
+    /**
+     * The flag whether only the declared attributes are passed to the module.
+     */
+
+    private final boolean strict;
+
+    /**
+     * The declared attributes, <code>null</code> if none are declared.
+     */
+
+    private final String[] attributes;
+
+    /**
+     * The declared return attributes, <code>null</code> if none are declared.
+     */
+
+    private final String[] returnAttributes;
+
+    /**
+     * The constructor.
+     *
+     * @param name              the name of the tag, it is converted to lower case
+     * @param template          the name of the module template
+     * @param strict            <code>true</code> if only the declared attributes
+     *                          are passed to the module
+     * @param attributes        the declared attributes, <code>null</code> if
+     *                          none are declared
+     * @param returnAttributes  the declared return attributes, <code>null</code>
+     *                          if none are declared
+     */
+
+    public CustomTagModule(String name, String template, boolean strict, String[] attributes, String[] returnAttributes)
+    {
+        this.name = name.toLowerCase();
+        this.template = template;
+        this.strict = strict;
+        this.attributes = (attributes != null) ? attributes.clone() : null;
+        this.returnAttributes = (returnAttributes != null) ? returnAttributes.clone() : null;
+    }
+
+    /**
+     * @return  the name of the tag in lower case
+     */
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return  the name of the module template
+     */
+
+    public String getTemplate()
+    {
+        return template;
+    }
+
+    /**
+     * @return  <code>true</code> if only the declared attributes are passed to
+     *          the module
+     */
+
+    public boolean isStrict()
+    {
+        return strict;
+    }
+
+    /**
+     * @return  the declared attributes, <code>null</code> if none are declared
+     */
+
+    public String[] getAttributes()
+    {
+        return (attributes != null) ? attributes.clone() : null;
+    }
+
+    /**
+     * @return  the declared return attributes, <code>null</code> if none are
+     *          declared
+     */
+
+    public String[] getReturnAttributes()
+    {
+        return (returnAttributes != null) ? returnAttributes.clone() : null;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof CustomTagModule))
+        {
+            return false;
+        }
+
+        CustomTagModule other = (CustomTagModule)obj;
+        return name.equals(other.name) && template.equals(other.template) && strict == other.strict
+                        && Arrays.equals(attributes, other.attributes)
+                        && Arrays.equals(returnAttributes, other.returnAttributes);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(name, template);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + '=' + template;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The custom tags of a template tree whose ISMODULE declarations are known at
+ * compile time. The compiler writes the registry file of a template tree with
+ * {@link ISMLCompilerConfiguration#getCustomTagRegistry()} and doesn't
+ * generate the per-request registration of these tags by their ISMODULE tags.
+ *
+ * The runtime has to {@link #open(Path) open} the registry files of its
+ * template directories before the templates are executed, and resolve custom
+ * tag names that the request has no declaration for with {@link #find(String)},
+ * like the names of custom end tags and of tags used by templates of other
+ * template trees. A file is read once per JVM.
+ *
+ * The file has one line per tag with the name, the template, the strict flag,
+ * and the comma separated attributes and return attributes, separated by tabs.
+ */
+
+public final class CustomTagRegistry
+{
+    /**
+     * The registries that are opened, by file.
+     */
+
+    private static final ConcurrentMap<Path, CustomTagRegistry> registries = new ConcurrentHashMap<Path, CustomTagRegistry>();
+
+    /**
+     * The modules by name.
+     */
+
+    private final Map<String, CustomTagModule> modules = new TreeMap<String, CustomTagModule>();
+
+    /**
+     * Opens a registry file. The file is only read the first time.
+     *
+     * @param file  the registry file
+     * @return  the registry
+     * @throws IOException  if the file can't be read or is invalid
+     */
+
+    public static CustomTagRegistry open(Path file) throws IOException
+    {
+        Path key = file.toAbsolutePath().normalize();
+        CustomTagRegistry result = registries.get(key);
+        if (result == null)
+        {
+            result = read(key);
+            CustomTagRegistry previous = registries.putIfAbsent(key, result);
+            result = (previous != null) ? previous : result;
+        }
+        return result;
+    }
+
+    /**
+     * Finds a custom tag in the opened registries.
+     *
+     * @param name  the name of the tag
+     * @return  the module, or <code>null</code> if no opened registry
+     *          declares the tag
+     */
+
+    public static CustomTagModule find(String name)
+    {
+        for (CustomTagRegistry registry : registries.values())
+        {
+            CustomTagModule result = registry.getModule(name);
+            if (result != null)
+            {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a registry file.
+     *
+     * @param file  the registry file
+     * @return  the registry
+     * @throws IOException  if the file can't be read or is invalid
+     */
+
+    public static CustomTagRegistry read(Path file) throws IOException
+    {
+        CustomTagRegistry result = new CustomTagRegistry();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+        {
+            if (line.isEmpty() || line.startsWith("#"))
+            {
+                continue;
+            }
+
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 5)
+            {
+                throw new IOException("Invalid custom tag declaration in " + file + ": " + line);
+            }
+            result.add(new CustomTagModule(fields[0], fields[1], Boolean.parseBoolean(fields[2]), split(fields[3]),
+                            split(fields[4])));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the registry to a file.
+     *
+     * @param file  the registry file
+     * @throws IOException  if the file can't be written
+     */
+
+    public void write(Path file) throws IOException
+    {
+        StringBuilder content = new StringBuilder();
+        for (CustomTagModule module : modules.values())
+        {
+            content.append(module.getName()).append('\t').append(module.getTemplate()).append('\t')
+                            .append(module.isStrict()).append('\t').append(join(module.getAttributes())).append('\t')
+                            .append(join(module.getReturnAttributes())).append('\n');
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] split(String field)
+    {
+        return field.isEmpty() ? null : field.split(",");
+    }
+
+    private static String join(String[] values)
+    {
+        return (values != null) ? String.join(",", values) : "";
+    }
+
+    /**
+     * Adds a custom tag. A tag with the same name is replaced.
+     *
+     * @param module    the declaration of the tag
+     */
+
+    public void add(CustomTagModule module)
+    {
+        modules.put(module.getName(), module);
+    }
+
+    /**
+     * Returns the declaration of a custom tag.
+     *
+     * @param name  the name of the tag
+     * @return  the module or <code>null</code>
+     */
+
+    public CustomTagModule getModule(String name)
+    {
+        return modules.get(name.toLowerCase());
+    }
+
+    /**
+     * @return  the unmodifiable declarations ordered by name
+     */
+
+    public Collection<CustomTagModule> getModules()
+    {
+        return Collections.unmodifiableCollection(modules.values());
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        return (obj instanceof CustomTagRegistry) && modules.equals(((CustomTagRegistry)obj).modules);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return modules.hashCode();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * The expiry time of a page that is cached until a fixed time of the day, as
+ * it is declared by <code>&lt;iscache type="daily" hour="..." minute="..."&gt;</code>.
+ *
+ * Compiled templates that are generated with
+ * {@link ISMLCompilerConfiguration#isCacheExpiryPrecomputationEnabled()} use
+ * the shared instance of the declared time instead of computing the expiry
+ * with a new calendar on every request. The expiry time of the current day is
+ * computed once per minute in the default time zone; instances are thread-safe.
+ */
+
+public final class DailyCacheExpiry
+{
+    /**
+     * The seconds of a day, added if the time of the current day has passed.
+     */
+
+    private static final long DAY = 86400;
+
+    /**
+     * The shared instances by minute of the day, created on demand.
+     */
+
+    private static final DailyCacheExpiry[] instances = new DailyCacheExpiry[24 * 60];
+
+    /**
+     * The hour of the day.
+     */
+
+    private final int hour;
+
+    /**
+     * The minute of the hour.
+     */
+
+    private final int minute;
+
+    /**
+     * The memoized expiry time of the current day.
+     */
+
+    private volatile Memo memo;
+
+    private DailyCacheExpiry(int hour, int minute)
+    {
+        this.hour = hour;
+        this.minute = minute;
+    }
+
+    /**
+     * Returns the shared instance of a time of the day. The values are
+     * limited to valid times like the inline code of the ISCACHE tag does.
+     *
+     * @param hour      the hour of the day, limited to 0 to 23
+     * @param minute    the minute of the hour, limited to 0 to 59
+     * @return  the shared instance
+     */
+
+    public static DailyCacheExpiry get(long hour, long minute)
+    {
+        int index = (int)(Math.max(0, Math.min(23, hour)) * 60 + Math.max(0, Math.min(59, minute)));
+        DailyCacheExpiry result = instances[index];
+
+        if (result == null)
+        {
+            // instances are immutable apart from the memo, so a race only
+            // creates an additional instance
+            result = new DailyCacheExpiry(index / 60, index % 60);
+            instances[index] = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return  the hour of the day
+     */
+
+    public int getHour()
+    {
+        return hour;
+    }
+
+    /**
+     * @return  the minute of the hour
+     */
+
+    public int getMinute()
+    {
+        return minute;
+    }
+
+    /**
+     * Returns the expiry time for a page that is created now.
+     *
+     * @return  the expiry time in seconds since the epoch
+     */
+
+    public long getExpiryTime()
+    {
+        return getExpiryTime(System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Returns the expiry time for a page that is created at the given time.
+     * This is the declared time of the current day, or of the next day if it
+     * has passed.
+     *
+     * @param time  the current time in seconds since the epoch
+     * @return  the expiry time in seconds since the epoch
+     */
+
+    public long getExpiryTime(long time)
+    {
+        long currentMinute = Math.floorDiv(time, 60);
+        Memo current = memo;
+
+        if (current == null || current.minute != currentMinute)
+        {
+            ZoneId zone = ZoneId.systemDefault();
+            LocalDate today = LocalDate.ofInstant(Instant.ofEpochSecond(time), zone);
+            current = new Memo(currentMinute, today.atTime(hour, minute).atZone(zone).toEpochSecond());
+            memo = current;
+        }
+
+        return (current.expiryTime < time) ? current.expiryTime + DAY : current.expiryTime;
+    }
+
+    /**
+     * The expiry time of the current day for one minute.
+     */
+
+    private static final class Memo
+    {
+        private final long minute;
+        private final long expiryTime;
+
+        private Memo(long minute, long expiryTime)
+        {
+            this.minute = minute;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
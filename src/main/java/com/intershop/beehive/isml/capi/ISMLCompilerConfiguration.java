@@ -15,6 +15,8 @@
  */
 package com.intershop.beehive.isml.capi;
 
+import java.io.File;
+
 /**
  * Configuration of the isml compiler.
  * 
@@ -36,4 +38,316 @@ public interface ISMLCompilerConfiguration
      */
     String getJspEncoding(String mimeType);
 
+    /**
+     * Checks whether constant ISML expressions are evaluated at compile time.
+     * @return <code>true</code> if constant folding is enabled, defaults to <code>false</code>
+     */
+    default boolean isConstantFoldingEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether ISIF branches with constant conditions that are never taken
+     * are removed from the compiled template.
+     * @return <code>true</code> if dead branches are removed, defaults to <code>false</code>
+     */
+    default boolean isDeadBranchEliminationEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether object paths that are used repeatedly in a template are
+     * resolved only once as long as the pipeline dictionary can't change.
+     * @return <code>true</code> if object paths are bound to locals, defaults to <code>false</code>
+     */
+    default boolean isObjectPathHoistingEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether object paths are declared as static {@link ObjectPath}
+     * descriptors in the compiled template. The base class of the compiled
+     * templates must provide <code>getObject(ObjectPath)</code> with the same
+     * result as <code>getObject(String)</code> for the path of the descriptor.
+     * @return <code>true</code> if object paths are parsed at compile time, defaults to <code>false</code>
+     */
+    default boolean isObjectPathPresplittingEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether static template content is encoded at compile time and
+     * declared as byte constants in the compiled template. The base class of
+     * the compiled templates must provide
+     * <code>writeStaticBytes(JspWriter out, byte[] bytes, String charset)</code>,
+     * which flushes <code>out</code> and writes the bytes to the response if the
+     * response uses the given charset, and writes the decoded text otherwise.
+     * @return <code>true</code> if static content is written as bytes, defaults to <code>false</code>
+     */
+    default boolean isStaticTextEncodingEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the file that collects the static content of all templates of
+     * the template tree (see {@link StaticTextBlob}). Compiled templates
+     * reference their static content in this file instead of declaring it, and
+     * write it with <code>writeStaticBytes(JspWriter out, ByteBuffer bytes, String charset)</code>
+     * of the template base class. The runtime has to open the file with
+     * {@link StaticTextBlob#open(java.nio.file.Path)}.
+     * @return the blob file, defaults to <code>null</code> for no shared blob
+     */
+    default File getStaticTextBlob()
+    {
+        return null;
+    }
+
+    /**
+     * Checks whether templates without dynamic content are written as static
+     * resources instead of JSP pages. A static template contains only static
+     * content and ISCONTENT and ISCACHE tags with constant attributes. It is
+     * written pre-encoded to a <code>.static</code> file, together with a
+     * <code>.static.properties</code> descriptor with the content type,
+     * charset, HTTP status and cache settings, and listed in the
+     * {@link ISMLTemplateConstants#STATIC_TEMPLATE_MANIFEST manifest} of the
+     * template tree. The runtime has to serve these resources itself.
+     * @return <code>true</code> if static templates are written as resources, defaults to <code>false</code>
+     */
+    default boolean isStaticTemplateEmissionEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether large service methods of compiled templates are split.
+     * Parts of the service method are moved into private helper methods at
+     * tags outside of ISIF, ISLOOP and other blocks if its estimated bytecode
+     * size exceeds {@link #getServiceMethodSizeLimit()}.
+     * @return <code>true</code> if large service methods are split, defaults to <code>false</code>
+     */
+    default boolean isServiceMethodSplittingEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the limit of the estimated bytecode size of the service method
+     * of a compiled template. The compiler warns about templates above the
+     * limit. HotSpot doesn't compile methods that are larger than its
+     * <code>HugeMethodLimit</code> of 8000 bytes.
+     * @return the limit in bytes, defaults to 8000
+     */
+    default int getServiceMethodSizeLimit()
+    {
+        return 8000;
+    }
+
+    /**
+     * Checks whether ISML tags are compiled to calls of helper methods instead
+     * of inline code. Expressions of the tags are still evaluated in the page.
+     * The base class of the compiled templates must provide these methods with
+     * the same behavior as the inline code of the tags:
+     * <ul>
+     * <li><code>cachePageDaily(HttpServletResponse response, long hour, long minute, int line)</code>,
+     * <code>cachePageRelative(HttpServletResponse response, long hour, long minute, int line)</code>
+     * and <code>cachePageForbidden(HttpServletResponse response, int line)</code>
+     * for ISCACHE tags with constant attributes, including the checks of the
+     * borders and the logging of errors</li>
+     * <li><code>addPageCacheKeyword(String keyword)</code> and
+     * <code>registerPageCacheObject(Object object)</code> for ISCACHEKEY</li>
+     * <li><code>printValue(JspWriter out, String value, boolean encode)</code>
+     * and <code>printValue(JspWriter out, String value, String encodings)</code>
+     * for ISPRINT, which write <code>null</code> as empty string</li>
+     * </ul>
+     * @return <code>true</code> if tag boilerplate is delegated to helper methods, defaults to <code>false</code>
+     */
+    default boolean isCompactTagCodeEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether the expiry of ISCACHE tags with constant hour and minute
+     * is precomputed. Relative expiry offsets are compiled as constants, and
+     * daily expiry times are taken from the shared {@link DailyCacheExpiry}
+     * instances, which compute the expiry of the current day only once per
+     * minute. The runtime needs this class on the classpath of the compiled
+     * templates.
+     * @return <code>true</code> if the expiry of constant ISCACHE tags is precomputed, defaults to <code>false</code>
+     */
+    default boolean isCacheExpiryPrecomputationEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether the parameters of custom tags (ISX tags and ISRENDER) are
+     * declared as static arrays. Tags with only constant attributes pass the
+     * same array on every call; for tags with expressions the array is copied
+     * and only the expression parameters are created per call. Custom tag
+     * implementations must not modify the parameter arrays or the
+     * <code>TagParameter</code> objects they get.
+     * @return <code>true</code> if constant tag parameters are static, defaults to <code>false</code>
+     */
+    default boolean isStaticTagParametersEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether the renderer of an ISRENDER tag is declared as named
+     * inner class of the compiled template, which is instantiated once per
+     * template instance, instead of an anonymous class that is instantiated on
+     * every execution of the tag. The renderer is then shared by concurrent
+     * requests, so <code>CustomTag</code> must not keep request state in its
+     * fields. Bodies with JSP syntax that can't be translated into Java code
+     * keep the anonymous class.
+     * @return <code>true</code> if renderers are named classes, defaults to <code>false</code>
+     */
+    default boolean isNamedRendererClassesEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether a compiled template imports only the packages and types
+     * that its code uses instead of the fixed import list. Packages whose
+     * types can't be determined are still imported if the template uses a
+     * type that isn't known to the compiler.
+     * @return <code>true</code> if minimal imports are computed, defaults to <code>false</code>
+     */
+    default boolean isMinimalImportsEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the class that compiled templates extend. The class must extend
+     * <code>com.intershop.beehive.core.internal.template.AbstractTemplate</code>.
+     * @return the fully qualified class name, defaults to <code>null</code> for
+     *         {@link ISMLTemplateConstants#TEMPLATE_BASE_CLASS_NAME}
+     */
+    default String getTemplateBaseClass()
+    {
+        return null;
+    }
+
+    /**
+     * Checks whether compiled templates delegate their prologue and epilogue
+     * to hook methods of the base class instead of inlining them. The base
+     * class has to provide
+     * <code>JspWriter startTemplate(JspWriter out, TemplateExecutionConfig context)</code>,
+     * which creates the page configuration, prints the header and returns the
+     * writer the template writes to, and <code>void endTemplate(JspWriter out)</code>,
+     * which prints the footer.
+     * @return <code>true</code> if the template hooks are called, defaults to <code>false</code>
+     */
+    default boolean isTemplateHooksEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether templates are compiled to the Java source of servlet
+     * classes instead of JSP pages. The classes extend the template base class
+     * and implement <code>_jspService</code> like a page compiled by Jasper,
+     * and are named like Jasper names the class of the JSP page. Templates
+     * with JSP syntax in their content, like custom JSP tags or EL
+     * expressions, can't be compiled this way.
+     * @return <code>true</code> if servlet sources are generated, defaults to <code>false</code>
+     */
+    default boolean isServletCodeGenerationEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the package of the servlet API that generated servlet classes
+     * use, <code>javax.servlet</code> or <code>jakarta.servlet</code>.
+     * @return the package, defaults to <code>null</code> for <code>jakarta.servlet</code>
+     */
+    default String getServletApiPackage()
+    {
+        return null;
+    }
+
+    /**
+     * Checks whether a JSR-45 source map (SMAP) that maps the lines of the
+     * generated JSP page or servlet source to the lines of the ISML source is
+     * written next to it. The name of the source map is the name of the
+     * generated file with {@link ISMLTemplateConstants#TEMPLATE_SMAP_EXTENSION}
+     * appended.
+     * @return <code>true</code> if source maps are written, defaults to <code>false</code>
+     */
+    default boolean isSourceMapEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether expensive constructs (ISINCLUDE, ISPIPELINE, ISLOOP,
+     * ISTEXT, custom tags, and expressions that build URLs or look up
+     * localized texts) are wrapped with {@link TemplateProbe timing probes}.
+     * The probes only measure if the runtime installs a
+     * {@link TemplateProfiler}.
+     * @return <code>true</code> if profiling probes are generated, defaults to <code>false</code>
+     */
+    default boolean isProfilingProbesEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Checks whether ISINCLUDE tags with a literal template name and no
+     * dictionary are replaced by the content of the included template, if the
+     * name resolves to exactly one template in
+     * {@link #getTemplateSourceDirectory()}.
+     * @return <code>true</code> if static includes are inlined, defaults to <code>false</code>
+     */
+    default boolean isIncludeInliningEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the maximum size of the content that is inlined into a template
+     * by {@link #isIncludeInliningEnabled() include inlining}.
+     * @return the budget in characters, defaults to 16384
+     */
+    default int getIncludeInliningBudget()
+    {
+        return 16384;
+    }
+
+    /**
+     * Returns the directory of the language directories of the template
+     * sources, where included templates are resolved. Profiling probes report
+     * the paths of the templates in this directory.
+     * @return the directory, defaults to <code>null</code>, which disables include inlining
+     *         and reports the file names of the templates
+     */
+    default File getTemplateSourceDirectory()
+    {
+        return null;
+    }
+
+    /**
+     * Returns the registry file of the custom tags of the template tree that
+     * are bound at compile time (see {@link CustomTagRegistry}). The compiled
+     * templates pass the {@link CustomTagModule} descriptors of these tags to
+     * <code>processOpenTag(ServletResponse, PageContext, CustomTagModule, TagParameter[], int)</code>
+     * of the template base class, which must include the module template like
+     * <code>processOpenTag</code> does for the tag name.
+     * @return the registry file, defaults to <code>null</code> for custom tags that are resolved at runtime
+     */
+    default File getCustomTagRegistry()
+    {
+        return null;
+    }
+
 }
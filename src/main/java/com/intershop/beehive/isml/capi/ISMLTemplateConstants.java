@@ -63,6 +63,51 @@ public class ISMLTemplateConstants
      */
     public static final String TEMPLATE_PAGECOMPILE_EXTENSION = ".jsp";
 
+    /**
+     * The file extension of a template that is compiled to a static resource
+     */
+    public static final String TEMPLATE_STATIC_EXTENSION = ".static";
+
+    /**
+     * The file extension of the descriptor of a static resource
+     */
+    public static final String TEMPLATE_STATIC_DESCRIPTOR_EXTENSION = ".static.properties";
+
+    /**
+     * The name of the file that lists the static resources of a template tree
+     */
+    public static final String STATIC_TEMPLATE_MANIFEST = "isml-static-templates.manifest";
+
+    /**
+     * The name of the cost report of a template tree
+     */
+    public static final String TEMPLATE_COST_REPORT = "isml-template-costs.txt";
+
+    /**
+     * The name of the lint report of a template tree
+     */
+    public static final String TEMPLATE_LINT_REPORT = "isml-lint-report.txt";
+
+    /**
+     * The name of the file that lists the templates inlined into the templates of a template tree
+     */
+    public static final String INLINE_DEPENDENCY_MANIFEST = "isml-inline-dependencies.manifest";
+
+    /**
+     * The name of the registry of the custom tags of a template tree that are bound at compile time
+     */
+    public static final String CUSTOM_TAG_REGISTRY = "isml-custom-tags.registry";
+
+    /**
+     * The name of the index of the templates of a template tree by language directory
+     */
+    public static final String TEMPLATE_INDEX = "isml-template-index.idx";
+
+    /**
+     * The name of the report of the templates of a template tree that share the output of an identical template
+     */
+    public static final String TEMPLATE_DEDUPLICATION_REPORT = "isml-deduplication-report.txt";
+
     /**
      * The Java file extension
      */
@@ -73,11 +118,22 @@ public class ISMLTemplateConstants
      */
     public static final String TEMPLATE_CLASS_EXTENSION = ".class";
 
+    /**
+     * The extension that is appended to the name of a generated file for its
+     * JSR-45 source map
+     */
+    public static final String TEMPLATE_SMAP_EXTENSION = ".smap";
+
     /**
      * The class name of the TemplateExecutionConfig class.
      */
     public static final String TEMPLATE_EXEC_CONFIG_NAME = "com.intershop.beehive.core.internal.template.TemplateExecutionConfig";
 
+    /**
+     * The class name of the default base class of compiled templates.
+     */
+    public static final String TEMPLATE_BASE_CLASS_NAME = "com.intershop.beehive.core.internal.template.AbstractTemplate";
+
     /**
      * The name of the pipeline dictionary object, which can be used in a
      * JSP EL construct as a named variable.
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed ISML object path like <code>Product:Attribute("Name",Locale)</code>.
+ *
+ * Compiled templates that are generated with
+ * {@link ISMLCompilerConfiguration#isObjectPathPresplittingEnabled()} declare
+ * one static descriptor for each distinct path and pass it to
+ * <code>getObject(ObjectPath)</code> of the template base class instead of the
+ * path string, so the path is only parsed when the template class is loaded.
+ *
+ * A path consists of segments separated by colons. Each segment has a name and
+ * optional parameters in brackets; a parameter is either a string constant in
+ * double quotes or another object path that is resolved at runtime.
+ */
+
+public final class ObjectPath
+{
+    /**
+     * The path as it is passed to <code>getObject(String)</code>.
+     */
+
+    private final String path;
+
+    /**
+     * The names of the segments.
+     */
+
+    private final String[] names;
+
+    /**
+     * The hash codes of the segment names.
+     */
+
+    private final int[] hashes;
+
+    /**
+     * The parameters of the segments, <code>null</code> for segments without
+     * brackets. A parameter is a <code>String</code> constant or an
+     * <code>ObjectPath</code>.
+     */
+
+    private final Object[][] parameters;
+
+    private ObjectPath(String path, String[] names, Object[][] parameters)
+    {
+        this.path = path;
+        this.names = names;
+        this.parameters = parameters;
+        this.hashes = new int[names.length];
+
+        for (int i = 0; i < names.length; i++)
+        {
+            hashes[i] = names[i].hashCode();
+        }
+    }
+
+    /**
+     * Parses an object path.
+     *
+     * @param path  the path as it is passed to <code>getObject(String)</code>
+     * @return  the parsed path
+     * @throws IllegalArgumentException if the path is malformed
+     */
+
+    public static ObjectPath parse(String path)
+    {
+        int[] position = { 0 };
+        ObjectPath result = parse(path, position);
+
+        if (position[0] != path.length())
+        {
+            throw new IllegalArgumentException("Unexpected character at position " + position[0] + " of object path " + path);
+        }
+        return result;
+    }
+
+    /**
+     * Parses the object path that starts at the given position.
+     *
+     * @param path      the string that contains the path
+     * @param position  the start of the path, set to the end of the path
+     * @return  the parsed path
+     */
+
+    private static ObjectPath parse(String path, int[] position)
+    {
+        int start = position[0];
+        List<String> names = new ArrayList<String>();
+        List<Object[]> parameters = new ArrayList<Object[]>();
+
+        do
+        {
+            if (names.size() > 0)
+            {
+                // skip the colon
+                position[0]++;
+            }
+
+            int nameStart = position[0];
+            while (position[0] < path.length() && isNameChar(path.charAt(position[0])))
+            {
+                position[0]++;
+            }
+            if (position[0] == nameStart)
+            {
+                throw new IllegalArgumentException("Missing name at position " + nameStart + " of object path " + path);
+            }
+            names.add(path.substring(nameStart, position[0]));
+            parameters.add(isAt(path, position[0], '(') ? parseParameters(path, position) : null);
+        }
+        while (isAt(path, position[0], ':'));
+
+        return new ObjectPath(path.substring(start, position[0]), names.toArray(new String[names.size()]),
+                        parameters.toArray(new Object[parameters.size()][]));
+    }
+
+    /**
+     * Parses the parameters of a segment.
+     *
+     * @param path      the string that contains the path
+     * @param position  the position of the opening bracket, set to the
+     *                  position after the closing bracket
+     * @return  the parameters
+     */
+
+    private static Object[] parseParameters(String path, int[] position)
+    {
+        List<Object> parameters = new ArrayList<Object>();
+
+        do
+        {
+            // skip the opening bracket or the comma
+            position[0]++;
+
+            if (isAt(path, position[0], '"'))
+            {
+                int end = path.indexOf('"', position[0] + 1);
+                if (end < 0)
+                {
+                    throw new IllegalArgumentException("Unterminated constant at position " + position[0] + " of object path " + path);
+                }
+                parameters.add(path.substring(position[0] + 1, end));
+                position[0] = end + 1;
+            }
+            else
+            {
+                parameters.add(parse(path, position));
+            }
+        }
+        while (isAt(path, position[0], ','));
+
+        if (!isAt(path, position[0], ')'))
+        {
+            throw new IllegalArgumentException("Missing closing bracket at position " + position[0] + " of object path " + path);
+        }
+        position[0]++;
+
+        return parameters.toArray();
+    }
+
+    private static boolean isAt(String path, int position, char ch)
+    {
+        return position < path.length() && path.charAt(position) == ch;
+    }
+
+    private static boolean isNameChar(char ch)
+    {
+        return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9') || ch == '_';
+    }
+
+    /**
+     * @return  the path as it is passed to <code>getObject(String)</code>
+     */
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * @return  the number of segments
+     */
+
+    public int getSegmentCount()
+    {
+        return names.length;
+    }
+
+    /**
+     * @param segment   the index of the segment
+     * @return  the name of the segment
+     */
+
+    public String getName(int segment)
+    {
+        return names[segment];
+    }
+
+    /**
+     * @param segment   the index of the segment
+     * @return  the hash code of the name of the segment
+     */
+
+    public int getNameHash(int segment)
+    {
+        return hashes[segment];
+    }
+
+    /**
+     * @param segment   the index of the segment
+     * @return  <code>true</code> if the segment has parameters
+     */
+
+    public boolean hasParameters(int segment)
+    {
+        return parameters[segment] != null;
+    }
+
+    /**
+     * @param segment   the index of the segment
+     * @return  the number of parameters of the segment
+     */
+
+    public int getParameterCount(int segment)
+    {
+        return (parameters[segment] != null) ? parameters[segment].length : 0;
+    }
+
+    /**
+     * Returns a parameter of a segment.
+     *
+     * @param segment   the index of the segment
+     * @param parameter the index of the parameter
+     * @return  a <code>String</code> constant or an <code>ObjectPath</code>
+     *          that has to be resolved
+     */
+
+    public Object getParameter(int segment, int parameter)
+    {
+        return parameters[segment][parameter];
+    }
+
+    @Override
+    public String toString()
+    {
+        return path;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A file with the static content of all templates of a template tree, shared
+ * by the compiled templates. Templates compiled with
+ * {@link ISMLCompilerConfiguration#getStaticTextBlob()} reference their static
+ * content by offset and length in this file:
+ *
+ * <pre>
+ * private static final StaticTextBlob _STATIC_TEXT_BLOB = StaticTextBlob.get("&lt;id&gt;");
+ * ... writeStaticBytes(out, _STATIC_TEXT_BLOB.slice(1024L, 250), _STATIC_TEXT_CHARSET); ...
+ * </pre>
+ *
+ * The runtime has to {@link #open(Path) open} the blob files of its template
+ * directories before the templates are executed. A file is mapped into memory
+ * once per JVM; it is mapped again if a template was compiled later and
+ * references content that was appended to the file.
+ *
+ * The file starts with {@link #MAGIC}, followed by the id of the blob as
+ * ASCII string of {@link #ID_LENGTH} characters and the content.
+ */
+
+public final class StaticTextBlob
+{
+    /**
+     * The first bytes of a blob file.
+     */
+
+    public static final String MAGIC = "ISMLSTXT";
+
+    /**
+     * The length of the blob id.
+     */
+
+    public static final int ID_LENGTH = 36;
+
+    /**
+     * The length of the file header.
+     */
+
+    public static final int HEADER_LENGTH = MAGIC.length() + ID_LENGTH;
+
+    /**
+     * The blobs by id.
+     */
+
+    private static final ConcurrentMap<String, StaticTextBlob> blobs = new ConcurrentHashMap<String, StaticTextBlob>();
+
+    /**
+     * The id of the blob.
+     */
+
+    private final String id;
+
+    /**
+     * The blob file, <code>null</code> if the blob is not opened yet.
+     */
+
+    private volatile Path file;
+
+    /**
+     * The mapped content of the file.
+     */
+
+    private volatile MappedByteBuffer content;
+
+    private StaticTextBlob(String id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * Returns the blob with the given id. The blob can be used after its file
+     * was opened.
+     *
+     * @param id    the id of the blob
+     * @return  the blob
+     */
+
+    public static StaticTextBlob get(String id)
+    {
+        return blobs.computeIfAbsent(id, StaticTextBlob::new);
+    }
+
+    /**
+     * Opens a blob file for the templates that reference it.
+     *
+     * @param file  the blob file
+     * @return  the blob
+     * @throws IOException  if the file can't be read or is no blob file
+     */
+
+    public static StaticTextBlob open(Path file) throws IOException
+    {
+        StaticTextBlob blob;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            while (header.hasRemaining() && channel.read(header) >= 0)
+            {
+                // read the complete header
+            }
+
+            String text = new String(header.array(), 0, header.position(), StandardCharsets.US_ASCII);
+            if (header.hasRemaining() || !text.startsWith(MAGIC))
+            {
+                throw new IOException("No static text blob: " + file);
+            }
+
+            blob = get(text.substring(MAGIC.length()));
+        }
+
+        blob.bind(file);
+        return blob;
+    }
+
+    /**
+     * Sets the file of the blob, it is mapped on first use.
+     */
+
+    private synchronized void bind(Path file)
+    {
+        this.file = file;
+        this.content = null;
+    }
+
+    /**
+     * @return  the id of the blob
+     */
+
+    public String getId()
+    {
+        return id;
+    }
+
+    /**
+     * Returns a part of the blob.
+     *
+     * @param offset    the offset of the part in the file
+     * @param length    the length of the part
+     * @return  a read-only buffer with the part
+     * @throws IllegalStateException if the blob file was not opened or is
+     *         too short
+     */
+
+    public ByteBuffer slice(long offset, int length)
+    {
+        MappedByteBuffer mapped = content;
+        if (mapped == null || offset + length > mapped.capacity())
+        {
+            mapped = map(offset + length);
+        }
+
+        ByteBuffer slice = mapped.duplicate();
+        slice.position((int)offset);
+        slice.limit((int)offset + length);
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Maps the blob file.
+     *
+     * @param size  the minimum size of the file
+     * @return  the mapped file
+     */
+
+    private synchronized MappedByteBuffer map(long size)
+    {
+        if (content != null && content.capacity() >= size)
+        {
+            return content;
+        }
+        if (file == null)
+        {
+            throw new IllegalStateException("Static text blob " + id + " was not opened.");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (channel.size() < size || channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IllegalStateException("Static text blob " + file + " has an invalid size " + channel.size() + ".");
+            }
+
+            // the mapping stays valid after the channel is closed
+            content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return content;
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Static text blob " + file + " can't be mapped.", e);
+        }
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The index of the templates of a template tree by their template id and the
+ * language directories that contain them. The compiler writes the index file
+ * {@link ISMLTemplateConstants#TEMPLATE_INDEX} of a template tree.
+ *
+ * The runtime has to {@link #open(Path) open} the index of a template
+ * directory and resolve template existence checks and includes with
+ * {@link #resolve(String, List)} for the {@link #getLocaleChain(Locale) locale
+ * chain} of the request instead of probing the language directories in the
+ * file system. A file is mapped once per JVM.
+ *
+ * The compiler writes the index as file that is mapped into memory. It starts
+ * with {@link #MAGIC}, the number of language directories, the number of
+ * 64 bit words of the language masks and the number of templates. The names of
+ * the language directories follow as UTF-8 strings with a length prefix. Then
+ * there is one record per template, sorted by the UTF-8 bytes of the template
+ * id: the offset and length of the id in the string area and the mask of the
+ * language directories that contain the template. The ids in UTF-8 form the
+ * string area at the end of the file.
+ */
+
+public final class TemplateIndex
+{
+    /**
+     * The first bytes of an index file.
+     */
+
+    public static final String MAGIC = "ISMLTIDX";
+
+    /**
+     * The name of the language directory that is the last fallback.
+     */
+
+    public static final String DEFAULT_LANGUAGE = "default";
+
+    /**
+     * The indexes that are opened, by file.
+     */
+
+    private static final ConcurrentMap<Path, TemplateIndex> indexes = new ConcurrentHashMap<Path, TemplateIndex>();
+
+    /**
+     * The mapped file.
+     */
+
+    private final ByteBuffer content;
+
+    /**
+     * The names of the language directories.
+     */
+
+    private final List<String> languages;
+
+    /**
+     * The number of 64 bit words of a language mask.
+     */
+
+    private final int maskWords;
+
+    /**
+     * The number of templates.
+     */
+
+    private final int size;
+
+    /**
+     * The offset of the first record.
+     */
+
+    private final int records;
+
+    private TemplateIndex(ByteBuffer content) throws IOException
+    {
+        this.content = content;
+
+        byte[] magic = new byte[MAGIC.length()];
+        content.get(magic);
+        if (!MAGIC.equals(new String(magic, StandardCharsets.US_ASCII)))
+        {
+            throw new IOException("No template index.");
+        }
+
+        int languageCount = content.getInt();
+        this.maskWords = content.getInt();
+        this.size = content.getInt();
+
+        List<String> names = new ArrayList<String>(languageCount);
+        for (int i = 0; i < languageCount; i++)
+        {
+            byte[] name = new byte[content.getShort() & 0xFFFF];
+            content.get(name);
+            names.add(new String(name, StandardCharsets.UTF_8));
+        }
+        this.languages = Collections.unmodifiableList(names);
+        this.records = content.position();
+    }
+
+    /**
+     * Opens an index file. The file is only mapped the first time.
+     *
+     * @param file  the index file
+     * @return  the index
+     * @throws IOException  if the file can't be read or is no index
+     */
+
+    public static TemplateIndex open(Path file) throws IOException
+    {
+        Path key = file.toAbsolutePath().normalize();
+        TemplateIndex result = indexes.get(key);
+        if (result == null)
+        {
+            result = map(key);
+            TemplateIndex previous = indexes.putIfAbsent(key, result);
+            result = (previous != null) ? previous : result;
+        }
+        return result;
+    }
+
+    /**
+     * Maps an index file into memory.
+     *
+     * @param file  the index file
+     * @return  the index
+     * @throws IOException  if the file can't be read or is no index
+     */
+
+    public static TemplateIndex map(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new TemplateIndex(content);
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("Invalid template index " + file + '.', e);
+        }
+    }
+
+    /**
+     * Creates an index of the content of an index file.
+     *
+     * @param content   the content of the file
+     * @return  the index
+     * @throws IOException  if the content is no index
+     */
+
+    public static TemplateIndex wrap(ByteBuffer content) throws IOException
+    {
+        try
+        {
+            return new TemplateIndex(content.duplicate());
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("Invalid template index.", e);
+        }
+    }
+
+    /**
+     * Writes an index file.
+     *
+     * @param file      the index file
+     * @param templates the template names by language directory, names like
+     *                  <code>product/Tile.isml</code> relative to the
+     *                  language directory
+     * @throws IOException  if the file can't be written
+     */
+
+    public static void write(Path file, Map<String, ? extends Collection<String>> templates) throws IOException
+    {
+        List<String> languageNames = new ArrayList<String>(new TreeMap<String, Object>(templates).keySet());
+        int words = (languageNames.size() + 63) / 64;
+
+        // the masks by the UTF-8 bytes of the template id
+        TreeMap<String, long[]> masks = new TreeMap<String, long[]>(TemplateIndex::compareUtf8);
+        for (int i = 0; i < languageNames.size(); i++)
+        {
+            for (String name : templates.get(languageNames.get(i)))
+            {
+                long[] mask = masks.computeIfAbsent(getId(name), id -> new long[words]);
+                mask[i >> 6] |= 1L << (i & 63);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(MAGIC.getBytes(StandardCharsets.US_ASCII));
+        out.writeInt(languageNames.size());
+        out.writeInt(words);
+        out.writeInt(masks.size());
+        for (String language : languageNames)
+        {
+            byte[] name = language.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+        }
+
+        int offset = out.size() + masks.size() * (8 + words * 8);
+        ByteArrayOutputStream ids = new ByteArrayOutputStream();
+        for (Map.Entry<String, long[]> entry : masks.entrySet())
+        {
+            byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(offset + ids.size());
+            out.writeInt(id.length);
+            for (long word : entry.getValue())
+            {
+                out.writeLong(word);
+            }
+            ids.write(id);
+        }
+        ids.writeTo(out);
+        out.flush();
+        Files.write(file, bytes.toByteArray());
+    }
+
+    private static int compareUtf8(String first, String second)
+    {
+        byte[] a = first.getBytes(StandardCharsets.UTF_8), b = second.getBytes(StandardCharsets.UTF_8);
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++)
+        {
+            int compared = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (compared != 0)
+            {
+                return compared;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * @return  the unmodifiable names of the language directories
+     */
+
+    public List<String> getLanguages()
+    {
+        return languages;
+    }
+
+    /**
+     * @return  the number of templates
+     */
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the language directories that are searched for a locale, the
+     * most specific first, e.g. <code>de_DE, de, default</code>.
+     *
+     * @param locale    the locale
+     * @return  the names of the language directories
+     */
+
+    public static List<String> getLocaleChain(Locale locale)
+    {
+        List<String> result = new ArrayList<String>(4);
+        String name = locale.toString();
+        while (!name.isEmpty())
+        {
+            result.add(name);
+            int separator = name.lastIndexOf('_');
+            name = (separator > 0) ? name.substring(0, separator) : "";
+        }
+        result.add(DEFAULT_LANGUAGE);
+        return result;
+    }
+
+    /**
+     * Checks whether a template exists for a locale chain.
+     *
+     * @param templateId    the template id, e.g. <code>product/Tile</code>
+     * @param localeChain   the language directories in search order
+     * @return  <code>true</code> if one of the language directories contains
+     *          the template
+     */
+
+    public boolean exists(String templateId, List<String> localeChain)
+    {
+        return resolveLanguage(templateId, localeChain) != null;
+    }
+
+    /**
+     * Resolves a template for a locale chain.
+     *
+     * @param templateId    the template id, e.g. <code>product/Tile</code>
+     * @param localeChain   the language directories in search order
+     * @return  the path of the template relative to the template root, e.g.
+     *          <code>default/product/Tile.isml</code>, or <code>null</code>
+     *          if no language directory of the chain contains it
+     */
+
+    public String resolve(String templateId, List<String> localeChain)
+    {
+        String language = resolveLanguage(templateId, localeChain);
+        return (language != null) ? language + '/' + getId(templateId) + ISMLTemplateConstants.TEMPLATE_EXTENSION : null;
+    }
+
+    /**
+     * Resolves the language directory of a template for a locale chain.
+     *
+     * @param templateId    the template id
+     * @param localeChain   the language directories in search order
+     * @return  the first language directory of the chain that contains the
+     *          template, or <code>null</code>
+     */
+
+    public String resolveLanguage(String templateId, List<String> localeChain)
+    {
+        int record = find(getId(templateId).getBytes(StandardCharsets.UTF_8));
+        if (record < 0)
+        {
+            return null;
+        }
+
+        for (String language : localeChain)
+        {
+            int index = languages.indexOf(language);
+            if (index >= 0 && (content.getLong(record + 8 + (index >> 6) * 8) & (1L << (index & 63))) != 0)
+            {
+                return language;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the template id of a template name as it is used by includes.
+     */
+
+    static String getId(String name)
+    {
+        String result = name.replace('\\', '/');
+        if (result.startsWith("/"))
+        {
+            result = result.substring(1);
+        }
+        if (result.endsWith(ISMLTemplateConstants.TEMPLATE_EXTENSION))
+        {
+            result = result.substring(0, result.length() - ISMLTemplateConstants.TEMPLATE_EXTENSION.length());
+        }
+        return result;
+    }
+
+    /**
+     * Finds the record of a template id by binary search.
+     *
+     * @return  the offset of the record, or -1
+     */
+
+    private int find(byte[] id)
+    {
+        int recordSize = 8 + maskWords * 8;
+        int low = 0, high = size - 1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int record = records + middle * recordSize;
+            int compared = compare(content.getInt(record), content.getInt(record + 4), id);
+
+            if (compared < 0)
+            {
+                low = middle + 1;
+            }
+            else if (compared > 0)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares a template id of the string area with the given id by their
+     * unsigned bytes.
+     */
+
+    private int compare(int offset, int length, byte[] id)
+    {
+        int common = Math.min(length, id.length);
+        for (int i = 0; i < common; i++)
+        {
+            int compared = (content.get(offset + i) & 0xFF) - (id[i] & 0xFF);
+            if (compared != 0)
+            {
+                return compared;
+            }
+        }
+        return length - id.length;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link TemplateProfiler} that keeps a histogram of the execution times of
+ * every probe, that is of every profiled line of every template.
+ *
+ * Recording doesn't lock: the histograms are created once per probe, and
+ * their counters are striped {@link LongAdder}s, so request threads that
+ * execute the same line don't contend. The buckets have exponential limits,
+ * bucket <i>i</i> counts the times below 2<sup><i>i</i></sup> microseconds
+ * that don't fit into the previous bucket.
+ */
+
+public class TemplateLineProfiler implements TemplateProfiler
+{
+    /**
+     * The number of buckets of a histogram.
+     */
+
+    public static final int BUCKETS = 32;
+
+    /**
+     * The histograms by probe.
+     */
+
+    private final ConcurrentMap<TemplateProbe, Histogram> histograms = new ConcurrentHashMap<TemplateProbe, Histogram>();
+
+    @Override
+    public void record(TemplateProbe probe, long nanos)
+    {
+        Histogram histogram = histograms.get(probe);
+        if (histogram == null)
+        {
+            histogram = histograms.computeIfAbsent(probe, key -> new Histogram());
+        }
+        histogram.add(nanos);
+    }
+
+    /**
+     * @return  the histograms by probe
+     */
+
+    public Map<TemplateProbe, Histogram> getHistograms()
+    {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Returns the probes with the highest total execution time.
+     *
+     * @param limit the maximum number of probes
+     * @return  the probes, the slowest first
+     */
+
+    public List<TemplateProbe> getSlowestProbes(int limit)
+    {
+        List<Map.Entry<TemplateProbe, Histogram>> entries = new ArrayList<Map.Entry<TemplateProbe, Histogram>>(histograms.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<TemplateProbe, Histogram> entry) -> entry.getValue().getTotalNanos()).reversed());
+
+        List<TemplateProbe> result = new ArrayList<TemplateProbe>();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++)
+        {
+            result.add(entries.get(i).getKey());
+        }
+        return result;
+    }
+
+    /**
+     * Removes all recorded times.
+     */
+
+    public void reset()
+    {
+        histograms.clear();
+    }
+
+    /**
+     * Returns the bucket of an execution time.
+     *
+     * @param nanos the execution time in nanoseconds
+     * @return  the index of the bucket
+     */
+
+    static int getBucket(long nanos)
+    {
+        long micros = Math.max(0, nanos) / 1000;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Returns the upper limit of a bucket.
+     *
+     * @param bucket    the index of the bucket
+     * @return  the exclusive upper limit in microseconds
+     */
+
+    public static long getBucketLimit(int bucket)
+    {
+        return 1L << bucket;
+    }
+
+    /**
+     * The execution times of one probe.
+     */
+
+    public static final class Histogram
+    {
+        /**
+         * The number of times per bucket.
+         */
+
+        private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+        /**
+         * The sum of all times.
+         */
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        Histogram()
+        {
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void add(long nanos)
+        {
+            counts[getBucket(nanos)].increment();
+            totalNanos.add(nanos);
+        }
+
+        /**
+         * @return  the number of times per bucket
+         */
+
+        public long[] getCounts()
+        {
+            long[] result = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                result[i] = counts[i].sum();
+            }
+            return result;
+        }
+
+        /**
+         * @return  the number of recorded times
+         */
+
+        public long getCount()
+        {
+            long result = 0;
+            for (LongAdder count : counts)
+            {
+                result += count.sum();
+            }
+            return result;
+        }
+
+        /**
+         * @return  the sum of all recorded times in nanoseconds
+         */
+
+        public long getTotalNanos()
+        {
+            return totalNanos.sum();
+        }
+
+        /**
+         * Returns the upper limit of a percentile of the recorded times.
+         *
+         * @param percentile    the percentile, like 0.99
+         * @return  the upper limit of the bucket of the percentile in
+         *          microseconds, 0 if no time was recorded
+         */
+
+        public long getPercentile(double percentile)
+        {
+            long[] values = getCounts();
+            long total = 0;
+            for (long value : values)
+            {
+                total += value;
+            }
+
+            long rank = (long)Math.ceil(total * percentile), sum = 0;
+            for (int i = 0; i < BUCKETS && total > 0; i++)
+            {
+                sum += values[i];
+                if (sum >= rank)
+                {
+                    return getBucketLimit(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+/**
+ * A timing probe of an expensive construct in a compiled template, like an
+ * ISINCLUDE, an ISPIPELINE, an ISLOOP or a custom tag. Templates compiled with
+ * {@link ISMLCompilerConfiguration#isProfilingProbesEnabled()} declare one
+ * probe per construct and wrap its code:
+ *
+ * <pre>
+ * private static final TemplateProbe _PROBE_1 = TemplateProbe.get(MethodHandles.lookup().lookupClass(), "Header.isml", 12, "ISINCLUDE");
+ * ... long _probe1 = _PROBE_1.start(); try { ... } finally { _PROBE_1.end(_probe1); } ...
+ * </pre>
+ *
+ * The timings are passed to the installed {@link TemplateProfiler}. As long
+ * as no profiler is installed, a probe only reads a static field and doesn't
+ * read the clock.
+ */
+
+public final class TemplateProbe
+{
+    /**
+     * The start time of a probe that doesn't measure.
+     */
+
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    /**
+     * The installed profiler, <code>null</code> if profiling is off.
+     */
+
+    private static volatile TemplateProfiler profiler = null;
+
+    /**
+     * The compiled template.
+     */
+
+    private final Class<?> templateClass;
+
+    /**
+     * The name of the template source.
+     */
+
+    private final String template;
+
+    /**
+     * The line of the construct in the template source.
+     */
+
+    private final int line;
+
+    /**
+     * The name of the construct.
+     */
+
+    private final String construct;
+
+    private TemplateProbe(Class<?> templateClass, String template, int line, String construct)
+    {
+        this.templateClass = templateClass;
+        this.template = template;
+        this.line = line;
+        this.construct = construct;
+    }
+
+    /**
+     * Returns the probe of a construct.
+     *
+     * @param templateClass the compiled template
+     * @param template      the name of the template source
+     * @param line          the line of the construct in the template source
+     * @param construct     the name of the construct, like the tag name
+     * @return  the probe
+     */
+
+    public static TemplateProbe get(Class<?> templateClass, String template, int line, String construct)
+    {
+        return new TemplateProbe(templateClass, template, line, construct);
+    }
+
+    /**
+     * Installs the profiler of all probes.
+     *
+     * @param profiler  the profiler, <code>null</code> to stop profiling
+     */
+
+    public static void setProfiler(TemplateProfiler profiler)
+    {
+        TemplateProbe.profiler = profiler;
+    }
+
+    /**
+     * @return  the installed profiler, <code>null</code> if profiling is off
+     */
+
+    public static TemplateProfiler getProfiler()
+    {
+        return profiler;
+    }
+
+    /**
+     * Starts measuring the construct.
+     *
+     * @return  the start time, passed to {@link #end(long)}
+     */
+
+    public long start()
+    {
+        return (profiler != null) ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Ends measuring the construct and records the time if a profiler is
+     * installed.
+     *
+     * @param start the value returned by {@link #start()}
+     */
+
+    public void end(long start)
+    {
+        if (start != NOT_STARTED)
+        {
+            TemplateProfiler current = profiler;
+            if (current != null)
+            {
+                current.record(this, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * @return  the compiled template
+     */
+
+    public Class<?> getTemplateClass()
+    {
+        return templateClass;
+    }
+
+    /**
+     * @return  the name of the template source
+     */
+
+    public String getTemplate()
+    {
+        return template;
+    }
+
+    /**
+     * @return  the line of the construct in the template source
+     */
+
+    public int getLine()
+    {
+        return line;
+    }
+
+    /**
+     * @return  the name of the construct
+     */
+
+    public String getConstruct()
+    {
+        return construct;
+    }
+
+    @Override
+    public String toString()
+    {
+        return template + ':' + line + ' ' + construct;
+    }
+}
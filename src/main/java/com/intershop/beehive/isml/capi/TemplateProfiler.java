@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+/**
+ * The receiver of the timings of the {@link TemplateProbe probes} in compiled
+ * templates. The runtime installs a profiler with
+ * {@link TemplateProbe#setProfiler(TemplateProfiler)}; without a profiler the
+ * probes don't measure anything.
+ *
+ * Implementations are called concurrently by all request threads and must not
+ * block, see {@link TemplateLineProfiler}.
+ */
+
+public interface TemplateProfiler
+{
+    /**
+     * Records the execution time of a construct.
+     *
+     * @param probe the probe of the construct
+     * @param nanos the execution time in nanoseconds
+     */
+
+    void record(TemplateProbe probe, long nanos);
+}
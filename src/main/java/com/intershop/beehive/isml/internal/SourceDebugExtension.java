@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Adds a JSR-45 source map as <code>SourceDebugExtension</code> attribute to
+ * a class file, like Jasper does for compiled JSP pages. Debuggers and
+ * profilers use the attribute to map the lines of the class to the lines of
+ * the ISML source.
+ */
+
+public final class SourceDebugExtension
+{
+    /**
+     * The name of the attribute.
+     */
+
+    private static final String ATTRIBUTE_NAME = "SourceDebugExtension";
+
+    private SourceDebugExtension()
+    {
+    }
+
+    /**
+     * Adds the source map to a class file. A class file that already has the
+     * attribute is returned unchanged.
+     *
+     * @param classFile the class file
+     * @param smap      the SMAP
+     * @return  the class file with the attribute
+     * @throws IOException  if the class file is invalid
+     */
+
+    public static byte[] install(byte[] classFile, String smap) throws IOException
+    {
+        ByteBuffer in = ByteBuffer.wrap(classFile);
+        if (in.getInt() != 0xCAFEBABE)
+        {
+            throw new IOException("Invalid class file.");
+        }
+        in.getInt();
+
+        int constantCount = in.getShort() & 0xFFFF;
+        for (int i = 1; i < constantCount; i++)
+        {
+            int tag = in.get();
+            switch(tag)
+            {
+                case 1:
+                    int length = in.getShort() & 0xFFFF;
+                    byte[] utf = new byte[length];
+                    in.get(utf);
+                    if (ATTRIBUTE_NAME.equals(new String(utf, StandardCharsets.UTF_8)))
+                    {
+                        return classFile;
+                    }
+                    break;
+                case 7: case 8: case 16: case 19: case 20: skip(in, 2); break;
+                case 15: skip(in, 3); break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18: skip(in, 4); break;
+                case 5: case 6: skip(in, 8); i++; break;
+                default: throw new IOException("Invalid constant pool tag " + tag + '.');
+            }
+        }
+        int constantPoolEnd = in.position();
+
+        // access flags, this class and super class
+        skip(in, 6);
+        skip(in, 2 * (in.getShort() & 0xFFFF));
+        skipMembers(in);
+        skipMembers(in);
+        int attributesStart = in.position();
+        int attributeCount = in.getShort() & 0xFFFF;
+
+        byte[] content = smap.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(classFile.length + content.length + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        // the name of the attribute is added to the constant pool
+        out.write(classFile, 0, 8);
+        out.writeShort(constantCount + 1);
+        out.write(classFile, 10, constantPoolEnd - 10);
+        out.writeByte(1);
+        out.writeUTF(ATTRIBUTE_NAME);
+        out.write(classFile, constantPoolEnd, attributesStart - constantPoolEnd);
+        out.writeShort(attributeCount + 1);
+        out.write(classFile, attributesStart + 2, classFile.length - attributesStart - 2);
+        out.writeShort(constantCount);
+        out.writeInt(content.length);
+        out.write(content);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void skip(ByteBuffer in, int length)
+    {
+        in.position(in.position() + length);
+    }
+
+    /**
+     * Skips the fields or methods of a class.
+     */
+
+    private static void skipMembers(ByteBuffer in)
+    {
+        int count = in.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++)
+        {
+            // access flags, name and descriptor
+            skip(in, 6);
+            skipAttributes(in);
+        }
+    }
+
+    private static void skipAttributes(ByteBuffer in)
+    {
+        int count = in.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++)
+        {
+            skip(in, 2);
+            skip(in, in.getInt());
+        }
+    }
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal;
+
+import com.intershop.beehive.isml.capi.ISMLException;
+import com.intershop.beehive.isml.capi.ISMLTemplateConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles the Java sources of compiled templates in-process and writes the
+ * class files into a jar.
+ *
+ * The sources are compiled in batches by the system Java compiler, one batch
+ * per task, and the batches run in parallel. Each worker thread keeps one
+ * file manager for all its batches, because the file managers of javac
+ * aren't thread-safe; the classpath is resolved once and the file managers
+ * keep the archives on the classpath open between batches. If a batch fails,
+ * its sources are compiled one by one, so that only the broken templates are
+ * missing in the jar. If a source has a source map next to it (see
+ * {@link ISMLTemplateConstants#TEMPLATE_SMAP_EXTENSION}), the source map is
+ * added to its classes.
+ */
+
+public class TemplateClassCompiler
+{
+    /**
+     * The default number of sources per batch.
+     */
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * The options of the compiler, the sources are generated with debug
+     * information for stack traces and source maps.
+     */
+
+    private static final List<String> OPTIONS = Collections.unmodifiableList(Arrays.asList("-g", "-proc:none",
+                    "-encoding", StandardCharsets.UTF_8.name()));
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * The classpath of the compiled templates.
+     */
+
+    private final List<File> classpath;
+
+    /**
+     * The number of sources per batch.
+     */
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * The number of parallel batches.
+     */
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The system Java compiler.
+     */
+
+    private final JavaCompiler compiler;
+
+    /**
+     * The file manager of the current worker thread.
+     */
+
+    private final ThreadLocal<StandardJavaFileManager> fileManagers = new ThreadLocal<StandardJavaFileManager>();
+
+    /**
+     * All file managers, closed when the compilation is done.
+     */
+
+    private final List<StandardJavaFileManager> allFileManagers = Collections.synchronizedList(new ArrayList<StandardJavaFileManager>());
+
+    /**
+     * The constructor.
+     *
+     * @param classpath the classpath of the compiled templates, separated by
+     *                  the path separator of the platform
+     * @throws ISMLException if no Java compiler is available
+     */
+
+    public TemplateClassCompiler(String classpath) throws ISMLException
+    {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+        {
+            throw new ISMLException("No Java compiler available, template classes can only be compiled with a JDK.");
+        }
+
+        this.classpath = new ArrayList<File>();
+        if (classpath != null)
+        {
+            for (String entry : classpath.split(File.pathSeparator))
+            {
+                if (!entry.isEmpty())
+                {
+                    this.classpath.add(new File(entry));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the number of sources per batch.
+     *
+     * @param batchSize the number of sources, at least one
+     */
+
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Sets the number of batches that are compiled in parallel.
+     *
+     * @param threads   the number of threads, at least one
+     */
+
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Compiles all Java sources in a directory and its subdirectories into a
+     * jar. The directories of the sources must match their packages.
+     *
+     * @param sourceDir the root directory of the sources
+     * @param jarFile   the jar file, it is replaced
+     * @return  the number of sources that failed to compile
+     * @throws ISMLException if the sources can't be compiled or the jar can't
+     *                       be written
+     */
+
+    public int compile(File sourceDir, File jarFile) throws ISMLException
+    {
+        List<File> sources = new ArrayList<File>();
+        getAllSourceFiles(sourceDir, sources);
+        Collections.sort(sources);
+
+        Map<String, byte[]> classes = Collections.synchronizedMap(new TreeMap<String, byte[]>());
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int failed = 0;
+
+        logger.info("Compiling {} template sources in batches of {} with {} threads.", sources.size(), batchSize, threads);
+
+        try
+        {
+            for (int i = 0; i < sources.size(); i += batchSize)
+            {
+                List<File> batch = sources.subList(i, Math.min(sources.size(), i + batchSize));
+                results.add(executor.submit(() -> compileBatch(batch, classes)));
+            }
+
+            for (Future<Integer> result : results)
+            {
+                failed += result.get();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new ISMLException("Compilation of template classes was interrupted.");
+        }
+        catch (ExecutionException ex)
+        {
+            throw new ISMLException("Compilation of template classes failed: " + ex.getCause().getMessage());
+        }
+        finally
+        {
+            executor.shutdownNow();
+            closeFileManagers();
+        }
+
+        writeJar(jarFile, classes);
+        logger.info("Wrote {} classes of {} template sources to {}.", classes.size(), sources.size() - failed, jarFile.getAbsolutePath());
+        return failed;
+    }
+
+    /**
+     * Compiles a batch of sources, or its sources one by one if the batch
+     * fails.
+     *
+     * @return  the number of sources that failed to compile
+     */
+
+    private int compileBatch(List<File> batch, Map<String, byte[]> classes) throws IOException
+    {
+        if (compile(batch, classes, batch.size() == 1))
+        {
+            return 0;
+        }
+
+        int failed = 0;
+        for (File source : batch)
+        {
+            if (!compile(Collections.singletonList(source), classes, true))
+            {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Compiles sources with the file manager of the current thread.
+     *
+     * @param logErrors <code>true</code> to log the compiler errors
+     * @return  <code>true</code> if the sources were compiled
+     */
+
+    private boolean compile(List<File> sources, Map<String, byte[]> classes, boolean logErrors) throws IOException
+    {
+        StandardJavaFileManager fileManager = getFileManager();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        Map<String, byte[]> output = new TreeMap<String, byte[]>();
+        Map<String, JavaFileObject> siblings = new HashMap<String, JavaFileObject>();
+
+        Boolean success = compiler.getTask(null, new ClassOutputManager(fileManager, output, siblings), diagnostics,
+                        OPTIONS, null, fileManager.getJavaFileObjectsFromFiles(sources)).call();
+
+        if (Boolean.TRUE.equals(success))
+        {
+            for (Map.Entry<String, byte[]> entry : output.entrySet())
+            {
+                classes.put(entry.getKey(), addSourceMap(entry.getValue(), siblings.get(entry.getKey())));
+            }
+            return true;
+        }
+
+        if (logErrors)
+        {
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+            {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                {
+                    logger.error("Error compiling '{}' line {}: {}",
+                                    (diagnostic.getSource() != null) ? diagnostic.getSource().getName() : "",
+                                    diagnostic.getLineNumber(), diagnostic.getMessage(null));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the source map of a source to a class compiled from it.
+     */
+
+    private byte[] addSourceMap(byte[] classFile, JavaFileObject source) throws IOException
+    {
+        if (source == null || !"file".equals(source.toUri().getScheme()))
+        {
+            return classFile;
+        }
+
+        File smap = new File(new File(source.toUri()).getPath() + ISMLTemplateConstants.TEMPLATE_SMAP_EXTENSION);
+        if (!smap.isFile())
+        {
+            return classFile;
+        }
+        return SourceDebugExtension.install(classFile, new String(Files.readAllBytes(smap.toPath()), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the file manager of the current thread.
+     */
+
+    private StandardJavaFileManager getFileManager() throws IOException
+    {
+        StandardJavaFileManager fileManager = fileManagers.get();
+        if (fileManager == null)
+        {
+            fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+            fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+            fileManagers.set(fileManager);
+            allFileManagers.add(fileManager);
+        }
+        return fileManager;
+    }
+
+    private void closeFileManagers()
+    {
+        synchronized(allFileManagers)
+        {
+            for (StandardJavaFileManager fileManager : allFileManagers)
+            {
+                try
+                {
+                    fileManager.close();
+                }
+                catch (IOException ex)
+                {
+                    logger.debug(ex.getMessage(), ex);
+                }
+            }
+            allFileManagers.clear();
+        }
+    }
+
+    /**
+     * Writes the class files into a jar.
+     */
+
+    private void writeJar(File jarFile, Map<String, byte[]> classes) throws ISMLException
+    {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+        File parent = jarFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+        {
+            parent.mkdirs();
+        }
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile), manifest))
+        {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet())
+            {
+                out.putNextEntry(new JarEntry(entry.getKey().replace('.', '/') + ISMLTemplateConstants.TEMPLATE_CLASS_EXTENSION));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new ISMLException("Jar file " + jarFile.getAbsolutePath() + " can't be written: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Collects the Java sources in a directory and its subdirectories.
+     */
+
+    private static void getAllSourceFiles(File dir, List<File> result)
+    {
+        File[] files = dir.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+
+        for (File file : files)
+        {
+            if (file.isDirectory())
+            {
+                getAllSourceFiles(file, result);
+            }
+            else if (file.getName().endsWith(ISMLTemplateConstants.TEMPLATE_JAVA_EXTENSION))
+            {
+                result.add(file);
+            }
+        }
+    }
+
+    /**
+     * A file manager that keeps the class files in memory.
+     */
+
+    private static class ClassOutputManager extends ForwardingJavaFileManager<JavaFileManager>
+    {
+        /**
+         * The class files by class name.
+         */
+
+        private final Map<String, byte[]> output;
+
+        /**
+         * The sources by class name.
+         */
+
+        private final Map<String, JavaFileObject> siblings;
+
+        ClassOutputManager(JavaFileManager fileManager, Map<String, byte[]> output, Map<String, JavaFileObject> siblings)
+        {
+            super(fileManager);
+            this.output = output;
+            this.siblings = siblings;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling)
+        {
+            if (sibling instanceof JavaFileObject)
+            {
+                siblings.put(className, (JavaFileObject)sibling);
+            }
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind)
+            {
+                @Override
+                public OutputStream openOutputStream()
+                {
+                    return new ByteArrayOutputStream()
+                    {
+                        @Override
+                        public void close()
+                        {
+                            output.put(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -15,10 +15,18 @@
  */
 package com.intershop.beehive.isml.internal;
 
+import com.intershop.beehive.isml.capi.CustomTagRegistry;
 import com.intershop.beehive.isml.capi.ISMLCompilerConfiguration;
 import com.intershop.beehive.isml.capi.ISMLException;
 import com.intershop.beehive.isml.capi.ISMLTemplateConstants;
+import com.intershop.beehive.isml.internal.parser.ISMLTemplate;
+import com.intershop.beehive.isml.internal.parser.IncludeInliner;
 import com.intershop.beehive.isml.internal.parser.ISMLtoJSPcompiler;
+import com.intershop.beehive.isml.internal.parser.JspCodeGenerator;
+import com.intershop.beehive.isml.internal.parser.ServletCodeGenerator;
+import com.intershop.beehive.isml.internal.parser.StaticTemplate;
+import com.intershop.beehive.isml.internal.parser.StaticTextStore;
+import com.intershop.beehive.isml.internal.parser.TemplateLinter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +47,17 @@ import java.io.SequenceInputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -94,6 +113,31 @@ public class TemplatePrecompileUtils
     
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    /**
+     * The templates whose service method exceeds the size limit.
+     */
+
+    private final List<String> oversizedTemplates = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * The templates inlined into the templates parsed so far, by the source
+     * files of the including templates.
+     */
+
+    private final Map<File, Set<File>> inlinedTemplates = new ConcurrentHashMap<File, Set<File>>();
+
+    /**
+     * The parsed templates that may be inlined, by their source files.
+     */
+
+    private final Map<File, ISMLTemplate> includedTemplates = new ConcurrentHashMap<File, ISMLTemplate>();
+
+    /**
+     * The custom tags that are bound at compile time, read on first use.
+     */
+
+    private CustomTagRegistry customTagRegistry = null;
+
     /** 
      * Configuration of the isml compiler. 
      */
@@ -121,6 +165,8 @@ public class TemplatePrecompileUtils
     /**
      * This method executes the 1st compilation step. It compiles the isml file to a jsp file
      * and creates all required directories and removes outdated files on the fly.
+     * If static template emission is enabled, a template without dynamic content is
+     * written as static resource next to the JSP file instead (see {@link StaticTemplate}).
      *
      * @param sourceFile       - the source ISML file
      * @param destinationFile  - the resulting JSP file
@@ -129,6 +175,36 @@ public class TemplatePrecompileUtils
      */
 
     public void compileISML(File sourceFile, File destinationFile) throws IOException, ISMLException
+    {
+        compileISML(sourceFile, destinationFile, destinationFile, null);
+    }
+
+    /**
+     * Compiles an isml file to the Java source of a servlet class instead of a
+     * jsp file (see {@link ServletCodeGenerator}). Static templates are
+     * written next to the jsp file like by {@link #compileISML(File, File)}.
+     *
+     * @param sourceFile       - the source ISML file
+     * @param destinationFile  - the JSP file the template would be compiled to
+     * @param servletFile      - the resulting Java source file
+     * @param className        - the fully qualified name of the servlet class
+     * @throws IOException if an IO error occurs during the process.
+     * @throws ISMLException if the compilation failed.
+     */
+
+    public void compileISMLToServlet(File sourceFile, File destinationFile, File servletFile, String className)
+        throws IOException, ISMLException
+    {
+        compileISML(sourceFile, destinationFile, servletFile, className);
+    }
+
+    /**
+     * Compiles an isml file to a jsp file, or to the source of a servlet
+     * class if a class name is given.
+     */
+
+    private void compileISML(File sourceFile, File destinationFile, File outputFile, String className)
+        throws IOException, ISMLException
     {
         // template source input stream
         InputStream sourceIn = null;
@@ -136,7 +212,7 @@ public class TemplatePrecompileUtils
         // JSP output stream
         OutputStreamWriter jspOut = null;
 
-        File jspOutputFile = destinationFile;
+        File jspOutputFile = outputFile;
 
         // log, which ISML file should be compiled
         logger.debug("Compiling ISML file: {} to {}", sourceFile.getAbsolutePath(), jspOutputFile.getAbsolutePath());
@@ -151,35 +227,65 @@ public class TemplatePrecompileUtils
 
         try
         {
-            InputStream inStream =
-                new ByteArrayInputStream(unicodeEscape(sourceFile,
-                                                       templateEncProps.getIsmlCharset()));
+            sourceIn = openSource(sourceFile, templateEncProps, outCharset);
 
-            if (!templateEncProps.isIsContentPresent())
+            // compile
+            ISMLtoJSPcompiler pagePreProcessor = new ISMLtoJSPcompiler(sourceIn);
+            String outputCharset = outCharset;
+            if (className != null)
             {
-                // dummy iscontent entry
-                String defaultIsContent = "<iscontent charset=\"" + outCharset + "\">";
-                // insert dummy iscontent at the beginning of the file
-                inStream = new SequenceInputStream(new ByteArrayInputStream(defaultIsContent.getBytes()),
-                                                   inStream);
+                // the page keeps its encoding, the source is written as UTF-8
+                ServletCodeGenerator generator = new ServletCodeGenerator(className);
+                generator.setServletApiPackage(getCompilerConfiguration().getServletApiPackage());
+                generator.setContentEncoding(outCharset);
+                pagePreProcessor.setCodeGenerator(generator);
+                outputCharset = ServletCodeGenerator.SOURCE_ENCODING;
             }
+            pagePreProcessor.setCompilerConfiguration(getCompilerConfiguration());
+            pagePreProcessor.setIncludeInliner(createIncludeInliner());
+            pagePreProcessor.setCustomTagRegistry(getCustomTagRegistry());
 
-            // JavaCC will work with the Unicode-escaped data to preserve integrity
-            sourceIn = new BufferedInputStream(inStream, ISMLTemplateConstants.DEFAULT_TEMPLATE_BUFFERSIZE);
-            sourceIn.mark(Integer.MAX_VALUE);
+            File staticTextBlob = getCompilerConfiguration().getStaticTextBlob();
+            if (staticTextBlob != null)
+            {
+                pagePreProcessor.setStaticTextStore(StaticTextStore.open(staticTextBlob));
+            }
 
-            // this is the writer that the JavaCC compiler classes will use
-            jspOut = new OutputStreamWriter(new FileOutputStream(jspOutputFile), outCharset);
+            if (pagePreProcessor.getCodeGenerator() instanceof JspCodeGenerator)
+            {
+                ((JspCodeGenerator)pagePreProcessor.getCodeGenerator()).setTemplatePath(getTemplatePath(sourceFile));
+            }
 
-            // compile
-            ISMLtoJSPcompiler pagePreProcessor = new ISMLtoJSPcompiler(sourceIn);
+            ISMLTemplate template = pagePreProcessor.parseTemplate(ISMLtoJSPcompiler.ALLOW_ALL, sourceFile, sourceIn);
+            recordInlinedTemplates(sourceFile, pagePreProcessor.getIncludeInliner());
+
+            if (getCompilerConfiguration().isStaticTemplateEmissionEnabled())
+            {
+                StaticTemplate staticTemplate = StaticTemplate.classify(template, outCharset);
+                if (staticTemplate != null)
+                {
+                    logger.debug("Writing static template {} to {}", sourceFile.getAbsolutePath(),
+                                 StaticTemplate.getResourceFile(destinationFile).getAbsolutePath());
+                    staticTemplate.write(destinationFile);
+                    return;
+                }
+            }
+
+            // this is the writer that the JavaCC compiler classes will use
+            jspOut = new OutputStreamWriter(new FileOutputStream(jspOutputFile), outputCharset);
 
-            if (!pagePreProcessor.compileTemplate(ISMLtoJSPcompiler.ALLOW_ALL,
-                                                  jspOut, sourceFile, sourceIn))
+            if (!pagePreProcessor.generateTemplate(template, jspOut))
             {
                 throw new ISMLException("Failed to compile ISML to JSP.");
             }
 
+            if (pagePreProcessor.getCodeGenerator() instanceof JspCodeGenerator)
+            {
+                JspCodeGenerator generator = (JspCodeGenerator)pagePreProcessor.getCodeGenerator();
+                checkServiceMethodSize(sourceFile, generator);
+                writeSourceMap(jspOutputFile, generator.getSourceMap());
+            }
+
             jspOut.flush();
         }
         catch (ISMLException sevx)
@@ -238,6 +344,312 @@ public class TemplatePrecompileUtils
         }
     }
 
+    /**
+     * Parses an isml file without generating any output, for example to
+     * analyze it.
+     *
+     * @param sourceFile       - the source ISML file
+     * @return the parsed template
+     * @throws IOException if the file can't be read.
+     * @throws ISMLException if the template is invalid.
+     */
+
+    public ISMLTemplate parseISML(File sourceFile) throws IOException, ISMLException
+    {
+        TemplateEncodingProps templateEncProps = findIsmlEncoding(sourceFile);
+
+        try (InputStream sourceIn = openSource(sourceFile, templateEncProps, findJspEncoding(templateEncProps)))
+        {
+            ISMLtoJSPcompiler pagePreProcessor = new ISMLtoJSPcompiler(sourceIn);
+            pagePreProcessor.setCompilerConfiguration(getCompilerConfiguration());
+            pagePreProcessor.setIncludeInliner(createIncludeInliner());
+            ISMLTemplate template = pagePreProcessor.parseTemplate(ISMLtoJSPcompiler.ALLOW_ALL, sourceFile, sourceIn);
+            recordInlinedTemplates(sourceFile, pagePreProcessor.getIncludeInliner());
+            return template;
+        }
+    }
+
+    /**
+     * Parses an isml file as it is written, for example to lint it. Unlike
+     * {@link #parseISML(File)}, the optimizations of the compiler
+     * configuration aren't applied: includes aren't inlined, branches,
+     * constants and object paths are kept like in the source.
+     *
+     * @param sourceFile       - the source ISML file
+     * @return the parsed template
+     * @throws IOException if the file can't be read.
+     * @throws ISMLException if the template is invalid.
+     */
+
+    public ISMLTemplate parseISMLSource(File sourceFile) throws IOException, ISMLException
+    {
+        TemplateEncodingProps templateEncProps = findIsmlEncoding(sourceFile);
+
+        try (InputStream sourceIn = openSource(sourceFile, templateEncProps, findJspEncoding(templateEncProps)))
+        {
+            ISMLtoJSPcompiler pagePreProcessor = new ISMLtoJSPcompiler(sourceIn);
+            return pagePreProcessor.parseTemplate(ISMLtoJSPcompiler.ALLOW_ALL, sourceFile, sourceIn);
+        }
+    }
+
+    /**
+     * Returns the custom tags that are bound at compile time. The registry
+     * file is read once.
+     *
+     * @return  the registry, or <code>null</code> if all custom tags are
+     *          resolved at runtime
+     * @throws IOException  if the registry file can't be read
+     */
+
+    private synchronized CustomTagRegistry getCustomTagRegistry() throws IOException
+    {
+        File file = getCompilerConfiguration().getCustomTagRegistry();
+        if (customTagRegistry == null && file != null && file.isFile())
+        {
+            customTagRegistry = CustomTagRegistry.read(file.toPath());
+        }
+        return customTagRegistry;
+    }
+
+    /**
+     * Creates the inliner of included templates for a template, if include
+     * inlining is enabled.
+     *
+     * @return  the inliner or <code>null</code>
+     */
+
+    private IncludeInliner createIncludeInliner()
+    {
+        File sourceDirectory = getCompilerConfiguration().getTemplateSourceDirectory();
+        if (!getCompilerConfiguration().isIncludeInliningEnabled() || sourceDirectory == null)
+        {
+            return null;
+        }
+        return new IncludeInliner(new IncludeLoader(sourceDirectory.getAbsoluteFile()),
+                                  getCompilerConfiguration().getIncludeInliningBudget());
+    }
+
+    /**
+     * Returns the path of a template source in the template source directory,
+     * including the language directory.
+     *
+     * @param sourceFile    the source ISML file
+     * @return  the path with <code>/</code> as separator, or <code>null</code>
+     *          if the file is not in the template source directory
+     */
+
+    private String getTemplatePath(File sourceFile)
+    {
+        File sourceDirectory = getCompilerConfiguration().getTemplateSourceDirectory();
+        if (sourceDirectory == null)
+        {
+            return null;
+        }
+
+        Path root = sourceDirectory.getAbsoluteFile().toPath().normalize();
+        Path path = sourceFile.getAbsoluteFile().toPath().normalize();
+        return path.startsWith(root) ? root.relativize(path).toString().replace(File.separatorChar, '/') : null;
+    }
+
+    private void recordInlinedTemplates(File sourceFile, IncludeInliner inliner)
+    {
+        if (inliner != null)
+        {
+            inlinedTemplates.put(sourceFile, new LinkedHashSet<File>(inliner.getDependencies()));
+        }
+    }
+
+    /**
+     * Returns the templates that were inlined into the templates compiled or
+     * parsed so far.
+     *
+     * @return  the source files of the inlined templates by the source files
+     *          of the including templates, empty if include inlining is
+     *          disabled
+     */
+
+    public Map<File, Set<File>> getInlinedTemplates()
+    {
+        return new HashMap<File, Set<File>>(inlinedTemplates);
+    }
+
+    /**
+     * Resolves included templates in the language directories of the source
+     * directory and parses them for the {@link IncludeInliner}.
+     */
+
+    private class IncludeLoader implements IncludeInliner.TemplateLoader
+    {
+        /**
+         * The source directory.
+         */
+
+        private final File sourceDirectory;
+
+        /**
+         * The language directories.
+         */
+
+        private final File[] languageDirectories;
+
+        IncludeLoader(File sourceDirectory)
+        {
+            this.sourceDirectory = sourceDirectory;
+            File[] directories = sourceDirectory.listFiles(File::isDirectory);
+            this.languageDirectories = (directories != null) ? directories : new File[0];
+        }
+
+        /**
+         * Resolves a template name to the template of the only language
+         * directory that contains it, if this is the directory of the
+         * including template or the default directory. A template that is
+         * defined for other languages too is selected at runtime.
+         */
+
+        @Override
+        public File resolve(File includer, String name)
+        {
+            Path relative = sourceDirectory.toPath().relativize(includer.getAbsoluteFile().toPath().normalize());
+            if (relative.getNameCount() < 2 || relative.startsWith(".."))
+            {
+                return null;
+            }
+
+            String language = relative.getName(0).toString();
+            String path = TemplateLinter.getTemplateName(name) + ISMLTemplateConstants.TEMPLATE_EXTENSION;
+            File result = null;
+
+            for (File languageDirectory : languageDirectories)
+            {
+                File file = new File(languageDirectory, path).toPath().normalize().toFile();
+                if (file.isFile())
+                {
+                    if (result != null)
+                    {
+                        return null;
+                    }
+                    result = file;
+                }
+            }
+
+            if (result == null)
+            {
+                return null;
+            }
+
+            String resultLanguage = sourceDirectory.toPath().relativize(result.toPath()).getName(0).toString();
+            return (resultLanguage.equals(language) || "default".equals(resultLanguage)) ? result : null;
+        }
+
+        @Override
+        public ISMLTemplate load(File file)
+        {
+            ISMLTemplate result = includedTemplates.get(file);
+            if (result != null)
+            {
+                return result;
+            }
+
+            TemplateEncodingProps templateEncProps = findIsmlEncoding(file);
+            if (templateEncProps.isIsContentPresent())
+            {
+                return null;
+            }
+
+            try (InputStream sourceIn = openSource(file, templateEncProps, findJspEncoding(templateEncProps)))
+            {
+                ISMLtoJSPcompiler pagePreProcessor = new ISMLtoJSPcompiler(sourceIn);
+                pagePreProcessor.setCompilerConfiguration(getCompilerConfiguration());
+                result = pagePreProcessor.parseNodes(ISMLtoJSPcompiler.ALLOW_ALL, file, sourceIn);
+            }
+            catch (IOException | ISMLException ex)
+            {
+                logger.debug("Template {} can't be inlined: {}", file.getAbsolutePath(), ex.getMessage());
+                return null;
+            }
+
+            includedTemplates.put(file, result);
+            return result;
+        }
+    }
+
+    /**
+     * Opens an isml file as Unicode-escaped stream for the parser, with an
+     * ISCONTENT tag of the output encoding if the template has none.
+     */
+
+    private InputStream openSource(File sourceFile, TemplateEncodingProps templateEncProps, String outCharset)
+        throws IOException
+    {
+        InputStream inStream =
+            new ByteArrayInputStream(unicodeEscape(sourceFile,
+                                                   templateEncProps.getIsmlCharset()));
+
+        if (!templateEncProps.isIsContentPresent())
+        {
+            // dummy iscontent entry
+            String defaultIsContent = "<iscontent charset=\"" + outCharset + "\">";
+            // insert dummy iscontent at the beginning of the file
+            inStream = new SequenceInputStream(new ByteArrayInputStream(defaultIsContent.getBytes()),
+                                               inStream);
+        }
+
+        // JavaCC will work with the Unicode-escaped data to preserve integrity
+        InputStream sourceIn = new BufferedInputStream(inStream, ISMLTemplateConstants.DEFAULT_TEMPLATE_BUFFERSIZE);
+        sourceIn.mark(Integer.MAX_VALUE);
+        return sourceIn;
+    }
+
+    /**
+     * Warns if the estimated size of the service method of a compiled template
+     * exceeds the limit, because the JIT compiler doesn't compile it.
+     *
+     * @param sourceFile    the source ISML file
+     * @param generator     the code generator that compiled the template
+     */
+
+    private void checkServiceMethodSize(File sourceFile, JspCodeGenerator generator)
+    {
+        if (generator.getServiceMethodSize() > generator.getServiceMethodSizeLimit())
+        {
+            logger.warn("The service method of template {} has an estimated size of {} bytes, which exceeds the limit of {} bytes.",
+                        sourceFile.getAbsolutePath(), generator.getServiceMethodSize(), generator.getServiceMethodSizeLimit());
+            oversizedTemplates.add(sourceFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Writes the source map of a generated file next to it.
+     *
+     * @param outputFile    the generated file
+     * @param smap          the SMAP, <code>null</code> if there is none
+     * @throws IOException  if writing failed
+     */
+
+    private void writeSourceMap(File outputFile, String smap) throws IOException
+    {
+        if (smap != null)
+        {
+            Files.write(new File(outputFile.getPath() + ISMLTemplateConstants.TEMPLATE_SMAP_EXTENSION).toPath(),
+                        smap.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Returns the templates compiled so far whose service method exceeds the
+     * size limit of the compiler configuration.
+     *
+     * @return  the absolute paths of the source files
+     */
+
+    public List<String> getOversizedTemplates()
+    {
+        synchronized(oversizedTemplates)
+        {
+            return new ArrayList<String>(oversizedTemplates);
+        }
+    }
+
     protected ISMLCompilerConfiguration getCompilerConfiguration()
     {
         if (null != compilerConfiguration)
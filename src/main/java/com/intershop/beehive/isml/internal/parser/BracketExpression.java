@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parenthesized expression.
+ */
+
+public class BracketExpression extends Expression
+{
+    /**
+     * The expression in the brackets.
+     */
+
+    private final Expression operand;
+
+    /**
+     * The constructor.
+     *
+     * @param operand   the expression in the brackets
+     */
+
+    public BracketExpression(Expression operand)
+    {
+        this.operand = operand;
+    }
+
+    /**
+     * @return  the expression in the brackets
+     */
+
+    public Expression getOperand()
+    {
+        return operand;
+    }
+
+    @Override
+    public List<Expression> getOperands()
+    {
+        return Collections.singletonList(operand);
+    }
+
+    @Override
+    public Expression withOperands(List<Expression> operands)
+    {
+        return new BracketExpression(operands.get(0));
+    }
+
+    @Override
+    public void accept(ExpressionVisitor visitor)
+    {
+        visitor.visitBracket(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "(" + operand + ")";
+    }
+}
@@ -160,7 +160,8 @@ public class CompactingWriter extends Writer
         else
         {
             // if not enable, simply forward it to the output stream without buffering
-            write(s);
+            flushBuffer();
+            writeContent(s.toCharArray(), 0, s.length());
         }
     }
 
@@ -240,6 +241,23 @@ public class CompactingWriter extends Writer
     }
 
 
+    /**
+     * Writes content that was passed to the printCompact-methods, after it
+     * was compacted if compacting is enabled. Subclasses may write the content
+     * in a different form.
+     *
+     * @param       content the characters to be written
+     * @param       off     the offset
+     * @param       len     the number of characters
+     * @throws   IOException if something went wrong
+     */
+
+    protected void writeContent(char[] content, int off, int len) throws IOException
+    {
+        out.write(content, off, len);
+    }
+
+
     /*---------------------------------------------------------------------
                             Private helpers
     ---------------------------------------------------------------------*/
@@ -262,6 +280,9 @@ public class CompactingWriter extends Writer
 
         char[] content = buffer.toCharArray();
 
+        // empty the buffer, writeContent may write uncompacted data
+        buffer.reset();
+
         // all operations operate on the whole content from 0 to end
         // do not change the order!
         int length = content.length;
@@ -289,12 +310,9 @@ public class CompactingWriter extends Writer
             }
             
             // now write the compacted content
-            out.write(content, start, length);
+            writeContent(content, start, length);
         }
         // else don't write a single '\n'
-
-        // empty the buffer
-        buffer.reset();
     }
 
 
@@ -0,0 +1,680 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Evaluates constant ISML expressions at compile time.
+ *
+ * Constants are the string and number literals of the source and the
+ * results of folded subexpressions, which are replaced by a
+ * {@link LiteralExpression} bottom-up. The values are <code>String</code>,
+ * <code>Double</code> or <code>Boolean</code>.
+ *
+ * Each operation mirrors the code that is generated for it and returns
+ * <code>null</code> if the result can't be computed exactly as at runtime,
+ * e.g. because it depends on the locale of the server, the operation would
+ * fail at runtime or the result has no literal representation. The only
+ * assumption about the template runtime is that
+ * <code>context.getFormattedValue(s, null)</code> returns a string
+ * <code>s</code> unchanged.
+ */
+
+public final class ConstantFolder implements ISMLtoJSPcompilerConstants
+{
+    /**
+     * The punctuation that the HTML and XML encoding functions don't change.
+     */
+
+    private static final String UNENCODED_PUNCTUATION = " ,-._";
+
+    private ConstantFolder()
+    {
+        // static helper
+    }
+
+    /**
+     * Returns the value of an ISML string literal.
+     *
+     * @param image the literal including the quotes
+     * @return  the value or <code>null</code> if the literal contains escapes
+     *          that have no exact value
+     */
+
+    public static String valueOfString(String image)
+    {
+        return stringValue(ISMLExpressionCompiler.stringLiteral(image));
+    }
+
+    /**
+     * Returns the value of an ISML number literal.
+     *
+     * @param image the literal with an optional sign
+     * @return  the value or <code>null</code> if the literal is no valid Java
+     *          number literal
+     */
+
+    public static Double valueOfNumber(String image)
+    {
+        return numberValue(image);
+    }
+
+    /**
+     * Returns the value of a constant expression.
+     *
+     * @param expression    the expression
+     * @return  the value as <code>String</code>, <code>Double</code> or
+     *          <code>Boolean</code>, or <code>null</code> if the expression
+     *          is no constant
+     */
+
+    public static Object valueOf(Expression expression)
+    {
+        return (expression instanceof LiteralExpression) ? ((LiteralExpression)expression).getValue() : null;
+    }
+
+    /**
+     * Replaces the constant subexpressions of an expression by their values.
+     *
+     * @param expression    the expression
+     * @return  the folded expression
+     */
+
+    public static Expression fold(Expression expression)
+    {
+        if (expression instanceof LiteralExpression)
+        {
+            return expression;
+        }
+
+        List<Expression> operands = new ArrayList<Expression>();
+        for (Expression operand : expression.getOperands())
+        {
+            if (expression instanceof OperatorExpression && operand instanceof NotExpression)
+            {
+                // the negation is part of the boolean operator
+                operands.add(new NotExpression(fold(((NotExpression)operand).getOperand())));
+            }
+            else
+            {
+                operands.add(fold(operand));
+            }
+        }
+
+        Expression result = operands.isEmpty() ? expression : expression.withOperands(operands);
+        Object value = evaluate(result, operands);
+        return isConstant(value) ? new LiteralExpression(value) : result;
+    }
+
+    /**
+     * Returns the value of an expression with folded operands.
+     */
+
+    private static Object evaluate(Expression expression, List<Expression> operands)
+    {
+        if (expression instanceof BracketExpression)
+        {
+            return valueOf(operands.get(0));
+        }
+        if (expression instanceof NotExpression)
+        {
+            return not(valueOf(operands.get(0)));
+        }
+        if (expression instanceof FunctionExpression)
+        {
+            Object operand = (operands.size() == 1) ? valueOf(operands.get(0)) : null;
+            switch(((FunctionExpression)expression).getKind())
+            {
+                case F11:
+                case F13:
+                    return encode(operand);
+                case F14:
+                    return trim(operand);
+                case F15:
+                    return lowerCase(operand);
+                case F16:
+                    return upperCase(operand);
+                case F17:
+                    return length(operand);
+                default:
+                    return null;
+            }
+        }
+        if (!(expression instanceof OperatorExpression))
+        {
+            return null;
+        }
+
+        OperatorExpression operator = (OperatorExpression)expression;
+        List<Object> values = new ArrayList<Object>(operands.size());
+        List<Boolean> negated = new ArrayList<Boolean>(operands.size());
+        for (Expression operand : operands)
+        {
+            boolean not = operand instanceof NotExpression;
+            values.add(valueOf(not ? ((NotExpression)operand).getOperand() : operand));
+            negated.add(Boolean.valueOf(not));
+        }
+
+        if (operator.isNumberComparison())
+        {
+            return compareNumbers(values.get(0), operator.getKind(), values.get(1));
+        }
+        if (operator.isStringComparison())
+        {
+            return compareStrings(values.get(0), operator.getKind(), values.get(1));
+        }
+        if (operator.isArithmetic())
+        {
+            return arithmetic(values, operator.getOperators());
+        }
+        if (operator.isConcatenation())
+        {
+            return concat(values);
+        }
+        return logical(values, negated, operator.getOperators());
+    }
+
+    /**
+     * Checks whether a value has a Java literal.
+     */
+
+    private static boolean isConstant(Object value)
+    {
+        return ISMLExpressionCompiler.toCode(value) != null;
+    }
+
+    /**
+     * Checks whether a constant string can be written as template text instead
+     * of a JSP expression, i.e. it contains no characters that have a meaning
+     * in JSP template text.
+     *
+     * @param value the constant
+     * @return  <code>true</code> if the value is a non-empty string that can
+     *          be written unchanged
+     */
+
+    public static boolean isTemplateText(Object value)
+    {
+        if (!(value instanceof String) || ((String)value).isEmpty())
+        {
+            return false;
+        }
+
+        String s = (String)value;
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c == '<' || c == '%' || c == '$' || c == '#' || c == '\\')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Folds <code>(!Boolean.valueOf(String.valueOf(x)))</code>.
+     *
+     * @param operand   the operand
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object not(Object operand)
+    {
+        return (operand == null) ? null : Boolean.valueOf(!booleanValue(operand));
+    }
+
+    /**
+     * Folds a numeric comparison
+     * <code>((Number)a).doubleValue() op ((Number)b).doubleValue()</code>.
+     *
+     * @param left      the left operand
+     * @param operator  the token kind of the operator
+     * @param right     the right operand
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object compareNumbers(Object left, int operator, Object right)
+    {
+        if (!(left instanceof Double) || !(right instanceof Double))
+        {
+            return null;
+        }
+
+        double l = ((Double)left).doubleValue();
+        double r = ((Double)right).doubleValue();
+
+        switch(operator)
+        {
+            case I_EG: return Boolean.valueOf(l == r);
+            case I_NE: return Boolean.valueOf(l != r);
+            case I_GE: return Boolean.valueOf(l >= r);
+            case I_LE: return Boolean.valueOf(l <= r);
+            case I_GT: return Boolean.valueOf(l > r);
+            case I_LT: return Boolean.valueOf(l < r);
+            default: return null;
+        }
+    }
+
+    /**
+     * Folds a string comparison with <code>EQ</code> or <code>NE</code>.
+     *
+     * @param left      the left operand
+     * @param operator  the token kind of the operator
+     * @param right     the right operand
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object compareStrings(Object left, int operator, Object right)
+    {
+        if (!(left instanceof String) || !(right instanceof String))
+        {
+            return null;
+        }
+
+        boolean equal = left.equals(right);
+        return Boolean.valueOf((operator == NE) ? !equal : equal);
+    }
+
+    /**
+     * Folds an arithmetic expression. The generated code is a single Java
+     * expression, so multiplicative operators take precedence over additive
+     * ones.
+     *
+     * @param operands  the operands
+     * @param operators the token kinds of the operators between the operands
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object arithmetic(List<Object> operands, List<Integer> operators)
+    {
+        for (Object operand : operands)
+        {
+            if (!(operand instanceof Double))
+            {
+                return null;
+            }
+        }
+
+        // the sum of the completed terms, null until the first additive operator
+        Double sum = null;
+        int sumOperator = ADD;
+        double term = ((Double)operands.get(0)).doubleValue();
+
+        for (int i = 0; i < operators.size(); i++)
+        {
+            int operator = operators.get(i).intValue();
+            double value = ((Double)operands.get(i + 1)).doubleValue();
+
+            switch(operator)
+            {
+                case MUL: term = term * value; break;
+                case DIV: term = term / value; break;
+                case MOD: term = term % value; break;
+                default:
+                    sum = Double.valueOf(add(sum, sumOperator, term));
+                    sumOperator = operator;
+                    term = value;
+                    break;
+            }
+        }
+
+        return Double.valueOf(add(sum, sumOperator, term));
+    }
+
+    /**
+     * Folds a string concatenation. Numbers are formatted with the locale
+     * of the request, so only strings are concatenated.
+     *
+     * @param operands  the operands
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object concat(List<Object> operands)
+    {
+        StringBuilder result = new StringBuilder();
+
+        for (Object operand : operands)
+        {
+            if (!(operand instanceof String))
+            {
+                return null;
+            }
+            result.append((String)operand);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Folds a boolean expression. The generated code is a single Java
+     * expression, so <code>AND</code> takes precedence over <code>OR</code>.
+     *
+     * @param operands  the operands
+     * @param negated   the flags whether an operand is negated
+     * @param operators the token kinds of the operators between the operands
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object logical(List<Object> operands, List<Boolean> negated, List<Integer> operators)
+    {
+        for (Object operand : operands)
+        {
+            if (operand == null)
+            {
+                return null;
+            }
+        }
+
+        boolean result = false;
+        boolean term = booleanValue(operands.get(0)) != negated.get(0).booleanValue();
+
+        for (int i = 0; i < operators.size(); i++)
+        {
+            boolean value = booleanValue(operands.get(i + 1)) != negated.get(i + 1).booleanValue();
+
+            if (operators.get(i).intValue() == AND)
+            {
+                term = term && value;
+            }
+            else
+            {
+                result = result || term;
+                term = value;
+            }
+        }
+
+        return Boolean.valueOf(result || term);
+    }
+
+    /**
+     * Folds the ISML function <code>trim</code>.
+     *
+     * @param operand   the operand
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object trim(Object operand)
+    {
+        return (operand instanceof String) ? ((String)operand).trim() : null;
+    }
+
+    /**
+     * Folds the ISML function <code>lcase</code>. The conversion uses the
+     * default locale of the server, so only ASCII strings that are converted
+     * equally for every locale are folded.
+     *
+     * @param operand   the operand
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object lowerCase(Object operand)
+    {
+        return isCaseInvariant(operand) ? ((String)operand).toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Folds the ISML function <code>ucase</code>.
+     *
+     * @param operand   the operand
+     * @return  the result or <code>null</code>
+     * @see #lowerCase
+     */
+
+    public static Object upperCase(Object operand)
+    {
+        return isCaseInvariant(operand) ? ((String)operand).toUpperCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Folds the ISML function <code>len</code>.
+     *
+     * @param operand   the operand
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object length(Object operand)
+    {
+        return (operand instanceof String) ? Double.valueOf(((String)operand).length()) : null;
+    }
+
+    /**
+     * Folds the ISML functions <code>stringToHtml</code> and
+     * <code>stringToXml</code>. Only strings that consist of characters which
+     * are never encoded are folded, the result is the unchanged operand.
+     *
+     * @param operand   the operand
+     * @return  the result or <code>null</code>
+     */
+
+    public static Object encode(Object operand)
+    {
+        if (!(operand instanceof String))
+        {
+            return null;
+        }
+
+        String s = (String)operand;
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (!isAsciiLetterOrDigit(c) && UNENCODED_PUNCTUATION.indexOf(c) < 0)
+            {
+                return null;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Returns <code>Boolean.parseBoolean(String.valueOf(operand))</code>.
+     */
+
+    private static boolean booleanValue(Object operand)
+    {
+        return Boolean.parseBoolean(String.valueOf(operand));
+    }
+
+    private static double add(Double sum, int operator, double value)
+    {
+        if (sum == null)
+        {
+            return value;
+        }
+        return (operator == SUB) ? sum.doubleValue() - value : sum.doubleValue() + value;
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Checks whether the case conversion of a string doesn't depend on the
+     * locale, i.e. it is ASCII without the letter i (Turkish dotless i).
+     */
+
+    private static boolean isCaseInvariant(Object operand)
+    {
+        if (!(operand instanceof String))
+        {
+            return false;
+        }
+
+        String s = (String)operand;
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c > 0x7f || c == 'i' || c == 'I')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of a Java string literal or <code>null</code> if the
+     * literal contains escapes that are not generated by the parser.
+     */
+
+    private static String stringValue(String literal)
+    {
+        StringBuilder value = new StringBuilder(literal.length());
+        int end = literal.length() - 1;
+
+        for (int i = 1; i < end; i++)
+        {
+            char c = literal.charAt(i);
+
+            if (c == '"' || c == '\n' || c == '\r')
+            {
+                // no single literal, or no valid one
+                return null;
+            }
+            if (c != '\\')
+            {
+                value.append(c);
+                continue;
+            }
+
+            if (++i >= end)
+            {
+                return null;
+            }
+
+            c = literal.charAt(i);
+            switch(c)
+            {
+                case 'b': value.append('\b'); break;
+                case 't': value.append('\t'); break;
+                case 'n': value.append('\n'); break;
+                case 'f': value.append('\f'); break;
+                case 'r': value.append('\r'); break;
+                case '"': value.append('"'); break;
+                case '\'': value.append('\''); break;
+                case '\\': value.append('\\'); break;
+                default:
+                    if (c < '0' || c > '7')
+                    {
+                        return null;
+                    }
+
+                    // octal escape with up to three digits, at most \377
+                    int octal = c - '0';
+                    int maxDigits = (c <= '3') ? 3 : 2;
+                    for (int digits = 1; digits < maxDigits && i + 1 < end; digits++)
+                    {
+                        char next = literal.charAt(i + 1);
+                        if (next < '0' || next > '7')
+                        {
+                            break;
+                        }
+                        octal = octal * 8 + (next - '0');
+                        i++;
+                    }
+                    value.append((char)octal);
+                    break;
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Returns the value of a Java number literal with an optional sign, or
+     * <code>null</code> if the literal is octal, doesn't compile or isn't
+     * generated by the parser.
+     */
+
+    private static Double numberValue(String literal)
+    {
+        String s = literal;
+        boolean negative = false;
+
+        if (s.startsWith("+") || s.startsWith("-"))
+        {
+            negative = s.charAt(0) == '-';
+            s = s.substring(1);
+        }
+        if (s.isEmpty())
+        {
+            return null;
+        }
+
+        boolean integer = true;
+        boolean nonZeroMantissa = false;
+        boolean inExponent = false;
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9')
+            {
+                nonZeroMantissa |= (!inExponent && c != '0');
+            }
+            else if (c == '.' && !inExponent)
+            {
+                integer = false;
+            }
+            else if ((c == 'e' || c == 'E') && !inExponent && i > 0)
+            {
+                integer = false;
+                inExponent = true;
+                if (i + 1 < s.length() && (s.charAt(i + 1) == '+' || s.charAt(i + 1) == '-'))
+                {
+                    i++;
+                }
+                if (i + 1 >= s.length())
+                {
+                    return null;
+                }
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+        if (integer)
+        {
+            // an int literal, leading zeros denote octal numbers
+            if ((s.length() > 1 && s.charAt(0) == '0') || s.length() > 10)
+            {
+                return null;
+            }
+            long value = Long.parseLong(s);
+            if (value > (negative ? 2147483648L : 2147483647L))
+            {
+                return null;
+            }
+            return Double.valueOf(negative ? -value : value);
+        }
+
+        if (s.equals(".") || s.startsWith(".e") || s.startsWith(".E"))
+        {
+            return null;
+        }
+
+        double value = Double.parseDouble(s);
+        if (Double.isInfinite(value) || (value == 0 && nonZeroMantissa))
+        {
+            // too large or too small for a double literal
+            return null;
+        }
+        return Double.valueOf(negative ? -value : value);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.intershop.beehive.isml.capi.CustomTagModule;
+import com.intershop.beehive.isml.capi.CustomTagRegistry;
+
+/**
+ * Collects the ISMODULE declarations of all templates of a template tree. A
+ * custom tag can be bound at compile time if all its declarations in the tree
+ * are equal and have a constant template name; tags that are declared
+ * differently stay resolved at runtime. Templates may be added in parallel.
+ */
+
+public class CustomTagIndex implements ISMLtoJSPcompilerConstants
+{
+    /**
+     * The first declaration of each tag.
+     */
+
+    private final Map<String, CustomTagModule> modules = new HashMap<String, CustomTagModule>();
+
+    /**
+     * The names of the tags that can't be bound.
+     */
+
+    private final Set<String> unbound = new TreeSet<String>();
+
+    /**
+     * Adds the declarations of a template.
+     *
+     * @param template  the parsed template
+     */
+
+    public synchronized void add(ISMLTemplate template)
+    {
+        for (TemplateNode node : template.getNodes())
+        {
+            if (!(node instanceof TagNode) || ((TagNode)node).getKind() != ISMODULE)
+            {
+                continue;
+            }
+
+            TagNode tag = (TagNode)node;
+            String name = tag.getValueAttribute(ATT_NAME);
+            if (name == null)
+            {
+                continue;
+            }
+
+            CustomTagModule module = getModule(tag);
+            CustomTagModule previous = (module != null) ? modules.putIfAbsent(module.getName(), module) : null;
+            if (module == null || (previous != null && !previous.equals(module)))
+            {
+                unbound.add(name.toLowerCase());
+            }
+        }
+    }
+
+    /**
+     * @return  the registry of the tags that can be bound
+     */
+
+    public synchronized CustomTagRegistry getRegistry()
+    {
+        CustomTagRegistry result = new CustomTagRegistry();
+        for (CustomTagModule module : modules.values())
+        {
+            if (!unbound.contains(module.getName()))
+            {
+                result.add(module);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return  the names of the tags that are declared differently or with a
+     *          template expression
+     */
+
+    public synchronized Set<String> getUnboundNames()
+    {
+        return new TreeSet<String>(unbound);
+    }
+
+    /**
+     * Returns the declaration of an ISMODULE tag.
+     *
+     * @param tag   the tag
+     * @return  the declaration, or <code>null</code> if the name or the
+     *          template is no constant
+     */
+
+    public static CustomTagModule getModule(TagNode tag)
+    {
+        String name = tag.getValueAttribute(ATT_NAME);
+        String template = tag.getValueAttribute(ATT_TEMPLATE);
+        if (name == null || template == null)
+        {
+            return null;
+        }
+
+        String strict = tag.getValueAttribute(ATT_STRICT);
+        return new CustomTagModule(name, template, (strict != null) && Boolean.parseBoolean(strict),
+                        toArray(tag.getValueAttributes(ATT_ATTRIBUTE)),
+                        toArray(tag.getValueAttributes(ATT_RETURNATTRIBUTE)));
+    }
+
+    private static String[] toArray(List<String> values)
+    {
+        return values.isEmpty() ? null : values.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the branches of ISIF/ISELSEIF/ISELSE blocks that are never taken.
+ *
+ * A block is decided at compile time if its conditions are constants (see
+ * {@link ConstantFolder}) up to the first one that is true. The ISIF tag
+ * evaluates its condition with <code>((Boolean)(condition)).booleanValue()</code>
+ * and treats failures as <code>false</code>, so only
+ * <code>Boolean.TRUE</code> takes a branch. Blocks with a condition that is
+ * evaluated at runtime before the taken branch are kept unchanged.
+ *
+ * The tags of a decided block and the content of its dead branches are
+ * replaced by {@link SuppressedNode}s, so the code generator still validates
+ * their nesting. The taken branch is wrapped in <code>if (true) { }</code>;
+ * it keeps its own scope, and statements like <code>break</code> don't make
+ * the following code unreachable for the Java compiler. Blocks whose dead
+ * branches contain JSP code or ISCONTENT tags are kept, because these have
+ * effects at compile time.
+ */
+
+public class DeadBranchEliminator implements ISMLtoJSPcompilerConstants
+{
+    /**
+     * Removes the dead branches of a template.
+     *
+     * @param template  the parsed template
+     * @return  the template without dead branches, or the given template if
+     *          nothing was removed
+     */
+
+    public ISMLTemplate apply(ISMLTemplate template)
+    {
+        List<TemplateNode> nodes = template.getNodes();
+        List<TemplateNode> result = new ArrayList<TemplateNode>(nodes.size());
+
+        if (!eliminate(nodes, 0, nodes.size(), result))
+        {
+            return template;
+        }
+        return new ISMLTemplate(template.getName(), result, template.getDeclarations());
+    }
+
+    /**
+     * Copies a range of nodes and removes the dead branches of the blocks in
+     * it.
+     *
+     * @param nodes     the nodes
+     * @param from      the first node of the range
+     * @param to        the end of the range (exclusive)
+     * @param result    the list the remaining nodes are added to
+     * @return  <code>true</code> if a branch was removed
+     */
+
+    private boolean eliminate(List<TemplateNode> nodes, int from, int to, List<TemplateNode> result)
+    {
+        boolean changed = false;
+        int i = from;
+
+        while (i < to)
+        {
+            TemplateNode node = nodes.get(i);
+            List<Integer> block = isTag(node, ISIF) ? findBlock(nodes, i, to) : null;
+            int taken = (block != null) ? findTakenBranch(nodes, block) : -1;
+
+            if (taken < -1 || (block != null && !canRemoveBranches(nodes, block, taken)))
+            {
+                // undecided or kept block, its branches are checked separately
+                block = null;
+            }
+
+            if (block == null)
+            {
+                result.add(node);
+                i++;
+                continue;
+            }
+
+            for (int k = 0; k < block.size() - 1; k++)
+            {
+                int tag = block.get(k).intValue();
+                int end = block.get(k + 1).intValue();
+
+                result.add(new SuppressedNode(nodes.get(tag)));
+                if (k == taken)
+                {
+                    TemplateNode first = nodes.get(tag);
+                    result.add(new ScriptletNode("if (true) {", first.getLine(), first.getColumn()));
+                    eliminate(nodes, tag + 1, end, result);
+                    result.add(new ScriptletNode("}", first.getLine(), first.getColumn()));
+                }
+                else
+                {
+                    for (int j = tag + 1; j < end; j++)
+                    {
+                        result.add(new SuppressedNode(nodes.get(j)));
+                    }
+                }
+            }
+
+            int end = block.get(block.size() - 1).intValue();
+            result.add(new SuppressedNode(nodes.get(end)));
+            changed = true;
+            i = end + 1;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Finds the tags of an ISIF block.
+     *
+     * @param nodes     the nodes
+     * @param start     the index of the ISIF tag
+     * @param to        the end of the range to search (exclusive)
+     * @return  the indices of the ISIF, ISELSEIF, ISELSE and /ISIF tags of the
+     *          block, or <code>null</code> if the block is not well-formed
+     */
+
+    private List<Integer> findBlock(List<TemplateNode> nodes, int start, int to)
+    {
+        List<Integer> block = new ArrayList<Integer>();
+        block.add(Integer.valueOf(start));
+
+        int depth = 0;
+        boolean hasElse = false;
+
+        for (int i = start + 1; i < to; i++)
+        {
+            TemplateNode node = nodes.get(i);
+
+            if (isTag(node, ISIF))
+            {
+                depth++;
+            }
+            else if (isTag(node, ISIF_END))
+            {
+                if (depth == 0)
+                {
+                    block.add(Integer.valueOf(i));
+                    return block;
+                }
+                depth--;
+            }
+            else if (depth == 0 && (isTag(node, ISELSIF) || isTag(node, ISELSE)))
+            {
+                if (hasElse)
+                {
+                    // left to the nesting validation
+                    return null;
+                }
+                hasElse = isTag(node, ISELSE);
+                block.add(Integer.valueOf(i));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Decides which branch of a block is taken.
+     *
+     * @param nodes     the nodes
+     * @param block     the tags of the block
+     * @return  the index of the taken branch in the block, -1 if no branch is
+     *          taken, or -2 if it is decided at runtime
+     */
+
+    private int findTakenBranch(List<TemplateNode> nodes, List<Integer> block)
+    {
+        for (int k = 0; k < block.size() - 1; k++)
+        {
+            TagNode tag = (TagNode)nodes.get(block.get(k).intValue());
+
+            if (tag.getKind() == ISELSE)
+            {
+                return k;
+            }
+
+            Expression condition = tag.getExpressionAttribute(ATT_CONDITION);
+            Object value = (condition != null) ? ConstantFolder.valueOf(condition) : null;
+
+            if (value == null || tag.hasValueAttribute(ATT_CONDITION))
+            {
+                // not constant, or an error the tag compiler reports
+                return -2;
+            }
+            if (Boolean.TRUE.equals(value))
+            {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the dead branches of a block can be removed without
+     * changing the compiled page.
+     *
+     * @param nodes     the nodes
+     * @param block     the tags of the block
+     * @param taken     the index of the taken branch in the block
+     * @return  <code>true</code> if the dead branches have no effects at
+     *          compile time
+     */
+
+    private boolean canRemoveBranches(List<TemplateNode> nodes, List<Integer> block, int taken)
+    {
+        for (int k = 0; k < block.size() - 1; k++)
+        {
+            if (k == taken)
+            {
+                continue;
+            }
+
+            for (int j = block.get(k).intValue() + 1; j < block.get(k + 1).intValue(); j++)
+            {
+                TemplateNode node = nodes.get(j);
+
+                if (isTag(node, ISCONTENT))
+                {
+                    // enables compacting of the rest of the page
+                    return false;
+                }
+                if (node instanceof TextNode && !((TextNode)node).isCompactable()
+                    && (((TextNode)node).getText().contains("<%") || ((TextNode)node).getText().contains("<jsp:")))
+                {
+                    // JSP directives and declarations apply to the whole page
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTag(TemplateNode node, int kind)
+    {
+        return (node instanceof TagNode) && ((TagNode)node).getKind() == kind;
+    }
+}
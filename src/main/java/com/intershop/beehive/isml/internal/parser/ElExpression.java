@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A JSP EL expression in an ISML expression, e.g.
+ * <code>#${product.name}#</code>. It is evaluated by the expression
+ * evaluator of the page.
+ */
+
+public class ElExpression extends Expression
+{
+    /**
+     * The EL expression including <code>${</code> and <code>}</code>.
+     */
+
+    private final String image;
+
+    /**
+     * The constructor.
+     *
+     * @param image the EL expression including <code>${</code> and
+     *              <code>}</code>
+     */
+
+    public ElExpression(String image)
+    {
+        this.image = image;
+    }
+
+    /**
+     * @return  the EL expression including <code>${</code> and <code>}</code>
+     */
+
+    public String getImage()
+    {
+        return image;
+    }
+
+    @Override
+    public List<Expression> getOperands()
+    {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Expression withOperands(List<Expression> operands)
+    {
+        return this;
+    }
+
+    @Override
+    public void accept(ExpressionVisitor visitor)
+    {
+        visitor.visitEl(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return image;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The base class of the nodes of a parsed ISML expression. Expressions are
+ * immutable trees, passes that change an expression create new nodes. The
+ * Java code of an expression is generated by {@link ISMLExpressionCompiler}.
+ *
+ * @see ExpressionVisitor
+ */
+
+public abstract class Expression
+{
+    /**
+     * @return  the subexpressions in source order
+     */
+
+    public abstract List<Expression> getOperands();
+
+    /**
+     * Returns a copy of this node with other subexpressions.
+     *
+     * @param operands  the subexpressions, as many as {@link #getOperands()}
+     *                  returns
+     * @return  the copy
+     */
+
+    public abstract Expression withOperands(List<Expression> operands);
+
+    /**
+     * Calls the visitor method that matches the type of this node.
+     *
+     * @param visitor   the visitor
+     */
+
+    public abstract void accept(ExpressionVisitor visitor);
+
+    /**
+     * Calls an action for this node and all nodes below it, parents before
+     * their operands.
+     *
+     * @param action    the action
+     */
+
+    public void forEachNode(Consumer<Expression> action)
+    {
+        action.accept(this);
+        for (Expression operand : getOperands())
+        {
+            operand.forEachNode(action);
+        }
+    }
+
+    /**
+     * Replaces the nodes of the expression bottom-up.
+     *
+     * @param function  the replacement of a node whose operands are already
+     *                  replaced
+     * @return  the replaced expression
+     */
+
+    public Expression transform(UnaryOperator<Expression> function)
+    {
+        List<Expression> operands = getOperands();
+        List<Expression> transformed = new ArrayList<Expression>(operands.size());
+        boolean changed = false;
+
+        for (Expression operand : operands)
+        {
+            Expression result = operand.transform(function);
+            transformed.add(result);
+            changed |= (result != operand);
+        }
+        return function.apply(changed ? withOperands(transformed) : this);
+    }
+
+    /**
+     * @return  the expression in ISML syntax
+     */
+
+    @Override
+    public abstract String toString();
+}
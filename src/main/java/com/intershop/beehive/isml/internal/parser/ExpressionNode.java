@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+
+/**
+ * An ISML expression outside of ISML tags (<code>#...#</code>) whose value is
+ * printed into the page.
+ *
+ * The parser flags whether the expression uses JSP EL or calls
+ * <code>existsTemplate()</code>.
+ */
+
+public class ExpressionNode extends TemplateNode
+{
+    /**
+     * The parsed expression.
+     */
+
+    private final Expression expression;
+
+    /**
+     * The flag whether the expression uses JSP EL.
+     */
+
+    private final boolean usesEl;
+
+    /**
+     * The flag whether the expression calls <code>existsTemplate()</code>.
+     */
+
+    private final boolean usesExistsTemplate;
+
+    /**
+     * The constructor.
+     *
+     * @param expression    the parsed expression
+     * @param line          the line of the expression in the ISML source
+     * @param column        the column of the expression in the ISML source
+     */
+
+    public ExpressionNode(Expression expression, int line, int column)
+    {
+        this(expression, false, false, line, column);
+    }
+
+    /**
+     * The constructor with the flags of the parser.
+     *
+     * @param expression            the parsed expression
+     * @param usesEl                <code>true</code> if the expression uses
+     *                              JSP EL
+     * @param usesExistsTemplate    <code>true</code> if the expression calls
+     *                              <code>existsTemplate()</code>
+     * @param line                  the line of the expression in the ISML
+     *                              source
+     * @param column                the column of the expression in the ISML
+     *                              source
+     */
+
+    public ExpressionNode(Expression expression, boolean usesEl, boolean usesExistsTemplate, int line, int column)
+    {
+        super(line, column);
+        this.expression = expression;
+        this.usesEl = usesEl;
+        this.usesExistsTemplate = usesExistsTemplate;
+    }
+
+    /**
+     * @return  the parsed expression
+     */
+
+    public Expression getExpression()
+    {
+        return expression;
+    }
+
+    /**
+     * @return  <code>true</code> if the parser found JSP EL in the expression
+     */
+
+    public boolean usesEl()
+    {
+        return usesEl;
+    }
+
+    /**
+     * @return  <code>true</code> if the parser found a call of
+     *          <code>existsTemplate()</code> in the expression
+     */
+
+    public boolean usesExistsTemplate()
+    {
+        return usesExistsTemplate;
+    }
+
+    /**
+     * @param expression    the changed expression
+     * @return  a node with the expression at the same position and with the
+     *          same flags
+     */
+
+    public ExpressionNode withExpression(Expression expression)
+    {
+        return new ExpressionNode(expression, usesEl, usesExistsTemplate, getLine(), getColumn());
+    }
+
+    @Override
+    public void accept(TemplateNodeVisitor visitor) throws IOException, ParseException
+    {
+        visitor.visitExpression(this);
+    }
+}
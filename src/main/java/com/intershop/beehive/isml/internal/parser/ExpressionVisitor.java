@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+/**
+ * A visitor for the nodes of a parsed ISML expression.
+ *
+ * @see Expression#accept(ExpressionVisitor)
+ */
+
+public interface ExpressionVisitor
+{
+    /**
+     * Visits a string, number or boolean constant.
+     *
+     * @param expression    the node
+     */
+
+    void visitLiteral(LiteralExpression expression);
+
+    /**
+     * Visits an object path that is looked up in the pipeline dictionary.
+     *
+     * @param expression    the node
+     */
+
+    void visitObjectPath(ObjectPathExpression expression);
+
+    /**
+     * Visits a call of an ISML function or a custom function.
+     *
+     * @param expression    the node
+     */
+
+    void visitFunction(FunctionExpression expression);
+
+    /**
+     * Visits a JSP EL expression (<code>${...}</code>).
+     *
+     * @param expression    the node
+     */
+
+    void visitEl(ElExpression expression);
+
+    /**
+     * Visits an embedded JSP expression (<code>&lt;%= ... %&gt;</code>).
+     *
+     * @param expression    the node
+     */
+
+    void visitJsp(JspExpression expression);
+
+    /**
+     * Visits a negation with <code>NOT</code>.
+     *
+     * @param expression    the node
+     */
+
+    void visitNot(NotExpression expression);
+
+    /**
+     * Visits a parenthesized expression.
+     *
+     * @param expression    the node
+     */
+
+    void visitBracket(BracketExpression expression);
+
+    /**
+     * Visits a sequence of operands with binary operators.
+     *
+     * @param expression    the node
+     */
+
+    void visitOperator(OperatorExpression expression);
+}
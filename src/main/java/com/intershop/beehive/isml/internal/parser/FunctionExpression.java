@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A call of an ISML function, e.g. <code>url(Action('Default-Start'))</code>,
+ * or of a custom function.
+ *
+ * The function is identified by the token kind of its name, custom functions
+ * have the kind {@link ISMLtoJSPcompilerConstants#VARNAME}. The URL actions
+ * (<code>Action</code>, <code>Servlet</code>, <code>Service</code>) are
+ * functions that only occur as argument of the URL functions.
+ *
+ * Some functions take a name instead of an expression: the loop functions
+ * <code>hasLoopElements</code> and <code>hasNext</code> take the path of
+ * the iterator, <code>getValue</code> may take the name of a format
+ * constant as second argument. The name is the parameter of the call.
+ */
+
+public class FunctionExpression extends Expression
+{
+    /**
+     * The token kind of the function name.
+     */
+
+    private final int kind;
+
+    /**
+     * The function name in the ISML source.
+     */
+
+    private final String image;
+
+    /**
+     * The name that is passed instead of an expression.
+     */
+
+    private final String parameter;
+
+    /**
+     * The arguments, <code>null</code> for an omitted argument.
+     */
+
+    private final List<Expression> arguments;
+
+    /**
+     * The constructor.
+     *
+     * @param kind      the token kind of the function name
+     * @param image     the function name in the ISML source
+     * @param parameter the name that is passed instead of an expression, or
+     *                  <code>null</code>
+     * @param arguments the arguments, <code>null</code> for an argument that
+     *                  is omitted after a comma
+     */
+
+    public FunctionExpression(int kind, String image, String parameter, List<Expression> arguments)
+    {
+        this.kind = kind;
+        this.image = image;
+        this.parameter = parameter;
+        this.arguments = Collections.unmodifiableList(new ArrayList<Expression>(arguments));
+    }
+
+    /**
+     * @return  the token kind of the function name
+     */
+
+    public int getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * @return  the function name in the ISML source
+     */
+
+    public String getImage()
+    {
+        return image;
+    }
+
+    /**
+     * @return  the name that is passed instead of an expression, or
+     *          <code>null</code>
+     */
+
+    public String getParameter()
+    {
+        return parameter;
+    }
+
+    /**
+     * @return  the arguments, with <code>null</code> for an omitted argument
+     */
+
+    public List<Expression> getArguments()
+    {
+        return arguments;
+    }
+
+    @Override
+    public List<Expression> getOperands()
+    {
+        List<Expression> result = new ArrayList<Expression>(arguments.size());
+        for (Expression argument : arguments)
+        {
+            if (argument != null)
+            {
+                result.add(argument);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Expression withOperands(List<Expression> operands)
+    {
+        List<Expression> result = new ArrayList<Expression>(arguments.size());
+        Iterator<Expression> operand = operands.iterator();
+        for (Expression argument : arguments)
+        {
+            result.add((argument != null) ? operand.next() : null);
+        }
+        return new FunctionExpression(kind, image, parameter, result);
+    }
+
+    @Override
+    public void accept(ExpressionVisitor visitor)
+    {
+        visitor.visitFunction(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder result = new StringBuilder(image).append('(');
+
+        for (int i = 0; i < arguments.size(); i++)
+        {
+            Expression argument = arguments.get(i);
+            result.append((i > 0) ? "," : "");
+            result.append((argument != null) ? argument.toString() : (i == 1 && parameter != null) ? parameter : "");
+        }
+        if (arguments.isEmpty() && parameter != null)
+        {
+            result.append(parameter);
+        }
+        return result.append(')').toString();
+    }
+}
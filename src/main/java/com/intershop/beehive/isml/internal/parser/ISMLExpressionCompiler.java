@@ -0,0 +1,719 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.List;
+
+/**
+ * Generates the Java code of parsed ISML expressions for the JSP and
+ * servlet code generators. The code calls the methods of the template base
+ * class, e.g. <code>getObject("Product:Name")</code> for an object path.
+ */
+
+public class ISMLExpressionCompiler implements ExpressionVisitor, ISMLtoJSPcompilerConstants
+{
+    /**
+     * The prefix of a number constant.
+     */
+
+    private static final String NUMBER_PREFIX = "Double.valueOf(";
+
+    /**
+     * The generated code.
+     */
+
+    private final StringBuilder code = new StringBuilder();
+
+    private ISMLExpressionCompiler()
+    {
+        // use compile
+    }
+
+    /**
+     * Generates the Java code of an expression.
+     *
+     * @param expression    the expression
+     * @return  the Java expression
+     */
+
+    public static String compile(Expression expression)
+    {
+        ISMLExpressionCompiler compiler = new ISMLExpressionCompiler();
+        expression.accept(compiler);
+        return compiler.code.toString();
+    }
+
+    /**
+     * Returns the Java code of a constant.
+     *
+     * @param value the constant, may be <code>null</code>
+     * @return  the code or <code>null</code> if the value can't be written as
+     *          constant
+     */
+
+    public static String toCode(Object value)
+    {
+        if (value instanceof String)
+        {
+            return javaLiteral((String)value);
+        }
+        if (value instanceof Double)
+        {
+            double d = ((Double)value).doubleValue();
+            return (Double.isNaN(d) || Double.isInfinite(d)) ? null : NUMBER_PREFIX + Double.toString(d) + ')';
+        }
+        if (value instanceof Boolean)
+        {
+            return ((Boolean)value).booleanValue() ? "Boolean.TRUE" : "Boolean.FALSE";
+        }
+        return null;
+    }
+
+    /**
+     * Translates an ISML string literal to a Java string literal. ISML
+     * literals may be enclosed in single or double quotes, a quote is
+     * escaped by doubling it or by a backslash, <code>\d</code> stands for a
+     * double quote and <code>\s</code> for a single quote. Other backslash
+     * escapes are passed to Java.
+     *
+     * @param image the ISML literal including the quotes
+     * @return  the Java literal
+     */
+
+    public static String stringLiteral(String image)
+    {
+        StringBuilder result = new StringBuilder(image.length() + 2);
+        boolean singleQuoted = image.charAt(0) == '\'';
+        boolean hasPreviousSlash = false;
+        boolean hasPreviousQuote = false;
+
+        result.append('\"');
+
+        for (int i = 1; i < (image.length() - 1); i++)
+        {
+            char currentChar = image.charAt(i);
+
+            // handling of special characters
+            switch (currentChar)
+            {
+                case '\\':
+                    hasPreviousSlash = !hasPreviousSlash;
+                    result.append('\\');
+                    break;
+                case 'd':
+                    result.append(hasPreviousSlash ? '\"' : 'd');
+                    hasPreviousSlash = false;
+                    break;
+                case 's':
+                    result.append(hasPreviousSlash ? '\'' : 's');
+                    hasPreviousSlash = false;
+                    break;
+                case '\'':
+                case '\"':
+                    if (singleQuoted == (currentChar == '\''))
+                    {
+                        // the quote of the literal
+                        if (hasPreviousQuote)
+                        {
+                            result.append('\\').append(currentChar);
+                            hasPreviousQuote = false;
+                        }
+                        else if (hasPreviousSlash)
+                        {
+                            result.append(currentChar);
+                            hasPreviousSlash = false;
+                        }
+                        else
+                        {
+                            hasPreviousQuote = true;
+                        }
+                    }
+                    else if (hasPreviousSlash)
+                    {
+                        result.append(currentChar);
+                        hasPreviousSlash = false;
+                    }
+                    else
+                    {
+                        result.append('\\').append(currentChar);
+                    }
+                    break;
+                default:
+                    result.append(currentChar);
+                    hasPreviousSlash = false;
+                    hasPreviousQuote = false;
+            }
+        }
+        return result.append('\"').toString();
+    }
+
+    /**
+     * Returns the body of the Java string literal of an object path. The
+     * quotes of the string parameters of the path are escaped, their content
+     * is passed to Java unchanged.
+     *
+     * @param path  the path in ISML syntax
+     * @return  the body of the literal
+     */
+
+    public static String pathLiteral(String path)
+    {
+        StringBuilder result = new StringBuilder(path.length() + 8);
+        boolean inString = false;
+
+        for (int i = 0; i < path.length(); i++)
+        {
+            char c = path.charAt(i);
+
+            if (c != '\"')
+            {
+                result.append(c);
+                if (inString && c == '\\' && i + 1 < path.length())
+                {
+                    // an escaped character of the string parameter
+                    result.append(path.charAt(++i));
+                }
+            }
+            else if (inString && i + 1 < path.length() && path.charAt(i + 1) == '\"')
+            {
+                // a doubled quote in the string parameter
+                result.append("\"\"");
+                i++;
+            }
+            else
+            {
+                result.append("\\\"");
+                inString = !inString;
+            }
+        }
+        return result.toString();
+    }
+
+    @Override
+    public void visitLiteral(LiteralExpression expression)
+    {
+        String image = expression.getImage();
+
+        if (image == null)
+        {
+            code.append(toCode(expression.getValue()));
+        }
+        else if (image.startsWith("'") || image.startsWith("\""))
+        {
+            code.append(stringLiteral(image));
+        }
+        else
+        {
+            code.append(NUMBER_PREFIX).append(image).append(')');
+        }
+    }
+
+    @Override
+    public void visitObjectPath(ObjectPathExpression expression)
+    {
+        String lookup = "getObject(" + ((expression.getConstant() != null) ? expression.getConstant()
+                        : ('\"' + pathLiteral(expression.getPath()) + '\"')) + ")";
+        String local = expression.getLocal();
+
+        if (local != null)
+        {
+            code.append('(').append(local).append(" != ").append(ObjectPathHoister.UNRESOLVED).append(" ? ").append(local)
+                .append(" : (").append(local).append(" = ").append(lookup).append("))");
+        }
+        else
+        {
+            code.append(lookup);
+        }
+    }
+
+    @Override
+    public void visitFunction(FunctionExpression expression)
+    {
+        List<Expression> arguments = expression.getArguments();
+
+        switch(expression.getKind())
+        {
+            case F1:
+                code.append("(hasLoopElements(\"").append(pathLiteral(expression.getParameter()))
+                    .append("\") ? Boolean.TRUE : Boolean.FALSE)");
+                break;
+            case F2:
+                code.append("isSSSenabled()");
+                break;
+            case F3:
+                code.append("(request.getHeader(");
+                appendFormatted(arguments.get(0));
+                code.append("))");
+                break;
+            case F4:
+                appendValue(expression);
+                break;
+            case F5:
+            case F25:
+                code.append("url(").append(expression.getKind() == F5).append(',');
+                append(arguments.get(0));
+                appendParameters(arguments, 1, ",(new URLParameterSet().addURLParameter(", "))", ".addURLParameter(", ")");
+                code.append(')');
+                break;
+            case F6:
+            case F26:
+                appendUrlEx(expression);
+                break;
+            case F7:
+                code.append("(new URLPipelineAction(");
+                appendFormatted(arguments, ",");
+                code.append("))");
+                break;
+            case F20:
+                code.append("(new URLServletAction(");
+                appendFormatted(arguments, ",");
+                code.append("))");
+                break;
+            case F22:
+                code.append("(new URLServiceAction(");
+                appendFormatted(arguments, ",");
+                code.append("))");
+                break;
+            case F27:
+                code.append("executePipeline(");
+                append(arguments.get(0));
+                appendParameters(arguments, 1, ",(new URLParameterSet().addURLParameter(new URLParameter(", ")))",
+                                 ".addURLParameter(new URLParameter(", "))");
+                code.append(',');
+                break;
+            case F8:
+                appendFormatted(arguments, ",");
+                break;
+            case F9:
+            case F38:
+                code.append("context.webRoot(");
+                appendFormatted(arguments, ",");
+                code.append(')');
+                break;
+            case F10:
+                code.append("(disableErrorMessages().isDefined(");
+                append(arguments.get(0));
+                code.append("))");
+                break;
+            case F11:
+                code.append("stringToHtml(");
+                appendFormatted(arguments.get(0));
+                code.append(')');
+                break;
+            case F12:
+                code.append("pad(");
+                appendFormatted(arguments.get(0));
+                code.append(",((Number)(");
+                append(arguments.get(1));
+                code.append(")).intValue())");
+                break;
+            case F13:
+                code.append("stringToXml(");
+                appendFormatted(arguments.get(0));
+                code.append(')');
+                break;
+            case F14:
+                code.append('(');
+                appendFormatted(arguments.get(0));
+                code.append(".trim())");
+                break;
+            case F15:
+                code.append('(');
+                appendFormatted(arguments.get(0));
+                code.append(".toLowerCase())");
+                break;
+            case F16:
+                code.append('(');
+                appendFormatted(arguments.get(0));
+                code.append(".toUpperCase())");
+                break;
+            case F17:
+                code.append("(Double.valueOf(");
+                appendFormatted(arguments.get(0));
+                code.append(".length()))");
+                break;
+            case F18:
+                code.append("(val(");
+                appendFormatted(arguments.get(0));
+                code.append("))");
+                break;
+            case F19:
+                code.append("(getCookieValue(request,");
+                appendFormatted(arguments.get(0));
+                code.append("))");
+                break;
+            case F21:
+                code.append("contentURL(");
+                appendFormatted(arguments, ",");
+                code.append(')');
+                break;
+            case F34:
+                code.append("(hasNext(\"").append(pathLiteral(expression.getParameter()))
+                    .append("\") ? Boolean.TRUE : Boolean.FALSE)");
+                break;
+            case F35:
+                code.append("replace(");
+                appendFormatted(arguments.get(0));
+                code.append(",(String)(");
+                append(arguments.get(1));
+                code.append("),(String)(");
+                append(arguments.get(2));
+                code.append("))");
+                break;
+            case F36:
+                code.append("split(");
+                appendFormatted(arguments.get(0));
+                code.append(",(String)(");
+                append(arguments.get(1));
+                code.append("))");
+                break;
+            case F37:
+                code.append("existsTemplate(");
+                appendFormatted(arguments.get(0));
+                code.append(')');
+                break;
+            case F39:
+                code.append("context.contentURL(");
+                appendFormatted(arguments, ",");
+                code.append(')');
+                break;
+            case F40:
+                code.append('(');
+                appendParameters(arguments, 0, "(new ParameterMap().addParameter(", "))", ".addParameter(", ")");
+                code.append(')');
+                break;
+            case F41:
+                code.append("new ParameterEntry(");
+                append(arguments.get(0));
+                code.append(',');
+                append(arguments.get(1));
+                code.append(')');
+                break;
+            case F42:
+                code.append("getTemplateSourceLocation(");
+                appendFormatted(arguments.get(0));
+                code.append(')');
+                break;
+            case F43:
+            case F44:
+                code.append((expression.getKind() == F43) ? "localizeText(" : "localizeTextEx(");
+                appendFormatted(arguments.get(0));
+                for (int i = 1; i < arguments.size(); i++)
+                {
+                    code.append(',');
+                    append(arguments.get(i));
+                }
+                code.append(')');
+                break;
+            case F45:
+                appendParameters(arguments, 0, "new ParameterList().addParameter(", ")", ".addParameter(", ")");
+                break;
+            case F46:
+                code.append("encodeString(");
+                appendFormatted(arguments.get(0));
+                if (arguments.size() > 1)
+                {
+                    code.append(",(String)(");
+                    append(arguments.get(1));
+                    code.append(')');
+                }
+                code.append(')');
+                break;
+            default:
+                code.append("customFunction(\"").append(expression.getImage()).append('\"');
+                for (Expression argument : arguments)
+                {
+                    code.append(',');
+                    append(argument);
+                }
+                code.append(')');
+                break;
+        }
+    }
+
+    @Override
+    public void visitEl(ElExpression expression)
+    {
+        // pass simply through as JSP EL like ${}
+        code.append("pageContext.getExpressionEvaluator().evaluate(\"");
+        code.append(expression.getImage().replace("\"", "\\\""));
+        code.append("\", Object.class, pageContext.getVariableResolver(), null)");
+    }
+
+    @Override
+    public void visitJsp(JspExpression expression)
+    {
+        code.append(ISMLtoJSPcompiler.SCRIPTING_END);
+        code.append(ISMLtoJSPcompiler.SCRIPTING_START);
+        code.append(expression.getCode());
+        code.append(ISMLtoJSPcompiler.SCRIPTING_END);
+        code.append(ISMLtoJSPcompiler.SCRIPTING_START);
+    }
+
+    @Override
+    public void visitNot(NotExpression expression)
+    {
+        code.append("(!Boolean.valueOf(String.valueOf(");
+        append(expression.getOperand());
+        code.append("))) ");
+    }
+
+    @Override
+    public void visitBracket(BracketExpression expression)
+    {
+        code.append('(');
+        append(expression.getOperand());
+        code.append(')');
+    }
+
+    @Override
+    public void visitOperator(OperatorExpression expression)
+    {
+        List<Expression> operands = expression.getOperands();
+        Expression last = operands.get(operands.size() - 1);
+
+        if (expression.isNumberComparison())
+        {
+            code.append("(( ((Number) ");
+            append(operands.get(0));
+            code.append(").doubleValue() ").append(expression.getImages().get(0)).append("((Number)(");
+            append(last);
+            code.append(")).doubleValue()) ? Boolean.TRUE : Boolean.FALSE)");
+        }
+        else if (expression.isStringComparison())
+        {
+            code.append((expression.getKind() == NE) ? "((!(" : "(((");
+            appendFormatted(operands.get(0));
+            code.append(".equals(");
+            appendFormatted(last);
+            code.append("))) ? Boolean.TRUE : Boolean.FALSE)");
+        }
+        else if (expression.isArithmetic())
+        {
+            code.append('(').append(NUMBER_PREFIX);
+            for (int i = 0; i < operands.size() - 1; i++)
+            {
+                code.append(" ((Number) ");
+                append(operands.get(i));
+                code.append(").doubleValue() ").append(expression.getImages().get(i));
+            }
+            code.append("((Number) ");
+            append(last);
+            code.append(").doubleValue()))");
+        }
+        else if (expression.isConcatenation())
+        {
+            for (int i = 0; i < operands.size() - 1; i++)
+            {
+                appendFormatted(operands.get(i));
+                code.append(" + ");
+            }
+            appendFormatted(last);
+        }
+        else
+        {
+            code.append("((");
+            for (int i = 0; i < operands.size() - 1; i++)
+            {
+                appendBoolean(operands.get(i), "Boolean.parseBoolean(String.valueOf(");
+                code.append(")) ").append((expression.getOperators().get(i).intValue() == AND) ? "&& " : "|| ");
+            }
+            appendBoolean(last, "Boolean.valueOf(String.valueOf(");
+            code.append("))))");
+        }
+    }
+
+    /**
+     * Appends the code of an operand of a boolean operator, a negated operand
+     * is converted to a boolean and negated.
+     */
+
+    private void appendBoolean(Expression operand, String conversion)
+    {
+        if (operand instanceof NotExpression)
+        {
+            code.append('!').append(conversion);
+            append(((NotExpression)operand).getOperand());
+        }
+        else
+        {
+            code.append(conversion);
+            append(operand);
+        }
+    }
+
+    /**
+     * Appends the code of <code>getValue</code>, the optional second and
+     * third argument are passed as given.
+     */
+
+    private void appendValue(FunctionExpression expression)
+    {
+        List<Expression> arguments = expression.getArguments();
+        boolean formatted = false;
+
+        code.append("context.getFormattedValue(");
+        append(arguments.get(0));
+        code.append(',');
+
+        if (arguments.size() > 1)
+        {
+            if (arguments.get(1) != null)
+            {
+                append(arguments.get(1));
+                formatted = true;
+            }
+            else if (expression.getParameter() != null)
+            {
+                code.append("Integer.valueOf(").append(expression.getParameter()).append(')');
+                formatted = true;
+            }
+        }
+        if (arguments.size() > 2)
+        {
+            code.append(',');
+            if (arguments.get(2) != null)
+            {
+                append(arguments.get(2));
+                formatted = true;
+            }
+        }
+        if (!formatted)
+        {
+            code.append("null");
+        }
+        code.append(')');
+    }
+
+    /**
+     * Appends the code of <code>URLEx</code> and
+     * <code>sessionlessURLEx</code>, the arguments before the action are
+     * protocol, host (optional) and port.
+     */
+
+    private void appendUrlEx(FunctionExpression expression)
+    {
+        List<Expression> arguments = expression.getArguments();
+        int action = 0;
+        while (!isAction(arguments.get(action)))
+        {
+            action++;
+        }
+
+        code.append("url(").append(expression.getKind() == F6).append(',');
+        appendFormatted(arguments.get(0));
+        for (int i = 1; i < action; i++)
+        {
+            code.append(", ");
+            appendFormatted(arguments.get(i));
+        }
+        code.append(", ");
+        append(arguments.get(action));
+        appendParameters(arguments, action + 1, ", (new URLParameterSet().addURLParameter(", "))", ".addURLParameter(",
+                         ")");
+        code.append(')');
+    }
+
+    private static boolean isAction(Expression expression)
+    {
+        if (!(expression instanceof FunctionExpression))
+        {
+            return false;
+        }
+
+        int kind = ((FunctionExpression)expression).getKind();
+        return kind == F7 || kind == F20 || kind == F22;
+    }
+
+    /**
+     * Appends the arguments of a parameter container, the first argument
+     * creates the container.
+     */
+
+    private void appendParameters(List<Expression> arguments, int from, String firstPrefix, String firstSuffix,
+                    String prefix, String suffix)
+    {
+        for (int i = from; i < arguments.size(); i++)
+        {
+            code.append((i == from) ? firstPrefix : prefix);
+            append(arguments.get(i));
+            code.append((i == from) ? firstSuffix : suffix);
+        }
+    }
+
+    /**
+     * Appends the arguments as formatted strings.
+     */
+
+    private void appendFormatted(List<Expression> arguments, String separator)
+    {
+        for (int i = 0; i < arguments.size(); i++)
+        {
+            code.append((i > 0) ? separator : "");
+            appendFormatted(arguments.get(i));
+        }
+    }
+
+    private void appendFormatted(Expression expression)
+    {
+        code.append("context.getFormattedValue(");
+        append(expression);
+        code.append(",null)");
+    }
+
+    private void append(Expression expression)
+    {
+        expression.accept(this);
+    }
+
+    /**
+     * Returns a Java string literal. The characters <code>%&gt;</code> would
+     * end the surrounding JSP scriptlet, so the '&gt;' is escaped.
+     */
+
+    private static String javaLiteral(String value)
+    {
+        StringBuilder literal = new StringBuilder(value.length() + 2);
+        literal.append('"');
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch(c)
+            {
+                case '"': literal.append("\\\""); break;
+                case '\\': literal.append("\\\\"); break;
+                case '\n': literal.append("\\n"); break;
+                case '\r': literal.append("\\r"); break;
+                case '\t': literal.append("\\t"); break;
+                case '>':
+                    literal.append((i > 0 && value.charAt(i - 1) == '%') ? "\\076" : ">");
+                    break;
+                default:
+                    if (c < ' ')
+                    {
+                        literal.append('\\').append(String.format("%03o", Integer.valueOf(c)));
+                    }
+                    else
+                    {
+                        literal.append(c);
+                    }
+                    break;
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
@@ -18,11 +18,11 @@ package com.intershop.beehive.isml.internal.parser;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.intershop.beehive.isml.capi.CustomTagModule;
 import com.intershop.beehive.isml.capi.ISMLTemplateConstants;
 import com.intershop.beehive.isml.internal.CharacterSetMappings;
 
@@ -35,6 +35,42 @@ import com.intershop.beehive.isml.internal.CharacterSetMappings;
 public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
 {
     private static AtomicInteger formCount = new AtomicInteger(0);
+
+    /**
+     * The class of the descriptors of custom tags that are bound at compile
+     * time.
+     */
+
+    private static final String CUSTOM_TAG_MODULE_CLASS = "com.intershop.beehive.isml.capi.CustomTagModule";
+
+    /**
+     * The start of the <code>processOpenTag</code> method of a renderer, which
+     * declares the locals of a page.
+     */
+
+    private static final String RENDERER_METHOD_START = "public void processOpenTag(PageContext pageContext, com.intershop.beehive.core.capi.request.ServletResponse response, AbstractTemplate template, int line) throws IOException, ServletException {\n"
+                    + "ServletContext application = pageContext.getServletContext();\n"
+                    + "ServletConfig config = pageContext.getServletConfig();\n"
+                    + "JspWriter out = pageContext.getOut();\n"
+                    + "Object page = template;\n"
+                    + "TemplateExecutionConfig context = getTemplateExecutionConfig();";
+
+    /**
+     * The start of the renderer class of an ISRENDER tag up to the body of
+     * its <code>processOpenTag</code> method.
+     */
+
+    static final String RENDERER_START = "\nCustomTag renderer = new CustomTag() {{\n"
+                    + "isStrict = true;\n"
+                    + "tagName = \"FileBundleRenderer\";\n"
+                    + "}\n"
+                    + RENDERER_METHOD_START;
+
+    /**
+     * The end of the renderer class of an ISRENDER tag.
+     */
+
+    static final String RENDERER_END = "\n}};\n";
     
     /**
      * This method generates Java code for parsed ISML tags.
@@ -53,7 +89,31 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
      */
 
     protected static void compileTag(Token tag, CompactingWriter result, Map<String, Object> attributes,
-                    List<Token> nestingTable) throws ParseException
+                    NestingStack nestingTable) throws ParseException
+    {
+        compileTag(tag, result, attributes, nestingTable, new TagCompilationContext());
+    }
+
+    /**
+     * This method generates Java code for parsed ISML tags.
+     * 
+     * @param tag
+     *            parsed tag as javacc Token
+     * @param result
+     *            output stream in that the generated Java code will be written
+     * @param attributes
+     *            Map that contains all parsed tag attributes
+     * @param nestingTable
+     *            Stack that contains all previously parsed relevant loop or
+     *            conditional tags to check nesting levels etc.
+     * @param context
+     *            the code generation options of the template
+     * @throws com.intershop.beehive.isml.internal.parser.ParseException
+     *             if an ISML tag does not comply to the current standard
+     */
+
+    protected static void compileTag(Token tag, CompactingWriter result, Map<String, Object> attributes,
+                    NestingStack nestingTable, TagCompilationContext context) throws ParseException
     {
         try
         {
@@ -139,6 +199,29 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                         throw new ParseException(
                                         "Only numeric values or ISML expressions are allowed for the \"hour\" and \"minute\" attributes of ISCACHE tag.\n");
                     }
+
+                    if (context.isCompactTagCode() && !hasExpressionAttribute(attributes, ATT_HOUR)
+                        && !hasExpressionAttribute(attributes, ATT_MINUTE))
+                    {
+                        // the helpers check the borders and log errors like
+                        // the inline code
+                        if (equalsAttribute(attributes, ATT_TYPE, "daily"))
+                        {
+                            result.print("cachePageDaily(response," + hour + "L," + minute + "L," + tag.beginLine + ");");
+                            break;
+                        }
+                        else if (equalsAttribute(attributes, ATT_TYPE, "relative"))
+                        {
+                            result.print("cachePageRelative(response," + hour + "L," + minute + "L," + tag.beginLine + ");");
+                            break;
+                        }
+                        else if (equalsAttribute(attributes, ATT_TYPE, "forbidden"))
+                        {
+                            result.print("cachePageForbidden(response," + tag.beginLine + ");");
+                            break;
+                        }
+                    }
+
                     // start code block
                     result.print('{');
                     result.print("try{");
@@ -152,28 +235,39 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                             result.print("if (currentCacheTime!=null && \"00\".equals(currentCacheTime)) {Logger.debug(this, \"ISCACHE declaration is ignored since a prior 'forbidden'.\");}");
                             result.print("else {");
 
-                            // get current time in seconds
-                            result.print("long time = System.currentTimeMillis()/1000;");
-                            // check borders
-                            result.print("long minute=" + minuteString + ';');
-                            result.print("if (minute <0) minute=0;");
-                            result.print("if (minute >59) minute=59;");
-                            result.print("long hour=" + hourString + ';');
-                            result.print("if (hour <0)  hour=0;");
-                            result.print("if (hour >23) hour=23;");
-                            // calculate date of expiring
-                            result.print("Calendar calendar = new GregorianCalendar();");
-                            // convert long value of minute and hour to int to match method signature
-                            result.print("calendar.set(Calendar.HOUR_OF_DAY,Long.valueOf(hour).intValue());");
-                            result.print("calendar.set(Calendar.MINUTE,Long.valueOf(minute).intValue());");
-                            result.print("calendar.set(Calendar.SECOND,0);");
-                            result.print("calendar.set(Calendar.MILLISECOND,0);");
-                            result.print("long expireTime = calendar.getTime().getTime()/1000;");
-                            // compare with current time
-                            result.print("if (expireTime < time) { expireTime += 86400; }"); // add
-                            // one
-                            // day
-                            result.print("time = expireTime;");
+                            if (context.isPrecomputeCacheExpiry() && !hasExpressionAttribute(attributes, ATT_HOUR)
+                                && !hasExpressionAttribute(attributes, ATT_MINUTE))
+                            {
+                                // the shared instance memoizes the expiry time
+                                // of the current day
+                                result.print("long time = com.intershop.beehive.isml.capi.DailyCacheExpiry.get(" + hour + "L,"
+                                                + minute + "L).getExpiryTime();");
+                            }
+                            else
+                            {
+                                // get current time in seconds
+                                result.print("long time = System.currentTimeMillis()/1000;");
+                                // check borders
+                                result.print("long minute=" + minuteString + ';');
+                                result.print("if (minute <0) minute=0;");
+                                result.print("if (minute >59) minute=59;");
+                                result.print("long hour=" + hourString + ';');
+                                result.print("if (hour <0)  hour=0;");
+                                result.print("if (hour >23) hour=23;");
+                                // calculate date of expiring
+                                result.print("Calendar calendar = new GregorianCalendar();");
+                                // convert long value of minute and hour to int to match method signature
+                                result.print("calendar.set(Calendar.HOUR_OF_DAY,Long.valueOf(hour).intValue());");
+                                result.print("calendar.set(Calendar.MINUTE,Long.valueOf(minute).intValue());");
+                                result.print("calendar.set(Calendar.SECOND,0);");
+                                result.print("calendar.set(Calendar.MILLISECOND,0);");
+                                result.print("long expireTime = calendar.getTime().getTime()/1000;");
+                                // compare with current time
+                                result.print("if (expireTime < time) { expireTime += 86400; }"); // add
+                                // one
+                                // day
+                                result.print("time = expireTime;");
+                            }
                             result.print("String extCacheTime = (String)((com.intershop.beehive.core.capi.request.ServletResponse)response).getHeaderValue(TemplateConstants.EXT_PAGECACHE_HEADER);");
                             result.print("Long oldTime=(currentCacheTime!=null)?Long.valueOf(currentCacheTime):(extCacheTime!=null)?Long.valueOf(extCacheTime):null;");
                             result.print("if (oldTime!=null && oldTime<time) {");
@@ -192,16 +286,27 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                             result.print("if (currentCacheTime!=null && \"00\".equals(currentCacheTime)) {Logger.debug(this, \"ISCACHE declaration is ignored since a prior 'forbidden'.\");}");
                             result.print("else {");
 
-                            // get current time in seconds
-                            result.print("long time = System.currentTimeMillis()/1000;");
-                            // check borders
-                            result.print("long minute=" + minuteString + ';');
-                            result.print("if (minute <0) minute=0;");
-                            result.print("long hour=" + hourString + ';');
-                            result.print("if (hour <0)  hour=0;"); // no max
-                            // border !!
-                            // calculate offset
-                            result.print("time += 60*minute+3600*hour;");
+                            if (context.isPrecomputeCacheExpiry() && !hasExpressionAttribute(attributes, ATT_HOUR)
+                                && !hasExpressionAttribute(attributes, ATT_MINUTE))
+                            {
+                                // the offset of constant values is computed
+                                // once with the same borders
+                                long offset = 60 * Math.max(0, minute) + 3600 * Math.max(0, hour);
+                                result.print("long time = System.currentTimeMillis()/1000+" + offset + "L;");
+                            }
+                            else
+                            {
+                                // get current time in seconds
+                                result.print("long time = System.currentTimeMillis()/1000;");
+                                // check borders
+                                result.print("long minute=" + minuteString + ';');
+                                result.print("if (minute <0) minute=0;");
+                                result.print("long hour=" + hourString + ';');
+                                result.print("if (hour <0)  hour=0;"); // no max
+                                // border !!
+                                // calculate offset
+                                result.print("time += 60*minute+3600*hour;");
+                            }
                             result.print("String extCacheTime = (String)((com.intershop.beehive.core.capi.request.ServletResponse)response).getHeaderValue(TemplateConstants.EXT_PAGECACHE_HEADER);");
                             result.print("Long oldTime=(currentCacheTime!=null)?Long.valueOf(currentCacheTime):(extCacheTime!=null)?Long.valueOf(extCacheTime):null;");
                             result.print("if (oldTime!=null && oldTime<time) {");
@@ -281,12 +386,16 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
 
                     if (keyword != null)
                     {
-                        result.print("NamingMgr.get(PageCacheMgr.class).getKeywords().add(" + keyword + ");");
+                        result.print(context.isCompactTagCode()
+                                        ? "addPageCacheKeyword(" + keyword + ");"
+                                        : "NamingMgr.get(PageCacheMgr.class).getKeywords().add(" + keyword + ");");
                     }
 
                     if (object != null)
                     {
-                        result.print("NamingMgr.get(PageCacheMgr.class).registerObject(" + object + ");");
+                        result.print(context.isCompactTagCode()
+                                        ? "registerPageCacheObject(" + object + ");"
+                                        : "NamingMgr.get(PageCacheMgr.class).registerObject(" + object + ");");
                     }
                     result.print('}');
 
@@ -423,6 +532,7 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                     // tell jsp processor about it
                     if (dynamictype == null)
                     {
+                        context.setPageAttribute("contentType", type + (charset != null ? (";charset=" + charset) : ""));
                         result.print("%><%@ page contentType=\"" + type
                                         + (charset != null ? (";charset=" + charset) : "") + "\" %><%");
                         encType = type;
@@ -452,6 +562,7 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                         }
                         else if (equalsAttribute(attributes, ATT_SESSION, "false"))
                         {
+                            context.setPageAttribute("session", "false");
                             result.print("%><%@ page session=\"false\"%><%");
                         }
                         else
@@ -705,7 +816,7 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                     }
 
                     result.print("} else {");
-                    nestingTable.add(tag);
+                    nestingTable.push(tag);
                     break;
                 }
                 case ISELSIF:
@@ -747,7 +858,7 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                     result.print('}');
                     result.print("if (_boolean_result) {");
 
-                    nestingTable.add(tag);
+                    nestingTable.push(tag);
                     break;
                 }
                 case ISIF_END:
@@ -909,6 +1020,7 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                         // handling for remote includes
                         // remote includes are not rewritten, therefore a NullURLRewriteHandler
                         // is placed temporarily in the template context 
+                        context.setPageAttribute("import", "com.intershop.beehive.core.capi.url.*");
                         result.print("%><%@page import=\"com.intershop.beehive.core.capi.url.*\"%><%");
                         result.print("URLRewriteHandler handler = getTemplateExecutionConfig().getURLRewriteHandler();\n");
                         result.print("try\n{\n");
@@ -977,7 +1089,7 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
 
                     result.print(")) {");
 
-                    nestingTable.add(tag);
+                    nestingTable.push(tag);
                     break;
                 }
                 case ISLOOP_END:
@@ -1036,39 +1148,40 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                     }
 
                     name = name.toLowerCase();
+                    StringBuilder registration = new StringBuilder();
 
                     // add declaration information to execution context
-                    result.print("context.setCustomTagTemplateName(\"" + name + "\"," + template + "," + isStrict);
+                    registration.append("context.setCustomTagTemplateName(\"" + name + "\"," + template + "," + isStrict);
 
                     @SuppressWarnings("unchecked")
                     Collection<String> parameters = (Collection<String>)attributes.get(String.valueOf(ATT_ATTRIBUTE));
-                    result.print(",");
+                    registration.append(",");
                     if (parameters != null)
                     {
-                        result.print("new String[]{");
+                        registration.append("new String[]{");
                         String delim = "";
                         for(String parametername : parameters)
                         {
-                            result.print(delim);
+                            registration.append(delim);
                             delim = ",";
-                            result.print('\"');
-                            result.print(parametername);
-                            result.print('\"');
+                            registration.append('\"');
+                            registration.append(parametername);
+                            registration.append('\"');
                         }
-                        result.print("}");
+                        registration.append("}");
                     }
                     else
                     {
-                        result.print("null");
+                        registration.append("null");
                     }
 
                     @SuppressWarnings("unchecked")
                     Collection<String> returnValues = (Collection<String>)attributes.get(String
                                     .valueOf(ATT_RETURNATTRIBUTE));
-                    result.print(",");
+                    registration.append(",");
                     if (returnValues != null)
                     {
-                        result.print("new String[]{");
+                        registration.append("new String[]{");
                         String delim = "";
                         for(String returnValue : returnValues)
                         {
@@ -1081,20 +1194,32 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                             {
                                 throw new ParseException("ISMODULE attributes and returnattributes must be distinct.\n");
                             }
-                            result.print(delim);
+                            registration.append(delim);
                             delim = ",";
-                            result.print('\"');
-                            result.print(returnValue);
-                            result.print('\"');
+                            registration.append('\"');
+                            registration.append(returnValue);
+                            registration.append('\"');
                         }
-                        result.print("}");
+                        registration.append("}");
                     }
                     else
                     {
-                        result.print("null");
+                        registration.append("null");
                     }
 
-                    result.print(");");
+                    registration.append(");");
+
+                    // tags that are bound at compile time are declared by the static registry
+                    CustomTagModule module = context.getCustomTagModule(name);
+                    CustomTagModule declared = hasValueAttribute(attributes, ATT_TEMPLATE)
+                        ? new CustomTagModule(name, getValueAttribute(attributes, ATT_TEMPLATE), isStrict,
+                                        (parameters != null) ? parameters.toArray(new String[0]) : null,
+                                        (returnValues != null) ? returnValues.toArray(new String[0]) : null)
+                        : null;
+                    if (module == null || !module.equals(declared))
+                    {
+                        result.print(registration.toString());
+                    }
                     break;
                 }
                 case ISNEXT:
@@ -1261,20 +1386,29 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                                     + tag.beginLine + "}\",e);");
                     result.print('}'); // exception catch
 
-                    result.print("if (value==null) value=\"\";");
-
-                    // character entity encoding
-
-                    if (encodings != null)
+                    if (context.isCompactTagCode())
                     {
-                        result.print("value = encodeString(value,\"" + encodings + "\");");
+                        // the helper replaces null, encodes and writes the value
+                        result.print("printValue(out,value,"
+                                        + ((encodings != null) ? ('\"' + encodings + '\"') : String.valueOf(encode)) + ");");
                     }
-                    else if (encode)
+                    else
                     {
-                        result.print("value = encodeString(value);");
-                    }
+                        result.print("if (value==null) value=\"\";");
+
+                        // character entity encoding
 
-                    result.print("out.write(value);");
+                        if (encodings != null)
+                        {
+                            result.print("value = encodeString(value,\"" + encodings + "\");");
+                        }
+                        else if (encode)
+                        {
+                            result.print("value = encodeString(value);");
+                        }
+
+                        result.print("out.write(value);");
+                    }
                     result.print('}');
                     break;
                 }
@@ -1648,43 +1782,45 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                     result.print("}");
 
                     // setup parameters for the renderer
-                    result.print("TagParameter[] parameters = new TagParameter[] {\n");
-                    Iterator<String> keys = attributes.keySet().iterator();
-                    while(keys.hasNext())
+                    if (context.isStaticTagParameters())
                     {
-                        String attributeKey = keys.next();
-                        Object attributeValue = attributes.get(attributeKey);
-                        if (attributeValue instanceof StringBuilder)
-                        {
-                            // for ISML expressions
-                            result.print("new TagParameter(\"" + attributeKey + "\"," + attributeValue.toString() + ")");
-                        }
-                        else
+                        printStaticTagParameters(result, attributes, context, "parameters");
+                    }
+                    else
+                    {
+                        result.print("TagParameter[] parameters = new TagParameter[] {\n");
+                        Iterator<String> keys = attributes.keySet().iterator();
+                        while(keys.hasNext())
                         {
-                            // for simple attributes
-                            result.print("new TagParameter(\"" + attributeKey + "\",\"" + attributeValue + "\")");
-                        }
+                            String attributeKey = keys.next();
+                            Object attributeValue = attributes.get(attributeKey);
+                            if (attributeValue instanceof StringBuilder)
+                            {
+                                // for ISML expressions
+                                result.print("new TagParameter(\"" + attributeKey + "\"," + attributeValue.toString() + ")");
+                            }
+                            else
+                            {
+                                // for simple attributes
+                                result.print("new TagParameter(\"" + attributeKey + "\",\"" + attributeValue + "\")");
+                            }
 
-                        if (keys.hasNext())
-                        {
-                            result.print(",\n");
+                            if (keys.hasNext())
+                            {
+                                result.print(",\n");
+                            }
                         }
+                        result.print("};");
                     }
-                    result.print("};");
 
-                    // create the renderer
-                    result.print("\nCustomTag renderer = new CustomTag() {{\n");
-                    result.print("isStrict = true;\n");
-                    result.print("tagName = \"FileBundleRenderer\";\n");
-                    result.print("}\n");
-                    result.print("public void processOpenTag(PageContext pageContext, com.intershop.beehive.core.capi.request.ServletResponse response, AbstractTemplate template, int line) throws IOException, ServletException {\n");
-                    result.print("ServletContext application = pageContext.getServletContext();\n");
-                    result.print("ServletConfig config = pageContext.getServletConfig();\n");
-                    result.print("JspWriter out = pageContext.getOut();\n");
-                    result.print("Object page = template;\n");
-                    result.print("TemplateExecutionConfig context = getTemplateExecutionConfig();");
+                    // create the renderer, named renderers are declared by
+                    // the code generator after their body is known
+                    if (!context.isNamedRenderers())
+                    {
+                        result.print(RENDERER_START);
+                    }
 
-                    nestingTable.add(tag);
+                    nestingTable.push(tag);
 
                     break;
                 }
@@ -1696,7 +1832,10 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                                         "Nesting Error: There is no corresponding ISRENDER for this /ISRENDER.\n");
                     }
 
-                    result.print("\n}};\n");
+                    if (!context.isNamedRenderers())
+                    {
+                        result.print(RENDERER_END);
+                    }
 
                     // adding resources aren't necessary if the target resources
                     // are cached
@@ -1760,7 +1899,7 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                     }
                     result.print("});");
 
-                    nestingTable.add(tag);
+                    nestingTable.push(tag);
 
                     break;
                 }
@@ -1967,7 +2106,7 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                     // Add the hidden field for the WACSRF tag
                     result.print("out.print(context.prepareWACSRFTag(actionValue" + varId + ", site" + varId + ", serverGroup" + varId + "," + secure.booleanValue() + "));");
                     
-                    nestingTable.add(tag);
+                    nestingTable.push(tag);
                     break;
                 }
                 case ISFORM_END:
@@ -2351,7 +2490,22 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                     isInISPlacement(nestingTable, "ISX");
 
                     String name = tag.toString().substring(3).toLowerCase();
-                    result.print("processOpenTag(response, pageContext, \"" + name + "\", new TagParameter[] {\n");
+
+                    // tags that are bound at compile time are passed as module descriptor
+                    CustomTagModule module = context.getCustomTagModule(name);
+                    String target = (module != null) ? context.declareConstant("_CUSTOM_TAG_", CUSTOM_TAG_MODULE_CLASS,
+                                    getCustomTagModuleCode(module)) : '\"' + name + '\"';
+
+                    if (context.isStaticTagParameters())
+                    {
+                        result.print('{');
+                        printStaticTagParameters(result, attributes, context, "_tagParameters");
+                        result.print("processOpenTag(response, pageContext, " + target + ", _tagParameters, " + tag.beginLine + ");");
+                        result.print('}');
+                        break;
+                    }
+
+                    result.print("processOpenTag(response, pageContext, " + target + ", new TagParameter[] {\n");
 
                     Iterator<String> keys = attributes.keySet().iterator();
                     while(keys.hasNext())
@@ -2432,7 +2586,7 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
                     result.print("out.print(context.prepareWAPlacement(" + placeholderID + "));");
 
                     // add ISPLACEMENT to nesting table
-                    nestingTable.add(tag);
+                    nestingTable.push(tag);
 
                     break;
                 }
@@ -2551,7 +2705,95 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
      * @param token
      * @throws ParseException
      */
-    private static void isInISPlacement(List<Token> nestingTable, String token) throws ParseException
+    /**
+     * Returns the declaration of a named renderer class for the body of an
+     * ISRENDER tag. The class is an inner class, because the code of the body
+     * uses the methods of the template.
+     *
+     * @param name  the name of the class
+     * @param code  the Java code of the body
+     * @return  the declaration
+     */
+
+    static String getRendererClass(String name, String code)
+    {
+        return "private final class " + name + " extends CustomTag {\n"
+                        + name + "() {\n"
+                        + "isStrict = true;\n"
+                        + "tagName = \"FileBundleRenderer\";\n"
+                        + "}\n"
+                        + RENDERER_METHOD_START + '\n'
+                        + "boolean _boolean_result=false;\n"
+                        + code
+                        + "}}";
+    }
+
+    /**
+     * Returns the code that creates the descriptor of a custom tag.
+     */
+
+    private static String getCustomTagModuleCode(CustomTagModule module)
+    {
+        return "new " + CUSTOM_TAG_MODULE_CLASS + "(\"" + module.getName() + "\", \"" + module.getTemplate() + "\", "
+                        + module.isStrict() + ", " + getStringArrayCode(module.getAttributes()) + ", "
+                        + getStringArrayCode(module.getReturnAttributes()) + ")";
+    }
+
+    private static String getStringArrayCode(String[] values)
+    {
+        return (values != null) ? "new String[]{\"" + String.join("\",\"", values) + "\"}" : "null";
+    }
+
+    /**
+     * Prints the declaration of a local variable with the parameters of a
+     * custom tag. The constant parameters are declared once as a static array
+     * of the template; if there are expression parameters, the array is copied
+     * and the expression parameters are created in the copy.
+     *
+     * @param result        the output writer
+     * @param attributes    the attributes of the tag, expressions as
+     *                      <code>StringBuilder</code>
+     * @param context       the context that declares the static array
+     * @param variable      the name of the local variable
+     * @throws IOException  if writing failed
+     */
+
+    private static void printStaticTagParameters(CompactingWriter result, Map<String, Object> attributes,
+                    TagCompilationContext context, String variable) throws IOException
+    {
+        StringBuilder constants = new StringBuilder("new TagParameter[] {");
+        StringBuilder expressions = new StringBuilder();
+        int index = 0;
+
+        for (Map.Entry<String, Object> attribute : attributes.entrySet())
+        {
+            if (index > 0)
+            {
+                constants.append(',');
+            }
+
+            if (attribute.getValue() instanceof StringBuilder)
+            {
+                // for ISML expressions
+                constants.append("null");
+                expressions.append(variable + '[' + index + "]=new TagParameter(\"" + attribute.getKey() + "\","
+                                + attribute.getValue() + ");");
+            }
+            else
+            {
+                // for simple attributes
+                constants.append("new TagParameter(\"" + attribute.getKey() + "\",\"" + attribute.getValue() + "\")");
+            }
+            index++;
+        }
+        constants.append('}');
+
+        String field = context.declareConstant("_TAG_PARAMETERS_", "TagParameter[]", constants.toString());
+        result.print("TagParameter[] " + variable + " = " + field + ((expressions.length() > 0) ? ".clone();" : ";"));
+        result.print(expressions.toString());
+    }
+
+    private static void isInISPlacement(NestingStack nestingTable, String token) throws ParseException
     {
         if (containsNestingTag(nestingTable, ISPLACEMENT))
         {
@@ -2691,16 +2933,9 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
      *         <code>false</code> otherwise
      */
 
-    private static boolean checkNestingTopTag(List<Token> nestingTable, int aTag)
+    private static boolean checkNestingTopTag(NestingStack nestingTable, int aTag)
     {
-        if (nestingTable.isEmpty())
-        {
-            return false;
-        }
-
-        Token last = nestingTable.get(nestingTable.size()-1);
-
-        return last.kind == aTag;
+        return nestingTable.isTop(aTag);
     }
 
     /**
@@ -2713,21 +2948,9 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
      *            The tag to be checked
      * @return <code>True</code> if the tag is part of the nesting stack
      */
-    private static boolean containsNestingTag(List<Token> nestingTable, int aTag)
+    private static boolean containsNestingTag(NestingStack nestingTable, int aTag)
     {
-        boolean result = false;
-
-        // loop through the nesting stack backwards
-        for(int i = (nestingTable.size() - 1); i >= 0; i--)
-        {
-            if (nestingTable.get(i).kind == aTag)
-            {
-                result = true;
-                break;
-            }
-        }
-
-        return result;
+        return nestingTable.contains(aTag);
     }
 
     /**
@@ -2735,15 +2958,9 @@ public class ISMLTagCompiler implements ISMLtoJSPcompilerConstants
      * @param nestingTable
      *            Container of flow-control tags
      */
-    private static void removeNestingTopTag(List<?> nestingTable) throws ParseException
+    private static void removeNestingTopTag(NestingStack nestingTable) throws ParseException
     {
-        int size = nestingTable.size();
-        if (size > 0)
-        {
-            // clear nesting table
-            nestingTable.remove(size - 1);
-        }
-        else
+        if (nestingTable.pop() == null)
         {
             throw new ParseException("Try to remove tag from empty nesting table.");
         }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parsed ISML template. It is the result of the parser and the input of the
+ * code generation, and it doesn't depend on the output format. Parsed
+ * templates are immutable and may be cached and compiled several times.
+ *
+ * @see ISMLtoJSPcompiler#parseTemplate
+ * @see TemplateCodeGenerator
+ */
+
+public class ISMLTemplate
+{
+    /**
+     * The name of the template source, used for error messages.
+     */
+
+    private final String name;
+
+    /**
+     * The nodes of the template in document order.
+     */
+
+    private final List<TemplateNode> nodes;
+
+    /**
+     * The Java member declarations the nodes rely on.
+     */
+
+    private final List<String> declarations;
+
+    /**
+     * The constructor.
+     *
+     * @param name      the name of the template source
+     * @param nodes     the nodes of the template in document order, the list
+     *                  must not be changed afterwards
+     */
+
+    public ISMLTemplate(String name, List<TemplateNode> nodes)
+    {
+        this(name, nodes, Collections.<String>emptyList());
+    }
+
+    /**
+     * The constructor.
+     *
+     * @param name          the name of the template source
+     * @param nodes         the nodes of the template in document order, the
+     *                      list must not be changed afterwards
+     * @param declarations  the Java member declarations (fields, methods) of
+     *                      the compiled template that the code of the nodes
+     *                      relies on, the list must not be changed afterwards
+     */
+
+    public ISMLTemplate(String name, List<TemplateNode> nodes, List<String> declarations)
+    {
+        this.name = name;
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.declarations = Collections.unmodifiableList(declarations);
+    }
+
+    /**
+     * @return  the name of the template source
+     */
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return  the unmodifiable list of nodes in document order
+     */
+
+    public List<TemplateNode> getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * @return  the unmodifiable list of Java member declarations
+     */
+
+    public List<String> getDeclarations()
+    {
+        return declarations;
+    }
+}
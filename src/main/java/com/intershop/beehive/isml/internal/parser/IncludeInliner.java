@@ -0,0 +1,441 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replaces ISINCLUDE tags of templates whose name is known at compile time by
+ * the content of the included template. An inlined template is rendered
+ * without flushing the output and without the template lookup and dispatch of
+ * the include at runtime.
+ *
+ * Only includes with a literal <code>template</code> attribute and no other
+ * attribute are inlined, if the {@link TemplateLoader} resolves the name to
+ * exactly one template. The included template must behave the same as part
+ * of the including template: it must not have an ISCONTENT tag besides the
+ * one the compiler adds to templates without one (the loader returns
+ * <code>null</code> for templates with an ISCONTENT tag), no ISCACHE, ISCACHEKEY,
+ * ISREDIRECT or ISMODULE tags, no JSP code, and its blocks must be complete.
+ * The including template must encode its output as HTML, like included
+ * templates without ISCONTENT tag. If it compacts its content, the content of
+ * the included template is passed through unchanged.
+ *
+ * Included templates are inlined recursively. An include of a template that
+ * is already being inlined stays an include, and so does an include that
+ * would exceed the size budget of the template. The ISINCLUDE tag is kept as
+ * {@link SuppressedNode}, so the code generator still validates it, and the
+ * inlined nodes get the position of the tag. The inliner must be applied to
+ * the template before the other optimizations, which rely on the variables
+ * of the complete template.
+ */
+
+public class IncludeInliner implements ISMLtoJSPcompilerConstants
+{
+    /**
+     * The default budget of the inlined content of a template in characters.
+     */
+
+    public static final int DEFAULT_BUDGET = 16384;
+
+    /**
+     * Resolves and parses the templates that are inlined.
+     */
+
+    public interface TemplateLoader
+    {
+        /**
+         * Resolves the name of an included template.
+         *
+         * @param includer  the file of the including template
+         * @param name      the name of the included template
+         * @return  the file of the included template, or <code>null</code>
+         *          if the name doesn't resolve to exactly one template
+         */
+
+        File resolve(File includer, String name);
+
+        /**
+         * Parses an included template. The template must be parsed without
+         * further optimizations.
+         *
+         * @param file      the file of the template
+         * @return  the parsed template, or <code>null</code> if it can't be
+         *          parsed or has its own ISCONTENT tag
+         */
+
+        ISMLTemplate load(File file);
+    }
+
+    /**
+     * The tags that start a block, and the tags that end them at the same
+     * index.
+     */
+
+    private static final int[] BLOCK_START = { ISIF, ISLOOP, ISFORM, ISRENDER, ISPLACEMENT, ISFILEBUNDLE };
+    private static final int[] BLOCK_END = { ISIF_END, ISLOOP_END, ISFORM_END, ISRENDER_END, ISPLACEMENT_END, ISFILEBUNDLE_END };
+
+    /**
+     * The loader of the included templates.
+     */
+
+    private final TemplateLoader loader;
+
+    /**
+     * The budget of the inlined content of a template in characters.
+     */
+
+    private final int budget;
+
+    /**
+     * The files of the templates inlined by the last call of
+     * {@link #apply(ISMLTemplate, File)}.
+     */
+
+    private final Set<File> dependencies = new LinkedHashSet<File>();
+
+    /**
+     * The size of the content inlined so far.
+     */
+
+    private int size;
+
+    /**
+     * The constructor.
+     *
+     * @param loader    the loader of the included templates
+     * @param budget    the maximum size of the inlined content of a
+     *                  template in characters
+     */
+
+    public IncludeInliner(TemplateLoader loader, int budget)
+    {
+        this.loader = loader;
+        this.budget = budget;
+    }
+
+    /**
+     * Inlines the included templates of a template.
+     *
+     * @param template  the parsed template
+     * @param file      the file of the template
+     * @return  the template with inlined includes, or the given template if
+     *          nothing was inlined
+     */
+
+    public ISMLTemplate apply(ISMLTemplate template, File file)
+    {
+        dependencies.clear();
+        size = 0;
+
+        Boolean compact = getCompactMode(template.getNodes());
+        if (compact == null)
+        {
+            return template;
+        }
+
+        List<TemplateNode> result = new ArrayList<TemplateNode>(template.getNodes().size());
+        Deque<File> stack = new ArrayDeque<File>();
+        stack.push(file);
+
+        if (!inline(template.getNodes(), stack, compact.booleanValue(), null, result))
+        {
+            return template;
+        }
+        return new ISMLTemplate(template.getName(), result, template.getDeclarations());
+    }
+
+    /**
+     * @return  the files of the templates that were inlined by the last call
+     *          of {@link #apply(ISMLTemplate, File)}
+     */
+
+    public Set<File> getDependencies()
+    {
+        return Collections.unmodifiableSet(dependencies);
+    }
+
+    /**
+     * Copies nodes and inlines the includes among them.
+     *
+     * @param nodes     the nodes
+     * @param stack     the files of the templates being inlined, the
+     *                  including template is the last one
+     * @param compact   <code>true</code> if the including template compacts
+     *                  its content
+     * @param include   the ISINCLUDE tag in the including template whose
+     *                  position the nodes get, <code>null</code> for the
+     *                  nodes of the including template itself
+     * @param result    the list the nodes are added to
+     * @return  <code>true</code> if an include was inlined
+     */
+
+    private boolean inline(List<TemplateNode> nodes, Deque<File> stack, boolean compact, TemplateNode include,
+                           List<TemplateNode> result)
+    {
+        boolean changed = false;
+
+        for (TemplateNode node : nodes)
+        {
+            if (include != null && isTag(node, ISCONTENT))
+            {
+                // the ISCONTENT tag the compiler adds to templates without one
+                continue;
+            }
+
+            TemplateNode copy = (include != null) ? relocate(node, include, compact) : node;
+            File file = isTag(node, ISINCLUDE) ? resolve((TagNode)node, stack) : null;
+            ISMLTemplate included = (file != null) ? load(file) : null;
+
+            if (included == null)
+            {
+                result.add(copy);
+                continue;
+            }
+
+            result.add(new SuppressedNode(copy));
+            stack.push(file);
+            inline(included.getNodes(), stack, compact, (include != null) ? include : node, result);
+            stack.pop();
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Resolves the template of an include with a literal template name.
+     *
+     * @return  the file of the template, or <code>null</code> if the include
+     *          can't be inlined or would include a template that is already
+     *          being inlined
+     */
+
+    private File resolve(TagNode include, Deque<File> stack)
+    {
+        if (include.getAttributes().size() != 1 || !include.hasValueAttribute(ATT_TEMPLATE))
+        {
+            return null;
+        }
+
+        File file = loader.resolve(stack.peekLast(), include.getValueAttribute(ATT_TEMPLATE));
+        return (file == null || stack.contains(file)) ? null : file;
+    }
+
+    /**
+     * Loads the template of an include if it can be inlined and fits into
+     * the budget.
+     *
+     * @return  the template or <code>null</code>
+     */
+
+    private ISMLTemplate load(File file)
+    {
+        ISMLTemplate template = loader.load(file);
+        if (template == null || !isInlinable(template.getNodes()))
+        {
+            return null;
+        }
+
+        int templateSize = 0;
+        for (TemplateNode node : template.getNodes())
+        {
+            templateSize += isTag(node, ISCONTENT) ? 0 : getSize(node);
+        }
+        if (size + templateSize > budget)
+        {
+            return null;
+        }
+
+        size += templateSize;
+        dependencies.add(file);
+        return template;
+    }
+
+    /**
+     * Returns whether a template compacts its content, if it encodes its
+     * output as HTML.
+     *
+     * @param nodes     the nodes of the template
+     * @return  the compact flag of the first ISCONTENT tag, or
+     *          <code>null</code> if the template uses another encoding
+     */
+
+    private static Boolean getCompactMode(List<TemplateNode> nodes)
+    {
+        for (TemplateNode node : nodes)
+        {
+            if (isTag(node, ISCONTENT))
+            {
+                TagNode content = (TagNode)node;
+                String type = content.getValueAttribute(ATT_TYPE);
+                String encode = content.getValueAttribute(ATT_ENCODE);
+
+                if (content.hasExpressionAttribute(ATT_TYPE) || content.hasExpressionAttribute(ATT_ENCODE)
+                                || (type != null && !"text/html".equalsIgnoreCase(type.trim()))
+                                || (encode != null && !"on".equals(encode) && !"html".equals(encode)))
+                {
+                    return null;
+                }
+                return Boolean.valueOf("true".equals(content.getValueAttribute(ATT_COMPACT)));
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * Checks whether the nodes of a template behave the same if they are
+     * part of another template.
+     */
+
+    private static boolean isInlinable(List<TemplateNode> nodes)
+    {
+        int[] depth = new int[BLOCK_START.length];
+        int loops = 0, contents = 0;
+
+        for (TemplateNode node : nodes)
+        {
+            if (node instanceof ScriptletNode)
+            {
+                return false;
+            }
+
+            if (node instanceof TextNode)
+            {
+                TextNode text = (TextNode)node;
+                if (!text.isCompactable() && text.getText().contains("<%"))
+                {
+                    return false;
+                }
+                continue;
+            }
+
+            if (!(node instanceof TagNode))
+            {
+                continue;
+            }
+
+            int kind = ((TagNode)node).getKind();
+            if (kind == ISCONTENT && ++contents > 1)
+            {
+                return false;
+            }
+            if (kind == ISCACHE || kind == ISCACHEKEY || kind == ISREDIRECT || kind == ISMODULE)
+            {
+                return false;
+            }
+
+            // breaking out of a loop of the including template
+            if ((kind == ISBREAK || kind == ISNEXT) && loops == 0)
+            {
+                return false;
+            }
+            loops += (kind == ISLOOP) ? 1 : (kind == ISLOOP_END) ? -1 : 0;
+
+            for (int i = 0; i < BLOCK_START.length; i++)
+            {
+                if (kind == BLOCK_START[i])
+                {
+                    depth[i]++;
+                }
+                else if (kind == BLOCK_END[i] && --depth[i] < 0)
+                {
+                    return false;
+                }
+            }
+        }
+
+        for (int d : depth)
+        {
+            if (d != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a node of an included template with the position of the
+     * ISINCLUDE tag.
+     */
+
+    private static TemplateNode relocate(TemplateNode node, TemplateNode include, boolean compact)
+    {
+        int line = include.getLine(), column = include.getColumn();
+
+        if (node instanceof TextNode)
+        {
+            // the included template doesn't compact its content
+            TextNode text = (TextNode)node;
+            return new TextNode(text.getText(), text.isCompactable() && !compact, text.getElOffsets(), line, column);
+        }
+        if (node instanceof ExpressionNode)
+        {
+            ExpressionNode expression = (ExpressionNode)node;
+            return new ExpressionNode(expression.getExpression(), expression.usesEl(), expression.usesExistsTemplate(),
+                                      line, column);
+        }
+        if (node instanceof TagNode)
+        {
+            TagNode tag = (TagNode)node;
+            Token token = new Token(tag.getKind(), tag.getTag().image);
+            token.beginLine = token.endLine = line;
+            token.beginColumn = token.endColumn = column;
+            return tag.withAttributes(token, tag.getAttributes());
+        }
+        return node;
+    }
+
+    /**
+     * Returns the size of the content of a node in characters.
+     */
+
+    private static int getSize(TemplateNode node)
+    {
+        if (node instanceof TextNode)
+        {
+            return ((TextNode)node).getText().length();
+        }
+        if (node instanceof ExpressionNode)
+        {
+            return ((ExpressionNode)node).getExpression().toString().length();
+        }
+        if (node instanceof TagNode)
+        {
+            TagNode tag = (TagNode)node;
+            int result = tag.getTag().image.length();
+            for (TagAttribute attribute : tag.getAttributes())
+            {
+                result += attribute.toString().length();
+            }
+            return result;
+        }
+        return 0;
+    }
+
+    private static boolean isTag(TemplateNode node, int kind)
+    {
+        return node instanceof TagNode && ((TagNode)node).getKind() == kind;
+    }
+}
@@ -0,0 +1,1070 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.intershop.beehive.isml.capi.CustomTagRegistry;
+import com.intershop.beehive.isml.capi.ISMLTemplateConstants;
+
+/**
+ * The default code generator that translates a parsed ISML template into a
+ * JSP page extending <code>AbstractTemplate</code>.
+ */
+
+public class JspCodeGenerator implements TemplateCodeGenerator
+{
+    /**
+     * The prefix of the names of renderer classes.
+     */
+
+    private static final String RENDERER_PREFIX = "_FileBundleRenderer";
+
+    /**
+     * The prefix of the names of renderer fields.
+     */
+
+    private static final String RENDERER_FIELD_PREFIX = "_fileBundleRenderer";
+
+    /**
+     * The class of the profiling probes.
+     */
+
+    private static final String PROBE_CLASS = "com.intershop.beehive.isml.capi.TemplateProbe";
+
+    /**
+     * The flag whether static content is written as pre-encoded bytes.
+     */
+
+    private boolean encodeStaticText = false;
+
+    /**
+     * The shared blob for static content, <code>null</code> if the content is
+     * declared in the page.
+     */
+
+    private StaticTextStore staticTextStore = null;
+
+    /**
+     * The flag whether large service methods are split into helper methods.
+     */
+
+    private boolean splitServiceMethod = false;
+
+    /**
+     * The limit of the estimated size of the service method.
+     */
+
+    private int serviceMethodSizeLimit = ServiceMethodSplitter.DEFAULT_SIZE_LIMIT;
+
+    /**
+     * The estimated size of the service method of the last generated page.
+     */
+
+    private int serviceMethodSize = 0;
+
+    /**
+     * The code generation options of the ISML tags.
+     */
+
+    private final TagCompilationContext tagContext = new TagCompilationContext();
+
+    /**
+     * The flag whether the page imports only the packages and types it uses.
+     */
+
+    private boolean minimalImports = false;
+
+    /**
+     * The class the pages extend.
+     */
+
+    private String baseClass = ISMLTemplateConstants.TEMPLATE_BASE_CLASS_NAME;
+
+    /**
+     * The flag whether the base class provides the prologue and epilogue
+     * hooks.
+     */
+
+    private boolean templateHooks = false;
+
+    /**
+     * The flag whether a source map of the generated code is created.
+     */
+
+    private boolean sourceMap = false;
+
+    /**
+     * The source map of the last generated page, <code>null</code> if source
+     * maps are disabled.
+     */
+
+    private String smap = null;
+
+    /**
+     * The flag whether expensive constructs are wrapped with profiling probes.
+     */
+
+    private boolean profilingProbes = false;
+
+    /**
+     * The path of the template in the template source directory, the name of
+     * the template if it is unknown.
+     */
+
+    private String templatePath = null;
+
+    /**
+     * Enables writing static content as pre-encoded bytes.
+     *
+     * @param encodeStaticText  <code>true</code> to write static content with
+     *                          <code>writeStaticBytes</code>
+     * @see StaticTextWriter
+     */
+
+    public void setEncodeStaticText(boolean encodeStaticText)
+    {
+        this.encodeStaticText = encodeStaticText;
+    }
+
+    /**
+     * Sets the shared blob for static content. Static content is written as
+     * bytes if a blob is set, even if static text encoding is not enabled.
+     *
+     * @param store the blob of the template tree, <code>null</code> to
+     *              declare the content in the page
+     */
+
+    public void setStaticTextStore(StaticTextStore store)
+    {
+        this.staticTextStore = store;
+    }
+
+    /**
+     * Enables splitting the service method. If the estimated bytecode size of
+     * the service method exceeds the limit, parts of it are moved into helper
+     * methods.
+     *
+     * @param splitServiceMethod    <code>true</code> to split large service
+     *                              methods
+     * @see ServiceMethodSplitter
+     */
+
+    public void setSplitServiceMethod(boolean splitServiceMethod)
+    {
+        this.splitServiceMethod = splitServiceMethod;
+    }
+
+    /**
+     * Sets the limit of the estimated bytecode size of the service method.
+     *
+     * @param limit the limit in bytes
+     */
+
+    public void setServiceMethodSizeLimit(int limit)
+    {
+        this.serviceMethodSizeLimit = limit;
+    }
+
+    /**
+     * @return  the limit of the estimated bytecode size of the service method
+     */
+
+    public int getServiceMethodSizeLimit()
+    {
+        return serviceMethodSizeLimit;
+    }
+
+    /**
+     * Enables the compact code generation for ISML tags, which delegates the
+     * boilerplate code of tags to helper methods of the template base class.
+     *
+     * @param compactTagCode    <code>true</code> to call helper methods
+     * @see TagCompilationContext
+     */
+
+    public void setCompactTagCode(boolean compactTagCode)
+    {
+        tagContext.setCompactTagCode(compactTagCode);
+    }
+
+    /**
+     * Enables the precomputation of the expiry of ISCACHE tags with constant
+     * attributes.
+     *
+     * @param precomputeCacheExpiry <code>true</code> to precompute the expiry
+     * @see TagCompilationContext
+     */
+
+    public void setPrecomputeCacheExpiry(boolean precomputeCacheExpiry)
+    {
+        tagContext.setPrecomputeCacheExpiry(precomputeCacheExpiry);
+    }
+
+    /**
+     * Enables the computation of the imports of a page from the types its
+     * Java code uses.
+     *
+     * @param minimalImports    <code>true</code> to import only used packages
+     *                          and types
+     * @see PageImports
+     */
+
+    public void setMinimalImports(boolean minimalImports)
+    {
+        this.minimalImports = minimalImports;
+    }
+
+    /**
+     * Sets the class the pages extend.
+     *
+     * @param baseClass the fully qualified class name, <code>null</code> for
+     *                  the default template base class
+     */
+
+    public void setBaseClass(String baseClass)
+    {
+        this.baseClass = (baseClass != null) ? baseClass : ISMLTemplateConstants.TEMPLATE_BASE_CLASS_NAME;
+    }
+
+    /**
+     * Enables the prologue and epilogue hooks of the base class. The pages
+     * call <code>startTemplate(JspWriter out, TemplateExecutionConfig context)</code>,
+     * which has to return the wrapped writer after it created the page
+     * configuration and printed the header, and
+     * <code>endTemplate(JspWriter out)</code>, which has to print the footer.
+     *
+     * @param templateHooks <code>true</code> to call the hooks instead of
+     *                      inlining the prologue and epilogue
+     */
+
+    public void setTemplateHooks(boolean templateHooks)
+    {
+        this.templateHooks = templateHooks;
+    }
+
+    /**
+     * Enables the source map of the generated code.
+     *
+     * @param sourceMap <code>true</code> to map the generated lines to the
+     *                  lines of the ISML source
+     * @see SourceMap
+     */
+
+    public void setSourceMap(boolean sourceMap)
+    {
+        this.sourceMap = sourceMap;
+    }
+
+    /**
+     * Returns the JSR-45 source map of the last generated page.
+     *
+     * @return  the SMAP, or <code>null</code> if source maps are disabled
+     */
+
+    public String getSourceMap()
+    {
+        return smap;
+    }
+
+    /**
+     * Enables the profiling probes. The code of ISINCLUDE, ISPIPELINE, ISLOOP,
+     * ISTEXT and custom tags, and of expressions that build URLs or look up
+     * localized texts, is wrapped with a {@link com.intershop.beehive.isml.capi.TemplateProbe}.
+     *
+     * @param profilingProbes   <code>true</code> to measure expensive
+     *                          constructs
+     */
+
+    public void setProfilingProbes(boolean profilingProbes)
+    {
+        this.profilingProbes = profilingProbes;
+    }
+
+    /**
+     * Sets the path of the next template in the template source directory,
+     * like <code>default/inc/Header.isml</code>. The profiling probes report
+     * the path, templates of different directories can have the same name.
+     *
+     * @param templatePath  the path with <code>/</code> as separator,
+     *                      <code>null</code> to report the name of the
+     *                      template
+     */
+
+    public void setTemplatePath(String templatePath)
+    {
+        this.templatePath = templatePath;
+    }
+
+    /**
+     * Enables static parameter arrays for custom tags.
+     *
+     * @param staticTagParameters   <code>true</code> to declare constant
+     *                              parameters as static fields
+     * @see TagCompilationContext
+     */
+
+    public void setStaticTagParameters(boolean staticTagParameters)
+    {
+        tagContext.setStaticTagParameters(staticTagParameters);
+    }
+
+    /**
+     * Enables named renderer classes for ISRENDER tags.
+     *
+     * @param namedRenderers    <code>true</code> to declare named renderer
+     *                          classes
+     * @see TagCompilationContext
+     */
+
+    public void setNamedRenderers(boolean namedRenderers)
+    {
+        tagContext.setNamedRenderers(namedRenderers);
+    }
+
+    /**
+     * Sets the custom tags that are bound at compile time.
+     *
+     * @param registry  the registry, <code>null</code> to resolve all custom
+     *                  tags at runtime
+     * @see TagCompilationContext
+     */
+
+    public void setCustomTagRegistry(CustomTagRegistry registry)
+    {
+        tagContext.setCustomTagRegistry(registry);
+    }
+
+    /**
+     * Returns the estimated bytecode size of the service method of the last
+     * generated page, after it was split.
+     *
+     * @return  the estimated size in bytes
+     */
+
+    public int getServiceMethodSize()
+    {
+        return serviceMethodSize;
+    }
+
+    /**
+     * Sets the estimated bytecode size of the service method of the generated
+     * page.
+     *
+     * @param size  the estimated size in bytes
+     */
+
+    protected void setServiceMethodSize(int size)
+    {
+        this.serviceMethodSize = size;
+    }
+
+    /**
+     * @return  <code>true</code> if large service methods are split into
+     *          helper methods
+     */
+
+    protected boolean isSplitServiceMethod()
+    {
+        return splitServiceMethod;
+    }
+
+    /**
+     * @return  <code>true</code> if the page imports only the packages and
+     *          types it uses
+     */
+
+    protected boolean isMinimalImports()
+    {
+        return minimalImports;
+    }
+
+    /**
+     * @return  the fully qualified name of the class the pages extend
+     */
+
+    protected String getBaseClass()
+    {
+        return baseClass;
+    }
+
+    /**
+     * @return  the code generation options of the ISML tags
+     */
+
+    protected TagCompilationContext getTagContext()
+    {
+        return tagContext;
+    }
+
+    @Override
+    public void generate(ISMLTemplate template, OutputStreamWriter out) throws IOException, ParseException
+    {
+        if (!sourceMap)
+        {
+            generate(template, out, out.getEncoding());
+            return;
+        }
+
+        StringWriter page = new StringWriter();
+        generate(template, page, out.getEncoding());
+
+        String name = template.getName();
+        if (name.endsWith(ISMLTemplateConstants.TEMPLATE_EXTENSION))
+        {
+            name = name.substring(0, name.length() - ISMLTemplateConstants.TEMPLATE_EXTENSION.length());
+        }
+        out.write(mapSource(template, page.toString(), name + ISMLTemplateConstants.TEMPLATE_PAGECOMPILE_EXTENSION));
+        out.flush();
+    }
+
+    /**
+     * Removes the source map markers from the generated code and keeps the
+     * source map.
+     *
+     * @param template      the parsed template
+     * @param code          the generated code
+     * @param outputName    the file name of the generated code
+     * @return  the code without markers
+     */
+
+    protected String mapSource(ISMLTemplate template, String code, String outputName)
+    {
+        if (!sourceMap)
+        {
+            return code;
+        }
+
+        SourceMap map = new SourceMap(code, outputName, template.getName());
+        smap = map.getSmap();
+        return map.getCode();
+    }
+
+    /**
+     * Generates the JSP page of a parsed template.
+     *
+     * @param template  the parsed template
+     * @param out       the output writer
+     * @param encoding  the encoding of the page
+     * @throws IOException      if writing the output failed
+     * @throws ParseException   if the template contains invalid ISML tags
+     */
+
+    protected void generate(ISMLTemplate template, Writer out, String encoding) throws IOException, ParseException
+    {
+        Writer buffered = new BufferedWriter(out, ISMLTemplateConstants.DEFAULT_TEMPLATE_BUFFERSIZE);
+        ServiceMethodSplitter page = new ServiceMethodSplitter();
+        boolean tagLibraries = hasTagLibraries(template);
+        CompactingWriter result = ((encodeStaticText || staticTextStore != null) && !tagLibraries)
+                        ? new StaticTextWriter(page, encoding, staticTextStore)
+                        : new CompactingWriter(page, encoding);
+
+        printPage(template, page, result);
+
+        if (minimalImports)
+        {
+            printImports(buffered, PageImports.getImports(page.getContent()));
+        }
+
+        // custom JSP tags can't be moved into helper methods
+        serviceMethodSize = page.writeTo(buffered, splitServiceMethod && !tagLibraries, serviceMethodSizeLimit);
+        buffered.flush();
+    }
+
+    /**
+     * Prints the prologue, the nodes, the epilogue and the declarations of a
+     * parsed template.
+     *
+     * @param template  the parsed template
+     * @param page      the page, a new chunk is started before each node
+     *                  outside of blocks
+     * @param result    the output writer of the page
+     * @throws IOException      if writing the output failed
+     * @throws ParseException   if the template contains invalid ISML tags
+     */
+
+    protected void printPage(ISMLTemplate template, ServiceMethodSplitter page, CompactingWriter result)
+                    throws IOException, ParseException
+    {
+        tagContext.clearDeclarations();
+        smap = null;
+        printPrologue(result);
+        printDeclarations(result, template.getDeclarations());
+
+        /* stack to test correct nesting and ending of IF's and LOOP's */
+        NestingStack nestingTable = new NestingStack();
+        NodeWriter writer = createNodeWriter(result, nestingTable);
+        boolean renderer = false;
+        int renderers = 0;
+
+        // the probes of the open ISLOOP tags
+        Deque<String> loopProbes = new ArrayDeque<String>();
+        int probes = 0;
+
+        for (TemplateNode node : template.getNodes())
+        {
+            if (renderer && isTag(node, ISMLtoJSPcompilerConstants.ISRENDER_END))
+            {
+                result.flush();
+                printRenderer(result, page.endMember(), ++renderers);
+                renderer = false;
+            }
+            if (nestingTable.size() == 0 && !(node instanceof TextNode))
+            {
+                // the page can be split before tags outside of blocks
+                page.startChunk(true);
+            }
+            if (sourceMap)
+            {
+                result.print(SourceMap.getMarker(node.getLine()));
+            }
+            String construct = profilingProbes ? getProfiledConstruct(node) : null;
+            String probeEnd = null;
+            if (construct != null)
+            {
+                probeEnd = printProbeStart(result, template, node.getLine(), construct, ++probes);
+            }
+            if (probeEnd != null && isTag(node, ISMLtoJSPcompilerConstants.ISLOOP))
+            {
+                // the probe ends with the loop
+                loopProbes.push(probeEnd);
+                probeEnd = null;
+            }
+            node.accept(writer);
+            if (profilingProbes && isTag(node, ISMLtoJSPcompilerConstants.ISLOOP_END) && !loopProbes.isEmpty())
+            {
+                probeEnd = loopProbes.pop();
+            }
+            if (probeEnd != null)
+            {
+                result.print(ISMLtoJSPcompiler.SCRIPTING_START);
+                result.print(probeEnd);
+                result.print(ISMLtoJSPcompiler.SCRIPTING_END);
+            }
+            if (tagContext.isNamedRenderers() && isTag(node, ISMLtoJSPcompilerConstants.ISRENDER))
+            {
+                // collect the body of the renderer
+                result.flush();
+                page.startMember();
+                renderer = true;
+            }
+        }
+
+        if (nestingTable.size()>0)
+        {
+            throw new ParseException("Error in template " + template.getName() + " : 1 or more ISIF or ISLOOP statement without </ISIF> or </ISLOOP> end tag.");
+        }
+
+        page.startChunk(false);
+        if (sourceMap)
+        {
+            result.print(SourceMap.getMarker(0));
+        }
+        printEpilogue(result);
+        printDeclarations(result, tagContext.getDeclarations());
+        if (result instanceof StaticTextWriter)
+        {
+            printDeclarations(result, ((StaticTextWriter)result).getDeclarations());
+        }
+        result.flush();
+    }
+
+    /**
+     * Creates the visitor that prints the code of the template nodes.
+     *
+     * @param result        the output writer
+     * @param nestingTable  the stack of open flow-control tags
+     * @return  the visitor
+     */
+
+    protected NodeWriter createNodeWriter(CompactingWriter result, NestingStack nestingTable)
+    {
+        return new NodeWriter(result, nestingTable, tagContext);
+    }
+
+    /**
+     * Checks whether a node is a tag of the given kind.
+     */
+
+    private static boolean isTag(TemplateNode node, int kind)
+    {
+        return node instanceof TagNode && ((TagNode)node).getKind() == kind;
+    }
+
+    /**
+     * Returns the attributes of a tag in the form that
+     * {@link ISMLTagCompiler} takes. ISML expressions are compiled to Java.
+     *
+     * The attributes of ISML tags are keyed by the token kind of the attribute
+     * name: simple values under <code>String.valueOf(kind)</code>, compiled
+     * expressions under <code>'#' + kind</code>. The attributes and return
+     * attributes of ISMODULE are lists. The attributes of custom tags are
+     * keyed by their name, compiled expressions are
+     * <code>StringBuilder</code>s; ISFORM prefixes the name of an expression
+     * with '#'.
+     *
+     * @param tag   the tag
+     * @return  the attribute map
+     */
+
+    static Map<String, Object> compileAttributes(TagNode tag)
+    {
+        Map<String, Object> result = new HashMap<String, Object>();
+
+        for (TagAttribute attribute : tag.getAttributes())
+        {
+            int kind = attribute.getKind();
+            String code = attribute.isExpression() ? ISMLExpressionCompiler.compile(attribute.getExpression()) : null;
+
+            if (kind == TagAttribute.CUSTOM)
+            {
+                if (code == null)
+                {
+                    result.put(attribute.getName(), attribute.getValue());
+                }
+                else
+                {
+                    String prefix = (tag.getKind() == ISMLtoJSPcompilerConstants.ISFORM) ? "#" : "";
+                    result.put(prefix + attribute.getName(), new StringBuilder(code));
+                }
+                continue;
+            }
+
+            String key = (code != null) ? '#' + String.valueOf(kind) : String.valueOf(kind);
+            String value = (code != null) ? code : attribute.getValue();
+            if (tag.getKind() == ISMLtoJSPcompilerConstants.ISMODULE
+                && (kind == ISMLtoJSPcompilerConstants.ATT_ATTRIBUTE || kind == ISMLtoJSPcompilerConstants.ATT_RETURNATTRIBUTE))
+            {
+                @SuppressWarnings("unchecked")
+                List<String> values = (List<String>)result.get(key);
+                if (values == null)
+                {
+                    values = new ArrayList<String>();
+                    result.put(key, values);
+                }
+                values.add(value);
+            }
+            else
+            {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the name of the construct of a node that is measured by a
+     * profiling probe.
+     *
+     * @param node  the template node
+     * @return  the name, or <code>null</code> if the node isn't measured
+     */
+
+    protected String getProfiledConstruct(TemplateNode node)
+    {
+        if (node instanceof TagNode)
+        {
+            switch(((TagNode)node).getKind())
+            {
+                case ISMLtoJSPcompilerConstants.ISINCLUDE:
+                case ISMLtoJSPcompilerConstants.ISPIPELINE:
+                case ISMLtoJSPcompilerConstants.ISLOOP:
+                case ISMLtoJSPcompilerConstants.ISTEXT:
+                case ISMLtoJSPcompilerConstants.ISX:
+                    return ((TagNode)node).getTag().image.substring(1).toUpperCase(Locale.ENGLISH);
+                default:
+                    return null;
+            }
+        }
+        if (node instanceof ExpressionNode)
+        {
+            return getProfiledFunction(((ExpressionNode)node).getExpression());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the first function of an expression that builds a
+     * URL or looks up a localized text.
+     */
+
+    private static String getProfiledFunction(Expression expression)
+    {
+        if (expression instanceof FunctionExpression)
+        {
+            switch(((FunctionExpression)expression).getKind())
+            {
+                case ISMLtoJSPcompilerConstants.F5:
+                case ISMLtoJSPcompilerConstants.F6:
+                case ISMLtoJSPcompilerConstants.F25:
+                case ISMLtoJSPcompilerConstants.F26:
+                    return "url";
+                case ISMLtoJSPcompilerConstants.F43:
+                    return "localizeText";
+                case ISMLtoJSPcompilerConstants.F44:
+                    return "localizeTextEx";
+                default:
+                    break;
+            }
+        }
+        for (Expression operand : expression.getOperands())
+        {
+            String result = getProfiledFunction(operand);
+            if (result != null)
+            {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Declares the profiling probe of a construct and prints the start of the
+     * measurement.
+     *
+     * @param result    the output writer
+     * @param template  the parsed template
+     * @param line      the line of the construct
+     * @param construct the name of the construct
+     * @param number    the number of the probe in the template
+     * @return  the code that ends the measurement
+     * @throws IOException  if writing failed
+     */
+
+    protected String printProbeStart(CompactingWriter result, ISMLTemplate template, int line, String construct, int number)
+                    throws IOException
+    {
+        String path = (templatePath != null) ? templatePath : template.getName();
+        String name = path.replace("\\", "\\\\").replace("\"", "\\\"");
+        String probe = tagContext.declareConstant("_PROBE_", PROBE_CLASS, PROBE_CLASS
+                        + ".get(java.lang.invoke.MethodHandles.lookup().lookupClass(), \"" + name + "\", " + line
+                        + ", \"" + construct + "\")");
+        String start = "_probe" + number;
+
+        result.print(ISMLtoJSPcompiler.SCRIPTING_START);
+        result.print("long " + start + " = " + probe + ".start(); try {");
+        result.print(ISMLtoJSPcompiler.SCRIPTING_END);
+        return "} finally { " + probe + ".end(" + start + "); }";
+    }
+
+    /**
+     * Prints the renderer of an ISRENDER tag. The renderer is declared as
+     * named class that is instantiated once per template instance. If the
+     * body can't be translated into Java code, it is printed as anonymous
+     * class like without named renderers.
+     *
+     * @param result    the output writer
+     * @param body      the JSP content of the body of the tag
+     * @param number    the number of the renderer in the template
+     * @throws IOException  if writing failed
+     */
+
+    protected void printRenderer(CompactingWriter result, String body, int number) throws IOException
+    {
+        String code = getRendererCode(body);
+
+        if (code == null)
+        {
+            result.print(ISMLtoJSPcompiler.SCRIPTING_START);
+            result.print(ISMLTagCompiler.RENDERER_START);
+            result.print(ISMLtoJSPcompiler.SCRIPTING_END);
+            result.print(body);
+            result.print(ISMLtoJSPcompiler.SCRIPTING_START);
+            result.print(ISMLTagCompiler.RENDERER_END);
+            result.print(ISMLtoJSPcompiler.SCRIPTING_END);
+            return;
+        }
+
+        String name = RENDERER_PREFIX + number, field = RENDERER_FIELD_PREFIX + number;
+        tagContext.addDeclaration(ISMLTagCompiler.getRendererClass(name, code));
+        tagContext.addDeclaration("private final CustomTag " + field + " = new " + name + "();");
+
+        result.print(ISMLtoJSPcompiler.SCRIPTING_START);
+        result.print("CustomTag renderer = " + field + ";");
+        result.print(ISMLtoJSPcompiler.SCRIPTING_END);
+    }
+
+    /**
+     * Returns the Java code of the body of a named renderer.
+     *
+     * @param body  the JSP content of the body of the tag
+     * @return  the Java code, or <code>null</code> if the body can't be
+     *          translated into a renderer class
+     */
+
+    protected String getRendererCode(String body)
+    {
+        return ServiceMethodSplitter.toJava(body);
+    }
+
+    /**
+     * Checks whether the JSP code in a template declares tag libraries. The
+     * static content of these templates may contain custom JSP tags.
+     *
+     * @param template  the parsed template
+     * @return  <code>true</code> if a taglib directive may be part of the template
+     */
+
+    protected boolean hasTagLibraries(ISMLTemplate template)
+    {
+        for (TemplateNode node : template.getNodes())
+        {
+            if (node instanceof TextNode && !((TextNode)node).isCompactable()
+                && ((TextNode)node).getText().contains("taglib"))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prints the page directive and the code that initializes the template
+     * execution.
+     *
+     * @param result    the output writer
+     * @throws IOException  if writing failed
+     */
+
+    protected void printPrologue(CompactingWriter result) throws IOException
+    {
+        result.print(ISMLtoJSPcompiler.DIRECTIVE_START);
+        result.print(" page buffer=\"none\"");
+        if (!minimalImports)
+        {
+            // the imports of pages with minimal imports are printed when the
+            // page is complete
+            result.print(" import=\"" + String.join(",", PageImports.DEFAULT_IMPORTS) + "\"");
+        }
+        result.print(" extends=\"" + baseClass + "\"");
+        result.print(ISMLtoJSPcompiler.DIRECTIVE_END);
+
+        printPrologueCode(result);
+    }
+
+    /**
+     * Prints the code that initializes the template execution.
+     *
+     * @param result    the output writer
+     * @throws IOException  if writing failed
+     */
+
+    protected void printPrologueCode(CompactingWriter result) throws IOException
+    {
+        result.print(ISMLtoJSPcompiler.SCRIPTING_START);
+        result.print("\nboolean _boolean_result=false;\n");
+        if (templateHooks)
+        {
+            result.print("TemplateExecutionConfig context = getTemplateExecutionConfig();\n");
+            result.print("out = startTemplate(out, context);\n");
+        }
+        else
+        {
+            // replace the original JSP writer with a Wrapper implementation to prevent NPE for NULL string writing
+            result.print("out = new WrappedJspWriter(out);\n");
+            result.print("TemplateExecutionConfig context = getTemplateExecutionConfig();\n");
+            result.print("createTemplatePageConfig(context.getServletRequest());\n");
+            result.print("printHeader(out);\n");
+        }
+        result.print(ISMLtoJSPcompiler.SCRIPTING_END);
+    }
+
+    /**
+     * Prints the page directive with the imports of the page.
+     *
+     * @param out       the output writer
+     * @param imports   the imports
+     * @throws IOException  if writing failed
+     */
+
+    protected void printImports(Writer out, List<String> imports) throws IOException
+    {
+        if (!imports.isEmpty())
+        {
+            out.write(ISMLtoJSPcompiler.DIRECTIVE_START);
+            out.write("page import=\"" + String.join(",", imports) + "\"");
+            out.write(ISMLtoJSPcompiler.DIRECTIVE_END);
+        }
+    }
+
+    /**
+     * Prints Java member declarations of the template.
+     *
+     * @param result        the output writer
+     * @param declarations  the declarations
+     * @throws IOException  if writing failed
+     */
+
+    protected void printDeclarations(CompactingWriter result, List<String> declarations) throws IOException
+    {
+        if (declarations.isEmpty())
+        {
+            return;
+        }
+
+        result.print(ISMLtoJSPcompiler.DECLARATION_START);
+        for (String declaration : declarations)
+        {
+            result.print('\n');
+            result.print(declaration);
+        }
+        result.print(ISMLtoJSPcompiler.DECLARATION_END);
+    }
+
+    /**
+     * Prints the code that finishes the template execution.
+     *
+     * @param result    the output writer
+     * @throws IOException  if writing failed
+     */
+
+    protected void printEpilogue(CompactingWriter result) throws IOException
+    {
+        result.print(ISMLtoJSPcompiler.SCRIPTING_START);
+        result.print(templateHooks ? "endTemplate(out);" : "printFooter(out);");
+        result.print(ISMLtoJSPcompiler.SCRIPTING_END);
+    }
+
+    /**
+     * Writes the JSP code of the template nodes.
+     */
+
+    protected static class NodeWriter implements TemplateNodeVisitor
+    {
+        /**
+         * The output writer.
+         */
+
+        protected final CompactingWriter result;
+
+        /**
+         * The stack of open flow-control tags.
+         */
+
+        protected final NestingStack nestingTable;
+
+        /**
+         * The code generation options of the ISML tags.
+         */
+
+        protected final TagCompilationContext tagContext;
+
+        /**
+         * The writer for the code of suppressed tags, created on demand.
+         */
+
+        private CompactingWriter discarded;
+
+        /**
+         * The context of suppressed tags, its declarations are discarded.
+         */
+
+        private TagCompilationContext discardedContext;
+
+        /**
+         * The constructor.
+         *
+         * @param result        the output writer
+         * @param nestingTable  the stack of open flow-control tags
+         */
+
+        protected NodeWriter(CompactingWriter result, NestingStack nestingTable)
+        {
+            this(result, nestingTable, new TagCompilationContext());
+        }
+
+        /**
+         * The constructor.
+         *
+         * @param result        the output writer
+         * @param nestingTable  the stack of open flow-control tags
+         * @param tagContext    the code generation options of the ISML tags
+         */
+
+        protected NodeWriter(CompactingWriter result, NestingStack nestingTable, TagCompilationContext tagContext)
+        {
+            this.result = result;
+            this.nestingTable = nestingTable;
+            this.tagContext = tagContext;
+        }
+
+        @Override
+        public void visitText(TextNode node) throws IOException
+        {
+            if (node.isCompactable())
+            {
+                // print usual HTML content
+                result.printCompact(node.getText());
+            }
+            else
+            {
+                result.print(node.getText());
+            }
+        }
+
+        @Override
+        public void visitExpression(ExpressionNode node) throws IOException
+        {
+            result.print(ISMLtoJSPcompiler.INLINE_SCRIPTING_START);
+            result.print("context.getFormattedValue(" + ISMLExpressionCompiler.compile(node.getExpression()) + ",null)");
+            result.print(ISMLtoJSPcompiler.INLINE_SCRIPTING_END);
+        }
+
+        @Override
+        public void visitTag(TagNode node) throws ParseException
+        {
+            ISMLTagCompiler.compileTag(node.getTag(), result, compileAttributes(node), nestingTable, tagContext);
+        }
+
+        @Override
+        public void visitScriptlet(ScriptletNode node) throws IOException
+        {
+            result.print(ISMLtoJSPcompiler.SCRIPTING_START);
+            result.print(node.getCode());
+            result.print(ISMLtoJSPcompiler.SCRIPTING_END);
+        }
+
+        @Override
+        public void visitSuppressed(SuppressedNode node) throws IOException, ParseException
+        {
+            if (node.getNode() instanceof TagNode)
+            {
+                // validate the tag and its nesting, but discard its code
+                TagNode tag = (TagNode)node.getNode();
+                if (discarded == null)
+                {
+                    discarded = new CompactingWriter(Writer.nullWriter(), result.getEncoding());
+                    discardedContext = tagContext.copyOptions();
+                }
+                ISMLTagCompiler.compileTag(tag.getTag(), discarded, compileAttributes(tag), nestingTable, discardedContext);
+
+                // the tag would have ended the compacted content before it
+                result.print("");
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An embedded JSP expression in an ISML expression, e.g.
+ * <code>#&lt;%= value %&gt;#</code>. The Java code is passed through
+ * unchanged.
+ */
+
+public class JspExpression extends Expression
+{
+    /**
+     * The JSP expression including <code>&lt;%=</code> and
+     * <code>%&gt;</code>.
+     */
+
+    private final String image;
+
+    /**
+     * The constructor.
+     *
+     * @param image the JSP expression including <code>&lt;%=</code> and
+     *              <code>%&gt;</code>
+     */
+
+    public JspExpression(String image)
+    {
+        this.image = image;
+    }
+
+    /**
+     * @return  the JSP expression including <code>&lt;%=</code> and
+     *          <code>%&gt;</code>
+     */
+
+    public String getImage()
+    {
+        return image;
+    }
+
+    /**
+     * @return  the embedded Java code
+     */
+
+    public String getCode()
+    {
+        return image.substring(3, image.length() - 2);
+    }
+
+    @Override
+    public List<Expression> getOperands()
+    {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Expression withOperands(List<Expression> operands)
+    {
+        return this;
+    }
+
+    @Override
+    public void accept(ExpressionVisitor visitor)
+    {
+        visitor.visitJsp(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return image;
+    }
+}
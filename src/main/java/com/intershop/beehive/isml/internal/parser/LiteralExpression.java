@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A constant of an ISML expression: a string or number literal of the
+ * source, or the result of constant folding.
+ */
+
+public class LiteralExpression extends Expression
+{
+    /**
+     * The value as <code>String</code>, <code>Double</code> or
+     * <code>Boolean</code>.
+     */
+
+    private final Object value;
+
+    /**
+     * The literal in the ISML source.
+     */
+
+    private final String image;
+
+    /**
+     * Creates a literal of the ISML source.
+     *
+     * @param value the value, <code>null</code> if the literal has no exact
+     *              compile time value
+     * @param image the literal in the ISML source, a quoted string or a
+     *              number with an optional sign
+     */
+
+    public LiteralExpression(Object value, String image)
+    {
+        this.value = value;
+        this.image = image;
+    }
+
+    /**
+     * Creates a folded constant.
+     *
+     * @param value the value as <code>String</code>, finite
+     *              <code>Double</code> or <code>Boolean</code>
+     */
+
+    public LiteralExpression(Object value)
+    {
+        this(value, null);
+    }
+
+    /**
+     * @return  the value, <code>null</code> if a literal of the source has no
+     *          exact compile time value
+     */
+
+    public Object getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return  the literal in the ISML source, <code>null</code> for a folded
+     *          constant
+     */
+
+    public String getImage()
+    {
+        return image;
+    }
+
+    @Override
+    public List<Expression> getOperands()
+    {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Expression withOperands(List<Expression> operands)
+    {
+        return this;
+    }
+
+    @Override
+    public void accept(ExpressionVisitor visitor)
+    {
+        visitor.visitLiteral(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        if (image != null)
+        {
+            return image;
+        }
+        if (value instanceof String)
+        {
+            return "'" + ((String)value).replace("\\", "\\\\").replace("'", "''") + "'";
+        }
+        return String.valueOf(value);
+    }
+}
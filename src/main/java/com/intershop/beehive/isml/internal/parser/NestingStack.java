@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.Arrays;
+
+/**
+ * The stack of currently open flow-control tags (ISIF, ISLOOP, ISFILEBUNDLE,
+ * ...) that is used to check the correct nesting of ISML tags while a template
+ * is compiled.
+ *
+ * The tags are kept in an array, and the number of open tags is counted per
+ * token kind. This way the checks "is tag X on top of the stack" and "is tag X
+ * anywhere on the stack", which are done for nearly every compiled tag, need
+ * constant time independent of the nesting depth.
+ */
+
+public class NestingStack
+{
+    /**
+     * The initial capacity of the stack.
+     */
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The open tags, the top of the stack is at index <code>size - 1</code>.
+     */
+
+    private Token[] tags = new Token[INITIAL_CAPACITY];
+
+    /**
+     * The number of open tags.
+     */
+
+    private int size = 0;
+
+    /**
+     * The number of open tags per token kind.
+     */
+
+    private final int[] depths = new int[ISMLtoJSPcompilerConstants.tokenImage.length];
+
+    /**
+     * Pushes a tag onto the stack.
+     *
+     * @param tag   the opened tag
+     */
+
+    public void push(Token tag)
+    {
+        if (size == tags.length)
+        {
+            tags = Arrays.copyOf(tags, size << 1);
+        }
+
+        tags[size++] = tag;
+        depths[tag.kind]++;
+    }
+
+    /**
+     * Removes the top tag from the stack.
+     *
+     * @return  the removed tag or <code>null</code> if the stack is empty
+     */
+
+    public Token pop()
+    {
+        if (size == 0)
+        {
+            return null;
+        }
+
+        Token tag = tags[--size];
+        tags[size] = null;
+        depths[tag.kind]--;
+
+        return tag;
+    }
+
+    /**
+     * Checks whether the top tag of the stack is of the given kind.
+     *
+     * @param kind  the token kind
+     * @return  <code>true</code> if the stack is not empty and its top tag is
+     *          of the given kind
+     */
+
+    public boolean isTop(int kind)
+    {
+        return (size > 0) && (tags[size - 1].kind == kind);
+    }
+
+    /**
+     * Checks whether a tag of the given kind is open anywhere on the stack.
+     *
+     * @param kind  the token kind
+     * @return  <code>true</code> if at least one tag of this kind is open
+     */
+
+    public boolean contains(int kind)
+    {
+        return depths[kind] > 0;
+    }
+
+    /**
+     * @return  the number of open tags
+     */
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return  <code>true</code> if no tag is open
+     */
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The negation of an operand with <code>NOT</code>. As operand of
+ * <code>AND</code> and <code>OR</code> it negates only that operand.
+ */
+
+public class NotExpression extends Expression
+{
+    /**
+     * The negated operand.
+     */
+
+    private final Expression operand;
+
+    /**
+     * The constructor.
+     *
+     * @param operand   the negated operand
+     */
+
+    public NotExpression(Expression operand)
+    {
+        this.operand = operand;
+    }
+
+    /**
+     * @return  the negated operand
+     */
+
+    public Expression getOperand()
+    {
+        return operand;
+    }
+
+    @Override
+    public List<Expression> getOperands()
+    {
+        return Collections.singletonList(operand);
+    }
+
+    @Override
+    public Expression withOperands(List<Expression> operands)
+    {
+        return new NotExpression(operands.get(0));
+    }
+
+    @Override
+    public void accept(ExpressionVisitor visitor)
+    {
+        visitor.visitNot(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "NOT " + operand;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An object path that is looked up in the pipeline dictionary, e.g.
+ * <code>Product:Name</code> or <code>Basket:Item("id",Id)</code>.
+ *
+ * The optimizations of the complete template may bind the lookup to a Java
+ * local ({@link ObjectPathHoister}) or to a static path descriptor
+ * ({@link ObjectPathSplitter}).
+ */
+
+public class ObjectPathExpression extends Expression
+{
+    /**
+     * The path in ISML syntax.
+     */
+
+    private final String path;
+
+    /**
+     * The Java local the path is bound to.
+     */
+
+    private final String local;
+
+    /**
+     * The static path descriptor.
+     */
+
+    private final String constant;
+
+    /**
+     * The constructor.
+     *
+     * @param path  the path in ISML syntax
+     */
+
+    public ObjectPathExpression(String path)
+    {
+        this(path, null, null);
+    }
+
+    private ObjectPathExpression(String path, String local, String constant)
+    {
+        this.path = path;
+        this.local = local;
+        this.constant = constant;
+    }
+
+    /**
+     * @return  the path in ISML syntax
+     */
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * @return  <code>true</code> if a segment of the path has parameters
+     */
+
+    public boolean hasParameters()
+    {
+        return path.indexOf('(') >= 0;
+    }
+
+    /**
+     * @return  the number of segments of the path, including the segments of
+     *          path parameters
+     */
+
+    public int getSegments()
+    {
+        int result = 1;
+        for (int i = 0; i < path.length(); i++)
+        {
+            if (path.charAt(i) == ':')
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return  the Java local that caches the value of the path,
+     *          <code>null</code> if the path is resolved on each use
+     */
+
+    public String getLocal()
+    {
+        return local;
+    }
+
+    /**
+     * @return  the name of the static path descriptor, <code>null</code> if
+     *          the path is passed as string
+     */
+
+    public String getConstant()
+    {
+        return constant;
+    }
+
+    /**
+     * @param local the Java local that caches the value of the path
+     * @return  a copy of the path that is bound to the local
+     */
+
+    public ObjectPathExpression withLocal(String local)
+    {
+        return new ObjectPathExpression(path, local, constant);
+    }
+
+    /**
+     * @param constant  the name of the static path descriptor
+     * @return  a copy of the path that is passed as descriptor
+     */
+
+    public ObjectPathExpression withConstant(String constant)
+    {
+        return new ObjectPathExpression(path, local, constant);
+    }
+
+    @Override
+    public List<Expression> getOperands()
+    {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Expression withOperands(List<Expression> operands)
+    {
+        return this;
+    }
+
+    @Override
+    public void accept(ExpressionVisitor visitor)
+    {
+        visitor.visitObjectPath(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return path;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves object paths that are used several times in a part of a template
+ * only once.
+ *
+ * The template is split into segments in which the pipeline dictionary can't
+ * change: a segment ends at every tag that may change the dictionary or the
+ * scope of Java locals (ISSET, ISPIPELINE, ISINCLUDE, loops, custom tags, ...),
+ * at expressions that execute pipelines, custom functions or embedded JSP
+ * code, at JSP code in the template, and at the end of the ISIF branch it
+ * started in. Nested ISIF blocks stay in the segment.
+ *
+ * Every path without parameters that occurs at least twice in a segment is
+ * bound to a Java local that is declared before the first tag or expression of
+ * the segment. The local is resolved on first use, so paths in branches that
+ * are not taken are not resolved, as before:
+ *
+ * <pre>
+ * Object _objectPath1 = _OBJECT_PATH_UNRESOLVED;
+ * ... (_objectPath1 != _OBJECT_PATH_UNRESOLVED ? _objectPath1 : (_objectPath1 = getObject("Product:Name"))) ...
+ * </pre>
+ */
+
+public class ObjectPathHoister implements ISMLtoJSPcompilerConstants
+{
+    /**
+     * The name of the marker for unresolved locals.
+     */
+
+    static final String UNRESOLVED = "_OBJECT_PATH_UNRESOLVED";
+
+    /**
+     * The declaration of the marker for unresolved locals.
+     */
+
+    static final String UNRESOLVED_DECLARATION = "private static final Object " + UNRESOLVED + " = new Object();";
+
+    /**
+     * The pattern of an object path without parameters.
+     */
+
+    private static final Pattern OBJECT_PATH = Pattern.compile("[\\w:]+");
+
+    /**
+     * The tags that neither change the pipeline dictionary nor open a Java
+     * block that spans other nodes. The ISIF tags are handled separately.
+     */
+
+    private static final int[] SEGMENT_TAGS = { ISPRINT, ISTEXT, ISCACHE, ISCACHEKEY, ISCOOKIE, ISCONTENT, ISMODULE };
+
+    /**
+     * The number of locals declared so far.
+     */
+
+    private int locals = 0;
+
+    /**
+     * Binds repeated object paths of a template to locals.
+     *
+     * @param template  the parsed template
+     * @return  the changed template, or the given template if no path is
+     *          used repeatedly
+     */
+
+    public ISMLTemplate apply(ISMLTemplate template)
+    {
+        List<TemplateNode> nodes = template.getNodes();
+        List<TemplateNode> result = new ArrayList<TemplateNode>(nodes.size());
+
+        int start = 0;
+        int depth = 0;
+
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            TemplateNode node = nodes.get(i);
+            boolean barrier;
+
+            if (isTag(node, ISIF) || isTag(node, ISELSIF) || isTag(node, ISELSE) || isTag(node, ISIF_END))
+            {
+                int kind = ((TagNode)node).getKind();
+
+                // the segment ends with the branch it started in
+                barrier = hasBarrierCode(node) || (depth == 0 && kind != ISIF);
+                if (!barrier)
+                {
+                    depth += (kind == ISIF) ? 1 : (kind == ISIF_END) ? -1 : 0;
+                }
+            }
+            else
+            {
+                barrier = isBarrier(node);
+            }
+
+            if (barrier)
+            {
+                // the next segment starts in the block after the node
+                hoist(nodes, start, i, result);
+                result.add(node);
+                start = i + 1;
+                depth = 0;
+            }
+        }
+        hoist(nodes, start, nodes.size(), result);
+
+        if (locals == 0)
+        {
+            return template;
+        }
+
+        List<String> declarations = new ArrayList<String>(template.getDeclarations());
+        declarations.add(UNRESOLVED_DECLARATION);
+        return new ISMLTemplate(template.getName(), result, declarations);
+    }
+
+    /**
+     * Copies the nodes of a segment and binds the repeated paths in it.
+     *
+     * @param nodes     the nodes
+     * @param from      the first node of the segment
+     * @param to        the end of the segment (exclusive)
+     * @param result    the list the nodes are added to
+     */
+
+    private void hoist(List<TemplateNode> nodes, int from, int to, List<TemplateNode> result)
+    {
+        // count the occurrences of all paths
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = from; i < to; i++)
+        {
+            for (Expression expression : getExpressions(nodes.get(i)))
+            {
+                expression.forEachNode(e -> {
+                    if (isHoistable(e))
+                    {
+                        counts.merge(((ObjectPathExpression)e).getPath(), Integer.valueOf(1), Integer::sum);
+                    }
+                });
+            }
+        }
+
+        Map<String, String> bound = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet())
+        {
+            if (entry.getValue().intValue() > 1)
+            {
+                bound.put(entry.getKey(), null);
+            }
+        }
+
+        if (bound.isEmpty())
+        {
+            result.addAll(nodes.subList(from, to));
+            return;
+        }
+
+        StringBuilder declaration = new StringBuilder();
+        for (Map.Entry<String, String> entry : bound.entrySet())
+        {
+            String local = "_objectPath" + (++locals);
+            entry.setValue(local);
+            declaration.append("Object ").append(local).append(" = ").append(UNRESOLVED).append(';');
+        }
+
+        boolean declared = false;
+        for (int i = from; i < to; i++)
+        {
+            TemplateNode node = nodes.get(i);
+
+            if (!declared && !(node instanceof TextNode))
+            {
+                // the node ends the compacted text anyway
+                result.add(new ScriptletNode(declaration.toString(), node.getLine(), node.getColumn()));
+                declared = true;
+            }
+            result.add(bind(node, bound));
+        }
+    }
+
+    /**
+     * Replaces the bound paths in the expressions of a node.
+     *
+     * @param node      the node
+     * @param bound     the locals by path
+     * @return  the node with the replaced expressions
+     */
+
+    private TemplateNode bind(TemplateNode node, Map<String, String> bound)
+    {
+        if (node instanceof ExpressionNode)
+        {
+            ExpressionNode expression = (ExpressionNode)node;
+            return expression.withExpression(bind(expression.getExpression(), bound));
+        }
+
+        if (node instanceof TagNode)
+        {
+            TagNode tag = (TagNode)node;
+            List<TagAttribute> attributes = new ArrayList<TagAttribute>(tag.getAttributes().size());
+            for (TagAttribute attribute : tag.getAttributes())
+            {
+                attributes.add(isHoistable(attribute) ? attribute.withExpression(bind(attribute.getExpression(), bound))
+                                : attribute);
+            }
+            return tag.withAttributes(tag.getTag(), attributes);
+        }
+
+        return node;
+    }
+
+    private Expression bind(Expression expression, Map<String, String> bound)
+    {
+        return expression.transform(e -> {
+            String local = isHoistable(e) ? bound.get(((ObjectPathExpression)e).getPath()) : null;
+            return (local != null) ? ((ObjectPathExpression)e).withLocal(local) : e;
+        });
+    }
+
+    /**
+     * Returns the expressions of a node that may contain object paths. The
+     * expressions of custom tags are passed as tag parameters and not bound.
+     */
+
+    private List<Expression> getExpressions(TemplateNode node)
+    {
+        List<Expression> result = new ArrayList<Expression>();
+
+        if (node instanceof ExpressionNode)
+        {
+            result.add(((ExpressionNode)node).getExpression());
+        }
+        else if (node instanceof TagNode)
+        {
+            for (TagAttribute attribute : ((TagNode)node).getAttributes())
+            {
+                if (isHoistable(attribute))
+                {
+                    result.add(attribute.getExpression());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isHoistable(TagAttribute attribute)
+    {
+        return attribute.isExpression() && attribute.getKind() != TagAttribute.CUSTOM;
+    }
+
+    private static boolean isHoistable(Expression expression)
+    {
+        return (expression instanceof ObjectPathExpression) && ((ObjectPathExpression)expression).getLocal() == null
+                        && OBJECT_PATH.matcher(((ObjectPathExpression)expression).getPath()).matches();
+    }
+
+    /**
+     * Checks whether a node other than an ISIF tag ends the current segment,
+     * i.e. it may change the pipeline dictionary or the Java block structure.
+     */
+
+    private boolean isBarrier(TemplateNode node)
+    {
+        if (node instanceof TextNode)
+        {
+            TextNode text = (TextNode)node;
+            return !text.isCompactable() && (text.getText().contains("<%") || text.getText().contains("<jsp:"));
+        }
+
+        if (node instanceof ExpressionNode || node instanceof TagNode)
+        {
+            return (node instanceof TagNode && !isSegmentTag(((TagNode)node).getKind())) || hasBarrierCode(node);
+        }
+
+        // scriptlets may open or close Java blocks, suppressed nodes are skipped
+        return true;
+    }
+
+    /**
+     * Checks whether the expressions of a node may change the pipeline
+     * dictionary: pipeline calls, custom functions and embedded JSP code.
+     */
+
+    private boolean hasBarrierCode(TemplateNode node)
+    {
+        for (Expression expression : getExpressions(node))
+        {
+            if (hasBarrierCode(expression))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasBarrierCode(Expression expression)
+    {
+        if (expression instanceof JspExpression)
+        {
+            return true;
+        }
+        if (expression instanceof FunctionExpression)
+        {
+            int kind = ((FunctionExpression)expression).getKind();
+            if (kind == F27 || kind == VARNAME)
+            {
+                return true;
+            }
+        }
+        for (Expression operand : expression.getOperands())
+        {
+            if (hasBarrierCode(operand))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSegmentTag(int kind)
+    {
+        for (int tag : SEGMENT_TAGS)
+        {
+            if (tag == kind)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTag(TemplateNode node, int kind)
+    {
+        return (node instanceof TagNode) && ((TagNode)node).getKind() == kind;
+    }
+}
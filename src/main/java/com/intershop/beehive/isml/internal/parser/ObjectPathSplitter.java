@@ -0,0 +1,161 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.intershop.beehive.isml.capi.ObjectPath;
+
+/**
+ * Replaces the object path strings of a template by static
+ * {@link ObjectPath} descriptors.
+ *
+ * Each distinct path is declared once per page and parsed when the page class
+ * is loaded; the lookups pass the descriptor to
+ * <code>getObject(ObjectPath)</code> of the template base class:
+ *
+ * <pre>
+ * private static final com.intershop.beehive.isml.capi.ObjectPath _OBJECT_PATH_1 = com.intershop.beehive.isml.capi.ObjectPath.parse("Product:Name");
+ * ... getObject(_OBJECT_PATH_1) ...
+ * </pre>
+ *
+ * Paths that can't be parsed by {@link ObjectPath#parse(String)} keep the
+ * string lookup.
+ */
+
+public class ObjectPathSplitter
+{
+    /**
+     * The prefix of the names of the path constants.
+     */
+
+    static final String CONSTANT_PREFIX = "_OBJECT_PATH_";
+
+    /**
+     * The constant names by the string literal body of the path.
+     */
+
+    private final Map<String, String> constants = new LinkedHashMap<String, String>();
+
+    /**
+     * Replaces the object path strings of a template.
+     *
+     * @param template  the parsed template
+     * @return  the changed template, or the given template if it contains no
+     *          object paths
+     */
+
+    public ISMLTemplate apply(ISMLTemplate template)
+    {
+        List<TemplateNode> result = new ArrayList<TemplateNode>(template.getNodes().size());
+
+        for (TemplateNode node : template.getNodes())
+        {
+            result.add(split(node));
+        }
+
+        if (constants.isEmpty())
+        {
+            return template;
+        }
+
+        List<String> declarations = new ArrayList<String>(template.getDeclarations());
+        for (Map.Entry<String, String> constant : constants.entrySet())
+        {
+            declarations.add("private static final " + ObjectPath.class.getName() + " " + constant.getValue() + " = "
+                            + ObjectPath.class.getName() + ".parse(\"" + constant.getKey() + "\");");
+        }
+        return new ISMLTemplate(template.getName(), result, declarations);
+    }
+
+    /**
+     * Replaces the object path strings in the expressions of a node.
+     *
+     * @param node  the node
+     * @return  the node with the replaced expressions
+     */
+
+    private TemplateNode split(TemplateNode node)
+    {
+        if (node instanceof ExpressionNode)
+        {
+            ExpressionNode expression = (ExpressionNode)node;
+            return expression.withExpression(split(expression.getExpression()));
+        }
+
+        if (node instanceof TagNode)
+        {
+            TagNode tag = (TagNode)node;
+            List<TagAttribute> attributes = new ArrayList<TagAttribute>(tag.getAttributes().size());
+            for (TagAttribute attribute : tag.getAttributes())
+            {
+                attributes.add(attribute.isExpression() ? attribute.withExpression(split(attribute.getExpression()))
+                                : attribute);
+            }
+            return tag.withAttributes(tag.getTag(), attributes);
+        }
+
+        return node;
+    }
+
+    private Expression split(Expression expression)
+    {
+        return expression.transform(e -> {
+            String constant = (e instanceof ObjectPathExpression) ? getConstant(((ObjectPathExpression)e).getPath()) : null;
+            return (constant != null) ? ((ObjectPathExpression)e).withConstant(constant) : e;
+        });
+    }
+
+    /**
+     * Returns the constant for a path.
+     *
+     * @param path  the path in ISML syntax
+     * @return  the name of the constant, or <code>null</code> if the path
+     *          can't be parsed
+     */
+
+    private String getConstant(String path)
+    {
+        String literal = ISMLExpressionCompiler.pathLiteral(path);
+        String constant = constants.get(literal);
+        if (constant != null)
+        {
+            return constant;
+        }
+
+        if (path.indexOf('\\') >= 0 || literal.replace("\\\"", "").indexOf('"') >= 0 || literal.contains("%>"))
+        {
+            // no plain literal, or the declaration would end at the JSP end tag
+            return null;
+        }
+
+        try
+        {
+            ObjectPath.parse(path);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+
+        constant = CONSTANT_PREFIX + (constants.size() + 1);
+        constants.put(literal, constant);
+        return constant;
+    }
+}
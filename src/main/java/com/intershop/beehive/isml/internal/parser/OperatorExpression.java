@@ -0,0 +1,172 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sequence of operands with binary operators of the same group: a numeric
+ * comparison (<code>==</code>, <code>&lt;</code>, ...), a string comparison
+ * (<code>EQ</code>, <code>NE</code>), arithmetic operators, the string
+ * concatenation (<code>.</code>) or the boolean operators <code>AND</code>
+ * and <code>OR</code>. Comparisons have exactly two operands.
+ *
+ * The operators are evaluated with the precedence of the generated Java
+ * code, e.g. <code>AND</code> before <code>OR</code>. A negated operand of
+ * a boolean operator is a {@link NotExpression}.
+ */
+
+public class OperatorExpression extends Expression implements ISMLtoJSPcompilerConstants
+{
+    /**
+     * The operands.
+     */
+
+    private final List<Expression> operands;
+
+    /**
+     * The token kinds of the operators between the operands.
+     */
+
+    private final List<Integer> operators;
+
+    /**
+     * The operators in the ISML source.
+     */
+
+    private final List<String> images;
+
+    /**
+     * The constructor.
+     *
+     * @param operands  the operands
+     * @param operators the token kinds of the operators between the operands
+     * @param images    the operators in the ISML source
+     */
+
+    public OperatorExpression(List<Expression> operands, List<Integer> operators, List<String> images)
+    {
+        this.operands = Collections.unmodifiableList(new ArrayList<Expression>(operands));
+        this.operators = Collections.unmodifiableList(new ArrayList<Integer>(operators));
+        this.images = Collections.unmodifiableList(new ArrayList<String>(images));
+    }
+
+    /**
+     * @return  the token kinds of the operators between the operands
+     */
+
+    public List<Integer> getOperators()
+    {
+        return operators;
+    }
+
+    /**
+     * @return  the operators in the ISML source
+     */
+
+    public List<String> getImages()
+    {
+        return images;
+    }
+
+    /**
+     * @return  the token kind of the first operator, which determines the
+     *          group of the operators
+     */
+
+    public int getKind()
+    {
+        return operators.get(0).intValue();
+    }
+
+    /**
+     * @return  <code>true</code> for a numeric comparison
+     */
+
+    public boolean isNumberComparison()
+    {
+        int kind = getKind();
+        return kind == I_EG || kind == I_NE || kind == I_GE || kind == I_LE || kind == I_GT || kind == I_LT;
+    }
+
+    /**
+     * @return  <code>true</code> for a string comparison
+     */
+
+    public boolean isStringComparison()
+    {
+        return getKind() == EQ || getKind() == NE;
+    }
+
+    /**
+     * @return  <code>true</code> for arithmetic operators
+     */
+
+    public boolean isArithmetic()
+    {
+        int kind = getKind();
+        return kind == ADD || kind == SUB || kind == MUL || kind == DIV || kind == MOD;
+    }
+
+    /**
+     * @return  <code>true</code> for a string concatenation
+     */
+
+    public boolean isConcatenation()
+    {
+        return getKind() == CAT;
+    }
+
+    /**
+     * @return  <code>true</code> for boolean operators
+     */
+
+    public boolean isLogical()
+    {
+        return getKind() == AND || getKind() == OR;
+    }
+
+    @Override
+    public List<Expression> getOperands()
+    {
+        return operands;
+    }
+
+    @Override
+    public Expression withOperands(List<Expression> operands)
+    {
+        return new OperatorExpression(operands, operators, images);
+    }
+
+    @Override
+    public void accept(ExpressionVisitor visitor)
+    {
+        visitor.visitOperator(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder result = new StringBuilder(operands.get(0).toString());
+        for (int i = 0; i < operators.size(); i++)
+        {
+            result.append(' ').append(images.get(i)).append(' ').append(operands.get(i + 1));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.intershop.beehive.isml.capi.ISMLTemplateConstants;
+
+/**
+ * Computes the imports of a generated JSP page from the type names that its
+ * Java code uses.
+ *
+ * A simple type name is resolved by the implicit imports of Java and JSP, by
+ * the page itself, or by a known import of the default list. Single type
+ * imports and the <code>java.util</code> and <code>java.io</code> packages are
+ * only imported if they are used. The other packages of the default list are
+ * imported if the page uses a type that is known to be part of them; if the
+ * page uses any type that can't be resolved this way, all of them are
+ * imported like before.
+ */
+
+public class PageImports
+{
+    /**
+     * The imports of all pages without import minimization.
+     */
+
+    public static final List<String> DEFAULT_IMPORTS = Collections.unmodifiableList(Arrays.asList(
+                    "java.util.*",
+                    "java.io.*",
+                    "com.intershop.beehive.core.internal.template.*",
+                    "com.intershop.beehive.core.internal.template.isml.*",
+                    "com.intershop.beehive.core.capi.log.*",
+                    "com.intershop.beehive.core.capi.resource.*",
+                    "com.intershop.beehive.core.capi.util.UUIDMgr",
+                    "com.intershop.beehive.core.capi.util.XMLHelper",
+                    "com.intershop.beehive.foundation.util.*",
+                    "com.intershop.beehive.core.internal.url.*",
+                    "com.intershop.beehive.core.internal.resource.*",
+                    "com.intershop.beehive.core.capi.pipeline.PipelineDictionary",
+                    "com.intershop.beehive.core.capi.naming.NamingMgr",
+                    "com.intershop.beehive.core.capi.pagecache.PageCacheMgr",
+                    "com.intershop.beehive.core.capi.request.SessionMgr",
+                    "com.intershop.beehive.core.internal.request.SessionMgrImpl",
+                    "com.intershop.beehive.core.pipelet.PipelineConstants"));
+
+    /**
+     * The JDK packages of the default list, whose types are looked up.
+     */
+
+    private static final String[] JDK_PACKAGES = { "java.util", "java.io" };
+
+    /**
+     * The packages of the default list by the types that are known to be part
+     * of them.
+     */
+
+    private static final Map<String, String> KNOWN_TYPES = new HashMap<String, String>();
+
+    static
+    {
+        String config = ISMLTemplateConstants.TEMPLATE_EXEC_CONFIG_NAME;
+        KNOWN_TYPES.put(config.substring(config.lastIndexOf('.') + 1), config.substring(0, config.lastIndexOf('.')) + ".*");
+        KNOWN_TYPES.put("AbstractTemplate", "com.intershop.beehive.core.internal.template.*");
+        KNOWN_TYPES.put("Logger", "com.intershop.beehive.core.capi.log.*");
+
+        for (String entry : DEFAULT_IMPORTS)
+        {
+            if (!entry.endsWith(".*"))
+            {
+                KNOWN_TYPES.put(entry.substring(entry.lastIndexOf('.') + 1), entry);
+            }
+        }
+    }
+
+    /**
+     * The types of the packages that every JSP page imports.
+     */
+
+    private static final Set<String> JSP_TYPES = new HashSet<String>(Arrays.asList("HttpServletRequest",
+                    "HttpServletResponse", "HttpSession", "ServletContext", "ServletConfig", "ServletException",
+                    "ServletRequest", "PageContext", "JspWriter", "JspException", "JspFactory"));
+
+    /**
+     * Returns the imports a JSP page needs.
+     *
+     * @param page  the JSP page
+     * @return  the imports in the order of the default list
+     */
+
+    public static List<String> getImports(String page)
+    {
+        return getImports(getJavaCode(page));
+    }
+
+    /**
+     * Returns the imports that Java code needs.
+     *
+     * @param javaCode  the parts of the Java code, like the service method
+     *                  and the members of a class
+     * @return  the imports in the order of the default list
+     */
+
+    public static List<String> getImports(List<String> javaCode)
+    {
+        Set<String> types = new HashSet<String>(), declared = new HashSet<String>();
+        for (String code : javaCode)
+        {
+            scan(code, types, declared);
+        }
+
+        Set<String> needed = new HashSet<String>();
+        boolean unknown = false;
+
+        for (String type : types)
+        {
+            if (declared.contains(type) || JSP_TYPES.contains(type) || exists("java.lang." + type))
+            {
+                continue;
+            }
+
+            String known = KNOWN_TYPES.get(type);
+            if (known != null)
+            {
+                needed.add(known);
+                continue;
+            }
+
+            boolean jdk = false;
+            for (String jdkPackage : JDK_PACKAGES)
+            {
+                if (exists(jdkPackage + '.' + type))
+                {
+                    needed.add(jdkPackage + ".*");
+                    jdk = true;
+                }
+            }
+            unknown |= !jdk;
+        }
+
+        Set<String> result = new LinkedHashSet<String>();
+        for (String entry : DEFAULT_IMPORTS)
+        {
+            boolean jdk = entry.startsWith("java.");
+            if (needed.contains(entry) || (unknown && entry.endsWith(".*") && !jdk))
+            {
+                result.add(entry);
+            }
+        }
+        return new ArrayList<String>(result);
+    }
+
+    private static boolean exists(String className)
+    {
+        try
+        {
+            Class.forName(className, false, PageImports.class.getClassLoader());
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the Java code of the scriptlets, expressions and declarations of
+     * a JSP page.
+     */
+
+    static List<String> getJavaCode(String page)
+    {
+        List<String> result = new ArrayList<String>();
+        int i = 0;
+
+        while ((i = page.indexOf("<%", i)) >= 0)
+        {
+            boolean comment = page.startsWith("<%--", i);
+            int end = page.indexOf(comment ? "--%>" : "%>", i + 2);
+            if (end < 0)
+            {
+                break;
+            }
+
+            if (!comment && !page.startsWith("<%@", i))
+            {
+                int start = (page.startsWith("<%=", i) || page.startsWith("<%!", i)) ? i + 3 : i + 2;
+                result.add(page.substring(start, end));
+            }
+            i = end + 2;
+        }
+        return result;
+    }
+
+    /**
+     * Collects the simple type names used by Java code, and the names of the
+     * classes and variables it declares. Names that start with an upper case
+     * letter and aren't qualified are taken as type names.
+     */
+
+    static void scan(String code, Set<String> types, Set<String> declared)
+    {
+        String previous = null;
+        char last = 0;
+
+        for (int i = 0; i < code.length();)
+        {
+            char ch = code.charAt(i);
+
+            if (ch == '"' || ch == '\'')
+            {
+                i++;
+                while (i < code.length() && code.charAt(i) != ch)
+                {
+                    i += (code.charAt(i) == '\\') ? 2 : 1;
+                }
+                i++;
+                last = ch;
+            }
+            else if (code.startsWith("//", i))
+            {
+                int end = code.indexOf('\n', i);
+                i = (end < 0) ? code.length() : end;
+            }
+            else if (code.startsWith("/*", i))
+            {
+                int end = code.indexOf("*/", i + 2);
+                i = (end < 0) ? code.length() : end + 2;
+            }
+            else if (Character.isDigit(ch))
+            {
+                // numbers with suffixes like 4L
+                while (i < code.length() && (Character.isJavaIdentifierPart(code.charAt(i)) || code.charAt(i) == '.'))
+                {
+                    i++;
+                }
+                previous = null;
+                last = '0';
+            }
+            else if (Character.isJavaIdentifierStart(ch))
+            {
+                int end = i + 1;
+                while (end < code.length() && Character.isJavaIdentifierPart(code.charAt(end)))
+                {
+                    end++;
+                }
+
+                String name = code.substring(i, end);
+                if ("class".equals(previous) || "interface".equals(previous) || "enum".equals(previous)
+                                || isAssigned(code, end))
+                {
+                    // declared types, and variables like constants in upper case
+                    declared.add(name);
+                }
+                else if (last != '.' && Character.isUpperCase(ch))
+                {
+                    types.add(name);
+                }
+
+                previous = name;
+                last = 'a';
+                i = end;
+            }
+            else
+            {
+                if (!Character.isWhitespace(ch))
+                {
+                    previous = null;
+                    last = ch;
+                }
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a name is followed by an assignment.
+     */
+
+    private static boolean isAssigned(String code, int end)
+    {
+        while (end < code.length() && Character.isWhitespace(code.charAt(end)))
+        {
+            end++;
+        }
+        return code.startsWith("=", end) && !code.startsWith("==", end);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+
+/**
+ * A piece of Java code that is not related to an ISML tag but is executed at
+ * its position in the template, e.g. the insertion of the Intershop signature
+ * into the HTML head.
+ */
+
+public class ScriptletNode extends TemplateNode
+{
+    /**
+     * The Java statements.
+     */
+
+    private final String code;
+
+    /**
+     * The constructor.
+     *
+     * @param code      the Java statements
+     * @param line      the line in the ISML source the code belongs to
+     * @param column    the column in the ISML source the code belongs to
+     */
+
+    public ScriptletNode(String code, int line, int column)
+    {
+        super(line, column);
+        this.code = code;
+    }
+
+    /**
+     * @return  the Java statements
+     */
+
+    public String getCode()
+    {
+        return code;
+    }
+
+    @Override
+    public void accept(TemplateNodeVisitor visitor) throws IOException, ParseException
+    {
+        visitor.visitScriptlet(this);
+    }
+}
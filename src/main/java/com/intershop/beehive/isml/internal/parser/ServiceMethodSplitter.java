@@ -0,0 +1,828 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the generated JSP page in chunks and moves parts of the service
+ * method into private helper methods if the estimated bytecode size of the
+ * service method exceeds a limit. HotSpot doesn't compile methods with more
+ * than 8000 bytes of bytecode (<code>HugeMethodLimit</code>), and a method
+ * must not exceed 64 KB.
+ *
+ * The code generator starts a new chunk before every tag, expression and
+ * scriptlet outside of ISIF, ISLOOP and other block tags. Consecutive chunks
+ * are moved into a method like this:
+ *
+ * <pre>
+ * &lt;% _jspServicePart1(request,response,pageContext,out,context); %&gt;
+ * ...
+ * &lt;%! private void _jspServicePart1(HttpServletRequest request, ..., TemplateExecutionConfig context) throws Throwable
+ * {
+ * out.write("...");
+ * ...
+ * } %&gt;
+ * </pre>
+ *
+ * The template text of a moved chunk is written with <code>out.write</code>,
+ * JSP expressions with <code>out.print</code>, directives and declarations stay
+ * in the page. A chunk stays in the service method if it contains JSP syntax
+ * that can't be translated, returns from the service method, assigns
+ * <code>out</code>, shares Java locals with other chunks or is part of a block
+ * that a scriptlet of another chunk opens. Locals that are
+ * bound by {@link ObjectPathHoister} are declared again in the helper method
+ * and resolved again on first use.
+ *
+ * The size estimate is rough: about one byte per three characters of Java
+ * code, and a few bytes per write of template text.
+ *
+ * The servlet code generator collects Java code instead of JSP content, see
+ * {@link #ServiceMethodSplitter(boolean)}. Its helper methods are written
+ * separately from the service method.
+ */
+
+public class ServiceMethodSplitter extends Writer
+{
+    /**
+     * The prefix of the names of the helper methods.
+     */
+
+    static final String PART_PREFIX = "_jspServicePart";
+
+    /**
+     * The default limit of the estimated service method size, the
+     * <code>HugeMethodLimit</code> of HotSpot.
+     */
+
+    public static final int DEFAULT_SIZE_LIMIT = 8000;
+
+    /**
+     * The estimated size of writing a string constant.
+     */
+
+    private static final int WRITE_SIZE = 8;
+
+    /**
+     * The estimated size of calling a helper method.
+     */
+
+    private static final int CALL_SIZE = 16;
+
+    /**
+     * The minimum estimated size of the code moved into a helper method.
+     */
+
+    private static final int MIN_PART_SIZE = 256;
+
+    /**
+     * The maximum length of a string constant written by a helper method.
+     */
+
+    private static final int MAX_LITERAL_LENGTH = 8192;
+
+    /**
+     * The locals of the service method that are passed to the helper methods.
+     */
+
+    private static final Set<String> PARAMETERS = new HashSet<String>(Arrays.asList("request", "response", "pageContext", "out", "context"));
+
+    /**
+     * The declarations of the locals of the service method that are declared
+     * again in the helper methods if they are used.
+     */
+
+    private static final Map<String, String> LOCALS = new LinkedHashMap<String, String>();
+
+    static
+    {
+        LOCALS.put("session", "HttpSession session = pageContext.getSession();");
+        LOCALS.put("application", "ServletContext application = pageContext.getServletContext();");
+        LOCALS.put("config", "ServletConfig config = pageContext.getServletConfig();");
+        LOCALS.put("page", "Object page = this;");
+        LOCALS.put("_boolean_result", "boolean _boolean_result=false;");
+    }
+
+    /**
+     * The names of the locals bound by {@link ObjectPathHoister}.
+     */
+
+    private static final Pattern HOISTED_LOCAL = Pattern.compile("_objectPath\\d+");
+
+    /**
+     * The start of a local variable declaration.
+     */
+
+    private static final Pattern DECLARATION = Pattern.compile(
+                    "\\s*(?:final\\s+)?([A-Za-z_][\\w.]*(?:\\s*<[^;=(){}]*>)?(?:\\s*\\[\\s*\\])*)\\s+([A-Za-z_]\\w*)\\s*[=;,\\[]");
+
+    /**
+     * The keywords that may start a statement like a declaration.
+     */
+
+    private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList("return", "throw", "new", "else", "case",
+                    "do", "assert", "yield", "break", "continue", "instanceof"));
+
+    /**
+     * The flag whether the chunks contain Java code instead of JSP content.
+     */
+
+    private final boolean javaCode;
+
+    /**
+     * The chunks of the page.
+     */
+
+    private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+    /**
+     * The chunk that is currently written.
+     */
+
+    private Chunk current;
+
+    /**
+     * The chunk of the service method while a member is collected.
+     */
+
+    private Chunk suspended;
+
+    /**
+     * The constructor. The first chunk always stays in the service method.
+     */
+
+    public ServiceMethodSplitter()
+    {
+        this(false);
+    }
+
+    /**
+     * The constructor. The first chunk always stays in the service method.
+     *
+     * @param javaCode  <code>true</code> if the content is the Java code of
+     *                  the service method, <code>false</code> for JSP content
+     */
+
+    public ServiceMethodSplitter(boolean javaCode)
+    {
+        this.javaCode = javaCode;
+        startChunk(false);
+    }
+
+    /**
+     * Starts a new chunk.
+     *
+     * @param movable   <code>true</code> if the chunk may be moved into a
+     *                  helper method, <code>false</code> for the prologue and
+     *                  epilogue of the page
+     */
+
+    public void startChunk(boolean movable)
+    {
+        current = new Chunk(movable, javaCode);
+        chunks.add(current);
+    }
+
+    /**
+     * Starts collecting content that isn't part of the service method, like
+     * the body of a renderer class.
+     */
+
+    public void startMember()
+    {
+        suspended = current;
+        current = new Chunk(false, javaCode);
+    }
+
+    /**
+     * Ends collecting the content of a member and continues the chunk of the
+     * service method.
+     *
+     * @return  the collected JSP content or Java code
+     */
+
+    public String endMember()
+    {
+        String member = current.content.toString();
+        current = suspended;
+        suspended = null;
+        return member;
+    }
+
+    /**
+     * Translates JSP content into Java code like the content of a helper
+     * method.
+     *
+     * @param content   the JSP content
+     * @return  the Java code, or <code>null</code> if the content contains
+     *          directives, declarations or JSP syntax that can't be
+     *          translated, or uses the request or session of the service
+     *          method
+     */
+
+    public static String toJava(String content)
+    {
+        Chunk chunk = new Chunk(true, false);
+        chunk.content.append(content);
+        chunk.analyze();
+        return (chunk.convertible && chunk.directives.length() == 0 && !chunk.referenced.contains("request")
+            && !chunk.referenced.contains("session")) ? chunk.code.toString() : null;
+    }
+
+    /**
+     * Checks whether Java code of the service method can be moved into
+     * another class, like the body of a renderer.
+     *
+     * @param code  the Java code
+     * @return  <code>true</code> if the code is a complete block that
+     *          doesn't use the request or session of the service method
+     */
+
+    public static boolean isStandalone(String code)
+    {
+        Chunk chunk = new Chunk(true, true);
+        chunk.content.append(code);
+        chunk.analyze();
+        return chunk.convertible && !chunk.referenced.contains("request") && !chunk.referenced.contains("session");
+    }
+
+    /**
+     * @return  the JSP content or Java code of all chunks
+     */
+
+    public String getContent()
+    {
+        StringBuilder result = new StringBuilder();
+        for (Chunk chunk : chunks)
+        {
+            result.append(chunk.content);
+        }
+        return result.toString();
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len)
+    {
+        current.content.append(cbuf, off, len);
+    }
+
+    @Override
+    public void flush()
+    {
+        // the chunks are written by writeTo
+    }
+
+    @Override
+    public void close()
+    {
+        // the chunks are written by writeTo
+    }
+
+    /**
+     * Writes the page.
+     *
+     * @param out       the output writer
+     * @param split     <code>true</code> to move chunks into helper methods
+     *                  if the service method exceeds the limit
+     * @param limit     the limit of the estimated service method size
+     * @return  the estimated size of the written service method
+     * @throws IOException  if writing failed
+     */
+
+    public int writeTo(Writer out, boolean split, int limit) throws IOException
+    {
+        return writeTo(out, null, split, limit);
+    }
+
+    /**
+     * Writes the service method and the helper methods.
+     *
+     * @param out       the output writer of the service method
+     * @param members   the output writer of the helper methods,
+     *                  <code>null</code> to declare them in the page
+     * @param split     <code>true</code> to move chunks into helper methods
+     *                  if the service method exceeds the limit
+     * @param limit     the limit of the estimated service method size
+     * @return  the estimated size of the written service method
+     * @throws IOException  if writing failed
+     */
+
+    public int writeTo(Writer out, Writer members, boolean split, int limit) throws IOException
+    {
+        int size = 0;
+        for (Chunk chunk : chunks)
+        {
+            chunk.analyze();
+            size += chunk.size;
+        }
+
+        if (!split || size <= limit)
+        {
+            for (Chunk chunk : chunks)
+            {
+                out.write(chunk.content.toString());
+            }
+            return size;
+        }
+
+        boolean[] movable = getMovableChunks();
+        StringBuilder parts = new StringBuilder();
+        int partCount = 0;
+
+        for (int i = 0; i < chunks.size();)
+        {
+            List<Chunk> group = new ArrayList<Chunk>();
+            int groupSize = 0;
+            while (i < chunks.size() && movable[i] && (group.isEmpty() || groupSize + chunks.get(i).size <= limit))
+            {
+                group.add(chunks.get(i));
+                groupSize += chunks.get(i++).size;
+            }
+
+            if (groupSize < MIN_PART_SIZE)
+            {
+                // not worth a call, or a chunk that can't be moved
+                for (Chunk chunk : group)
+                {
+                    out.write(chunk.content.toString());
+                }
+                if (group.isEmpty())
+                {
+                    out.write(chunks.get(i++).content.toString());
+                }
+                continue;
+            }
+
+            String name = PART_PREFIX + (++partCount);
+            for (Chunk chunk : group)
+            {
+                out.write(chunk.directives.toString());
+            }
+            String call = name + "(request,response,pageContext,out,context);";
+            out.write(javaCode ? call + '\n' : ISMLtoJSPcompiler.SCRIPTING_START + call + ISMLtoJSPcompiler.SCRIPTING_END);
+
+            parts.append('\n');
+            appendPart(parts, name, group);
+            size += CALL_SIZE - groupSize;
+        }
+
+        if (members != null)
+        {
+            members.write(parts.toString());
+        }
+        else if (parts.length() > 0)
+        {
+            out.write(ISMLtoJSPcompiler.DECLARATION_START);
+            out.write(parts.toString());
+            out.write(ISMLtoJSPcompiler.DECLARATION_END);
+        }
+        return size;
+    }
+
+    /**
+     * Checks which chunks can be moved into helper methods.
+     */
+
+    private boolean[] getMovableChunks()
+    {
+        // the chunks that reference a local by name, and that declare it
+        Map<String, Set<Chunk>> references = new LinkedHashMap<String, Set<Chunk>>();
+        Map<String, Set<Chunk>> declarations = new LinkedHashMap<String, Set<Chunk>>();
+        for (Chunk chunk : chunks)
+        {
+            for (String name : chunk.referenced)
+            {
+                references.computeIfAbsent(name, key -> new HashSet<Chunk>()).add(chunk);
+            }
+            for (String name : chunk.declared)
+            {
+                declarations.computeIfAbsent(name, key -> new HashSet<Chunk>()).add(chunk);
+            }
+        }
+
+        // the brace depth of the service method before the chunk, raw JSP
+        // scriptlets may open a block in one chunk and close it in another
+        int depth = 0;
+
+        boolean[] result = new boolean[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++)
+        {
+            Chunk chunk = chunks.get(i);
+            result[i] = chunk.movable && chunk.convertible && depth == 0;
+            depth += chunk.balance;
+
+            for (String name : chunk.referenced)
+            {
+                Set<Chunk> declaring = declarations.get(name);
+                if (declaring != null && !(declaring.size() == 1 && declaring.contains(chunk)) && !isPassed(name))
+                {
+                    // uses a local of another chunk
+                    result[i] = false;
+                }
+            }
+            for (String name : chunk.declared)
+            {
+                if (PARAMETERS.contains(name) || references.get(name).size() > 1)
+                {
+                    // the local is used by another chunk
+                    result[i] = false;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether a local of the service method is available in the
+     * helper methods.
+     */
+
+    private static boolean isPassed(String name)
+    {
+        return PARAMETERS.contains(name) || LOCALS.containsKey(name) || HOISTED_LOCAL.matcher(name).matches();
+    }
+
+    /**
+     * Appends the declaration of a helper method.
+     */
+
+    private static void appendPart(StringBuilder parts, String name, List<Chunk> group)
+    {
+        StringBuilder code = new StringBuilder();
+        Set<String> referenced = new TreeSet<String>();
+        Set<String> declared = new HashSet<String>();
+        for (Chunk chunk : group)
+        {
+            code.append(chunk.code);
+            referenced.addAll(chunk.referenced);
+            declared.addAll(chunk.declared);
+        }
+
+        // the service body is wrapped in a catch of Throwable by the JSP compiler
+        parts.append("private void ").append(name).append("(HttpServletRequest request, HttpServletResponse response, ")
+             .append("PageContext pageContext, JspWriter out, TemplateExecutionConfig context) throws Throwable\n{\n");
+
+        for (Map.Entry<String, String> local : LOCALS.entrySet())
+        {
+            if (referenced.contains(local.getKey()) && !declared.contains(local.getKey()))
+            {
+                parts.append(local.getValue()).append('\n');
+            }
+        }
+        for (String local : referenced)
+        {
+            if (HOISTED_LOCAL.matcher(local).matches() && code.indexOf("Object " + local + " =") < 0)
+            {
+                parts.append("Object ").append(local).append(" = ").append(ObjectPathHoister.UNRESOLVED).append(";\n");
+            }
+        }
+
+        parts.append(code).append('}');
+    }
+
+    /**
+     * Appends the writes of template text to Java code. Long texts are
+     * written in parts to keep the string constants small.
+     *
+     * @param code  the Java code
+     * @param text  the template text
+     * @return  the number of writes
+     */
+
+    static int appendWrite(StringBuilder code, String text)
+    {
+        int writes = 0;
+        for (int off = 0; off < text.length(); off += MAX_LITERAL_LENGTH)
+        {
+            code.append("out.write(\"");
+            for (int i = off; i < Math.min(text.length(), off + MAX_LITERAL_LENGTH); i++)
+            {
+                char ch = text.charAt(i);
+                switch(ch)
+                {
+                    case '\\': code.append("\\\\"); break;
+                    case '"': code.append("\\\""); break;
+                    case '\n': code.append("\\n"); break;
+                    case '\r': code.append("\\r"); break;
+                    case '\t': code.append("\\t"); break;
+                    // '%>' would end the declaration
+                    case '%': code.append("\\045"); break;
+                    default:
+                        if (ch < 0x20)
+                        {
+                            code.append('\\').append(Integer.toOctalString(ch | 0x1000).substring(2));
+                        }
+                        else
+                        {
+                            code.append(ch);
+                        }
+                }
+            }
+            code.append("\");\n");
+            writes++;
+        }
+        return writes;
+    }
+
+    /**
+     * A part of the page.
+     */
+
+    private static class Chunk
+    {
+        /**
+         * The JSP code of the chunk.
+         */
+
+        final StringBuilder content = new StringBuilder();
+
+        /**
+         * The flag whether the chunk may be moved into a helper method.
+         */
+
+        final boolean movable;
+
+        /**
+         * The flag whether the content is Java code.
+         */
+
+        final boolean javaCode;
+
+        /**
+         * The Java code of the chunk.
+         */
+
+        final StringBuilder code = new StringBuilder();
+
+        /**
+         * The directives and declarations of the chunk.
+         */
+
+        final StringBuilder directives = new StringBuilder();
+
+        /**
+         * The flag whether the chunk can be translated into a helper method.
+         */
+
+        boolean convertible = true;
+
+        /**
+         * The estimated bytecode size of the chunk.
+         */
+
+        int size;
+
+        /**
+         * The number of braces and parentheses that the code opens but
+         * doesn't close, negative if it closes more than it opens.
+         */
+
+        int balance;
+
+        /**
+         * The names used by the code, and the locals declared outside of
+         * blocks.
+         */
+
+        final Set<String> referenced = new HashSet<String>(), declared = new HashSet<String>();
+
+        Chunk(boolean movable, boolean javaCode)
+        {
+            this.movable = movable;
+            this.javaCode = javaCode;
+        }
+
+        /**
+         * Translates the chunk into Java code and estimates its size.
+         */
+
+        void analyze()
+        {
+            if (javaCode)
+            {
+                // the string constants of the code don't add to its size
+                code.append(content);
+                size = scan() / 3;
+                return;
+            }
+
+            String s = content.toString();
+            int i = 0;
+
+            while (i < s.length())
+            {
+                int start = s.indexOf("<%", i);
+                String text = s.substring(i, (start < 0) ? s.length() : start);
+                if (!text.isEmpty())
+                {
+                    convertible &= !StaticTextWriter.isJspSyntax(text) && !text.contains("%\\>");
+                    size += appendWrite(code, text) * WRITE_SIZE;
+                }
+                if (start < 0)
+                {
+                    break;
+                }
+
+                boolean comment = s.startsWith("<%--", start);
+                int end = s.indexOf(comment ? "--%>" : "%>", start + 2);
+                if (end < 0)
+                {
+                    convertible = false;
+                    break;
+                }
+                end += comment ? 4 : 2;
+
+                String element = s.substring(start, end);
+                if (comment || element.contains("%\\>"))
+                {
+                    convertible = false;
+                }
+                else if (element.startsWith("<%@"))
+                {
+                    // included files and tag libraries depend on the position
+                    convertible &= !element.contains("include") && !element.contains("taglib");
+                    directives.append(element);
+                }
+                else if (element.startsWith("<%!"))
+                {
+                    directives.append(element);
+                }
+                else if (element.startsWith("<%="))
+                {
+                    String expression = element.substring(3, element.length() - 2);
+                    code.append("out.print(").append(expression.trim()).append(");\n");
+                    size += WRITE_SIZE + expression.length() / 3;
+                }
+                else
+                {
+                    String scriptlet = element.substring(2, element.length() - 2);
+                    code.append(scriptlet).append('\n');
+                    size += scriptlet.length() / 3;
+                }
+                i = end;
+            }
+
+            // the chunks that can't be moved may open or close blocks
+            scan();
+        }
+
+        /**
+         * Collects the names used and declared by the Java code, and checks
+         * whether the code can be moved.
+         *
+         * @return  the number of characters of the code outside of string and
+         *          character literals
+         */
+
+        private int scan()
+        {
+            int depth = 0;
+            int literals = 0;
+            boolean statementStart = true;
+
+            for (int i = 0; i < code.length();)
+            {
+                char ch = code.charAt(i);
+
+                if (ch == '"' || ch == '\'')
+                {
+                    int end = skipLiteral(i, ch);
+                    literals += Math.min(end, code.length()) - i;
+                    i = end;
+                    statementStart = false;
+                }
+                else if (ch == '/' && i + 1 < code.length() && code.charAt(i + 1) == '/')
+                {
+                    int end = code.indexOf("\n", i);
+                    i = (end < 0) ? code.length() : end;
+                }
+                else if (ch == '/' && i + 1 < code.length() && code.charAt(i + 1) == '*')
+                {
+                    int end = code.indexOf("*/", i + 2);
+                    i = (end < 0) ? code.length() : end + 2;
+                }
+                else if (Character.isJavaIdentifierStart(ch))
+                {
+                    if (statementStart && depth == 0)
+                    {
+                        Matcher matcher = DECLARATION.matcher(code).region(i, code.length());
+                        if (matcher.lookingAt() && !KEYWORDS.contains(matcher.group(1)))
+                        {
+                            declared.add(matcher.group(2));
+                        }
+                    }
+
+                    int end = i;
+                    while (end < code.length() && Character.isJavaIdentifierPart(code.charAt(end)))
+                    {
+                        end++;
+                    }
+                    String name = code.substring(i, end);
+                    if (!isMember(i))
+                    {
+                        referenced.add(name);
+                    }
+
+                    // the helper method can't return from the service method
+                    // or replace its writer
+                    if (name.equals("return") || name.startsWith("_jspx_")
+                        || (name.equals("out") && !isMember(i) && isAssigned(end)))
+                    {
+                        convertible = false;
+                    }
+
+                    i = end;
+                    statementStart = false;
+                }
+                else
+                {
+                    if (ch == '{' || ch == '(')
+                    {
+                        depth++;
+                    }
+                    else if (ch == '}' || ch == ')')
+                    {
+                        depth--;
+                    }
+
+                    if (!Character.isWhitespace(ch))
+                    {
+                        statementStart = (ch == ';' || ch == '{' || ch == '}');
+                    }
+                    i++;
+                }
+            }
+
+            balance = depth;
+            if (depth != 0)
+            {
+                // the chunk is part of a block
+                convertible = false;
+            }
+            return code.length() - literals;
+        }
+
+        private int skipLiteral(int start, char quote)
+        {
+            int i = start + 1;
+            while (i < code.length() && code.charAt(i) != quote)
+            {
+                i += (code.charAt(i) == '\\') ? 2 : 1;
+            }
+            return i + 1;
+        }
+
+        /**
+         * Checks whether the name at the position is a member of another
+         * expression.
+         */
+
+        private boolean isMember(int position)
+        {
+            int i = position - 1;
+            while (i >= 0 && Character.isWhitespace(code.charAt(i)))
+            {
+                i--;
+            }
+            return i >= 0 && code.charAt(i) == '.';
+        }
+
+        /**
+         * Checks whether the name that ends at the position is assigned.
+         */
+
+        private boolean isAssigned(int position)
+        {
+            int i = position;
+            while (i < code.length() && Character.isWhitespace(code.charAt(i)))
+            {
+                i++;
+            }
+            return i + 1 < code.length() && code.charAt(i) == '=' && code.charAt(i + 1) != '=';
+        }
+    }
+}
@@ -0,0 +1,665 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.intershop.beehive.isml.capi.ISMLTemplateConstants;
+
+/**
+ * A code generator that translates a parsed ISML template into the Java
+ * source of a servlet class, so that the template doesn't have to be
+ * translated by a JSP compiler.
+ *
+ * The class extends the template base class like the JSP page and implements
+ * <code>_jspService</code> like a page compiled by Jasper. The template nodes
+ * are visited like for the JSP page: template text becomes
+ * <code>out.write</code> calls, expressions <code>out.print</code> calls and
+ * scriptlets Java statements of the service method. ISML tags are compiled
+ * by {@link ISMLTagCompiler}; their scriptlets become statements, their
+ * declarations members of the class, and the page directives they print are
+ * taken from {@link TagCompilationContext#getPageAttribute(String)}. Large
+ * service methods are split like JSP pages, see {@link ServiceMethodSplitter}.
+ * Templates that contain JSP syntax in their text, like custom JSP tags, EL
+ * expressions or include directives, can't be translated and are rejected.
+ *
+ * The pages are unbuffered like the JSP pages. A buffer size that tags set
+ * with the <code>buffer</code> page attribute is passed to the page context,
+ * a size that isn't <code>none</code> or a number of kilobytes is rejected.
+ *
+ * The class names follow the conventions of Jasper, see
+ * {@link #getClassName(String)}.
+ */
+
+public class ServletCodeGenerator extends JspCodeGenerator
+{
+    /**
+     * The default package of the servlet API.
+     */
+
+    public static final String DEFAULT_SERVLET_API_PACKAGE = "jakarta.servlet";
+
+    /**
+     * The encoding of the generated Java source.
+     */
+
+    public static final String SOURCE_ENCODING = "UTF-8";
+
+    /**
+     * The package of the compiled templates.
+     */
+
+    private static final String TEMPLATE_PACKAGE = ISMLTemplateConstants.JSP_DIR_PREFIX.replace('/', '.');
+
+    /**
+     * The content type of pages without ISCONTENT tag.
+     */
+
+    private static final String DEFAULT_CONTENT_TYPE = "text/html";
+
+    /**
+     * A buffer size in kilobytes.
+     */
+
+    private static final Pattern BUFFER_SIZE = Pattern.compile("(\\d+)kb");
+
+    /**
+     * The keywords and literals that aren't valid identifiers.
+     */
+
+    private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList("abstract", "assert", "boolean",
+                    "break", "byte", "case", "catch", "char", "class", "const", "continue", "default", "do", "double",
+                    "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if", "implements",
+                    "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+                    "protected", "public", "return", "short", "static", "strictfp", "super", "switch",
+                    "synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile", "while",
+                    "true", "false", "null", "_"));
+
+    /**
+     * The fully qualified name of the generated class.
+     */
+
+    private final String className;
+
+    /**
+     * The package of the servlet API.
+     */
+
+    private String servletApiPackage = DEFAULT_SERVLET_API_PACKAGE;
+
+    /**
+     * The encoding of the content of the page, <code>null</code> for the
+     * encoding of the output writer.
+     */
+
+    private String contentEncoding = null;
+
+    /**
+     * The constructor.
+     *
+     * @param className the fully qualified name of the generated class
+     */
+
+    public ServletCodeGenerator(String className)
+    {
+        this.className = className;
+    }
+
+    /**
+     * @return  the fully qualified name of the generated class
+     */
+
+    public String getClassName()
+    {
+        return className;
+    }
+
+    /**
+     * Sets the package of the servlet API, <code>javax.servlet</code> or
+     * <code>jakarta.servlet</code>.
+     *
+     * @param servletApiPackage the package, <code>null</code> for the default
+     */
+
+    public void setServletApiPackage(String servletApiPackage)
+    {
+        this.servletApiPackage = (servletApiPackage != null) ? servletApiPackage : DEFAULT_SERVLET_API_PACKAGE;
+    }
+
+    /**
+     * Sets the encoding of the content of the page. The Java source can then
+     * be written with {@link #SOURCE_ENCODING}.
+     *
+     * @param contentEncoding   the encoding, <code>null</code> for the
+     *                          encoding of the output writer
+     */
+
+    public void setContentEncoding(String contentEncoding)
+    {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Returns the name of the class of a template, like Jasper names the
+     * class of the JSP page of the template.
+     *
+     * @param templatePath  the path of the template relative to the template
+     *                      root, e.g. <code>default/inc/Header.isml</code>
+     * @return  the fully qualified class name, e.g.
+     *          <code>org.apache.jsp.default_.inc.Header_jsp</code>
+     */
+
+    public static String getClassName(String templatePath)
+    {
+        String path = templatePath.replace('\\', '/');
+        if (path.endsWith(ISMLTemplateConstants.TEMPLATE_EXTENSION))
+        {
+            path = path.substring(0, path.length() - ISMLTemplateConstants.TEMPLATE_EXTENSION.length())
+                            + ISMLTemplateConstants.TEMPLATE_PAGECOMPILE_EXTENSION;
+        }
+
+        StringBuilder result = new StringBuilder(TEMPLATE_PACKAGE);
+        for (String segment : path.split("/"))
+        {
+            if (!segment.isEmpty())
+            {
+                result.append('.').append(toIdentifier(segment));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the Java source file of a class.
+     *
+     * @param sourceDir the root directory of the sources
+     * @param className the fully qualified class name
+     * @return  the source file
+     */
+
+    public static File getSourceFile(File sourceDir, String className)
+    {
+        return new File(sourceDir, className.replace('.', File.separatorChar) + ISMLTemplateConstants.TEMPLATE_JAVA_EXTENSION);
+    }
+
+    /**
+     * Converts a path segment into a Java identifier like Jasper. Dots are
+     * replaced by underscores, underscores and characters that aren't valid
+     * by their hexadecimal code.
+     */
+
+    static String toIdentifier(String segment)
+    {
+        StringBuilder result = new StringBuilder();
+        if (!Character.isJavaIdentifierStart(segment.charAt(0)))
+        {
+            result.append('_');
+        }
+
+        for (int i = 0; i < segment.length(); i++)
+        {
+            char ch = segment.charAt(i);
+            if (ch == '.')
+            {
+                result.append('_');
+            }
+            else if (Character.isJavaIdentifierPart(ch) && ch != '_')
+            {
+                result.append(ch);
+            }
+            else
+            {
+                result.append('_').append(String.format("%04x", (int)ch));
+            }
+        }
+
+        if (KEYWORDS.contains(result.toString()))
+        {
+            result.append('_');
+        }
+        return result.toString();
+    }
+
+    @Override
+    public void generate(ISMLTemplate template, OutputStreamWriter out) throws IOException, ParseException
+    {
+        String source = toServlet(template, (contentEncoding != null) ? contentEncoding : out.getEncoding());
+        out.write(mapSource(template, source,
+                        className.substring(className.lastIndexOf('.') + 1) + ISMLTemplateConstants.TEMPLATE_JAVA_EXTENSION));
+        out.flush();
+    }
+
+    /**
+     * Generates the source of the servlet class of a parsed template.
+     *
+     * @param template  the parsed template
+     * @param encoding  the encoding of the content of the page
+     * @return  the Java source
+     * @throws IOException      if writing the code failed
+     * @throws ParseException   if the template contains invalid ISML tags or
+     *                          JSP syntax that can't be translated
+     */
+
+    protected String toServlet(ISMLTemplate template, String encoding) throws IOException, ParseException
+    {
+        for (TemplateNode node : template.getNodes())
+        {
+            if (node instanceof TextNode && StaticTextWriter.isJspSyntax(((TextNode)node).getText()))
+            {
+                throw new ParseException("Error in template " + template.getName()
+                                + " : The template contains JSP syntax that can't be compiled to a servlet.\n");
+            }
+        }
+
+        ServiceMethodSplitter page = new ServiceMethodSplitter(true);
+        ServletBody body = new ServletBody(page);
+        printPage(template, page, new ServletWriter(body, encoding));
+
+        StringWriter service = new StringWriter();
+        StringWriter parts = new StringWriter();
+        setServiceMethodSize(page.writeTo(service, parts, isSplitServiceMethod(), getServiceMethodSizeLimit()));
+        String members = body.getMembers() + parts;
+
+        Set<String> imports = new LinkedHashSet<String>(isMinimalImports()
+                        ? PageImports.getImports(Arrays.asList(service.toString(), members))
+                        : PageImports.DEFAULT_IMPORTS);
+        TagCompilationContext tagContext = getTagContext();
+        if (tagContext.getPageAttribute("import") != null)
+        {
+            for (String entry : tagContext.getPageAttribute("import").split(","))
+            {
+                imports.add(entry.trim());
+            }
+        }
+
+        String contentType = tagContext.getPageAttribute("contentType");
+        return getSource(imports, members, service.toString(), (contentType != null) ? contentType : DEFAULT_CONTENT_TYPE,
+                        getBufferSize(template.getName(), tagContext.getPageAttribute("buffer")),
+                        !"false".equals(tagContext.getPageAttribute("session")));
+    }
+
+    /**
+     * Returns the buffer size of the page context.
+     *
+     * @param templateName  the name of the template for error messages
+     * @param buffer        the value of the <code>buffer</code> page
+     *                      attribute, <code>null</code> if no tag set it
+     * @return  the buffer size in bytes, 0 for an unbuffered page
+     * @throws ParseException   if the value is no valid buffer size
+     */
+
+    static int getBufferSize(String templateName, String buffer) throws ParseException
+    {
+        if (buffer == null || "none".equals(buffer))
+        {
+            return 0;
+        }
+
+        Matcher matcher = BUFFER_SIZE.matcher(buffer);
+        if (!matcher.matches() || matcher.group(1).length() > 6)
+        {
+            throw new ParseException("Error in template " + templateName + " : The buffer size \"" + buffer
+                            + "\" can't be compiled to a servlet.\n");
+        }
+        return Integer.parseInt(matcher.group(1)) * 1024;
+    }
+
+    /**
+     * Prints the code that initializes the template execution. The page
+     * settings are part of the servlet class.
+     */
+
+    @Override
+    protected void printPrologue(CompactingWriter result) throws IOException
+    {
+        printPrologueCode(result);
+    }
+
+    /**
+     * Returns the body of a named renderer, which is already Java code.
+     */
+
+    @Override
+    protected String getRendererCode(String body)
+    {
+        return ServiceMethodSplitter.isStandalone(body) ? body : null;
+    }
+
+    @Override
+    protected void printRenderer(CompactingWriter result, String body, int number) throws IOException
+    {
+        if (getRendererCode(body) == null)
+        {
+            // an anonymous class like without named renderers
+            ((ServletWriter)result).printCode(ISMLTagCompiler.RENDERER_START + body + ISMLTagCompiler.RENDERER_END);
+            return;
+        }
+        super.printRenderer(result, body, number);
+    }
+
+    @Override
+    protected NodeWriter createNodeWriter(CompactingWriter result, NestingStack nestingTable)
+    {
+        return new ServletNodeWriter((ServletWriter)result, nestingTable, getTagContext());
+    }
+
+    /**
+     * Returns the source of the servlet class.
+     */
+
+    private String getSource(Set<String> imports, String members, String body, String contentType, int bufferSize,
+                    boolean session)
+    {
+        int dot = className.lastIndexOf('.');
+        StringBuilder result = new StringBuilder();
+
+        if (dot > 0)
+        {
+            result.append("package ").append(className, 0, dot).append(";\n\n");
+        }
+
+        // the implicit imports of JSP pages
+        List<String> allImports = new ArrayList<String>(Arrays.asList(servletApiPackage + ".*",
+                        servletApiPackage + ".http.*", servletApiPackage + ".jsp.*"));
+        allImports.addAll(imports);
+        for (String entry : allImports)
+        {
+            result.append("import ").append(entry).append(";\n");
+        }
+
+        result.append("\npublic final class ").append(className.substring(dot + 1)).append(" extends ").append(getBaseClass()).append("\n{\n");
+        result.append("private static final JspFactory _jspxFactory = JspFactory.getDefaultFactory();\n\n");
+        result.append(members);
+
+        result.append("public void _jspService(HttpServletRequest request, HttpServletResponse response)\n");
+        result.append("throws java.io.IOException, ServletException\n{\n");
+        result.append("PageContext pageContext = null;\n");
+        if (session)
+        {
+            result.append("HttpSession session = null;\n");
+        }
+        result.append("JspWriter out = null;\n");
+        result.append("JspWriter _jspx_out = null;\n");
+        result.append("PageContext _jspx_page_context = null;\n");
+        result.append("Object page = this;\n");
+        result.append("try\n{\n");
+        result.append("response.setContentType(\"").append(contentType.replace("\\", "\\\\").replace("\"", "\\\"")).append("\");\n");
+        result.append("pageContext = _jspxFactory.getPageContext(this, request, response, null, ")
+              .append(session).append(", ").append(bufferSize).append(", true);\n");
+        result.append("_jspx_page_context = pageContext;\n");
+        result.append("ServletContext application = pageContext.getServletContext();\n");
+        result.append("ServletConfig config = pageContext.getServletConfig();\n");
+        if (session)
+        {
+            result.append("session = pageContext.getSession();\n");
+        }
+        result.append("out = pageContext.getOut();\n");
+        result.append("_jspx_out = out;\n\n");
+        result.append(body);
+        result.append("}\ncatch (Throwable t)\n{\n");
+        result.append("if (!(t instanceof SkipPageException))\n{\n");
+        result.append("out = _jspx_out;\n");
+        result.append("if (out != null && out.getBufferSize() != 0)\n{\n");
+        result.append("try\n{\nif (response.isCommitted())\n{\nout.flush();\n}\nelse\n{\nout.clearBuffer();\n}\n}\n");
+        result.append("catch (java.io.IOException e)\n{\n// the page exception is handled below\n}\n}\n");
+        result.append("if (_jspx_page_context != null)\n{\n_jspx_page_context.handlePageException(t);\n}\n");
+        result.append("else\n{\nthrow new ServletException(t);\n}\n}\n");
+        result.append("}\nfinally\n{\n_jspxFactory.releasePageContext(_jspx_page_context);\n}\n");
+        result.append("}\n}\n");
+        return result.toString();
+    }
+
+    /**
+     * Writes the code of the template nodes as Java statements.
+     */
+
+    private static class ServletNodeWriter extends NodeWriter
+    {
+        /**
+         * The output writer.
+         */
+
+        private final ServletWriter servlet;
+
+        ServletNodeWriter(ServletWriter result, NestingStack nestingTable, TagCompilationContext tagContext)
+        {
+            super(result, nestingTable, tagContext);
+            this.servlet = result;
+        }
+
+        @Override
+        public void visitText(TextNode node) throws IOException
+        {
+            if (node.isCompactable())
+            {
+                super.visitText(node);
+            }
+            else
+            {
+                servlet.printText(node.getText());
+            }
+        }
+
+        @Override
+        public void visitExpression(ExpressionNode node) throws IOException
+        {
+            servlet.printCode("out.print(context.getFormattedValue(" + ISMLExpressionCompiler.compile(node.getExpression())
+                            + ",null));\n");
+        }
+
+        @Override
+        public void visitScriptlet(ScriptletNode node) throws IOException
+        {
+            servlet.printCode(node.getCode().trim() + '\n');
+        }
+    }
+
+    /**
+     * The output writer of the servlet. Template text is written as
+     * <code>out.write</code> calls, the code of the ISML tags is passed to
+     * the {@link ServletBody}.
+     */
+
+    private static class ServletWriter extends CompactingWriter
+    {
+        /**
+         * The code of the servlet.
+         */
+
+        private final ServletBody body;
+
+        ServletWriter(ServletBody body, String encoding) throws UnsupportedEncodingException
+        {
+            super(body, encoding);
+            this.body = body;
+        }
+
+        @Override
+        protected void writeContent(char[] content, int off, int len) throws IOException
+        {
+            body.appendText(new String(content, off, len));
+        }
+
+        /**
+         * Writes template text that isn't compacted.
+         *
+         * @param text  the text
+         * @throws IOException  if writing failed
+         */
+
+        void printText(String text) throws IOException
+        {
+            // write the compacted text before
+            print("");
+            body.appendText(text);
+        }
+
+        /**
+         * Writes Java statements of the service method.
+         *
+         * @param code  the statements
+         * @throws IOException  if writing failed
+         */
+
+        void printCode(String code) throws IOException
+        {
+            print("");
+            body.appendCode(code);
+        }
+    }
+
+    /**
+     * Collects the Java code of the servlet. The code that the ISML tags and
+     * the code generator print as JSP elements is translated: scriptlets into
+     * statements, expressions into <code>out.print</code> calls and
+     * declarations into members. The page directives of the tags are
+     * recorded in the {@link TagCompilationContext} and skipped.
+     */
+
+    private static class ServletBody extends Writer
+    {
+        /**
+         * The code of the service method.
+         */
+
+        private final Writer page;
+
+        /**
+         * The generated JSP content that isn't translated yet, the start of
+         * an element that isn't complete.
+         */
+
+        private final StringBuilder pending = new StringBuilder();
+
+        /**
+         * The members of the class.
+         */
+
+        private final StringBuilder members = new StringBuilder();
+
+        ServletBody(Writer page)
+        {
+            this.page = page;
+        }
+
+        /**
+         * @return  the members of the class
+         */
+
+        String getMembers()
+        {
+            return members.toString();
+        }
+
+        /**
+         * Appends the writes of template text to the service method.
+         */
+
+        void appendText(String text) throws IOException
+        {
+            StringBuilder code = new StringBuilder();
+            ServiceMethodSplitter.appendWrite(code, text);
+            page.write(code.toString());
+        }
+
+        /**
+         * Appends statements to the service method.
+         */
+
+        void appendCode(String code) throws IOException
+        {
+            page.write(code);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException
+        {
+            pending.append(cbuf, off, len);
+
+            int start;
+            while ((start = pending.indexOf("<%")) >= 0)
+            {
+                if (start > 0)
+                {
+                    // markup that the tags print around their code
+                    appendText(pending.substring(0, start));
+                    pending.delete(0, start);
+                }
+
+                boolean comment = pending.indexOf("<%--") == 0;
+                int end = pending.indexOf(comment ? "--%>" : "%>", 2);
+                if (pending.length() < 4 || end < 2)
+                {
+                    // the element isn't complete
+                    return;
+                }
+
+                String element = pending.substring(2, end).replace("%\\>", "%>");
+                pending.delete(0, end + (comment ? 4 : 2));
+
+                if (comment || element.startsWith("@"))
+                {
+                    continue;
+                }
+                if (element.startsWith("!"))
+                {
+                    members.append(element.substring(1).trim()).append("\n\n");
+                }
+                else if (element.startsWith("="))
+                {
+                    page.write("out.print(" + element.substring(1).trim() + ");\n");
+                }
+                else
+                {
+                    page.write(element.trim() + '\n');
+                }
+            }
+
+            // keep a '<' that may start an element
+            int length = pending.length() - ((pending.length() > 0 && pending.charAt(pending.length() - 1) == '<') ? 1 : 0);
+            if (length > 0)
+            {
+                appendText(pending.substring(0, length));
+                pending.delete(0, length);
+            }
+        }
+
+        @Override
+        public void flush()
+        {
+            // the code is written by the generator
+        }
+
+        @Override
+        public void close()
+        {
+            // the code is written by the generator
+        }
+    }
+}
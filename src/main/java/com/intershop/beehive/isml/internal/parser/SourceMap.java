@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The mapping of the lines of the generated code to the lines of the ISML
+ * source as JSR-45 source map (SMAP).
+ *
+ * The code generator marks the start of the code of every template node with
+ * a Java comment in a scriptlet, see {@link #getMarker(int)}. The markers
+ * stay in the code when it is moved into helper methods or translated into a
+ * servlet class. When the code is complete, the markers are removed and the
+ * lines of the code of each node are mapped to the line of the node. The
+ * code after an end marker, with line 0, isn't mapped.
+ */
+
+public class SourceMap
+{
+    /**
+     * The stratum of the ISML source.
+     */
+
+    public static final String STRATUM = "ISML";
+
+    /**
+     * The markers in JSP scriptlets and in Java code.
+     */
+
+    private static final Pattern MARKER = Pattern.compile("<% /\\*@isml:(\\d+)\\*/ %>|/\\*@isml:(\\d+)\\*/\\n?");
+
+    /**
+     * The code without the markers.
+     */
+
+    private final String code;
+
+    /**
+     * The SMAP.
+     */
+
+    private final String smap;
+
+    /**
+     * Removes the markers from generated code and maps the lines.
+     *
+     * @param code          the generated code with markers
+     * @param outputName    the file name of the generated code
+     * @param sourceName    the file name of the ISML source
+     */
+
+    public SourceMap(String code, String outputName, String sourceName)
+    {
+        StringBuilder result = new StringBuilder(code.length());
+        StringBuilder lines = new StringBuilder();
+        Matcher matcher = MARKER.matcher(code);
+        int position = 0, outputLine = 1, mappedLine = 0, mappedStart = 0;
+        boolean first = true;
+
+        while (matcher.find())
+        {
+            outputLine += count(code, position, matcher.start());
+            result.append(code, position, matcher.start());
+            position = matcher.end();
+
+            int line = Integer.parseInt((matcher.group(1) != null) ? matcher.group(1) : matcher.group(2));
+            if (mappedLine > 0)
+            {
+                first = appendLine(lines, mappedLine, mappedStart, outputLine, first);
+            }
+            mappedLine = line;
+            mappedStart = outputLine;
+        }
+        result.append(code, position, code.length());
+        if (mappedLine > 0)
+        {
+            appendLine(lines, mappedLine, mappedStart, outputLine + count(code, position, code.length()) + 1, first);
+        }
+
+        this.code = result.toString();
+        this.smap = "SMAP\n" + outputName + '\n' + STRATUM + '\n'
+                        + "*S " + STRATUM + '\n'
+                        + "*F\n1 " + sourceName + '\n'
+                        + "*L\n" + lines
+                        + "*E\n";
+    }
+
+    /**
+     * Appends the line info of a node, the lines of its code end before the
+     * given line or on the start line.
+     */
+
+    private static boolean appendLine(StringBuilder lines, int line, int start, int end, boolean first)
+    {
+        lines.append(line);
+        if (first)
+        {
+            lines.append("#1");
+        }
+        lines.append(':').append(start);
+        if (end - start > 1)
+        {
+            lines.append(',').append(end - start);
+        }
+        lines.append('\n');
+        return false;
+    }
+
+    private static int count(String code, int start, int end)
+    {
+        int result = 0;
+        for (int i = start; i < end; i++)
+        {
+            if (code.charAt(i) == '\n')
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the marker of the code of a node.
+     *
+     * @param line  the line of the node in the ISML source, 0 for the end
+     *              of the mapped code
+     * @return  the marker as JSP scriptlet
+     */
+
+    public static String getMarker(int line)
+    {
+        return ISMLtoJSPcompiler.SCRIPTING_START + "/*@isml:" + line + "*/" + ISMLtoJSPcompiler.SCRIPTING_END;
+    }
+
+    /**
+     * @return  the generated code without markers
+     */
+
+    public String getCode()
+    {
+        return code;
+    }
+
+    /**
+     * @return  the SMAP
+     */
+
+    public String getSmap()
+    {
+        return smap;
+    }
+}
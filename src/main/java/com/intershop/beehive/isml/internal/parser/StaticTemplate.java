@@ -0,0 +1,428 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.intershop.beehive.isml.capi.ISMLTemplateConstants;
+import com.intershop.beehive.isml.internal.CharacterSetMappings;
+
+/**
+ * A template without any dynamic content. The template consists of static
+ * content, at most one ISCONTENT and at most one ISCACHE tag with constant
+ * attributes. It is written as pre-encoded resource with a descriptor instead
+ * of a JSP page, so the runtime can serve it without executing a page.
+ *
+ * The descriptor is a properties file with these keys:
+ * <ul>
+ * <li><code>template</code> - the name of the template source</li>
+ * <li><code>contentType</code> - the value of the Content-Type header</li>
+ * <li><code>charset</code> - the Java encoding of the resource</li>
+ * <li><code>httpStatus</code> - the HTTP status, if the ISCONTENT tag sets one</li>
+ * <li><code>personalized</code> - <code>true</code> if the page is personalized</li>
+ * <li><code>cache.type</code>, <code>cache.hour</code>, <code>cache.minute</code>
+ * - the attributes of the ISCACHE tag; the page cache header depends on the
+ * time of the request and has to be computed by the runtime</li>
+ * </ul>
+ *
+ * Template markers and the header and footer of the template base class are
+ * not written for static templates.
+ */
+
+public class StaticTemplate
+{
+    /**
+     * The name of the template source.
+     */
+
+    private final String name;
+
+    /**
+     * The content of the page.
+     */
+
+    private final byte[] content;
+
+    /**
+     * The descriptor properties.
+     */
+
+    private final Map<String, String> properties;
+
+    private StaticTemplate(String name, byte[] content, Map<String, String> properties)
+    {
+        this.name = name;
+        this.content = content;
+        this.properties = properties;
+    }
+
+    /**
+     * Checks whether a template is static and prepares its content.
+     *
+     * @param template  the parsed template
+     * @param encoding  the encoding of the JSP file the template would be
+     *                  compiled to
+     * @return  the static template, or <code>null</code> if the template has
+     *          dynamic content or must be compiled to report errors
+     * @throws IOException  if the encoding is not supported
+     */
+
+    public static StaticTemplate classify(ISMLTemplate template, String encoding) throws IOException
+    {
+        if (!template.getDeclarations().isEmpty())
+        {
+            return null;
+        }
+
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        properties.put("template", template.getName());
+
+        // the content as the JSP page would write it
+        StringWriter text = new StringWriter();
+        CompactingWriter result = new CompactingWriter(text, encoding);
+        boolean content = false, cache = false;
+
+        for (TemplateNode node : template.getNodes())
+        {
+            if (node instanceof TextNode && ((TextNode)node).isCompactable()
+                && !StaticTextWriter.isJspSyntax(((TextNode)node).getText()))
+            {
+                result.printCompact(((TextNode)node).getText());
+            }
+            else if (node instanceof TagNode && ((TagNode)node).getKind() == ISMLtoJSPcompilerConstants.ISCONTENT && !content)
+            {
+                if (!putContentProperties((TagNode)node, encoding, properties, result))
+                {
+                    return null;
+                }
+                content = true;
+
+                // the tag ends the compacted content before it
+                result.print("");
+            }
+            else if (node instanceof TagNode && ((TagNode)node).getKind() == ISMLtoJSPcompilerConstants.ISCACHE && !cache)
+            {
+                if (!putCacheProperties((TagNode)node, properties))
+                {
+                    return null;
+                }
+                cache = true;
+                result.print("");
+            }
+            else
+            {
+                return null;
+            }
+        }
+        result.flush();
+
+        if (!content)
+        {
+            // the precompiler always adds an ISCONTENT tag
+            putContentType("text/html", encoding, properties);
+        }
+        properties.put("charset", encoding);
+
+        try
+        {
+            ByteBuffer buffer = Charset.forName(encoding).newEncoder()
+                            .onMalformedInput(CodingErrorAction.REPORT)
+                            .onUnmappableCharacter(CodingErrorAction.REPORT)
+                            .encode(CharBuffer.wrap(text.toString()));
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new StaticTemplate(template.getName(), bytes, properties);
+        }
+        catch (CharacterCodingException e)
+        {
+            // the JSP compiler reports the content that can't be encoded
+            return null;
+        }
+    }
+
+    /**
+     * Adds the properties of an ISCONTENT tag.
+     *
+     * @return  <code>false</code> if the tag has dynamic or invalid attributes
+     */
+
+    private static boolean putContentProperties(TagNode tag, String encoding, Map<String, String> properties,
+                    CompactingWriter result)
+    {
+        String type = "text/html";
+
+        for (TagAttribute attribute : tag.getAttributes())
+        {
+            if (attribute.isExpression())
+            {
+                return false;
+            }
+
+            String value = attribute.getValue();
+            switch(attribute.getKind())
+            {
+                case ISMLtoJSPcompilerConstants.ATT_COMPACT:
+                    if ("true".equals(value))
+                    {
+                        result.enable();
+                    }
+                    else if (!"false".equals(value))
+                    {
+                        return false;
+                    }
+                    break;
+                case ISMLtoJSPcompilerConstants.ATT_TEMPLATEMARKER:
+                    // the page would print template markers
+                    if (!"false".equals(value))
+                    {
+                        return false;
+                    }
+                    break;
+                case ISMLtoJSPcompilerConstants.ATT_TYPE:
+                    type = value;
+                    break;
+                case ISMLtoJSPcompilerConstants.ATT_CHARSET:
+                    // the JSP encoding is already determined by the charset
+                    break;
+                case ISMLtoJSPcompilerConstants.ATT_HTTPSTATUS:
+                    try
+                    {
+                        int status = Integer.parseInt(value);
+                        if (status < 1)
+                        {
+                            return false;
+                        }
+                        properties.put("httpStatus", String.valueOf(status));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        return false;
+                    }
+                    break;
+                case ISMLtoJSPcompilerConstants.ATT_SESSION:
+                    // static content doesn't use the session
+                    if (!"true".equals(value) && !"false".equals(value))
+                    {
+                        return false;
+                    }
+                    break;
+                case ISMLtoJSPcompilerConstants.ATT_PERSONALIZED:
+                    if ("true".equals(value))
+                    {
+                        properties.put("personalized", value);
+                    }
+                    else if (!"false".equals(value))
+                    {
+                        return false;
+                    }
+                    break;
+                case ISMLtoJSPcompilerConstants.ATT_ENCODE:
+                    // the encoding of expressions doesn't apply to static content
+                    if (!"on".equals(value) && !"off".equals(value) && !"html".equals(value) && !"xml".equals(value)
+                        && !"wml".equals(value))
+                    {
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        putContentType(type, encoding, properties);
+        return true;
+    }
+
+    private static void putContentType(String type, String encoding, Map<String, String> properties)
+    {
+        // the page maps the historical name of the JSP encoding
+        String charset = CharacterSetMappings.mapCharsetToHttp(
+                        new OutputStreamWriter(OutputStream.nullOutputStream(), Charset.forName(encoding)).getEncoding());
+        properties.put("contentType", type + ((charset != null) ? (";charset=" + charset) : ""));
+    }
+
+    /**
+     * Adds the properties of an ISCACHE tag.
+     *
+     * @return  <code>false</code> if the tag has dynamic or invalid attributes
+     */
+
+    private static boolean putCacheProperties(TagNode tag, Map<String, String> properties)
+    {
+        String type = tag.getValueAttribute(ISMLtoJSPcompilerConstants.ATT_TYPE);
+        if (!"daily".equals(type) && !"relative".equals(type) && !"forbidden".equals(type))
+        {
+            return false;
+        }
+
+        String hour = "0", minute = "0";
+        for (TagAttribute attribute : tag.getAttributes())
+        {
+            int kind = attribute.getKind();
+            if (attribute.isExpression())
+            {
+                return false;
+            }
+
+            try
+            {
+                if (kind == ISMLtoJSPcompilerConstants.ATT_HOUR)
+                {
+                    hour = String.valueOf(Long.parseLong(attribute.getValue()));
+                }
+                else if (kind == ISMLtoJSPcompilerConstants.ATT_MINUTE)
+                {
+                    minute = String.valueOf(Long.parseLong(attribute.getValue()));
+                }
+                else if (kind != ISMLtoJSPcompilerConstants.ATT_TYPE)
+                {
+                    return false;
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                return false;
+            }
+        }
+
+        properties.put("cache.type", type);
+        if (!"forbidden".equals(type))
+        {
+            properties.put("cache.hour", hour);
+            properties.put("cache.minute", minute);
+        }
+        return true;
+    }
+
+    /**
+     * @return  the name of the template source
+     */
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return  the encoded content of the page
+     */
+
+    public byte[] getContent()
+    {
+        return content.clone();
+    }
+
+    /**
+     * @return  the descriptor properties in the order they are written
+     */
+
+    public Map<String, String> getProperties()
+    {
+        return properties;
+    }
+
+    /**
+     * Writes the resource and its descriptor.
+     *
+     * @param jspFile   the JSP file the template would be compiled to
+     * @throws IOException  if a file can't be written
+     */
+
+    public void write(File jspFile) throws IOException
+    {
+        try (OutputStream out = new FileOutputStream(getResourceFile(jspFile)))
+        {
+            out.write(content);
+        }
+
+        StringBuilder descriptor = new StringBuilder();
+        for (Map.Entry<String, String> property : properties.entrySet())
+        {
+            descriptor.append(property.getKey()).append('=').append(escape(property.getValue())).append('\n');
+        }
+        try (OutputStream out = new FileOutputStream(getDescriptorFile(jspFile)))
+        {
+            out.write(descriptor.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * Escapes a value for a properties file.
+     */
+
+    private static String escape(String s)
+    {
+        StringBuilder result = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++)
+        {
+            char ch = s.charAt(i);
+            if (ch >= 0x20 && ch < 0x7F && ch != '\\')
+            {
+                result.append(ch);
+            }
+            else
+            {
+                result.append("\\u").append(Integer.toHexString(ch | 0x10000).substring(1));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the static resource of a template.
+     *
+     * @param jspFile   the JSP file the template would be compiled to
+     * @return  the resource file
+     */
+
+    public static File getResourceFile(File jspFile)
+    {
+        return new File(getBaseName(jspFile) + ISMLTemplateConstants.TEMPLATE_STATIC_EXTENSION);
+    }
+
+    /**
+     * Returns the descriptor of the static resource of a template.
+     *
+     * @param jspFile   the JSP file the template would be compiled to
+     * @return  the descriptor file
+     */
+
+    public static File getDescriptorFile(File jspFile)
+    {
+        return new File(getBaseName(jspFile) + ISMLTemplateConstants.TEMPLATE_STATIC_DESCRIPTOR_EXTENSION);
+    }
+
+    private static String getBaseName(File jspFile)
+    {
+        String path = jspFile.getPath();
+        return path.endsWith(ISMLTemplateConstants.TEMPLATE_PAGECOMPILE_EXTENSION)
+                        ? path.substring(0, path.length() - ISMLTemplateConstants.TEMPLATE_PAGECOMPILE_EXTENSION.length())
+                        : path;
+    }
+}
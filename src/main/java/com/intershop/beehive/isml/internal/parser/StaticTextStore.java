@@ -0,0 +1,420 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.intershop.beehive.isml.capi.StaticTextBlob;
+
+/**
+ * Collects the static content of all templates of a template tree in one
+ * {@link StaticTextBlob} file at compile time. Segments are addressed by their
+ * SHA-256 digest, so content that is shared by several templates is stored
+ * only once.
+ *
+ * The blob file and its index only grow: segments of templates that are
+ * compiled again stay in the file, because other compiled templates may still
+ * reference them. Deleting both files starts a new blob with a new id.
+ * A new blob replaces the file instead of truncating it, because a runtime
+ * may have mapped the old blob.
+ *
+ * The index is a text file next to the blob. Its first line is the id of the
+ * blob, followed by one line <code>&lt;digest&gt; &lt;offset&gt; &lt;length&gt;</code>
+ * per segment.
+ *
+ * A store is shared by the compilers of the same blob file within a JVM. It is
+ * validated against the files whenever it is opened, so a store whose files
+ * were deleted or written by another process is read again.
+ */
+
+public class StaticTextStore
+{
+    /**
+     * The default file name of the blob in the template output directory.
+     */
+
+    public static final String DEFAULT_NAME = "isml-static.blob";
+
+    /**
+     * The extension of the index file.
+     */
+
+    public static final String INDEX_EXTENSION = ".idx";
+
+    /**
+     * The extension of the report file.
+     */
+
+    public static final String REPORT_EXTENSION = ".report";
+
+    /**
+     * The stores by canonical blob file.
+     */
+
+    private static final Map<File, StaticTextStore> stores = new HashMap<File, StaticTextStore>();
+
+    /**
+     * The blob file.
+     */
+
+    private final File blobFile;
+
+    /**
+     * The index file.
+     */
+
+    private final File indexFile;
+
+    /**
+     * The id of the blob.
+     */
+
+    private String id;
+
+    /**
+     * The offsets and lengths of the stored segments by digest.
+     */
+
+    private final Map<String, long[]> segments = new HashMap<String, long[]>();
+
+    /**
+     * The size of the blob file.
+     */
+
+    private long size;
+
+    /**
+     * The size of the index file.
+     */
+
+    private long indexSize;
+
+    /**
+     * The statistics since the store was opened or reset.
+     */
+
+    private long references, referencedBytes, constantPoolBytes, addedSegments, addedBytes;
+
+    /**
+     * The digests of the segments referenced since the store was opened or
+     * reset.
+     */
+
+    private final Set<String> referenced = new HashSet<String>();
+
+    /**
+     * The size of the segments referenced since the store was opened or reset.
+     */
+
+    private long referencedSegmentBytes;
+
+    private StaticTextStore(File blobFile)
+    {
+        this.blobFile = blobFile;
+        this.indexFile = new File(blobFile.getPath() + INDEX_EXTENSION);
+    }
+
+    /**
+     * Returns the store of a blob file. The blob and its index are created if
+     * they don't exist.
+     *
+     * @param blobFile  the blob file
+     * @return  the store, shared by all compilers that use the same file as
+     *          long as the files are unchanged
+     * @throws IOException  if the existing index can't be read
+     */
+
+    public static synchronized StaticTextStore open(File blobFile) throws IOException
+    {
+        File file = blobFile.getCanonicalFile();
+        StaticTextStore store = stores.get(file);
+
+        if (store == null || !store.isCurrent())
+        {
+            store = new StaticTextStore(file);
+            store.load();
+            stores.put(file, store);
+        }
+        return store;
+    }
+
+    /**
+     * Reads the index, or starts a new blob if the index doesn't match the
+     * blob file.
+     */
+
+    private synchronized void load() throws IOException
+    {
+        if (blobFile.isFile() && indexFile.isFile())
+        {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.US_ASCII)))
+            {
+                String indexId = reader.readLine();
+                long end = StaticTextBlob.HEADER_LENGTH;
+                String line;
+
+                while ((line = reader.readLine()) != null)
+                {
+                    String[] fields = line.split(" ");
+                    long[] segment = { Long.parseLong(fields[1]), Long.parseLong(fields[2]) };
+                    segments.put(fields[0], segment);
+                    end = Math.max(end, segment[0] + segment[1]);
+                }
+
+                id = readId();
+                size = blobFile.length();
+                indexSize = indexFile.length();
+
+                if (id != null && id.equals(indexId) && size >= end)
+                {
+                    return;
+                }
+            }
+            catch (RuntimeException e)
+            {
+                // broken index, start a new blob
+            }
+        }
+
+        create();
+    }
+
+    /**
+     * Checks whether the blob and index files are still the files the store
+     * has read or written.
+     */
+
+    private synchronized boolean isCurrent() throws IOException
+    {
+        return blobFile.length() == size && indexFile.length() == indexSize && id.equals(readId());
+    }
+
+    /**
+     * Reads the id from the header of the blob file.
+     */
+
+    private String readId() throws IOException
+    {
+        byte[] header = new byte[StaticTextBlob.HEADER_LENGTH];
+        if (blobFile.length() < header.length)
+        {
+            return null;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(blobFile, "r"))
+        {
+            file.readFully(header);
+        }
+
+        String text = new String(header, StandardCharsets.US_ASCII);
+        return text.startsWith(StaticTextBlob.MAGIC) ? text.substring(StaticTextBlob.MAGIC.length()) : null;
+    }
+
+    /**
+     * Creates an empty blob with a new id.
+     */
+
+    private void create() throws IOException
+    {
+        id = UUID.randomUUID().toString();
+        segments.clear();
+
+        File dir = blobFile.getParentFile();
+        if (!dir.exists())
+        {
+            dir.mkdirs();
+        }
+
+        // the blob is replaced before the index that refers to it
+        replace(blobFile, (StaticTextBlob.MAGIC + id).getBytes(StandardCharsets.US_ASCII));
+        replace(indexFile, (id + '\n').getBytes(StandardCharsets.US_ASCII));
+        size = StaticTextBlob.HEADER_LENGTH;
+        indexSize = indexFile.length();
+    }
+
+    /**
+     * Writes a file through a temporary file, so that a mapping of the
+     * existing file stays valid.
+     */
+
+    private static void replace(File file, byte[] content) throws IOException
+    {
+        Path tempFile = Files.createTempFile(file.getParentFile().toPath(), file.getName(), null);
+        try
+        {
+            Files.write(tempFile, content);
+            Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * @return  the id of the blob
+     */
+
+    public synchronized String getId()
+    {
+        return id;
+    }
+
+    /**
+     * @return  the blob file
+     */
+
+    public File getBlobFile()
+    {
+        return blobFile;
+    }
+
+    /**
+     * Adds a segment to the blob, unless the blob contains it already.
+     *
+     * @param bytes the content of the segment
+     * @return  the offset of the segment in the blob file
+     * @throws IOException  if the blob can't be written
+     */
+
+    public synchronized long add(byte[] bytes) throws IOException
+    {
+        String digest = digest(bytes);
+        long[] segment = segments.get(digest);
+
+        if (segment == null)
+        {
+            segment = new long[] { size, bytes.length };
+
+            // write the content before the index refers to it
+            try (OutputStream out = new FileOutputStream(blobFile, true))
+            {
+                out.write(bytes);
+            }
+            byte[] entry = (digest + ' ' + segment[0] + ' ' + segment[1] + '\n').getBytes(StandardCharsets.US_ASCII);
+            try (OutputStream out = new FileOutputStream(indexFile, true))
+            {
+                out.write(entry);
+            }
+
+            segments.put(digest, segment);
+            size += bytes.length;
+            indexSize += entry.length;
+            addedSegments++;
+            addedBytes += bytes.length;
+        }
+
+        references++;
+        referencedBytes += bytes.length;
+        constantPoolBytes += getConstantPoolSize(bytes);
+        if (referenced.add(digest))
+        {
+            referencedSegmentBytes += bytes.length;
+        }
+
+        return segment[0];
+    }
+
+    /**
+     * Returns the size of a segment as string constant in a class file, as it
+     * would be declared without the blob (see {@link StaticTextWriter}).
+     */
+
+    private static long getConstantPoolSize(byte[] bytes)
+    {
+        long result = 0;
+        for (byte b : bytes)
+        {
+            // modified UTF-8 of the ISO-8859-1 characters
+            result += (b > 0) ? 1 : 2;
+        }
+        return result;
+    }
+
+    private static String digest(byte[] bytes)
+    {
+        try
+        {
+            StringBuilder result = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes))
+            {
+                result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return result.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every JVM supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a report of the segments referenced since the store was opened
+     * or the statistics were reset.
+     *
+     * @return  the report, one value per line
+     */
+
+    public synchronized String getReport()
+    {
+        StringBuilder report = new StringBuilder();
+
+        report.append("Static text blob: ").append(blobFile).append('\n');
+        report.append("Blob size: ").append(size).append(" bytes, ").append(segments.size()).append(" segments\n");
+        report.append("Segment references: ").append(references).append(" (").append(referencedBytes).append(" bytes)\n");
+        report.append("Distinct segments referenced: ").append(referenced.size()).append(" (").append(referencedSegmentBytes).append(" bytes)\n");
+        report.append("Segments added: ").append(addedSegments).append(" (").append(addedBytes).append(" bytes)\n");
+        report.append("Deduplication ratio: ")
+              .append((referencedSegmentBytes > 0) ? String.format(Locale.ENGLISH, "%.2f", (double)referencedBytes / referencedSegmentBytes) : "-")
+              .append('\n');
+        // without the blob every reference is a string constant in the class
+        // file, and a String and a byte[] on the heap after initialization
+        report.append("Expected metaspace savings: ").append(constantPoolBytes).append(" bytes\n");
+        report.append("Expected heap savings: ").append(2 * referencedBytes).append(" bytes\n");
+
+        return report.toString();
+    }
+
+    /**
+     * Resets the statistics of the report.
+     */
+
+    public synchronized void resetStatistics()
+    {
+        references = referencedBytes = constantPoolBytes = addedSegments = addedBytes = referencedSegmentBytes = 0;
+        referenced.clear();
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.intershop.beehive.isml.capi.StaticTextBlob;
+
+/**
+ * A compacting writer that writes static template content as pre-encoded
+ * bytes. The content is encoded at compile time with the encoding of the JSP
+ * file, which is also the charset of the ISCONTENT tag. It is declared as
+ * <code>static final byte[]</code> constant and written with
+ * <code>writeStaticBytes(out, bytes, charset)</code> of the template base
+ * class, which has to flush <code>out</code> and write the bytes to the
+ * response, or write the decoded text if the response uses another charset.
+ *
+ * Content that is short, can't be encoded or would be interpreted by the JSP
+ * compiler (JSP tags, EL expressions, escapes) is written as template text.
+ * The byte constants are stored as ISO-8859-1 string literals, because array
+ * initializers of large constants exceed the size limit of the static
+ * initializer.
+ *
+ * If a {@link StaticTextStore} is given, the content is stored in the shared
+ * blob of the template tree instead, and the page writes a slice of the
+ * mapped blob.
+ */
+
+public class StaticTextWriter extends CompactingWriter
+{
+    /**
+     * The name of the constant with the charset of the byte constants.
+     */
+
+    static final String CHARSET_CONSTANT = "_STATIC_TEXT_CHARSET";
+
+    /**
+     * The prefix of the names of the byte constants.
+     */
+
+    static final String CONSTANT_PREFIX = "_STATIC_TEXT_";
+
+    /**
+     * The name of the constant with the shared blob.
+     */
+
+    static final String BLOB_CONSTANT = "_STATIC_TEXT_BLOB";
+
+    /**
+     * The minimum length of content that is written as bytes.
+     */
+
+    static final int MIN_LENGTH = 32;
+
+    /**
+     * The maximum number of bytes per constant; a string literal must not
+     * exceed 65535 bytes in the class file.
+     */
+
+    static final int MAX_CONSTANT_LENGTH = 0x7FFF;
+
+    /**
+     * The character sequences the JSP compiler interprets in template text.
+     */
+
+    private static final String[] JSP_SYNTAX = { "<%", "${", "#{", "<\\%", "\\$", "\\#", "<jsp:", "</jsp:" };
+
+    /**
+     * The encoder for the charset of the JSP file.
+     */
+
+    private final CharsetEncoder encoder;
+
+    /**
+     * The constant names by the content of the constant as ISO-8859-1 string.
+     */
+
+    private final Map<String, String> constants = new LinkedHashMap<String, String>();
+
+    /**
+     * The shared blob, <code>null</code> to declare byte constants.
+     */
+
+    private final StaticTextStore store;
+
+    /**
+     * The flag whether content was written to the shared blob.
+     */
+
+    private boolean blobUsed = false;
+
+    /**
+     * The constructor.
+     *
+     * @param  out    the chained output stream
+     * @param  enc    the character encoding, the jsp file is writen in
+     * @throws UnsupportedEncodingException if the encoding is not supported
+     */
+
+    public StaticTextWriter(Writer out, String enc) throws UnsupportedEncodingException
+    {
+        this(out, enc, null);
+    }
+
+    /**
+     * The constructor.
+     *
+     * @param  out    the chained output stream
+     * @param  enc    the character encoding, the jsp file is writen in
+     * @param  store  the shared blob of the template tree, <code>null</code>
+     *                to declare the content in the page
+     * @throws UnsupportedEncodingException if the encoding is not supported
+     */
+
+    public StaticTextWriter(Writer out, String enc, StaticTextStore store) throws UnsupportedEncodingException
+    {
+        super(out, enc);
+        this.store = store;
+
+        try
+        {
+            encoder = Charset.forName(enc).newEncoder()
+                            .onMalformedInput(CodingErrorAction.REPORT)
+                            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new UnsupportedEncodingException(enc);
+        }
+    }
+
+    @Override
+    protected void writeContent(char[] content, int off, int len) throws IOException
+    {
+        byte[] bytes = (len >= MIN_LENGTH) ? encode(content, off, len) : null;
+        if (bytes == null)
+        {
+            super.writeContent(content, off, len);
+            return;
+        }
+
+        StringBuilder code = new StringBuilder();
+        if (store != null)
+        {
+            code.append("writeStaticBytes(out,").append(BLOB_CONSTANT).append(".slice(").append(store.add(bytes)).append("L,")
+                .append(bytes.length).append("),").append(CHARSET_CONSTANT).append(");");
+            blobUsed = true;
+        }
+        else
+        {
+            for (int start = 0; start < bytes.length; start += MAX_CONSTANT_LENGTH)
+            {
+                String value = new String(bytes, start, Math.min(MAX_CONSTANT_LENGTH, bytes.length - start), StandardCharsets.ISO_8859_1);
+                String constant = constants.get(value);
+                if (constant == null)
+                {
+                    constant = CONSTANT_PREFIX + (constants.size() + 1);
+                    constants.put(value, constant);
+                }
+                code.append("writeStaticBytes(out,").append(constant).append(',').append(CHARSET_CONSTANT).append(");");
+            }
+        }
+
+        print(ISMLtoJSPcompiler.SCRIPTING_START);
+        print(code.toString());
+        print(ISMLtoJSPcompiler.SCRIPTING_END);
+    }
+
+    /**
+     * Encodes content that can be written as bytes.
+     *
+     * @return  the encoded content, or <code>null</code> if the content must be
+     *          written as template text
+     */
+
+    private byte[] encode(char[] content, int off, int len)
+    {
+        String text = new String(content, off, len);
+        if (isJspSyntax(text))
+        {
+            return null;
+        }
+
+        try
+        {
+            ByteBuffer buffer = encoder.reset().encode(CharBuffer.wrap(text));
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+        catch (CharacterCodingException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the JSP compiler would interpret a part of a text.
+     *
+     * @param text  the template text
+     * @return  <code>true</code> if the text contains JSP tags, EL expressions
+     *          or escapes
+     */
+
+    static boolean isJspSyntax(String text)
+    {
+        for (String syntax : JSP_SYNTAX)
+        {
+            if (text.contains(syntax))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the declarations of the byte constants that were written so
+     * far.
+     *
+     * @return  the Java member declarations, an empty list if no content was
+     *          written as bytes
+     */
+
+    public List<String> getDeclarations()
+    {
+        List<String> declarations = new ArrayList<String>();
+        if (constants.isEmpty() && !blobUsed)
+        {
+            return declarations;
+        }
+
+        declarations.add("private static final String " + CHARSET_CONSTANT + " = \"" + encoder.charset().name() + "\";");
+        if (blobUsed)
+        {
+            declarations.add("private static final " + StaticTextBlob.class.getName() + " " + BLOB_CONSTANT + " = "
+                            + StaticTextBlob.class.getName() + ".get(\"" + store.getId() + "\");");
+        }
+        for (Map.Entry<String, String> constant : constants.entrySet())
+        {
+            declarations.add("private static final byte[] " + constant.getValue() + " = \"" + escape(constant.getKey())
+                            + "\".getBytes(java.nio.charset.StandardCharsets.ISO_8859_1);");
+        }
+        return declarations;
+    }
+
+    /**
+     * Escapes a string for a Java string literal in a JSP declaration.
+     * Everything but printable ASCII characters is written as octal escape,
+     * and so is '%', which could end the declaration.
+     */
+
+    private static String escape(String s)
+    {
+        StringBuilder result = new StringBuilder(s.length() + 16);
+        for (int i = 0; i < s.length(); i++)
+        {
+            char ch = s.charAt(i);
+            if (ch >= 0x20 && ch < 0x7F && ch != '"' && ch != '\\' && ch != '%')
+            {
+                result.append(ch);
+            }
+            else
+            {
+                // octal escapes never exceed \377 for ISO-8859-1
+                result.append('\\').append(Integer.toOctalString(ch | 0x1000).substring(2));
+            }
+        }
+        return result.toString();
+    }
+}
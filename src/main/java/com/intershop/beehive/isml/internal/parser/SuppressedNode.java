@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+
+/**
+ * A node that was removed from the template by an optimization, e.g. the
+ * content of an ISIF branch that is never taken. Suppressed nodes produce no
+ * output, but suppressed tags are still validated by the code generator.
+ *
+ * @see DeadBranchEliminator
+ */
+
+public class SuppressedNode extends TemplateNode
+{
+    /**
+     * The removed node.
+     */
+
+    private final TemplateNode node;
+
+    /**
+     * The constructor.
+     *
+     * @param node  the removed node
+     */
+
+    public SuppressedNode(TemplateNode node)
+    {
+        super(node.getLine(), node.getColumn());
+        this.node = node;
+    }
+
+    /**
+     * @return  the removed node
+     */
+
+    public TemplateNode getNode()
+    {
+        return node;
+    }
+
+    @Override
+    public void accept(TemplateNodeVisitor visitor) throws IOException, ParseException
+    {
+        visitor.visitSuppressed(this);
+    }
+}
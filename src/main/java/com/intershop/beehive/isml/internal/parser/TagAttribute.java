@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+/**
+ * A parsed attribute of an ISML tag.
+ *
+ * The attributes of ISML tags are identified by the token kind of the
+ * attribute name, the attributes of custom tags (ISX, ISRENDER, ISFORM) by
+ * their name. The value is either a simple string or an ISML expression
+ * (<code>#...#</code>).
+ */
+
+public final class TagAttribute
+{
+    /**
+     * The kind of the attributes of custom tags.
+     */
+
+    public static final int CUSTOM = -1;
+
+    /**
+     * The token kind of the attribute name.
+     */
+
+    private final int kind;
+
+    /**
+     * The attribute name.
+     */
+
+    private final String name;
+
+    /**
+     * The simple value.
+     */
+
+    private final String value;
+
+    /**
+     * The ISML expression.
+     */
+
+    private final Expression expression;
+
+    private TagAttribute(int kind, String name, String value, Expression expression)
+    {
+        this.kind = kind;
+        this.name = name;
+        this.value = value;
+        this.expression = expression;
+    }
+
+    /**
+     * Creates an attribute of an ISML tag with a simple value.
+     *
+     * @param kind  the token kind of the attribute name
+     * @param value the value
+     * @return  the attribute
+     */
+
+    public static TagAttribute of(int kind, String value)
+    {
+        return new TagAttribute(kind, null, value, null);
+    }
+
+    /**
+     * Creates an attribute of an ISML tag with an ISML expression.
+     *
+     * @param kind          the token kind of the attribute name
+     * @param expression    the expression
+     * @return  the attribute
+     */
+
+    public static TagAttribute of(int kind, Expression expression)
+    {
+        return new TagAttribute(kind, null, null, expression);
+    }
+
+    /**
+     * Creates an attribute of a custom tag with a simple value.
+     *
+     * @param name  the attribute name
+     * @param value the value
+     * @return  the attribute
+     */
+
+    public static TagAttribute of(String name, String value)
+    {
+        return new TagAttribute(CUSTOM, name, value, null);
+    }
+
+    /**
+     * Creates an attribute of a custom tag with an ISML expression.
+     *
+     * @param name          the attribute name
+     * @param expression    the expression
+     * @return  the attribute
+     */
+
+    public static TagAttribute of(String name, Expression expression)
+    {
+        return new TagAttribute(CUSTOM, name, null, expression);
+    }
+
+    /**
+     * @return  the token kind of the attribute name, {@link #CUSTOM} for an
+     *          attribute of a custom tag
+     */
+
+    public int getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * @return  the name of an attribute of a custom tag, <code>null</code>
+     *          for an attribute of an ISML tag
+     */
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return  <code>true</code> if the value is an ISML expression
+     */
+
+    public boolean isExpression()
+    {
+        return expression != null;
+    }
+
+    /**
+     * @return  the simple value, <code>null</code> for an ISML expression
+     */
+
+    public String getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return  the ISML expression, <code>null</code> for a simple value
+     */
+
+    public Expression getExpression()
+    {
+        return expression;
+    }
+
+    /**
+     * @param replacement   the new ISML expression
+     * @return  a copy of this attribute with another expression
+     */
+
+    public TagAttribute withExpression(Expression replacement)
+    {
+        return new TagAttribute(kind, name, null, replacement);
+    }
+
+    @Override
+    public String toString()
+    {
+        String key = (name != null) ? name : String.valueOf(kind);
+        return key + '=' + ((expression != null) ? "#" + expression + "#" : '"' + value + '"');
+    }
+}
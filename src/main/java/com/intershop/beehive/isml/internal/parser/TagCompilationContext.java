@@ -0,0 +1,311 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.intershop.beehive.isml.capi.CustomTagModule;
+import com.intershop.beehive.isml.capi.CustomTagRegistry;
+
+/**
+ * The options of the code generation for the ISML tags of one template (see
+ * {@link ISMLTagCompiler}), and the static members that the code of the tags
+ * declares in the compiled template.
+ */
+
+public class TagCompilationContext
+{
+    /**
+     * Whether the boilerplate code of tags is delegated to helper methods of
+     * the template base class.
+     */
+
+    private boolean compactTagCode = false;
+
+    /**
+     * Whether the expiry of ISCACHE tags with constant attributes is computed
+     * at compile time or by a shared memoizing helper.
+     */
+
+    private boolean precomputeCacheExpiry = false;
+
+    /**
+     * Whether constant parameter arrays of custom tags are declared as static
+     * fields.
+     */
+
+    private boolean staticTagParameters = false;
+
+    /**
+     * Whether ISRENDER bodies are declared as named classes of the template.
+     */
+
+    private boolean namedRenderers = false;
+
+    /**
+     * The custom tags that are bound at compile time, <code>null</code> if
+     * all custom tags are resolved at runtime.
+     */
+
+    private CustomTagRegistry customTagRegistry = null;
+
+    /**
+     * The names of the declared constants by their type and value.
+     */
+
+    private final Map<String, String> constants = new HashMap<String, String>();
+
+    /**
+     * The member declarations of the template.
+     */
+
+    private final List<String> declarations = new ArrayList<String>();
+
+    /**
+     * The attributes of the page directives that the tags print.
+     */
+
+    private final Map<String, String> pageAttributes = new HashMap<String, String>();
+
+    /**
+     * Creates a context with the same options and without declarations, for
+     * code that is compiled but not written to the template.
+     *
+     * @return  the new context
+     */
+
+    public TagCompilationContext copyOptions()
+    {
+        TagCompilationContext copy = new TagCompilationContext();
+        copy.compactTagCode = compactTagCode;
+        copy.precomputeCacheExpiry = precomputeCacheExpiry;
+        copy.staticTagParameters = staticTagParameters;
+        copy.namedRenderers = namedRenderers;
+        copy.customTagRegistry = customTagRegistry;
+        return copy;
+    }
+
+    /**
+     * Enables the compact code generation. Tags like ISCACHE, ISCACHEKEY and
+     * ISPRINT then call helper methods of the template base class instead of
+     * inlining their implementation.
+     *
+     * @param compactTagCode    <code>true</code> to delegate tag boilerplate
+     *                          to helper methods
+     */
+
+    public void setCompactTagCode(boolean compactTagCode)
+    {
+        this.compactTagCode = compactTagCode;
+    }
+
+    /**
+     * @return  <code>true</code> if tag boilerplate is delegated to helper
+     *          methods
+     */
+
+    public boolean isCompactTagCode()
+    {
+        return compactTagCode;
+    }
+
+    /**
+     * Enables the precomputation of the expiry of ISCACHE tags with constant
+     * attributes. Relative expiry offsets become constants, and daily expiry
+     * times are taken from {@link com.intershop.beehive.isml.capi.DailyCacheExpiry}.
+     *
+     * @param precomputeCacheExpiry <code>true</code> to precompute the
+     *                              expiry of constant ISCACHE tags
+     */
+
+    public void setPrecomputeCacheExpiry(boolean precomputeCacheExpiry)
+    {
+        this.precomputeCacheExpiry = precomputeCacheExpiry;
+    }
+
+    /**
+     * @return  <code>true</code> if the expiry of constant ISCACHE tags is
+     *          precomputed
+     */
+
+    public boolean isPrecomputeCacheExpiry()
+    {
+        return precomputeCacheExpiry;
+    }
+
+    /**
+     * Enables static parameter arrays for custom tags. Arrays with only
+     * constant parameters are declared as static fields, arrays with
+     * expressions are copied from a static template array and only the
+     * expression parameters are created per call.
+     *
+     * @param staticTagParameters   <code>true</code> to declare constant
+     *                              parameters as static fields
+     */
+
+    public void setStaticTagParameters(boolean staticTagParameters)
+    {
+        this.staticTagParameters = staticTagParameters;
+    }
+
+    /**
+     * @return  <code>true</code> if constant parameters of custom tags are
+     *          declared as static fields
+     */
+
+    public boolean isStaticTagParameters()
+    {
+        return staticTagParameters;
+    }
+
+    /**
+     * Enables named renderer classes. The body of an ISRENDER tag is then
+     * declared as inner class of the template, which is instantiated once per
+     * template instance, instead of an anonymous class that is instantiated
+     * on every execution of the tag. The code generator declares the class
+     * when the body is complete.
+     *
+     * @param namedRenderers    <code>true</code> to declare named renderer
+     *                          classes
+     */
+
+    public void setNamedRenderers(boolean namedRenderers)
+    {
+        this.namedRenderers = namedRenderers;
+    }
+
+    /**
+     * @return  <code>true</code> if ISRENDER bodies are declared as named
+     *          classes
+     */
+
+    public boolean isNamedRenderers()
+    {
+        return namedRenderers;
+    }
+
+    /**
+     * Sets the custom tags that are bound at compile time. Custom tags of the
+     * registry are passed to the template base class as static
+     * {@link CustomTagModule} descriptors, and ISMODULE tags that declare them
+     * like the registry don't register them per request.
+     *
+     * @param customTagRegistry the registry, <code>null</code> to resolve
+     *                          all custom tags at runtime
+     */
+
+    public void setCustomTagRegistry(CustomTagRegistry customTagRegistry)
+    {
+        this.customTagRegistry = customTagRegistry;
+    }
+
+    /**
+     * Returns the declaration of a custom tag that is bound at compile time.
+     *
+     * @param name  the name of the tag
+     * @return  the declaration, or <code>null</code> if the tag is resolved
+     *          at runtime
+     */
+
+    public CustomTagModule getCustomTagModule(String name)
+    {
+        return (customTagRegistry != null) ? customTagRegistry.getModule(name) : null;
+    }
+
+    /**
+     * Adds a member declaration to the template.
+     *
+     * @param declaration   the Java code of the declaration
+     */
+
+    public void addDeclaration(String declaration)
+    {
+        declarations.add(declaration);
+    }
+
+    /**
+     * Declares a static constant in the template. Constants with the same
+     * type and value are declared only once.
+     *
+     * @param prefix    the prefix of the field name
+     * @param type      the Java type of the constant
+     * @param value     the Java expression of the value
+     * @return  the name of the field
+     */
+
+    public String declareConstant(String prefix, String type, String value)
+    {
+        String key = type + ' ' + value;
+        String name = constants.get(key);
+
+        if (name == null)
+        {
+            name = prefix + (constants.size() + 1);
+            constants.put(key, name);
+            declarations.add("private static final " + type + ' ' + name + " = " + value + ';');
+        }
+        return name;
+    }
+
+    /**
+     * @return  the member declarations of the template
+     */
+
+    public List<String> getDeclarations()
+    {
+        return declarations;
+    }
+
+    /**
+     * Records an attribute of a page directive that a tag prints, for code
+     * generators that don't write a JSP page. The values of
+     * <code>import</code> are joined with commas like in the directive.
+     *
+     * @param name  the attribute name, e.g. <code>contentType</code>
+     * @param value the attribute value
+     */
+
+    public void setPageAttribute(String name, String value)
+    {
+        pageAttributes.merge(name, value, (previous, added) -> "import".equals(name) ? previous + ',' + added : added);
+    }
+
+    /**
+     * @param name  the attribute name
+     * @return  the value of the attribute of the page directives,
+     *          <code>null</code> if no tag printed it
+     */
+
+    public String getPageAttribute(String name)
+    {
+        return pageAttributes.get(name);
+    }
+
+    /**
+     * Removes the declarations and page attributes of the previous template.
+     * The options are kept.
+     */
+
+    public void clearDeclarations()
+    {
+        constants.clear();
+        declarations.clear();
+        pageAttributes.clear();
+    }
+}
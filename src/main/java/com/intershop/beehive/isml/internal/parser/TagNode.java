@@ -0,0 +1,262 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ISML tag with its parsed attributes.
+ *
+ * The attributes are kept in source order, including repeated attributes.
+ * The attributes of ISML tags are identified by the token kind of the
+ * attribute name; if an attribute is repeated, the last occurrence is its
+ * value, except for the multi-valued attributes of ISMODULE. The attributes
+ * of custom tags (ISX, ISRENDER, ISFORM) are identified by their name.
+ *
+ * The parser flags whether the expressions of the attributes use JSP EL or
+ * call <code>existsTemplate()</code>.
+ */
+
+public class TagNode extends TemplateNode
+{
+    /**
+     * The tag token.
+     */
+
+    private final Token tag;
+
+    /**
+     * The parsed attributes.
+     */
+
+    private final List<TagAttribute> attributes;
+
+    /**
+     * The flag whether an attribute uses JSP EL.
+     */
+
+    private final boolean usesEl;
+
+    /**
+     * The flag whether an attribute calls <code>existsTemplate()</code>.
+     */
+
+    private final boolean usesExistsTemplate;
+
+    /**
+     * The constructor.
+     *
+     * @param tag           the tag token
+     * @param attributes    the parsed attributes in source order
+     */
+
+    public TagNode(Token tag, List<TagAttribute> attributes)
+    {
+        this(tag, attributes, false, false);
+    }
+
+    /**
+     * The constructor with the flags of the parser.
+     *
+     * @param tag                   the tag token
+     * @param attributes            the parsed attributes in source order
+     * @param usesEl                <code>true</code> if an attribute uses JSP
+     *                              EL
+     * @param usesExistsTemplate    <code>true</code> if an attribute calls
+     *                              <code>existsTemplate()</code>
+     */
+
+    public TagNode(Token tag, List<TagAttribute> attributes, boolean usesEl, boolean usesExistsTemplate)
+    {
+        super(tag.beginLine, tag.beginColumn);
+        this.tag = tag;
+        this.attributes = Collections.unmodifiableList(new ArrayList<TagAttribute>(attributes));
+        this.usesEl = usesEl;
+        this.usesExistsTemplate = usesExistsTemplate;
+    }
+
+    /**
+     * @return  the tag token
+     */
+
+    public Token getTag()
+    {
+        return tag;
+    }
+
+    /**
+     * @return  the token kind of the tag
+     */
+
+    public int getKind()
+    {
+        return tag.kind;
+    }
+
+    /**
+     * @return  the unmodifiable attributes in source order
+     */
+
+    public List<TagAttribute> getAttributes()
+    {
+        return attributes;
+    }
+
+    /**
+     * @return  <code>true</code> if the parser found JSP EL in an attribute
+     */
+
+    public boolean usesEl()
+    {
+        return usesEl;
+    }
+
+    /**
+     * @return  <code>true</code> if the parser found a call of
+     *          <code>existsTemplate()</code> in an attribute
+     */
+
+    public boolean usesExistsTemplate()
+    {
+        return usesExistsTemplate;
+    }
+
+    /**
+     * @param tag           the tag token
+     * @param attributes    the changed attributes
+     * @return  a node with the tag and attributes and with the same flags
+     */
+
+    public TagNode withAttributes(Token tag, List<TagAttribute> attributes)
+    {
+        return new TagNode(tag, attributes, usesEl, usesExistsTemplate);
+    }
+
+    /**
+     * Checks whether an attribute of an ISML tag has a simple value.
+     *
+     * @param kind  the token kind of the attribute name
+     * @return  <code>true</code> if the attribute exists with a simple value
+     */
+
+    public boolean hasValueAttribute(int kind)
+    {
+        return getValueAttribute(kind) != null;
+    }
+
+    /**
+     * Returns the simple value of an attribute of an ISML tag.
+     *
+     * @param kind  the token kind of the attribute name
+     * @return  the value or <code>null</code> if the attribute has no simple
+     *          value
+     */
+
+    public String getValueAttribute(int kind)
+    {
+        String result = null;
+        for (TagAttribute attribute : attributes)
+        {
+            if (attribute.getKind() == kind && !attribute.isExpression())
+            {
+                result = attribute.getValue();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns all simple values of a multi-valued attribute of an ISML tag.
+     *
+     * @param kind  the token kind of the attribute name
+     * @return  the values in source order
+     */
+
+    public List<String> getValueAttributes(int kind)
+    {
+        List<String> result = new ArrayList<String>();
+        for (TagAttribute attribute : attributes)
+        {
+            if (attribute.getKind() == kind && !attribute.isExpression())
+            {
+                result.add(attribute.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether an attribute of an ISML tag is an ISML expression.
+     *
+     * @param kind  the token kind of the attribute name
+     * @return  <code>true</code> if the attribute exists with an expression
+     */
+
+    public boolean hasExpressionAttribute(int kind)
+    {
+        return getExpressionAttribute(kind) != null;
+    }
+
+    /**
+     * Returns the ISML expression of an attribute of an ISML tag.
+     *
+     * @param kind  the token kind of the attribute name
+     * @return  the expression or <code>null</code> if the attribute is no
+     *          ISML expression
+     */
+
+    public Expression getExpressionAttribute(int kind)
+    {
+        Expression result = null;
+        for (TagAttribute attribute : attributes)
+        {
+            if (attribute.getKind() == kind && attribute.isExpression())
+            {
+                result = attribute.getExpression();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an attribute of a custom tag.
+     *
+     * @param name  the attribute name
+     * @return  the last attribute with the name or <code>null</code>
+     */
+
+    public TagAttribute getCustomAttribute(String name)
+    {
+        TagAttribute result = null;
+        for (TagAttribute attribute : attributes)
+        {
+            if (name.equals(attribute.getName()))
+            {
+                result = attribute;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void accept(TemplateNodeVisitor visitor) throws IOException, ParseException
+    {
+        visitor.visitTag(this);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the nodes of a template while it is parsed. The parser reports
+ * static content character by character, so subsequent text of the same kind
+ * is merged into one text node. Merging doesn't change the generated output,
+ * because compactable text is compacted as a whole until the next piece of
+ * uncompactable output anyway.
+ */
+
+public class TemplateBuilder
+{
+    /**
+     * The completed nodes.
+     */
+
+    private final List<TemplateNode> nodes = new ArrayList<TemplateNode>();
+
+    /**
+     * The pending text that is not yet added as node.
+     */
+
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * The flag whether the pending text is compactable.
+     */
+
+    private boolean textCompactable;
+
+    /**
+     * The position of the pending text.
+     */
+
+    private int textLine, textColumn;
+
+    /**
+     * The offsets of the JSP EL in the pending text.
+     */
+
+    private final List<Integer> textEl = new ArrayList<Integer>();
+
+    /**
+     * Adds compactable template content.
+     *
+     * @param token     the content token
+     */
+
+    public void addText(Token token)
+    {
+        addText(token.image, true, token.beginLine, token.beginColumn);
+    }
+
+    /**
+     * Adds the start of JSP EL (<code>${</code>) in template content.
+     *
+     * @param token     the content token
+     */
+
+    public void addElText(Token token)
+    {
+        addText(token.image, true, token.beginLine, token.beginColumn);
+        textEl.add(text.length() - token.image.length());
+    }
+
+    /**
+     * Adds content that is passed through unchanged.
+     *
+     * @param s         the content
+     * @param line      the line of the content
+     * @param column    the column of the content
+     */
+
+    public void addRawText(String s, int line, int column)
+    {
+        addText(s, false, line, column);
+    }
+
+    /**
+     * Adds an ISML expression that is printed into the page.
+     *
+     * @param expression    the parsed expression
+     * @param line          the line of the expression
+     * @param column        the column of the expression
+     */
+
+    public void addExpression(Expression expression, int line, int column)
+    {
+        add(new ExpressionNode(expression, line, column));
+    }
+
+    /**
+     * Adds an ISML expression that is printed into the page, with the usages
+     * the parser found in it.
+     *
+     * @param expression            the parsed expression
+     * @param usesEl                <code>true</code> if the expression uses
+     *                              JSP EL
+     * @param usesExistsTemplate    <code>true</code> if the expression calls
+     *                              <code>existsTemplate()</code>
+     * @param line                  the line of the expression
+     * @param column                the column of the expression
+     */
+
+    public void addExpression(Expression expression, boolean usesEl, boolean usesExistsTemplate, int line, int column)
+    {
+        add(new ExpressionNode(expression, usesEl, usesExistsTemplate, line, column));
+    }
+
+    /**
+     * Adds an ISML tag.
+     *
+     * @param tag           the tag token
+     * @param attributes    the parsed attributes
+     */
+
+    public void addTag(Token tag, List<TagAttribute> attributes)
+    {
+        add(new TagNode(tag, attributes));
+    }
+
+    /**
+     * Adds an ISML tag with the usages the parser found in its attributes.
+     *
+     * @param tag                   the tag token
+     * @param attributes            the parsed attributes
+     * @param usesEl                <code>true</code> if an attribute uses JSP
+     *                              EL
+     * @param usesExistsTemplate    <code>true</code> if an attribute calls
+     *                              <code>existsTemplate()</code>
+     */
+
+    public void addTag(Token tag, List<TagAttribute> attributes, boolean usesEl, boolean usesExistsTemplate)
+    {
+        add(new TagNode(tag, attributes, usesEl, usesExistsTemplate));
+    }
+
+    /**
+     * Adds Java code that is executed at the current position.
+     *
+     * @param code      the Java statements
+     * @param line      the line the code belongs to
+     * @param column    the column the code belongs to
+     */
+
+    public void addScriptlet(String code, int line, int column)
+    {
+        add(new ScriptletNode(code, line, column));
+    }
+
+    /**
+     * Adds a node.
+     *
+     * @param node      the node
+     */
+
+    public void add(TemplateNode node)
+    {
+        flushText();
+        nodes.add(node);
+    }
+
+    /**
+     * Creates the parsed template.
+     *
+     * @param name      the name of the template source
+     * @return  the template with all nodes added so far
+     */
+
+    public ISMLTemplate build(String name)
+    {
+        flushText();
+        return new ISMLTemplate(name, new ArrayList<TemplateNode>(nodes));
+    }
+
+    /**
+     * Appends text to the pending text. If the kind of text changes, the
+     * pending text is added as node before.
+     */
+
+    private void addText(String s, boolean compactable, int line, int column)
+    {
+        if (text.length() > 0 && textCompactable != compactable)
+        {
+            flushText();
+        }
+
+        if (text.length() == 0)
+        {
+            textCompactable = compactable;
+            textLine = line;
+            textColumn = column;
+        }
+
+        text.append(s);
+    }
+
+    /**
+     * Adds the pending text as node.
+     */
+
+    private void flushText()
+    {
+        if (text.length() > 0)
+        {
+            nodes.add(new TextNode(text.toString(), textCompactable, textEl, textLine, textColumn));
+            text.setLength(0);
+            textEl.clear();
+        }
+    }
+}
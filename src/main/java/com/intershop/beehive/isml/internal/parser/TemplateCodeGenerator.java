@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+/**
+ * The code generation pass of the ISML compiler. A code generator translates a
+ * parsed template into the compiled output format. Tag nesting is validated
+ * during code generation.
+ *
+ * @see JspCodeGenerator
+ */
+
+public interface TemplateCodeGenerator
+{
+    /**
+     * Generates the compiled output of a parsed template.
+     *
+     * @param template  the parsed template
+     * @param out       the output writer, its encoding is the encoding of the
+     *                  generated file
+     * @throws IOException      if writing the output failed
+     * @throws ParseException   if the template contains invalid ISML tags
+     */
+
+    void generate(ISMLTemplate template, OutputStreamWriter out) throws IOException, ParseException;
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The static cost profile of a parsed template, an estimate of its relative
+ * render cost for performance reviews.
+ *
+ * The analysis counts the expensive constructs of the template: includes,
+ * pipeline calls, custom tag calls, localized text lookups, URL builds and
+ * the complexity of its expressions, that is the number of function calls
+ * and object path segments. Each construct has a weight; constructs in loops are
+ * weighted with {@link #LOOP_FACTOR} per nesting level, because they are
+ * executed once per iteration. Included templates aren't part of the cost of
+ * the including template. Suppressed dead branches aren't counted.
+ */
+
+public class TemplateCost
+{
+    /**
+     * The weight of an ISINCLUDE.
+     */
+
+    public static final int INCLUDE_WEIGHT = 20;
+
+    /**
+     * The weight of an ISPIPELINE.
+     */
+
+    public static final int PIPELINE_WEIGHT = 50;
+
+    /**
+     * The weight of a custom tag call.
+     */
+
+    public static final int CUSTOM_TAG_WEIGHT = 10;
+
+    /**
+     * The weight of an ISTEXT tag or a <code>localizeText</code> call.
+     */
+
+    public static final int TEXT_WEIGHT = 3;
+
+    /**
+     * The weight of a URL build.
+     */
+
+    public static final int URL_WEIGHT = 5;
+
+    /**
+     * The weight of a function call or object path segment of an expression.
+     */
+
+    public static final int EXPRESSION_WEIGHT = 1;
+
+    /**
+     * The assumed number of iterations of a loop.
+     */
+
+    public static final int LOOP_FACTOR = 5;
+
+    /**
+     * The name of the template source.
+     */
+
+    private final String name;
+
+    private int includes, pipelines, loops, maxLoopDepth, customTags, texts, urls, complexity;
+
+    /**
+     * The estimated cost.
+     */
+
+    private long cost;
+
+    private TemplateCost(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Computes the cost profile of a template.
+     *
+     * @param template  the parsed template
+     * @param name      the name of the template in the report
+     * @return  the cost profile
+     */
+
+    public static TemplateCost analyze(ISMLTemplate template, String name)
+    {
+        TemplateCost result = new TemplateCost(name);
+        int depth = 0;
+        long factor = 1;
+
+        for (TemplateNode node : template.getNodes())
+        {
+            if (node instanceof ExpressionNode)
+            {
+                result.addExpression(((ExpressionNode)node).getExpression(), factor);
+            }
+            else if (node instanceof TagNode)
+            {
+                TagNode tag = (TagNode)node;
+                for (TagAttribute attribute : tag.getAttributes())
+                {
+                    // expression attributes of ISML tags and custom tags
+                    if (attribute.isExpression())
+                    {
+                        result.addExpression(attribute.getExpression(), factor);
+                    }
+                }
+
+                switch(tag.getKind())
+                {
+                    case ISMLtoJSPcompilerConstants.ISINCLUDE:
+                        result.includes++;
+                        result.cost += INCLUDE_WEIGHT * factor;
+                        break;
+                    case ISMLtoJSPcompilerConstants.ISPIPELINE:
+                        result.pipelines++;
+                        result.cost += PIPELINE_WEIGHT * factor;
+                        break;
+                    case ISMLtoJSPcompilerConstants.ISX:
+                        result.customTags++;
+                        result.cost += CUSTOM_TAG_WEIGHT * factor;
+                        break;
+                    case ISMLtoJSPcompilerConstants.ISTEXT:
+                        result.texts++;
+                        result.cost += TEXT_WEIGHT * factor;
+                        break;
+                    case ISMLtoJSPcompilerConstants.ISLOOP:
+                        result.loops++;
+                        result.maxLoopDepth = Math.max(result.maxLoopDepth, ++depth);
+                        factor *= LOOP_FACTOR;
+                        break;
+                    case ISMLtoJSPcompilerConstants.ISLOOP_END:
+                        if (depth > 0)
+                        {
+                            depth--;
+                            factor /= LOOP_FACTOR;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the URL builds, text lookups and complexity of an expression.
+     */
+
+    private void addExpression(Expression expression, long factor)
+    {
+        expression.forEachNode(e -> {
+            if (e instanceof FunctionExpression)
+            {
+                switch(((FunctionExpression)e).getKind())
+                {
+                    case ISMLtoJSPcompilerConstants.F5:
+                    case ISMLtoJSPcompilerConstants.F6:
+                    case ISMLtoJSPcompilerConstants.F25:
+                    case ISMLtoJSPcompilerConstants.F26:
+                        urls++;
+                        cost += URL_WEIGHT * factor;
+                        break;
+                    case ISMLtoJSPcompilerConstants.F43:
+                    case ISMLtoJSPcompilerConstants.F44:
+                        texts++;
+                        cost += TEXT_WEIGHT * factor;
+                        break;
+                    default:
+                        break;
+                }
+                complexity++;
+                cost += EXPRESSION_WEIGHT * factor;
+            }
+            else if (e instanceof ObjectPathExpression)
+            {
+                // the object path segments, including those of parameters
+                int segments = ((ObjectPathExpression)e).getSegments();
+                complexity += segments;
+                cost += segments * EXPRESSION_WEIGHT * factor;
+            }
+        });
+    }
+
+    /**
+     * Returns the report of the cost profiles of templates, the most
+     * expensive template first.
+     *
+     * @param costs the cost profiles
+     * @return  the report, one line per template
+     */
+
+    public static String getReport(List<TemplateCost> costs)
+    {
+        List<TemplateCost> ranked = new ArrayList<TemplateCost>(costs);
+        ranked.sort(Comparator.comparingLong(TemplateCost::getCost).reversed().thenComparing(TemplateCost::getName));
+
+        StringBuilder report = new StringBuilder();
+        report.append("Template cost report: ").append(ranked.size()).append(" templates\n");
+        report.append(String.format("%8s %8s %9s %6s %9s %10s %6s %5s %10s  %s%n", "rank", "cost", "includes", "loops",
+                        "pipelines", "customtags", "texts", "urls", "complexity", "template"));
+
+        int rank = 0;
+        for (TemplateCost cost : ranked)
+        {
+            report.append(String.format("%8d %8d %9d %6s %9d %10d %6d %5d %10d  %s%n", ++rank, cost.getCost(),
+                            cost.getIncludes(), cost.getLoops() + "/" + cost.getMaxLoopDepth(), cost.getPipelines(),
+                            cost.getCustomTags(), cost.getTexts(), cost.getUrls(), cost.getComplexity(), cost.getName()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * @return  the name of the template
+     */
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return  the estimated relative render cost
+     */
+
+    public long getCost()
+    {
+        return cost;
+    }
+
+    /**
+     * @return  the number of ISINCLUDE tags
+     */
+
+    public int getIncludes()
+    {
+        return includes;
+    }
+
+    /**
+     * @return  the number of ISPIPELINE tags
+     */
+
+    public int getPipelines()
+    {
+        return pipelines;
+    }
+
+    /**
+     * @return  the number of ISLOOP tags
+     */
+
+    public int getLoops()
+    {
+        return loops;
+    }
+
+    /**
+     * @return  the maximum nesting depth of ISLOOP tags
+     */
+
+    public int getMaxLoopDepth()
+    {
+        return maxLoopDepth;
+    }
+
+    /**
+     * @return  the number of custom tag calls
+     */
+
+    public int getCustomTags()
+    {
+        return customTags;
+    }
+
+    /**
+     * @return  the number of ISTEXT tags and <code>localizeText</code> calls
+     */
+
+    public int getTexts()
+    {
+        return texts;
+    }
+
+    /**
+     * @return  the number of URL builds
+     */
+
+    public int getUrls()
+    {
+        return urls;
+    }
+
+    /**
+     * @return  the number of method calls and object path segments of all
+     *          expressions
+     */
+
+    public int getComplexity()
+    {
+        return complexity;
+    }
+}
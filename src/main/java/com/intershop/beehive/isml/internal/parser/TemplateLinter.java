@@ -0,0 +1,420 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Checks parsed templates for performance anti-patterns. The rules work on
+ * the nodes the ISML parser creates for the compiler, so they see the
+ * templates exactly like the compiler does.
+ *
+ * Every rule has a {@link Severity}, which can be configured; rules with
+ * {@link Severity#OFF} aren't checked. The linter is immutable after it is
+ * configured and can check templates in parallel.
+ */
+
+public class TemplateLinter
+{
+    /**
+     * The severity of a finding.
+     */
+
+    public enum Severity
+    {
+        OFF, INFO, WARNING, ERROR
+    }
+
+    /**
+     * The rules of the linter.
+     */
+
+    public enum Rule
+    {
+        PIPELINE_IN_LOOP(Severity.WARNING, "ISPIPELINE inside ISLOOP executes the pipeline once per iteration."),
+        INCLUDE_IN_LOOP(Severity.WARNING, "ISINCLUDE inside ISLOOP includes the template once per iteration."),
+        NESTED_LOOP_SAME_ITERATOR(Severity.ERROR, "ISLOOP iterates over the same iterator as an enclosing ISLOOP."),
+        MISSING_CACHE(Severity.WARNING, "Page-level template without ISCACHE."),
+        FORBIDDEN_CACHE_IN_FRAGMENT(Severity.ERROR, "ISCACHE type=\"forbidden\" in an included template disables the page cache of all pages that include it."),
+        EL_IN_LOOP(Severity.WARNING, "JSP EL inside ISLOOP is evaluated by the expression evaluator once per iteration."),
+        EXISTS_TEMPLATE_IN_LOOP(Severity.WARNING, "existsTemplate() inside ISLOOP looks up the template once per iteration.");
+
+        private final Severity defaultSeverity;
+        private final String message;
+
+        Rule(Severity defaultSeverity, String message)
+        {
+            this.defaultSeverity = defaultSeverity;
+            this.message = message;
+        }
+
+        /**
+         * @return  the severity of the rule if it isn't configured
+         */
+
+        public Severity getDefaultSeverity()
+        {
+            return defaultSeverity;
+        }
+
+        /**
+         * @return  the message of the findings of the rule
+         */
+
+        public String getMessage()
+        {
+            return message;
+        }
+    }
+
+    /**
+     * A violation of a rule.
+     */
+
+    public static final class Finding
+    {
+        private final String file;
+        private final int line;
+        private final int column;
+        private final Rule rule;
+        private final Severity severity;
+
+        Finding(String file, int line, int column, Rule rule, Severity severity)
+        {
+            this.file = file;
+            this.line = line;
+            this.column = column;
+            this.rule = rule;
+            this.severity = severity;
+        }
+
+        /**
+         * @return  the name of the template
+         */
+
+        public String getFile()
+        {
+            return file;
+        }
+
+        /**
+         * @return  the line in the template source
+         */
+
+        public int getLine()
+        {
+            return line;
+        }
+
+        /**
+         * @return  the column in the template source
+         */
+
+        public int getColumn()
+        {
+            return column;
+        }
+
+        /**
+         * @return  the violated rule
+         */
+
+        public Rule getRule()
+        {
+            return rule;
+        }
+
+        /**
+         * @return  the configured severity of the rule
+         */
+
+        public Severity getSeverity()
+        {
+            return severity;
+        }
+
+        @Override
+        public String toString()
+        {
+            return file + ':' + line + ':' + column + ": " + severity + ": " + rule.getMessage() + " [" + rule + ']';
+        }
+    }
+
+    /**
+     * The severities of the rules.
+     */
+
+    private final Map<Rule, Severity> severities = new EnumMap<Rule, Severity>(Rule.class);
+
+    /**
+     * The constructor, all rules have their default severity.
+     */
+
+    public TemplateLinter()
+    {
+        for (Rule rule : Rule.values())
+        {
+            severities.put(rule, rule.getDefaultSeverity());
+        }
+    }
+
+    /**
+     * Sets the severity of a rule.
+     *
+     * @param rule      the rule
+     * @param severity  the severity, {@link Severity#OFF} to disable the rule
+     */
+
+    public void setSeverity(Rule rule, Severity severity)
+    {
+        severities.put(rule, severity);
+    }
+
+    /**
+     * @param rule  the rule
+     * @return  the severity of the rule
+     */
+
+    public Severity getSeverity(Rule rule)
+    {
+        return severities.get(rule);
+    }
+
+    /**
+     * Sets the severities of rules. The keys are the names of the rules, the
+     * values the names of the severities, both case-insensitive:
+     *
+     * <pre>
+     * include_in_loop = error
+     * missing_cache = off
+     * </pre>
+     *
+     * @param configuration the severities by rule
+     * @throws IllegalArgumentException if a rule or severity is unknown
+     */
+
+    public void configure(Properties configuration)
+    {
+        for (String key : configuration.stringPropertyNames())
+        {
+            setSeverity(Rule.valueOf(key.trim().toUpperCase(Locale.ENGLISH)),
+                        Severity.valueOf(configuration.getProperty(key).trim().toUpperCase(Locale.ENGLISH)));
+        }
+    }
+
+    /**
+     * Returns the constant template names of the ISINCLUDE tags of a
+     * template, without the template extension.
+     *
+     * @param template  the parsed template
+     * @return  the included templates
+     */
+
+    public static Set<String> getIncludedTemplates(ISMLTemplate template)
+    {
+        Set<String> result = new HashSet<String>();
+        for (TemplateNode node : template.getNodes())
+        {
+            if (isTag(node, ISMLtoJSPcompilerConstants.ISINCLUDE))
+            {
+                String name = getValue((TagNode)node, ISMLtoJSPcompilerConstants.ATT_TEMPLATE);
+                if (name != null)
+                {
+                    result.add(getTemplateName(name));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the name of a template as it is referenced by ISINCLUDE tags.
+     *
+     * @param path  the path of the template relative to its language
+     *              directory, or a referenced template name
+     * @return  the path without a leading '/' and the template extension
+     */
+
+    public static String getTemplateName(String path)
+    {
+        String result = path.replace('\\', '/');
+        if (result.startsWith("/"))
+        {
+            result = result.substring(1);
+        }
+        if (result.endsWith(".isml"))
+        {
+            result = result.substring(0, result.length() - ".isml".length());
+        }
+        return result;
+    }
+
+    /**
+     * Checks a template.
+     *
+     * @param template  the parsed template
+     * @param file      the name of the template in the findings
+     * @param fragment  <code>true</code> if other templates include the
+     *                  template, <code>false</code> for page-level templates
+     * @return  the findings in the order of the template source
+     */
+
+    public List<Finding> lint(ISMLTemplate template, String file, boolean fragment)
+    {
+        List<Finding> result = new ArrayList<Finding>();
+        Deque<String> loops = new ArrayDeque<String>();
+        boolean cache = false;
+
+        for (TemplateNode node : template.getNodes())
+        {
+            boolean loop = !loops.isEmpty();
+
+            if (node instanceof TextNode && loop)
+            {
+                String text = ((TextNode)node).getText();
+                for (int offset : ((TextNode)node).getElOffsets())
+                {
+                    // the position of the EL in the text
+                    int line = node.getLine(), column = node.getColumn();
+                    for (int j = 0; j < offset; j++)
+                    {
+                        if (text.charAt(j) == '\n')
+                        {
+                            line++;
+                            column = 1;
+                        }
+                        else
+                        {
+                            column++;
+                        }
+                    }
+                    report(result, file, line, column, Rule.EL_IN_LOOP);
+                }
+            }
+            else if (node instanceof ExpressionNode)
+            {
+                ExpressionNode expression = (ExpressionNode)node;
+                checkUsages(result, file, node, expression.usesEl(), expression.usesExistsTemplate(), loop);
+            }
+            else if (node instanceof TagNode)
+            {
+                // expression attributes of ISML tags and custom tags
+                TagNode tag = (TagNode)node;
+                checkUsages(result, file, node, tag.usesEl(), tag.usesExistsTemplate(), loop);
+
+                switch(tag.getKind())
+                {
+                    case ISMLtoJSPcompilerConstants.ISPIPELINE:
+                        if (loop)
+                        {
+                            report(result, file, node.getLine(), node.getColumn(), Rule.PIPELINE_IN_LOOP);
+                        }
+                        break;
+                    case ISMLtoJSPcompilerConstants.ISINCLUDE:
+                        if (loop)
+                        {
+                            report(result, file, node.getLine(), node.getColumn(), Rule.INCLUDE_IN_LOOP);
+                        }
+                        break;
+                    case ISMLtoJSPcompilerConstants.ISCACHE:
+                        cache = true;
+                        if (fragment && "forbidden".equalsIgnoreCase(getValue(tag, ISMLtoJSPcompilerConstants.ATT_TYPE)))
+                        {
+                            report(result, file, node.getLine(), node.getColumn(), Rule.FORBIDDEN_CACHE_IN_FRAGMENT);
+                        }
+                        break;
+                    case ISMLtoJSPcompilerConstants.ISLOOP:
+                        String iterator = getValue(tag, ISMLtoJSPcompilerConstants.ATT_ITERATOR);
+                        if (iterator != null)
+                        {
+                            iterator = iterator.trim().toLowerCase(Locale.ENGLISH);
+                            if (loops.contains(iterator))
+                            {
+                                report(result, file, node.getLine(), node.getColumn(), Rule.NESTED_LOOP_SAME_ITERATOR);
+                            }
+                        }
+                        // loops over expressions are never the same
+                        loops.push((iterator != null) ? iterator : "#" + loops.size());
+                        break;
+                    case ISMLtoJSPcompilerConstants.ISLOOP_END:
+                        if (loop)
+                        {
+                            loops.pop();
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        if (!fragment && !cache)
+        {
+            report(result, file, 1, 1, Rule.MISSING_CACHE);
+        }
+        return result;
+    }
+
+    /**
+     * Checks the JSP EL and <code>existsTemplate()</code> calls the parser
+     * found in the ISML expressions of a node.
+     */
+
+    private void checkUsages(List<Finding> result, String file, TemplateNode node, boolean usesEl,
+                    boolean usesExistsTemplate, boolean loop)
+    {
+        if (loop && usesEl)
+        {
+            report(result, file, node.getLine(), node.getColumn(), Rule.EL_IN_LOOP);
+        }
+        if (loop && usesExistsTemplate)
+        {
+            report(result, file, node.getLine(), node.getColumn(), Rule.EXISTS_TEMPLATE_IN_LOOP);
+        }
+    }
+
+    private void report(List<Finding> result, String file, int line, int column, Rule rule)
+    {
+        Severity severity = severities.get(rule);
+        if (severity != Severity.OFF)
+        {
+            result.add(new Finding(file, line, column, rule, severity));
+        }
+    }
+
+    private static boolean isTag(TemplateNode node, int kind)
+    {
+        return node instanceof TagNode && ((TagNode)node).getKind() == kind;
+    }
+
+    /**
+     * Returns the constant value of an attribute of a tag.
+     */
+
+    private static String getValue(TagNode tag, int attribute)
+    {
+        return tag.getValueAttribute(attribute);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+
+/**
+ * The base class of all nodes of a parsed ISML template. A parsed template is
+ * a flat sequence of nodes in document order (static text, ISML expressions,
+ * ISML tags). Nodes are immutable, passes that change a template create new
+ * nodes.
+ *
+ * @see ISMLTemplate
+ */
+
+public abstract class TemplateNode
+{
+    /**
+     * The line of the node in the ISML source.
+     */
+
+    private final int line;
+
+    /**
+     * The column of the node in the ISML source.
+     */
+
+    private final int column;
+
+    /**
+     * The constructor.
+     *
+     * @param line      the line of the node in the ISML source
+     * @param column    the column of the node in the ISML source
+     */
+
+    protected TemplateNode(int line, int column)
+    {
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * @return  the line of the node in the ISML source
+     */
+
+    public int getLine()
+    {
+        return line;
+    }
+
+    /**
+     * @return  the column of the node in the ISML source
+     */
+
+    public int getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * Calls the visitor method that matches the type of this node.
+     *
+     * @param visitor   the visitor
+     * @throws IOException      if the visitor fails to write its output
+     * @throws ParseException   if the visitor rejects the node
+     */
+
+    public abstract void accept(TemplateNodeVisitor visitor) throws IOException, ParseException;
+}
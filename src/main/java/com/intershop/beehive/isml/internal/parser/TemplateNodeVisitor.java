@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+
+/**
+ * A visitor for the nodes of a parsed ISML template.
+ *
+ * @see TemplateNode#accept(TemplateNodeVisitor)
+ */
+
+public interface TemplateNodeVisitor
+{
+    /**
+     * Visits a static text node.
+     *
+     * @param node  the node
+     * @throws IOException      if writing output failed
+     * @throws ParseException   if the node is rejected
+     */
+
+    void visitText(TextNode node) throws IOException, ParseException;
+
+    /**
+     * Visits an ISML expression that is printed into the page.
+     *
+     * @param node  the node
+     * @throws IOException      if writing output failed
+     * @throws ParseException   if the node is rejected
+     */
+
+    void visitExpression(ExpressionNode node) throws IOException, ParseException;
+
+    /**
+     * Visits an ISML tag.
+     *
+     * @param node  the node
+     * @throws IOException      if writing output failed
+     * @throws ParseException   if the node is rejected
+     */
+
+    void visitTag(TagNode node) throws IOException, ParseException;
+
+    /**
+     * Visits a piece of Java code that is executed at that position.
+     *
+     * @param node  the node
+     * @throws IOException      if writing output failed
+     * @throws ParseException   if the node is rejected
+     */
+
+    void visitScriptlet(ScriptletNode node) throws IOException, ParseException;
+
+    /**
+     * Visits a node that was removed by an optimization.
+     *
+     * @param node  the node
+     * @throws IOException      if writing output failed
+     * @throws ParseException   if the removed node is rejected
+     */
+
+    void visitSuppressed(SuppressedNode node) throws IOException, ParseException;
+}
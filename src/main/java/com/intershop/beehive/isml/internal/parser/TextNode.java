@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A piece of static text of an ISML template. Usual template content is
+ * compactable, i.e. its whitespaces may be reduced if the template enables
+ * compacting. Text that is passed through unchanged (server side scripting,
+ * preview attributes, single '#' characters) is not compactable.
+ *
+ * The parser records where JSP EL (<code>${...}</code>) starts in the
+ * template content, so checks don't need to search the text for it.
+ */
+
+public class TextNode extends TemplateNode
+{
+    /**
+     * The text.
+     */
+
+    private final String text;
+
+    /**
+     * The flag whether the text may be compacted.
+     */
+
+    private final boolean compactable;
+
+    /**
+     * The offsets of the JSP EL in the text.
+     */
+
+    private final List<Integer> elOffsets;
+
+    /**
+     * The constructor.
+     *
+     * @param text          the text
+     * @param compactable   <code>true</code> if whitespaces of the text may be
+     *                      compacted
+     * @param line          the line of the text in the ISML source
+     * @param column        the column of the text in the ISML source
+     */
+
+    public TextNode(String text, boolean compactable, int line, int column)
+    {
+        this(text, compactable, Collections.<Integer>emptyList(), line, column);
+    }
+
+    /**
+     * The constructor for text with JSP EL.
+     *
+     * @param text          the text
+     * @param compactable   <code>true</code> if whitespaces of the text may be
+     *                      compacted
+     * @param elOffsets     the offsets of the JSP EL in the text, in ascending
+     *                      order
+     * @param line          the line of the text in the ISML source
+     * @param column        the column of the text in the ISML source
+     */
+
+    public TextNode(String text, boolean compactable, List<Integer> elOffsets, int line, int column)
+    {
+        super(line, column);
+        this.text = text;
+        this.compactable = compactable;
+        this.elOffsets = Collections.unmodifiableList(new ArrayList<Integer>(elOffsets));
+    }
+
+    /**
+     * @return  the text
+     */
+
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * @return  <code>true</code> if whitespaces of the text may be compacted
+     */
+
+    public boolean isCompactable()
+    {
+        return compactable;
+    }
+
+    /**
+     * @return  the unmodifiable offsets of the JSP EL the parser found in the
+     *          text, in ascending order
+     */
+
+    public List<Integer> getElOffsets()
+    {
+        return elOffsets;
+    }
+
+    @Override
+    public void accept(TemplateNodeVisitor visitor) throws IOException, ParseException
+    {
+        visitor.visitText(this);
+    }
+}
@@ -14,20 +14,52 @@
  * limitations under the License.
  */package com.intershop.beehive.parser;
 
+import com.intershop.beehive.isml.capi.CustomTagRegistry;
 import com.intershop.beehive.isml.capi.ISMLCompilerConfiguration;
 import com.intershop.beehive.isml.capi.ISMLException;
 import com.intershop.beehive.isml.capi.ISMLTemplateConstants;
+import com.intershop.beehive.isml.capi.TemplateIndex;
+import com.intershop.beehive.isml.internal.TemplateClassCompiler;
 import com.intershop.beehive.isml.internal.TemplatePrecompileUtils;
+import com.intershop.beehive.isml.internal.parser.CustomTagIndex;
+import com.intershop.beehive.isml.internal.parser.ISMLTemplate;
+import com.intershop.beehive.isml.internal.parser.IncludeInliner;
+import com.intershop.beehive.isml.internal.parser.ServletCodeGenerator;
+import com.intershop.beehive.isml.internal.parser.StaticTemplate;
+import com.intershop.beehive.isml.internal.parser.StaticTextStore;
+import com.intershop.beehive.isml.internal.parser.TemplateCost;
+import com.intershop.beehive.isml.internal.parser.TemplateLinter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -60,6 +92,196 @@ public class ISML2JSP
      */
     protected boolean failOnError = true;
 
+    /**
+     * Indicates whether constant ISML expressions are evaluated at compile
+     * time; defaults to false.
+     */
+    protected boolean foldConstants = false;
+
+    /**
+     * Indicates whether ISIF branches with constant conditions that are never
+     * taken are removed; defaults to false.
+     */
+    protected boolean eliminateDeadBranches = false;
+
+    /**
+     * Indicates whether repeated object paths are resolved only once;
+     * defaults to false.
+     */
+    protected boolean hoistObjectPaths = false;
+
+    /**
+     * Indicates whether object paths are passed as static descriptors;
+     * defaults to false.
+     */
+    protected boolean presplitObjectPaths = false;
+
+    /**
+     * Indicates whether static content is written as pre-encoded bytes;
+     * defaults to false.
+     */
+    protected boolean encodeStaticText = false;
+
+    /**
+     * Indicates whether the static content of all templates is collected in
+     * one shared blob in the destination directory; defaults to false.
+     */
+    protected boolean staticTextBlob = false;
+
+    /**
+     * Indicates whether templates without dynamic content are written as
+     * static resources instead of JSP files; defaults to false.
+     */
+    protected boolean staticTemplates = false;
+
+    /**
+     * Indicates whether large service methods are split into helper methods;
+     * defaults to false.
+     */
+    protected boolean splitServiceMethods = false;
+
+    /**
+     * The limit of the estimated bytecode size of a service method; defaults
+     * to the HugeMethodLimit of HotSpot.
+     */
+    protected int serviceMethodSizeLimit = 8000;
+
+    /**
+     * Indicates whether ISML tags are compiled to calls of helper methods of
+     * the template base class; defaults to false.
+     */
+    protected boolean compactTagCode = false;
+
+    /**
+     * Indicates whether the expiry of ISCACHE tags with constant attributes is
+     * precomputed; defaults to false.
+     */
+    protected boolean precomputeCacheExpiry = false;
+
+    /**
+     * Indicates whether constant parameters of custom tags are declared as
+     * static arrays; defaults to false.
+     */
+    protected boolean staticTagParameters = false;
+
+    /**
+     * Indicates whether ISRENDER bodies are declared as named renderer
+     * classes; defaults to false.
+     */
+    protected boolean namedRenderers = false;
+
+    /**
+     * Indicates whether the compiled templates import only the packages and
+     * types they use; defaults to false.
+     */
+    protected boolean minimalImports = false;
+
+    /**
+     * The class the compiled templates extend; defaults to null for the
+     * default template base class.
+     */
+    protected String templateBaseClass = null;
+
+    /**
+     * Indicates whether the compiled templates call the prologue and epilogue
+     * hooks of their base class; defaults to false.
+     */
+    protected boolean templateHooks = false;
+
+    /**
+     * Indicates whether the templates are compiled to the Java source of
+     * servlet classes instead of JSP pages; defaults to false.
+     */
+    protected boolean servletCode = false;
+
+    /**
+     * The package of the servlet API of the generated servlet classes;
+     * defaults to null for jakarta.servlet.
+     */
+    protected String servletApiPackage = null;
+
+    /**
+     * The jar the Java sources in the destination directory are compiled
+     * to; defaults to null for no class compilation.
+     */
+    protected File classJar = null;
+
+    /**
+     * The classpath for the compilation of the Java sources; defaults to null.
+     */
+    protected String classpath = null;
+
+    /**
+     * The number of Java sources that are compiled in one batch.
+     */
+    protected int compileBatchSize = TemplateClassCompiler.DEFAULT_BATCH_SIZE;
+
+    /**
+     * Indicates whether a JSR-45 source map is written next to each generated
+     * file; defaults to false.
+     */
+    protected boolean sourceMap = false;
+
+    /**
+     * Indicates whether expensive constructs are wrapped with profiling
+     * probes; defaults to false.
+     */
+    protected boolean profilingProbes = false;
+
+    /**
+     * Indicates whether the templates are only analyzed for their static
+     * cost instead of compiled; defaults to false.
+     */
+    protected boolean analyze = false;
+
+    /**
+     * Indicates whether the templates are only checked for performance
+     * anti-patterns instead of compiled; defaults to false.
+     */
+    protected boolean lint = false;
+
+    /**
+     * The properties file with the severities of the lint rules, null for
+     * the default severities.
+     */
+    protected File lintConfig = null;
+
+    /**
+     * Indicates whether ISINCLUDEs of templates with literal names are
+     * inlined; defaults to false.
+     */
+    protected boolean inlineIncludes = false;
+
+    /**
+     * The maximum size of the content that is inlined into a template in
+     * characters.
+     */
+    protected int inlineBudget = IncludeInliner.DEFAULT_BUDGET;
+
+    /**
+     * Indicates whether custom tags with a unique declaration in the template
+     * tree are bound at compile time; defaults to false.
+     */
+    protected boolean bindCustomTags = false;
+
+    /**
+     * Indicates whether the index of the templates by language directory is
+     * written to the destination directory; defaults to false.
+     */
+    protected boolean templateIndex = false;
+
+    /**
+     * Indicates whether templates that are identical in several language
+     * directories are compiled once; defaults to false.
+     */
+    protected boolean deduplicate = false;
+
+    /**
+     * Indicates whether the outputs of deduplicated templates are copied
+     * instead of hard linked; defaults to false.
+     */
+    protected boolean deduplicateCopies = false;
+
     /**
      * Indicates whether an error has occured during the command line compilation. 
      * In this case a negative exit value is returned.  
@@ -166,209 +388,1906 @@ public class ISML2JSP
     }
 
     /**
-     * Add a jsp encoding configuration to the ISML compiler configuration.
+     * Returns whether constant ISML expressions are evaluated at compile time.
      *
-     * @param mimetype
-     * @param encoding
+     * @return true if constant folding is enabled
      */
-    public void addJspEncoding(String mimetype, String encoding) {
-        jspEncodings.add(new Encoding(mimetype, encoding));
+
+    public boolean isFoldConstants()
+    {
+        return foldConstants;
     }
 
+
     /**
-     * This method collects all template language directories from the given root directory
-     * (this is a site template directory or a cartridge template directory). The language
-     * directories are 1st level subdirectories of the given root. Note that there are some
-     * "special" language identifiers, e.g. "impex", that are also returned.
+     * Enables the evaluation of constant ISML expressions at compile time.
      *
-     * @param rootDir The template root directory.
+     * @param foldConstants true to enable constant folding
+     */
+
+    public void setFoldConstants(boolean foldConstants)
+    {
+        this.foldConstants = foldConstants;
+    }
+
+
+    /**
+     * Returns whether ISIF branches that are never taken are removed.
      *
-     * @return An array of files representing all template directories, never null
+     * @return true if dead branch elimination is enabled
      */
 
-    protected File[] getAllLanguageDirs(String rootDir)
+    public boolean isEliminateDeadBranches()
     {
-        if (rootDir != null)
-        {
-            // get the root dir
-            File root = new File(rootDir);
+        return eliminateDeadBranches;
+    }
+
 
-            // get all isml files
-            return root.listFiles(ISMLTemplateConstants.directoryFilter);
-        }
-        else
-        {
-            // null dir returns no matches
-            return new File[0];
-        }
-    }    
-    
     /**
-     * This internal helper collects all template file names out of the given directory
-     * recursively. The names are built to match the requirements of building template IDs, i.e.
-     * containing a sub directory (optionally) and a template file name (w/ extension) separated
-     * by slashes.
+     * Enables the removal of ISIF branches with constant conditions that are
+     * never taken. Conditions like #1 == 0# are only constant if constant
+     * folding is enabled, too.
      *
-     * @param dir The directory. Initially (1st recursion) it is the language directory.
-     * @param subDirPath The sub directory path
-     * @param result The resulting template names.
+     * @param eliminateDeadBranches true to remove dead branches
      */
 
-    protected void getAllTemplateFileNames(File dir, String subDirPath, Collection<String> result)
+    public void setEliminateDeadBranches(boolean eliminateDeadBranches)
     {
-        // get all isml files and subdirs
-        File[] files = dir.listFiles(ISMLTemplateConstants.ismlFilter);
+        this.eliminateDeadBranches = eliminateDeadBranches;
+    }
 
-        // iterate results, recurse dirs, add files to result
-        for (int i = 0; i < files.length; i++)
-        {
-            if (files[i].isDirectory())
-            {
-                String sd = null;
 
-                // create current subdir path
-                if (subDirPath == null)
-                {
-                    // we're the 1st one
-                    sd = files[i].getName() + '/';
-                }
-                else
-                {
-                    // append
-                    sd = subDirPath + files[i].getName() + '/';
-                }
+    /**
+     * Returns whether repeated object paths are resolved only once.
+     *
+     * @return true if object path hoisting is enabled
+     */
 
-                // recurse
-                getAllTemplateFileNames(files[i], sd, result);
-            }
-            else
-            {
-                // add file name to result vector
-                if (subDirPath == null)
-                {
-                    // add "pure" file name
-                    result.add(files[i].getName());
-                }
-                else
-                {
-                    // prepend base dir
-                    result.add(subDirPath + files[i].getName());
-                }
-            }
-        }
+    public boolean isHoistObjectPaths()
+    {
+        return hoistObjectPaths;
     }
 
-    public void execute() throws ISMLException
+
+    /**
+     * Enables binding object paths that are used repeatedly between two
+     * changes of the pipeline dictionary to locals of the compiled page.
+     *
+     * @param hoistObjectPaths true to resolve repeated object paths only once
+     */
+
+    public void setHoistObjectPaths(boolean hoistObjectPaths)
     {
-        ArrayList<File[]> compilePathList = new ArrayList<>();
-                  
-        // check, if the source directory attribute is set.
-        if (getSrcdir() == null) {
-            throw new ISMLException("srcdir attribute must be set!");
-        }        
+        this.hoistObjectPaths = hoistObjectPaths;
+    }
 
-        // check, if the destination directory attribute is set.
-        if (getDestdir() == null) {
-            throw new ISMLException("destdir attribute must be set!");
-        }        
-        
-        File srcDir = getSrcdir();
-        String srcDirName = srcDir.getAbsolutePath().replace('\\','/');
-                
-        // check, if the source directory exists
-        if (!srcDir.exists())
-        {
-            throw new ISMLException("srcdir doesn't exist!!");
-        }
-        
-        // Create compile configuration
-        ISMLCompilerConfiguration configuration = getCompilerConfiguration();
-        TemplatePrecompileUtils precompUtils = new TemplatePrecompileUtils(configuration);
 
-        File destDir = getDestdir();
-        String destDirName = destDir.getAbsolutePath().replace('\\','/');
+    /**
+     * Returns whether object paths are passed as static descriptors.
+     *
+     * @return true if object path presplitting is enabled
+     */
 
-        // get all language subdirectories
-        File[] langDirs = getAllLanguageDirs(srcDirName);
-        if (langDirs != null)
-        {
-            for (int i = 0; i < langDirs.length; i++)
-            {
-                // get all template names
-                Collection<String> ismlFiles = new ArrayList<>();
-                getAllTemplateFileNames(langDirs[i], null, ismlFiles);
-                
-                // iterate all templates and check if we should compile
-                for(String ismlFileName : ismlFiles)
-                {
-                    // scan for files to compile
-                    File sourceFile = null;
-                    
-                    String ismlSubPathName = langDirs[i].getName() + File.separatorChar + ismlFileName;
-                    String jspSubPathName = ismlSubPathName.substring(0, ismlSubPathName.length() - 
-                                            ISMLTemplateConstants.TEMPLATE_EXTENSION.length()) +
-                                            ISMLTemplateConstants.TEMPLATE_PAGECOMPILE_EXTENSION;
+    public boolean isPresplitObjectPaths()
+    {
+        return presplitObjectPaths;
+    }
 
-                    sourceFile = new File(srcDirName, ismlSubPathName);
-                    File jspFile = new File(destDirName, jspSubPathName);
-                    
-                    if (!(sourceFile.isFile() && sourceFile.canRead()))
-                    {
-                        continue; 
-                    }
-                    
-                    // check, if compilation is required
-                    if (!jspFile.exists() || (jspFile.lastModified() < sourceFile.lastModified()))
-                    {
-                        compilePathList.add(new File[] {sourceFile, jspFile});
-                    }
-                    else
-                    {
-                        logger.info("Skipping file: {}. Target is up to date.", sourceFile.getAbsolutePath() );
-                    }
+
+    /**
+     * Enables declaring each object path of a template once as a static
+     * descriptor. The compiled pages require a template base class that
+     * implements getObject(ObjectPath).
+     *
+     * @param presplitObjectPaths true to parse object paths at compile time
+     */
+
+    public void setPresplitObjectPaths(boolean presplitObjectPaths)
+    {
+        this.presplitObjectPaths = presplitObjectPaths;
+    }
+
+
+    /**
+     * Returns whether static content is written as pre-encoded bytes.
+     *
+     * @return true if static text encoding is enabled
+     */
+
+    public boolean isEncodeStaticText()
+    {
+        return encodeStaticText;
+    }
+
+
+    /**
+     * Enables encoding static content with the JSP encoding at compile time.
+     * The compiled pages require a template base class that implements
+     * writeStaticBytes(JspWriter, byte[], String).
+     *
+     * @param encodeStaticText true to write static content as bytes
+     */
+
+    public void setEncodeStaticText(boolean encodeStaticText)
+    {
+        this.encodeStaticText = encodeStaticText;
+    }
+
+
+    /**
+     * Returns whether the static content is collected in a shared blob.
+     *
+     * @return true if the shared static text blob is enabled
+     */
+
+    public boolean isStaticTextBlob()
+    {
+        return staticTextBlob;
+    }
+
+
+    /**
+     * Enables collecting the static content of all templates in one
+     * deduplicated blob file in the destination directory. A report of the
+     * deduplication is written next to the blob.
+     *
+     * @param staticTextBlob true to use a shared static text blob
+     */
+
+    public void setStaticTextBlob(boolean staticTextBlob)
+    {
+        this.staticTextBlob = staticTextBlob;
+    }
+
+
+    /**
+     * Returns whether templates without dynamic content are written as static
+     * resources.
+     *
+     * @return true if static templates are written as resources
+     */
+
+    public boolean isStaticTemplates()
+    {
+        return staticTemplates;
+    }
+
+
+    /**
+     * Enables writing templates without dynamic content as pre-encoded static
+     * resources with a descriptor instead of JSP files. The resources are
+     * listed in a manifest in the destination directory.
+     *
+     * @param staticTemplates true to write static templates as resources
+     */
+
+    public void setStaticTemplates(boolean staticTemplates)
+    {
+        this.staticTemplates = staticTemplates;
+    }
+
+
+    /**
+     * Returns whether large service methods are split into helper methods.
+     *
+     * @return true if large service methods are split
+     */
+
+    public boolean isSplitServiceMethods()
+    {
+        return splitServiceMethods;
+    }
+
+
+    /**
+     * Enables moving parts of service methods that exceed the size limit into
+     * helper methods, so they stay below the JIT compiler limits.
+     *
+     * @param splitServiceMethods true to split large service methods
+     */
+
+    public void setSplitServiceMethods(boolean splitServiceMethods)
+    {
+        this.splitServiceMethods = splitServiceMethods;
+    }
+
+
+    /**
+     * Returns the limit of the estimated bytecode size of a service method.
+     *
+     * @return the limit in bytes
+     */
+
+    public int getServiceMethodSizeLimit()
+    {
+        return serviceMethodSizeLimit;
+    }
+
+
+    /**
+     * Sets the limit of the estimated bytecode size of a service method.
+     * Templates above the limit are reported after the compilation.
+     *
+     * @param serviceMethodSizeLimit the limit in bytes
+     */
+
+    public void setServiceMethodSizeLimit(int serviceMethodSizeLimit)
+    {
+        this.serviceMethodSizeLimit = serviceMethodSizeLimit;
+    }
+
+
+    /**
+     * Returns whether ISML tags are compiled to calls of helper methods.
+     *
+     * @return true if tag boilerplate is delegated to helper methods
+     */
+
+    public boolean isCompactTagCode()
+    {
+        return compactTagCode;
+    }
+
+
+    /**
+     * Enables compiling ISML tags like ISCACHE and ISPRINT to calls of helper
+     * methods of the template base class instead of inline code.
+     *
+     * @param compactTagCode true to delegate tag boilerplate to helper methods
+     */
+
+    public void setCompactTagCode(boolean compactTagCode)
+    {
+        this.compactTagCode = compactTagCode;
+    }
+
+
+    /**
+     * Returns whether the expiry of constant ISCACHE tags is precomputed.
+     *
+     * @return true if the expiry is precomputed
+     */
+
+    public boolean isPrecomputeCacheExpiry()
+    {
+        return precomputeCacheExpiry;
+    }
+
+
+    /**
+     * Enables precomputing the expiry of ISCACHE tags with constant hour and
+     * minute instead of computing it with a calendar on every request.
+     *
+     * @param precomputeCacheExpiry true to precompute the expiry
+     */
+
+    public void setPrecomputeCacheExpiry(boolean precomputeCacheExpiry)
+    {
+        this.precomputeCacheExpiry = precomputeCacheExpiry;
+    }
+
+
+    /**
+     * Returns whether constant parameters of custom tags are static.
+     *
+     * @return true if constant tag parameters are declared as static arrays
+     */
+
+    public boolean isStaticTagParameters()
+    {
+        return staticTagParameters;
+    }
+
+
+    /**
+     * Enables declaring the constant parameters of custom tags as static
+     * arrays instead of creating them on every call.
+     *
+     * @param staticTagParameters true to declare static parameter arrays
+     */
+
+    public void setStaticTagParameters(boolean staticTagParameters)
+    {
+        this.staticTagParameters = staticTagParameters;
+    }
+
+
+    /**
+     * Returns whether ISRENDER bodies are declared as named renderer classes.
+     *
+     * @return true if renderers are named classes
+     */
+
+    public boolean isNamedRenderers()
+    {
+        return namedRenderers;
+    }
+
+
+    /**
+     * Enables declaring the renderers of ISRENDER tags as named classes that
+     * are instantiated once per template instance.
+     *
+     * @param namedRenderers true to declare named renderer classes
+     */
+
+    public void setNamedRenderers(boolean namedRenderers)
+    {
+        this.namedRenderers = namedRenderers;
+    }
+
+
+    /**
+     * Returns whether the compiled templates import only the packages and
+     * types they use.
+     *
+     * @return true if minimal imports are computed
+     */
+
+    public boolean isMinimalImports()
+    {
+        return minimalImports;
+    }
+
+
+    /**
+     * Enables the computation of minimal imports.
+     *
+     * @param minimalImports true to import only used packages and types
+     */
+
+    public void setMinimalImports(boolean minimalImports)
+    {
+        this.minimalImports = minimalImports;
+    }
+
+
+    /**
+     * Returns the class the compiled templates extend.
+     *
+     * @return the class name or null for the default base class
+     */
+
+    public String getTemplateBaseClass()
+    {
+        return templateBaseClass;
+    }
+
+
+    /**
+     * Sets the class the compiled templates extend.
+     *
+     * @param templateBaseClass the fully qualified class name
+     */
+
+    public void setTemplateBaseClass(String templateBaseClass)
+    {
+        this.templateBaseClass = templateBaseClass;
+    }
+
+
+    /**
+     * Returns whether the compiled templates call the prologue and epilogue
+     * hooks of their base class.
+     *
+     * @return true if the template hooks are called
+     */
+
+    public boolean isTemplateHooks()
+    {
+        return templateHooks;
+    }
+
+
+    /**
+     * Enables the prologue and epilogue hooks of the template base class.
+     *
+     * @param templateHooks true to call the template hooks
+     */
+
+    public void setTemplateHooks(boolean templateHooks)
+    {
+        this.templateHooks = templateHooks;
+    }
+
+
+    /**
+     * Returns whether the templates are compiled to the Java source of servlet
+     * classes. The sources are written to the destination directory in the
+     * directories of their packages.
+     *
+     * @return true if servlet sources are generated
+     */
+
+    public boolean isServletCode()
+    {
+        return servletCode;
+    }
+
+
+    /**
+     * Enables the compilation of templates to the Java source of servlet
+     * classes.
+     *
+     * @param servletCode true to generate servlet sources instead of JSP pages
+     */
+
+    public void setServletCode(boolean servletCode)
+    {
+        this.servletCode = servletCode;
+    }
+
+
+    /**
+     * Returns the package of the servlet API of the generated servlet classes.
+     *
+     * @return the package or null for the default
+     */
+
+    public String getServletApiPackage()
+    {
+        return servletApiPackage;
+    }
+
+
+    /**
+     * Sets the package of the servlet API of the generated servlet classes.
+     *
+     * @param servletApiPackage javax.servlet or jakarta.servlet
+     */
+
+    public void setServletApiPackage(String servletApiPackage)
+    {
+        this.servletApiPackage = servletApiPackage;
+    }
+
+
+    /**
+     * Returns the jar the Java sources in the destination directory are
+     * compiled to.
+     *
+     * @return the jar file or null, if the sources are not compiled
+     */
+
+    public File getClassJar()
+    {
+        return classJar;
+    }
+
+
+    /**
+     * Sets the jar the Java sources in the destination directory are compiled
+     * to. The sources are the servlet sources of the templates, see
+     * {@link #setServletCode(boolean)}.
+     *
+     * @param classJar the jar file, null to skip the class compilation
+     */
+
+    public void setClassJar(File classJar)
+    {
+        this.classJar = classJar;
+    }
+
+
+    /**
+     * Returns the classpath for the compilation of the Java sources.
+     *
+     * @return the classpath
+     */
+
+    public String getClasspath()
+    {
+        return classpath;
+    }
+
+
+    /**
+     * Sets the classpath for the compilation of the Java sources.
+     *
+     * @param classpath the classpath, separated by the path separator
+     */
+
+    public void setClasspath(String classpath)
+    {
+        this.classpath = classpath;
+    }
+
+
+    /**
+     * Returns the number of Java sources that are compiled in one batch.
+     *
+     * @return the batch size
+     */
+
+    public int getCompileBatchSize()
+    {
+        return compileBatchSize;
+    }
+
+
+    /**
+     * Sets the number of Java sources that are compiled in one batch. The
+     * batches are compiled in parallel.
+     *
+     * @param compileBatchSize the batch size
+     */
+
+    public void setCompileBatchSize(int compileBatchSize)
+    {
+        this.compileBatchSize = compileBatchSize;
+    }
+
+
+    /**
+     * Returns whether a JSR-45 source map is written next to each generated
+     * file.
+     *
+     * @return true if source maps are written
+     */
+
+    public boolean isSourceMap()
+    {
+        return sourceMap;
+    }
+
+
+    /**
+     * Enables writing JSR-45 source maps. The source maps of servlet sources
+     * are added to the compiled classes.
+     *
+     * @param sourceMap true to write source maps
+     */
+
+    public void setSourceMap(boolean sourceMap)
+    {
+        this.sourceMap = sourceMap;
+    }
+
+
+    /**
+     * Returns whether expensive constructs are wrapped with profiling probes.
+     *
+     * @return true if profiling probes are generated
+     */
+
+    public boolean isProfilingProbes()
+    {
+        return profilingProbes;
+    }
+
+
+    /**
+     * Enables the profiling probes of expensive constructs.
+     *
+     * @param profilingProbes true to generate profiling probes
+     */
+
+    public void setProfilingProbes(boolean profilingProbes)
+    {
+        this.profilingProbes = profilingProbes;
+    }
+
+
+    /**
+     * Returns whether the templates are only analyzed for their static cost.
+     *
+     * @return true if the templates are analyzed instead of compiled
+     */
+
+    public boolean isAnalyze()
+    {
+        return analyze;
+    }
+
+
+    /**
+     * Enables the analysis mode. All templates are parsed without generating
+     * any output, and the ranked report of their static costs is written to
+     * the destination directory (see {@link TemplateCost}).
+     *
+     * @param analyze true to analyze the templates instead of compiling them
+     */
+
+    public void setAnalyze(boolean analyze)
+    {
+        this.analyze = analyze;
+    }
+
+
+    /**
+     * Returns whether the templates are only checked for performance
+     * anti-patterns.
+     *
+     * @return true if the templates are linted instead of compiled
+     */
+
+    public boolean isLint()
+    {
+        return lint;
+    }
+
+
+    /**
+     * Enables the lint mode. All templates are parsed in parallel without
+     * generating any output, and the findings of the rules of
+     * {@link TemplateLinter} are logged and written to the destination
+     * directory. Findings with severity ERROR fail the build.
+     *
+     * @param lint true to lint the templates instead of compiling them
+     */
+
+    public void setLint(boolean lint)
+    {
+        this.lint = lint;
+    }
+
+
+    /**
+     * Returns the properties file with the severities of the lint rules.
+     *
+     * @return the file, or null for the default severities
+     */
+
+    public File getLintConfig()
+    {
+        return lintConfig;
+    }
+
+
+    /**
+     * Sets the properties file with the severities of the lint rules, see
+     * {@link TemplateLinter#configure(Properties)}.
+     *
+     * @param lintConfig the file, null for the default severities
+     */
+
+    public void setLintConfig(File lintConfig)
+    {
+        this.lintConfig = lintConfig;
+    }
+
+
+    /**
+     * Returns whether ISINCLUDEs of templates with literal names are inlined.
+     *
+     * @return true if static includes are inlined
+     */
+
+    public boolean isInlineIncludes()
+    {
+        return inlineIncludes;
+    }
+
+
+    /**
+     * Enables the inlining of static includes (see {@link IncludeInliner}).
+     * The inlined templates are listed in a manifest in the destination
+     * directory, and a template is compiled again if a template that is
+     * inlined into it changes.
+     *
+     * @param inlineIncludes true to inline static includes
+     */
+
+    public void setInlineIncludes(boolean inlineIncludes)
+    {
+        this.inlineIncludes = inlineIncludes;
+    }
+
+
+    /**
+     * Returns the maximum size of the content that is inlined into a
+     * template.
+     *
+     * @return the budget in characters
+     */
+
+    public int getInlineBudget()
+    {
+        return inlineBudget;
+    }
+
+
+    /**
+     * Sets the maximum size of the content that is inlined into a template.
+     * Includes that exceed the budget are kept.
+     *
+     * @param inlineBudget the budget in characters
+     */
+
+    public void setInlineBudget(int inlineBudget)
+    {
+        this.inlineBudget = inlineBudget;
+    }
+
+
+    /**
+     * Returns whether custom tags are bound at compile time.
+     *
+     * @return true if custom tags are bound
+     */
+
+    public boolean isBindCustomTags()
+    {
+        return bindCustomTags;
+    }
+
+
+    /**
+     * Enables the compile time binding of custom tags. The ISMODULE tags of
+     * all templates are indexed before the templates are compiled, and the
+     * custom tags with a unique declaration are written to a registry file in
+     * the destination directory (see {@link CustomTagRegistry}). All templates
+     * are compiled again if the registry changes.
+     *
+     * @param bindCustomTags true to bind custom tags at compile time
+     */
+
+    public void setBindCustomTags(boolean bindCustomTags)
+    {
+        this.bindCustomTags = bindCustomTags;
+    }
+
+
+    /**
+     * Returns whether the template index is written.
+     *
+     * @return true if the template index is written
+     */
+
+    public boolean isTemplateIndex()
+    {
+        return templateIndex;
+    }
+
+
+    /**
+     * Enables the template index. The names of the templates of all language
+     * directories are written to an index file in the destination directory
+     * (see {@link TemplateIndex}), that the runtime uses to resolve templates
+     * for a locale without probing the language directories.
+     *
+     * @param templateIndex true to write the template index
+     */
+
+    public void setTemplateIndex(boolean templateIndex)
+    {
+        this.templateIndex = templateIndex;
+    }
+
+
+    /**
+     * Returns whether identical templates are compiled once.
+     *
+     * @return true if identical templates are deduplicated
+     */
+
+    public boolean isDeduplicate()
+    {
+        return deduplicate;
+    }
+
+
+    /**
+     * Enables the deduplication of templates. Templates with the same path
+     * and the same content in several language directories are compiled
+     * once, the outputs of the others are hard links to the outputs of the
+     * compiled template, or copies (see {@link #setDeduplicateCopies(boolean)}).
+     * The deduplication is not used for servlet code, whose class names
+     * depend on the language directory, and for profiling probes, which
+     * report the path of the template.
+     *
+     * @param deduplicate true to compile identical templates once
+     */
+
+    public void setDeduplicate(boolean deduplicate)
+    {
+        this.deduplicate = deduplicate;
+    }
+
+
+    /**
+     * Returns whether the outputs of deduplicated templates are copied.
+     *
+     * @return true if the outputs are copied instead of hard linked
+     */
+
+    public boolean isDeduplicateCopies()
+    {
+        return deduplicateCopies;
+    }
+
+
+    /**
+     * Copies the outputs of deduplicated templates instead of creating hard
+     * links, for example if the outputs are modified in place later. The
+     * outputs are always copied if the file system doesn't support hard
+     * links.
+     *
+     * @param deduplicateCopies true to copy the outputs
+     */
+
+    public void setDeduplicateCopies(boolean deduplicateCopies)
+    {
+        this.deduplicateCopies = deduplicateCopies;
+    }
+
+
+    /**
+     * Returns the shared blob file of the destination directory.
+     *
+     * @return the blob file or null, if no shared blob is used
+     */
+
+    protected File getStaticTextBlobFile()
+    {
+        return (isStaticTextBlob() && getDestdir() != null) ? new File(getDestdir(), StaticTextStore.DEFAULT_NAME) : null;
+    }
+
+    /**
+     * Add a jsp encoding configuration to the ISML compiler configuration.
+     *
+     * @param mimetype
+     * @param encoding
+     */
+    public void addJspEncoding(String mimetype, String encoding) {
+        jspEncodings.add(new Encoding(mimetype, encoding));
+    }
+
+    /**
+     * This method collects all template language directories from the given root directory
+     * (this is a site template directory or a cartridge template directory). The language
+     * directories are 1st level subdirectories of the given root. Note that there are some
+     * "special" language identifiers, e.g. "impex", that are also returned.
+     *
+     * @param rootDir The template root directory.
+     *
+     * @return An array of files representing all template directories, never null
+     */
+
+    protected File[] getAllLanguageDirs(String rootDir)
+    {
+        if (rootDir != null)
+        {
+            // get the root dir
+            File root = new File(rootDir);
+
+            // get all isml files
+            return root.listFiles(ISMLTemplateConstants.directoryFilter);
+        }
+        else
+        {
+            // null dir returns no matches
+            return new File[0];
+        }
+    }    
+    
+    /**
+     * This internal helper collects all template file names out of the given directory
+     * recursively. The names are built to match the requirements of building template IDs, i.e.
+     * containing a sub directory (optionally) and a template file name (w/ extension) separated
+     * by slashes.
+     *
+     * @param dir The directory. Initially (1st recursion) it is the language directory.
+     * @param subDirPath The sub directory path
+     * @param result The resulting template names.
+     */
+
+    protected void getAllTemplateFileNames(File dir, String subDirPath, Collection<String> result)
+    {
+        // get all isml files and subdirs
+        File[] files = dir.listFiles(ISMLTemplateConstants.ismlFilter);
+
+        // iterate results, recurse dirs, add files to result
+        for (int i = 0; i < files.length; i++)
+        {
+            if (files[i].isDirectory())
+            {
+                String sd = null;
+
+                // create current subdir path
+                if (subDirPath == null)
+                {
+                    // we're the 1st one
+                    sd = files[i].getName() + '/';
+                }
+                else
+                {
+                    // append
+                    sd = subDirPath + files[i].getName() + '/';
+                }
+
+                // recurse
+                getAllTemplateFileNames(files[i], sd, result);
+            }
+            else
+            {
+                // add file name to result vector
+                if (subDirPath == null)
+                {
+                    // add "pure" file name
+                    result.add(files[i].getName());
+                }
+                else
+                {
+                    // prepend base dir
+                    result.add(subDirPath + files[i].getName());
+                }
+            }
+        }
+    }
+
+    public void execute() throws ISMLException
+    {
+        ArrayList<File[]> compilePathList = new ArrayList<>();
+        Map<File, String> servletClasses = new HashMap<>();
+                  
+        // check, if the source directory attribute is set.
+        if (getSrcdir() == null) {
+            throw new ISMLException("srcdir attribute must be set!");
+        }        
+
+        // check, if the destination directory attribute is set.
+        if (getDestdir() == null) {
+            throw new ISMLException("destdir attribute must be set!");
+        }        
+        
+        File srcDir = getSrcdir();
+        String srcDirName = srcDir.getAbsolutePath().replace('\\','/');
+                
+        // check, if the source directory exists
+        if (!srcDir.exists())
+        {
+            throw new ISMLException("srcdir doesn't exist!!");
+        }
+        
+        // Create compile configuration
+        ISMLCompilerConfiguration configuration = getCompilerConfiguration();
+        TemplatePrecompileUtils precompUtils = new TemplatePrecompileUtils(configuration);
+
+        File destDir = getDestdir();
+        String destDirName = destDir.getAbsolutePath().replace('\\','/');
+
+        // the templates inlined into the templates of the last compilation
+        Map<String, Set<String>> inlineDependencies = isInlineIncludes() ? readInlineDependencies(destDir) : null;
+
+        // get all language subdirectories
+        File[] langDirs = getAllLanguageDirs(srcDirName);
+
+        // the templates are compiled again if the bound custom tags change
+        boolean customTagsChanged = isBindCustomTags() && !isAnalyze() && !isLint()
+                        && updateCustomTagRegistry(precompUtils, destDir, langDirs);
+
+        // the template names by language directory
+        Map<String, Collection<String>> indexedTemplates = new HashMap<>();
+        if (langDirs != null)
+        {
+            for (int i = 0; i < langDirs.length; i++)
+            {
+                // get all template names
+                Collection<String> ismlFiles = new ArrayList<>();
+                getAllTemplateFileNames(langDirs[i], null, ismlFiles);
+                indexedTemplates.put(langDirs[i].getName(), ismlFiles);
+                
+                // iterate all templates and check if we should compile
+                for(String ismlFileName : ismlFiles)
+                {
+                    // scan for files to compile
+                    File sourceFile = null;
+                    
+                    String ismlSubPathName = langDirs[i].getName() + File.separatorChar + ismlFileName;
+                    String jspSubPathName = ismlSubPathName.substring(0, ismlSubPathName.length() - 
+                                            ISMLTemplateConstants.TEMPLATE_EXTENSION.length()) +
+                                            ISMLTemplateConstants.TEMPLATE_PAGECOMPILE_EXTENSION;
+
+                    sourceFile = new File(srcDirName, ismlSubPathName);
+                    File jspFile = new File(destDirName, jspSubPathName);
+                    
+                    if (!(sourceFile.isFile() && sourceFile.canRead()))
+                    {
+                        continue; 
+                    }
+                    
+                    // servlet sources are written to the directories of their packages
+                    File outputFile = jspFile;
+                    if (isServletCode())
+                    {
+                        String className = ServletCodeGenerator.getClassName(ismlSubPathName);
+                        outputFile = ServletCodeGenerator.getSourceFile(destDir, className);
+                        servletClasses.put(sourceFile, className);
+                    }
+
+                    // the template may have been written as static resource
+                    File targetFile = outputFile;
+                    if (!targetFile.exists())
+                    {
+                        targetFile = StaticTemplate.getResourceFile(jspFile);
+                    }
+
+                    // check, if compilation is required
+                    if (isAnalyze() || isLint() || customTagsChanged || !targetFile.exists() || (targetFile.lastModified() < sourceFile.lastModified())
+                        || isInlinedTemplateModified(srcDir, langDirs, inlineDependencies, sourceFile, targetFile))
+                    {
+                        compilePathList.add(new File[] {sourceFile, jspFile, outputFile});
+                    }
+                    else
+                    {
+                        logger.info("Skipping file: {}. Target is up to date.", sourceFile.getAbsolutePath() );
+                    }
+                }
+            }
+        }
+
+        if (isAnalyze() || isLint())
+        {
+            Map<String, ISMLTemplate> templates = parseTemplates(precompUtils, srcDir, compilePathList);
+            if (isAnalyze())
+            {
+                analyzeTemplates(templates);
+            }
+            if (isLint())
+            {
+                lintTemplates(templates);
+            }
+            return;
+        }
+
+        if (isTemplateIndex())
+        {
+            updateTemplateIndex(destDir, indexedTemplates);
+        }
+
+        // check whether there is something to compile at all
+        if(compilePathList.isEmpty())
+        {
+            if (getClassJar() != null && !getClassJar().exists())
+            {
+                compileClasses(destDir);
+            }
+            return;
+        }
+
+        logger.info("Compiling {} source files to {}.", compilePathList.size(), getDestdir().getAbsolutePath());
+
+        StaticTextStore staticTextStore = null;
+        if (isStaticTextBlob())
+        {
+            try
+            {
+                staticTextStore = StaticTextStore.open(getStaticTextBlobFile());
+                staticTextStore.resetStatistics();
+            }
+            catch (IOException ex)
+            {
+                throw new ISMLException("Static text blob can't be opened: " + ex.getMessage());
+            }
+        }
+
+        // identical templates of several language directories are compiled once
+        Map<File[], List<File[]>> duplicates = null;
+        List<File[]> compiledPathList = compilePathList;
+        if (isDeduplicate() && !isServletCode() && !isProfilingProbes())
+        {
+            duplicates = findDuplicates(srcDir, compilePathList);
+            compiledPathList = new ArrayList<>(duplicates.keySet());
+        }
+
+        for (File[] entry : compiledPathList)
+        {
+            compileTemplate(precompUtils, entry, servletClasses.get(entry[0]));
+        }
+
+        if (duplicates != null)
+        {
+            writeDeduplicationReport(destDir, srcDir, shareDuplicateOutputs(precompUtils, duplicates), compilePathList.size());
+        }
+
+        if (inlineDependencies != null)
+        {
+            updateInlineDependencies(inlineDependencies, srcDir, precompUtils.getInlinedTemplates(), compilePathList);
+            writeInlineDependencies(destDir, inlineDependencies);
+        }
+
+        if (staticTextStore != null)
+        {
+            writeStaticTextReport(staticTextStore);
+        }
+
+        if (isStaticTemplates())
+        {
+            writeStaticTemplateManifest(destDir);
+        }
+
+        List<String> oversizedTemplates = precompUtils.getOversizedTemplates();
+        if (!oversizedTemplates.isEmpty())
+        {
+            logger.warn("{} templates have a service method above the limit of {} bytes and may not be JIT compiled:\n{}",
+                        oversizedTemplates.size(), getServiceMethodSizeLimit(), String.join("\n", oversizedTemplates));
+        }
+
+        if (getClassJar() != null)
+        {
+            compileClasses(destDir);
+        }
+    }
+
+    /**
+     * Parses templates in parallel without generating any output. The
+     * templates are parsed as they are written, without the optimizations of
+     * the compiler configuration.
+     *
+     * @param precompUtils    the compiler
+     * @param srcDir          the source directory
+     * @param compilePathList the templates, the source file is the first
+     *                        file of each entry
+     * @return the parsed templates by their path relative to the source
+     *         directory, separated by '/'
+     */
+
+    protected Map<String, ISMLTemplate> parseTemplates(TemplatePrecompileUtils precompUtils, File srcDir, List<File[]> compilePathList)
+    {
+        Map<String, ISMLTemplate> templates = new ConcurrentHashMap<>();
+
+        compilePathList.parallelStream().forEach(entry -> {
+            File sourceFile = entry[0];
+            String name = getTemplatePath(srcDir, sourceFile);
+
+            try
+            {
+                templates.put(name, precompUtils.parseISMLSource(sourceFile));
+            }
+            catch (Exception ex)
+            {
+                logger.error("Error parsing '" + sourceFile.getAbsolutePath() + "'.\nReason:", ex);
+                errorExit.set(true);
+            }
+        });
+
+        return new TreeMap<>(templates);
+    }
+
+    /**
+     * Returns the path of a template relative to the source directory.
+     *
+     * @param srcDir the source directory
+     * @param file   the template file
+     * @return the path, separated by '/'
+     */
+
+    protected String getTemplatePath(File srcDir, File file)
+    {
+        return srcDir.getAbsoluteFile().toPath().relativize(file.getAbsoluteFile().toPath()).toString().replace('\\', '/');
+    }
+
+
+    /**
+     * Compiles a template and removes its outputs of the last compilation.
+     * Errors are logged.
+     *
+     * @param precompUtils the compiler
+     * @param entry        the source file, the JSP file and the output file
+     * @param className    the name of the servlet class if servlet code is
+     *                     generated, null otherwise
+     */
+
+    protected void compileTemplate(TemplatePrecompileUtils precompUtils, File[] entry, String className)
+    {
+        File sourceFile = entry[0];
+        File jspFile = entry[1];
+        File outputFile = entry[2];
+
+        try
+        {
+            // compile isml -> jsp
+            logger.debug("Compiling isml file: {}", sourceFile.getAbsolutePath());
+
+            // remove .jsp file and static resource
+            for (File file : getOutputFiles(entry))
+            {
+                if (file.exists() && file.isFile())
+                {
+                    Files.delete(file.toPath());
+                }
+            }
+
+            for (File outDir : new File[] { jspFile.getParentFile(), outputFile.getParentFile() })
+            {
+                if (!outDir.exists())
+                {
+                    outDir.mkdirs();
+                }
+            }
+
+            if (className != null)
+            {
+                precompUtils.compileISMLToServlet(sourceFile, jspFile, outputFile, className);
+            }
+            else
+            {
+                precompUtils.compileISML(sourceFile, jspFile);
+            }
+        }
+        catch (Exception ex)
+        {
+            logger.error("Error compiling '" + sourceFile.getAbsolutePath() + "'.\nReason:", ex);
+        }
+    }
+
+
+    /**
+     * Returns the files a template may be compiled to: the output file, its
+     * source map, and the static resource and its descriptor.
+     *
+     * @param entry the source file, the JSP file and the output file
+     * @return the output files, existing or not
+     */
+
+    protected File[] getOutputFiles(File[] entry)
+    {
+        return new File[] { entry[2], new File(entry[2].getPath() + ISMLTemplateConstants.TEMPLATE_SMAP_EXTENSION),
+                            StaticTemplate.getResourceFile(entry[1]), StaticTemplate.getDescriptorFile(entry[1]) };
+    }
+
+
+    /**
+     * Groups the templates to compile by their path in the language directory
+     * and the SHA-256 hash of their content. The first template of a group is
+     * compiled, the others are its duplicates.
+     *
+     * @param srcDir          the source directory
+     * @param compilePathList the templates, the source file is the first
+     * @return the duplicates by the template that is compiled, in the order
+     *         of the templates
+     */
+
+    protected Map<File[], List<File[]>> findDuplicates(File srcDir, List<File[]> compilePathList)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new ISMLException("SHA-256 isn't supported: " + ex.getMessage());
+        }
+
+        Map<String, File[]> compiled = new HashMap<>();
+        Map<File[], List<File[]>> result = new LinkedHashMap<>();
+        for (File[] entry : compilePathList)
+        {
+            String key;
+            try
+            {
+                // the path without the language directory
+                String path = getTemplatePath(srcDir, entry[0]);
+                key = path.substring(path.indexOf('/') + 1) + '\t'
+                                + new BigInteger(1, digest.digest(Files.readAllBytes(entry[0].toPath()))).toString(16);
+            }
+            catch (IOException ex)
+            {
+                // the error is reported when the template is compiled
+                result.put(entry, new ArrayList<>());
+                continue;
+            }
+
+            File[] first = compiled.putIfAbsent(key, entry);
+            if (first == null)
+            {
+                result.put(entry, new ArrayList<>());
+            }
+            else
+            {
+                result.get(first).add(entry);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Hard links or copies the outputs of the compiled templates to the
+     * outputs of their duplicates. A duplicate is compiled itself if its
+     * template couldn't be compiled, or if includes were inlined into it,
+     * because includes are resolved in the language directory of the
+     * template.
+     *
+     * @param precompUtils the compiler
+     * @param duplicates   the duplicates by the template that is compiled
+     * @return the duplicates whose outputs are shared, by the compiled template
+     */
+
+    protected Map<File[], List<File[]>> shareDuplicateOutputs(TemplatePrecompileUtils precompUtils,
+                                                              Map<File[], List<File[]>> duplicates)
+    {
+        Map<File, Set<File>> inlinedTemplates = precompUtils.getInlinedTemplates();
+        Map<File[], List<File[]>> result = new LinkedHashMap<>();
+
+        for (Map.Entry<File[], List<File[]>> group : duplicates.entrySet())
+        {
+            File[] compiledFiles = getOutputFiles(group.getKey());
+            Set<File> inlined = inlinedTemplates.get(group.getKey()[0]);
+            boolean shared = (compiledFiles[0].isFile() || compiledFiles[2].isFile())
+                            && (inlined == null || inlined.isEmpty());
+
+            for (File[] entry : group.getValue())
+            {
+                if (!shared)
+                {
+                    compileTemplate(precompUtils, entry, null);
+                    continue;
+                }
+
+                File[] files = getOutputFiles(entry);
+                try
+                {
+                    for (int i = 0; i < files.length; i++)
+                    {
+                        Files.deleteIfExists(files[i].toPath());
+                        if (compiledFiles[i].isFile())
+                        {
+                            files[i].getParentFile().mkdirs();
+                            shareFile(compiledFiles[i].toPath(), files[i].toPath());
+                        }
+                    }
+                    result.computeIfAbsent(group.getKey(), key -> new ArrayList<>()).add(entry);
+                }
+                catch (IOException ex)
+                {
+                    logger.debug("Output of template {} can't be shared: {}", entry[0].getAbsolutePath(), ex.getMessage());
+                    compileTemplate(precompUtils, entry, null);
+                }
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Creates a hard link to a file, or a copy if hard links are disabled or
+     * not supported by the file system.
+     *
+     * @param source the existing file
+     * @param target the file to create
+     * @throws IOException if the file can't be copied
+     */
+
+    protected void shareFile(Path source, Path target) throws IOException
+    {
+        if (!isDeduplicateCopies())
+        {
+            try
+            {
+                Files.createLink(target, source);
+                return;
+            }
+            catch (IOException | UnsupportedOperationException ex)
+            {
+                logger.debug("Hard link {} can't be created, the file is copied: {}", target, ex.getMessage());
+            }
+        }
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+
+    /**
+     * Logs the ratio of the deduplicated templates and writes the report with
+     * the deduplicated templates to the destination directory.
+     *
+     * @param destDir    the destination directory
+     * @param srcDir     the source directory
+     * @param duplicates the duplicates whose outputs are shared, by the
+     *                   compiled template
+     * @param total      the number of templates to compile
+     */
+
+    protected void writeDeduplicationReport(File destDir, File srcDir, Map<File[], List<File[]>> duplicates, int total)
+    {
+        int shared = 0;
+        StringBuilder details = new StringBuilder();
+        for (Map.Entry<File[], List<File[]>> group : duplicates.entrySet())
+        {
+            shared += group.getValue().size();
+            details.append(getTemplatePath(srcDir, group.getKey()[0]));
+            for (File[] entry : group.getValue())
+            {
+                details.append('\t').append(getTemplatePath(srcDir, entry[0]));
+            }
+            details.append('\n');
+        }
+
+        String summary = String.format(Locale.ENGLISH, "%d of %d templates (%.1f%%) are identical to a compiled template and share its output.",
+                                       shared, total, (total > 0) ? 100.0 * shared / total : 0.0);
+        logger.info(summary);
+
+        try
+        {
+            Files.write(new File(destDir, ISMLTemplateConstants.TEMPLATE_DEDUPLICATION_REPORT).toPath(),
+                        (summary + '\n' + details).getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException ex)
+        {
+            logger.error("Error writing the deduplication report.", ex);
+        }
+    }
+
+
+    /**
+     * Writes the index of the templates by language directory to the
+     * destination directory, if it has changed.
+     *
+     * @param destDir   the destination directory
+     * @param templates the template names by language directory
+     */
+
+    protected void updateTemplateIndex(File destDir, Map<String, Collection<String>> templates)
+    {
+        File indexFile = new File(destDir, ISMLTemplateConstants.TEMPLATE_INDEX);
+        try
+        {
+            destDir.mkdirs();
+            Path tempFile = Files.createTempFile(destDir.toPath(), ISMLTemplateConstants.TEMPLATE_INDEX, null);
+            TemplateIndex.write(tempFile, templates);
+            if (indexFile.isFile() && Arrays.equals(Files.readAllBytes(tempFile), Files.readAllBytes(indexFile.toPath())))
+            {
+                Files.delete(tempFile);
+                return;
+            }
+
+            // the runtime maps the file, so it is replaced and not overwritten
+            Files.move(tempFile, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            logger.info("Template index written with {} language directories.", templates.size());
+        }
+        catch (IOException ex)
+        {
+            throw new ISMLException("Template index can't be written: " + ex.getMessage());
+        }
+    }
+
+
+    /**
+     * Indexes the ISMODULE tags of all templates and writes the registry of
+     * the custom tags that are bound at compile time to the destination
+     * directory. Templates that can't be parsed are skipped, their errors are
+     * reported when they are compiled.
+     *
+     * @param precompUtils the compiler
+     * @param destDir      the destination directory
+     * @param langDirs     the language directories
+     * @return true if the registry has changed
+     */
+
+    protected boolean updateCustomTagRegistry(TemplatePrecompileUtils precompUtils, File destDir, File[] langDirs)
+    {
+        List<File> sourceFiles = new ArrayList<>();
+        if (langDirs != null)
+        {
+            for (File langDir : langDirs)
+            {
+                Collection<String> ismlFiles = new ArrayList<>();
+                getAllTemplateFileNames(langDir, null, ismlFiles);
+                for (String ismlFileName : ismlFiles)
+                {
+                    sourceFiles.add(new File(langDir, ismlFileName));
+                }
+            }
+        }
+
+        CustomTagIndex index = new CustomTagIndex();
+        sourceFiles.parallelStream().forEach(sourceFile -> {
+            try
+            {
+                index.add(precompUtils.parseISML(sourceFile));
+            }
+            catch (Exception ex)
+            {
+                logger.debug("Template {} is not indexed: {}", sourceFile.getAbsolutePath(), ex.getMessage());
+            }
+        });
+
+        if (!index.getUnboundNames().isEmpty())
+        {
+            logger.info("Custom tags with different declarations are resolved at runtime: {}", index.getUnboundNames());
+        }
+
+        CustomTagRegistry registry = index.getRegistry();
+        File registryFile = new File(destDir, ISMLTemplateConstants.CUSTOM_TAG_REGISTRY);
+        try
+        {
+            if (registryFile.isFile() && registry.equals(CustomTagRegistry.read(registryFile.toPath())))
+            {
+                return false;
+            }
+
+            destDir.mkdirs();
+            registry.write(registryFile.toPath());
+            logger.info("{} custom tags are bound at compile time.", registry.getModules().size());
+            return true;
+        }
+        catch (IOException ex)
+        {
+            throw new ISMLException("Custom tag registry can't be written: " + ex.getMessage());
+        }
+    }
+
+
+    /**
+     * Reads the manifest of the templates inlined into the templates of the
+     * last compilation from the destination directory.
+     *
+     * @param destDir the destination directory
+     * @return the paths of the inlined templates by the paths of the including
+     *         templates, relative to the source directory and separated by '/'
+     */
+
+    protected Map<String, Set<String>> readInlineDependencies(File destDir)
+    {
+        Map<String, Set<String>> result = new TreeMap<>();
+        File manifest = new File(destDir, ISMLTemplateConstants.INLINE_DEPENDENCY_MANIFEST);
+        if (!manifest.isFile())
+        {
+            return result;
+        }
+
+        try
+        {
+            for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8))
+            {
+                int separator = line.indexOf('\t');
+                if (separator > 0)
+                {
+                    result.computeIfAbsent(line.substring(0, separator), name -> new TreeSet<>()).add(line.substring(separator + 1));
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new ISMLException("Inline dependency manifest can't be read: " + ex.getMessage());
+        }
+        return result;
+    }
+
+
+    /**
+     * Checks whether a template that was inlined into a template at the last
+     * compilation has changed, or whether another language directory defines
+     * it now.
+     *
+     * @param srcDir             the source directory
+     * @param langDirs           the language directories
+     * @param inlineDependencies the inlined templates by including template,
+     *                           null if includes aren't inlined
+     * @param sourceFile         the including template
+     * @param targetFile         the compiled including template
+     * @return true if the template has to be compiled again
+     */
+
+    protected boolean isInlinedTemplateModified(File srcDir, File[] langDirs, Map<String, Set<String>> inlineDependencies,
+                                                File sourceFile, File targetFile)
+    {
+        Set<String> dependencies = (inlineDependencies != null) ? inlineDependencies.get(getTemplatePath(srcDir, sourceFile)) : null;
+        if (dependencies == null)
+        {
+            return false;
+        }
+
+        for (String dependency : dependencies)
+        {
+            File file = new File(srcDir, dependency);
+            if (!file.isFile() || (targetFile.lastModified() < file.lastModified()))
+            {
+                return true;
+            }
+
+            String language = dependency.substring(0, dependency.indexOf('/'));
+            String path = dependency.substring(language.length() + 1);
+            for (File langDir : langDirs)
+            {
+                if (!langDir.getName().equals(language) && new File(langDir, path).exists())
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Replaces the inlined templates of the compiled templates in the
+     * manifest, and removes the templates that don't exist anymore.
+     *
+     * @param inlineDependencies the inlined templates by including template
+     * @param srcDir             the source directory
+     * @param inlinedTemplates   the inlined templates of this compilation
+     * @param compilePathList    the compiled templates, the source file is the
+     *                           first file of each entry
+     */
+
+    protected void updateInlineDependencies(Map<String, Set<String>> inlineDependencies, File srcDir,
+                                            Map<File, Set<File>> inlinedTemplates, List<File[]> compilePathList)
+    {
+        for (File[] entry : compilePathList)
+        {
+            inlineDependencies.remove(getTemplatePath(srcDir, entry[0]));
+        }
+
+        for (Map.Entry<File, Set<File>> entry : inlinedTemplates.entrySet())
+        {
+            if (!entry.getValue().isEmpty())
+            {
+                Set<String> dependencies = new TreeSet<>();
+                for (File file : entry.getValue())
+                {
+                    dependencies.add(getTemplatePath(srcDir, file));
                 }
+                inlineDependencies.put(getTemplatePath(srcDir, entry.getKey()), dependencies);
+            }
+        }
+
+        inlineDependencies.keySet().removeIf(name -> !new File(srcDir, name).isFile());
+    }
+
+
+    /**
+     * Writes the manifest of the inlined templates to the destination
+     * directory, one line with the including and the inlined template
+     * separated by a tab per inlined template.
+     *
+     * @param destDir            the destination directory
+     * @param inlineDependencies the inlined templates by including template
+     */
+
+    protected void writeInlineDependencies(File destDir, Map<String, Set<String>> inlineDependencies)
+    {
+        StringBuilder manifest = new StringBuilder();
+        for (Map.Entry<String, Set<String>> entry : inlineDependencies.entrySet())
+        {
+            for (String dependency : entry.getValue())
+            {
+                manifest.append(entry.getKey()).append('\t').append(dependency).append('\n');
+            }
+        }
+
+        try
+        {
+            Files.write(new File(destDir, ISMLTemplateConstants.INLINE_DEPENDENCY_MANIFEST).toPath(),
+                        manifest.toString().getBytes(StandardCharsets.UTF_8));
+            logger.info("{} templates have inlined includes.", inlineDependencies.size());
+        }
+        catch (IOException ex)
+        {
+            logger.error("Error writing the inline dependency manifest.", ex);
+        }
+    }
+
+
+    /**
+     * Writes the report of the static costs of templates to the destination
+     * directory.
+     *
+     * @param templates the parsed templates by name
+     */
+
+    protected void analyzeTemplates(Map<String, ISMLTemplate> templates)
+    {
+        List<TemplateCost> costs = new ArrayList<>();
+        for (Map.Entry<String, ISMLTemplate> entry : templates.entrySet())
+        {
+            costs.add(TemplateCost.analyze(entry.getValue(), entry.getKey()));
+        }
+
+        String report = TemplateCost.getReport(costs);
+        logger.info(report);
+        writeReport(ISMLTemplateConstants.TEMPLATE_COST_REPORT, report);
+    }
+
+    /**
+     * Checks templates for performance anti-patterns and writes the findings
+     * to the destination directory. A template is a fragment if a template of
+     * the same language directory includes it, otherwise it is a page-level
+     * template.
+     *
+     * @param templates the parsed templates by their path relative to the
+     *                  source directory
+     * @throws ISMLException if the lint configuration is invalid
+     */
+
+    protected void lintTemplates(Map<String, ISMLTemplate> templates) throws ISMLException
+    {
+        TemplateLinter linter = new TemplateLinter();
+        if (getLintConfig() != null)
+        {
+            Properties configuration = new Properties();
+            try (InputStream in = new FileInputStream(getLintConfig()))
+            {
+                configuration.load(in);
+                linter.configure(configuration);
+            }
+            catch (IOException | IllegalArgumentException ex)
+            {
+                throw new ISMLException("Invalid lint configuration " + getLintConfig().getAbsolutePath() + ": " + ex.getMessage());
             }
         }
 
-        // check whether there is something to compile at all
-        if(compilePathList.isEmpty())
+        // the included templates by language directory
+        Set<String> fragments = new HashSet<>();
+        for (Map.Entry<String, ISMLTemplate> entry : templates.entrySet())
         {
-            return;
+            String language = entry.getKey().substring(0, entry.getKey().indexOf('/') + 1);
+            for (String include : TemplateLinter.getIncludedTemplates(entry.getValue()))
+            {
+                fragments.add(language + include);
+            }
         }
 
-        logger.info("Compiling {} source files to {}.", compilePathList.size(), getDestdir().getAbsolutePath());
+        List<TemplateLinter.Finding> findings = templates.entrySet().parallelStream()
+                        .flatMap(entry -> linter.lint(entry.getValue(), entry.getKey(),
+                                        fragments.contains(TemplateLinter.getTemplateName(entry.getKey()))).stream())
+                        .sorted(Comparator.comparing(TemplateLinter.Finding::getFile)
+                                        .thenComparingInt(TemplateLinter.Finding::getLine)
+                                        .thenComparingInt(TemplateLinter.Finding::getColumn))
+                        .collect(Collectors.toList());
 
-        for (File[] entry : compilePathList)
+        StringBuilder report = new StringBuilder();
+        int errors = 0;
+        for (TemplateLinter.Finding finding : findings)
         {
-            File sourceFile = entry[0];
-            File jspFile = entry[1];
-
-            try
+            switch(finding.getSeverity())
             {
-                // compile isml -> jsp
-                logger.debug("Compiling isml file: {}", sourceFile.getAbsolutePath());
+                case ERROR:
+                    logger.error(finding.toString());
+                    errors++;
+                    break;
+                case WARNING:
+                    logger.warn(finding.toString());
+                    break;
+                default:
+                    logger.info(finding.toString());
+                    break;
+            }
+            report.append(finding).append('\n');
+        }
 
-                // remove .jsp file
-                if (jspFile.exists() && jspFile.isFile())
-                {
-                    Files.delete(jspFile.toPath());
-                }
+        logger.info("{} templates linted, {} findings, {} errors.", templates.size(), findings.size(), errors);
+        writeReport(ISMLTemplateConstants.TEMPLATE_LINT_REPORT, report.toString());
+        if (errors > 0)
+        {
+            errorExit.set(true);
+        }
+    }
 
-                File outDir = jspFile.getParentFile();
+    /**
+     * Writes a report to the destination directory.
+     *
+     * @param name   the file name of the report
+     * @param report the report
+     */
 
-                if (!outDir.exists())
-                {
-                    outDir.mkdirs();
-                }
+    protected void writeReport(String name, String report)
+    {
+        try
+        {
+            getDestdir().mkdirs();
+            Files.write(new File(getDestdir(), name).toPath(), report.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException ex)
+        {
+            logger.error("Error writing the report " + name + ".", ex);
+        }
+    }
 
-                precompUtils.compileISML(sourceFile, jspFile);
+    /**
+     * Compiles the Java sources in the destination directory into the class
+     * jar.
+     *
+     * @param destDir the destination directory
+     * @throws ISMLException if the sources can't be compiled
+     */
+
+    protected void compileClasses(File destDir) throws ISMLException
+    {
+        if (!isServletCode())
+        {
+            logger.warn("Servlet code generation is disabled, only existing Java sources in {} are compiled.", destDir.getAbsolutePath());
+        }
+
+        TemplateClassCompiler classCompiler = new TemplateClassCompiler(getClasspath());
+        classCompiler.setBatchSize(getCompileBatchSize());
+
+        int failed = classCompiler.compile(destDir, getClassJar());
+        if (failed > 0)
+        {
+            logger.error("{} template sources failed to compile and are missing in {}.", failed, getClassJar().getAbsolutePath());
+            errorExit.set(true);
+        }
+    }
+
+    /**
+     * Writes the manifest of all static resources in the destination
+     * directory. Each line is the path of a resource relative to the
+     * destination directory.
+     *
+     * @param destDir the destination directory
+     */
+
+    protected void writeStaticTemplateManifest(File destDir)
+    {
+        List<String> resources = new ArrayList<>();
+        getAllStaticResourceNames(destDir, null, resources);
+        Collections.sort(resources);
+
+        StringBuilder manifest = new StringBuilder();
+        for (String resource : resources)
+        {
+            manifest.append(resource).append('\n');
+        }
+
+        try
+        {
+            Files.write(new File(destDir, ISMLTemplateConstants.STATIC_TEMPLATE_MANIFEST).toPath(),
+                        manifest.toString().getBytes(StandardCharsets.UTF_8));
+            logger.info("{} templates are written as static resources.", resources.size());
+        }
+        catch (IOException ex)
+        {
+            logger.error("Error writing the static template manifest.", ex);
+        }
+    }
+
+    /**
+     * Collects the paths of the static resources in a directory and its
+     * subdirectories.
+     *
+     * @param dir        the directory to scan
+     * @param subDirPath the path of the directory relative to the destination
+     *                   directory, null for the destination directory
+     * @param result     the collected paths, separated by '/'
+     */
+
+    protected void getAllStaticResourceNames(File dir, String subDirPath, Collection<String> result)
+    {
+        File[] files = dir.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+
+        for (File file : files)
+        {
+            String path = (subDirPath == null) ? file.getName() : subDirPath + '/' + file.getName();
+            if (file.isDirectory())
+            {
+                getAllStaticResourceNames(file, path, result);
             }
-            catch (Exception ex)
+            else if (file.getName().endsWith(ISMLTemplateConstants.TEMPLATE_STATIC_EXTENSION))
             {
-                logger.error("Error compiling '" + sourceFile.getAbsolutePath() + "'.\nReason:", ex);
+                result.add(path);
             }
         }
     }
+
+    /**
+     * Logs the deduplication report of the shared static text blob and writes
+     * it next to the blob.
+     *
+     * @param store the blob of the destination directory
+     */
+
+    protected void writeStaticTextReport(StaticTextStore store)
+    {
+        String report = store.getReport();
+        logger.info(report);
+
+        try
+        {
+            Files.write(new File(store.getBlobFile().getPath() + StaticTextStore.REPORT_EXTENSION).toPath(),
+                        report.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException ex)
+        {
+            logger.error("Error writing the static text report.", ex);
+        }
+    }
     
     /**
      * Creates the compiler configuration.
@@ -396,6 +2315,151 @@ public class ISML2JSP
             {
                 return getContentEncoding();
             }
+
+            @Override
+            public boolean isConstantFoldingEnabled()
+            {
+                return isFoldConstants();
+            }
+
+            @Override
+            public boolean isDeadBranchEliminationEnabled()
+            {
+                return isEliminateDeadBranches();
+            }
+
+            @Override
+            public boolean isObjectPathHoistingEnabled()
+            {
+                return isHoistObjectPaths();
+            }
+
+            @Override
+            public boolean isObjectPathPresplittingEnabled()
+            {
+                return isPresplitObjectPaths();
+            }
+
+            @Override
+            public boolean isStaticTextEncodingEnabled()
+            {
+                return isEncodeStaticText();
+            }
+
+            @Override
+            public File getStaticTextBlob()
+            {
+                return getStaticTextBlobFile();
+            }
+
+            @Override
+            public boolean isStaticTemplateEmissionEnabled()
+            {
+                return isStaticTemplates();
+            }
+
+            @Override
+            public boolean isServiceMethodSplittingEnabled()
+            {
+                return isSplitServiceMethods();
+            }
+
+            @Override
+            public int getServiceMethodSizeLimit()
+            {
+                return ISML2JSP.this.getServiceMethodSizeLimit();
+            }
+
+            @Override
+            public boolean isCompactTagCodeEnabled()
+            {
+                return isCompactTagCode();
+            }
+
+            @Override
+            public boolean isCacheExpiryPrecomputationEnabled()
+            {
+                return isPrecomputeCacheExpiry();
+            }
+
+            @Override
+            public boolean isStaticTagParametersEnabled()
+            {
+                return isStaticTagParameters();
+            }
+
+            @Override
+            public boolean isNamedRendererClassesEnabled()
+            {
+                return isNamedRenderers();
+            }
+
+            @Override
+            public boolean isMinimalImportsEnabled()
+            {
+                return isMinimalImports();
+            }
+
+            @Override
+            public String getTemplateBaseClass()
+            {
+                return ISML2JSP.this.getTemplateBaseClass();
+            }
+
+            @Override
+            public boolean isTemplateHooksEnabled()
+            {
+                return isTemplateHooks();
+            }
+
+            @Override
+            public boolean isServletCodeGenerationEnabled()
+            {
+                return isServletCode();
+            }
+
+            @Override
+            public String getServletApiPackage()
+            {
+                return ISML2JSP.this.getServletApiPackage();
+            }
+
+            @Override
+            public boolean isSourceMapEnabled()
+            {
+                return isSourceMap();
+            }
+
+            @Override
+            public boolean isProfilingProbesEnabled()
+            {
+                return isProfilingProbes();
+            }
+
+            @Override
+            public boolean isIncludeInliningEnabled()
+            {
+                return isInlineIncludes();
+            }
+
+            @Override
+            public int getIncludeInliningBudget()
+            {
+                return getInlineBudget();
+            }
+
+            @Override
+            public File getTemplateSourceDirectory()
+            {
+                return getSrcdir();
+            }
+
+            @Override
+            public File getCustomTagRegistry()
+            {
+                return (isBindCustomTags() && getDestdir() != null)
+                    ? new File(getDestdir(), ISMLTemplateConstants.CUSTOM_TAG_REGISTRY) : null;
+            }
         };
     }
 
@@ -485,7 +2549,7 @@ public class ISML2JSP
 
         if (args.length == 0)
         {
-            System.out.println("Usage: java "+ISML2JSP.class.getName()+" [-verbose] [-contentencoding <encoding>] <src dir> <dest dir>");
+            System.out.println("Usage: java "+ISML2JSP.class.getName()+" [-verbose] [-contentencoding <encoding>] [-foldconstants] [-eliminatedeadbranches] [-hoistobjectpaths] [-presplitobjectpaths] [-encodestatictext] [-statictextblob] [-statictemplates] [-splitservicemethods] [-servicemethodsizelimit <bytes>] [-compacttagcode] [-precomputecacheexpiry] [-statictagparameters] [-namedrenderers] [-minimalimports] [-templatebaseclass <class>] [-templatehooks] [-servletcode] [-servletapipackage <package>] [-classjar <jar file>] [-classpath <path>] [-compilebatchsize <sources>] [-smap] [-profilingprobes] [-analyze] [-lint] [-lintconfig <properties file>] [-inlineincludes] [-inlinebudget <characters>] [-bindcustomtags] [-templateindex] [-deduplicate] [-deduplicatecopies] <src dir> <dest dir>");
             System.exit(0);
         }
         
@@ -499,6 +2563,142 @@ public class ISML2JSP
                 i++;
                 compiler.setContentEncoding(args[i]);
             }
+            else if ("-foldconstants".equalsIgnoreCase(args[i]))
+            {
+                compiler.setFoldConstants(true);
+            }
+            else if ("-eliminatedeadbranches".equalsIgnoreCase(args[i]))
+            {
+                compiler.setEliminateDeadBranches(true);
+            }
+            else if ("-hoistobjectpaths".equalsIgnoreCase(args[i]))
+            {
+                compiler.setHoistObjectPaths(true);
+            }
+            else if ("-presplitobjectpaths".equalsIgnoreCase(args[i]))
+            {
+                compiler.setPresplitObjectPaths(true);
+            }
+            else if ("-encodestatictext".equalsIgnoreCase(args[i]))
+            {
+                compiler.setEncodeStaticText(true);
+            }
+            else if ("-statictextblob".equalsIgnoreCase(args[i]))
+            {
+                compiler.setStaticTextBlob(true);
+            }
+            else if ("-statictemplates".equalsIgnoreCase(args[i]))
+            {
+                compiler.setStaticTemplates(true);
+            }
+            else if ("-splitservicemethods".equalsIgnoreCase(args[i]))
+            {
+                compiler.setSplitServiceMethods(true);
+            }
+            else if ("-servicemethodsizelimit".equalsIgnoreCase(args[i]))
+            {
+                i++;
+                compiler.setServiceMethodSizeLimit(Integer.parseInt(args[i]));
+            }
+            else if ("-compacttagcode".equalsIgnoreCase(args[i]))
+            {
+                compiler.setCompactTagCode(true);
+            }
+            else if ("-precomputecacheexpiry".equalsIgnoreCase(args[i]))
+            {
+                compiler.setPrecomputeCacheExpiry(true);
+            }
+            else if ("-statictagparameters".equalsIgnoreCase(args[i]))
+            {
+                compiler.setStaticTagParameters(true);
+            }
+            else if ("-namedrenderers".equalsIgnoreCase(args[i]))
+            {
+                compiler.setNamedRenderers(true);
+            }
+            else if ("-minimalimports".equalsIgnoreCase(args[i]))
+            {
+                compiler.setMinimalImports(true);
+            }
+            else if ("-templatebaseclass".equalsIgnoreCase(args[i]))
+            {
+                i++;
+                compiler.setTemplateBaseClass(args[i]);
+            }
+            else if ("-templatehooks".equalsIgnoreCase(args[i]))
+            {
+                compiler.setTemplateHooks(true);
+            }
+            else if ("-servletcode".equalsIgnoreCase(args[i]))
+            {
+                compiler.setServletCode(true);
+            }
+            else if ("-servletapipackage".equalsIgnoreCase(args[i]))
+            {
+                i++;
+                compiler.setServletApiPackage(args[i]);
+            }
+            else if ("-classjar".equalsIgnoreCase(args[i]))
+            {
+                i++;
+                compiler.setClassJar(new File(args[i]));
+            }
+            else if ("-classpath".equalsIgnoreCase(args[i]))
+            {
+                i++;
+                compiler.setClasspath(args[i]);
+            }
+            else if ("-compilebatchsize".equalsIgnoreCase(args[i]))
+            {
+                i++;
+                compiler.setCompileBatchSize(Integer.parseInt(args[i]));
+            }
+            else if ("-smap".equalsIgnoreCase(args[i]))
+            {
+                compiler.setSourceMap(true);
+            }
+            else if ("-profilingprobes".equalsIgnoreCase(args[i]))
+            {
+                compiler.setProfilingProbes(true);
+            }
+            else if ("-analyze".equalsIgnoreCase(args[i]))
+            {
+                compiler.setAnalyze(true);
+            }
+            else if ("-lint".equalsIgnoreCase(args[i]))
+            {
+                compiler.setLint(true);
+            }
+            else if ("-lintconfig".equalsIgnoreCase(args[i]))
+            {
+                i++;
+                compiler.setLintConfig(new File(args[i]));
+            }
+            else if ("-inlineincludes".equalsIgnoreCase(args[i]))
+            {
+                compiler.setInlineIncludes(true);
+            }
+            else if ("-inlinebudget".equalsIgnoreCase(args[i]))
+            {
+                i++;
+                compiler.setInlineBudget(Integer.parseInt(args[i]));
+            }
+            else if ("-bindcustomtags".equalsIgnoreCase(args[i]))
+            {
+                compiler.setBindCustomTags(true);
+            }
+            else if ("-templateindex".equalsIgnoreCase(args[i]))
+            {
+                compiler.setTemplateIndex(true);
+            }
+            else if ("-deduplicate".equalsIgnoreCase(args[i]))
+            {
+                compiler.setDeduplicate(true);
+            }
+            else if ("-deduplicatecopies".equalsIgnoreCase(args[i]))
+            {
+                compiler.setDeduplicateCopies(true);
+            }
             else
             {
                 if (srcDirName == null)
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DailyCacheExpiryTest
+{
+    /**
+     * The expiry time as the inline code of the ISCACHE tag computes it.
+     */
+
+    private static long calendarExpiry(long time, int hour, int minute)
+    {
+        Calendar calendar = new GregorianCalendar();
+        calendar.setTimeInMillis(time * 1000);
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        long expireTime = calendar.getTime().getTime() / 1000;
+        return (expireTime < time) ? expireTime + 86400 : expireTime;
+    }
+
+    @Test
+    void testSharedInstances()
+    {
+        assertTrue(DailyCacheExpiry.get(4, 30) == DailyCacheExpiry.get(4, 30));
+        assertEquals(23, DailyCacheExpiry.get(99, -5).getHour());
+        assertEquals(0, DailyCacheExpiry.get(99, -5).getMinute());
+    }
+
+    @Test
+    void testExpiryTime()
+    {
+        DailyCacheExpiry expiry = DailyCacheExpiry.get(4, 30);
+        long start = System.currentTimeMillis() / 1000;
+
+        // every 7 minutes over two days, and around the declared time
+        for (long time = start; time < start + 2 * 86400; time += 7 * 60 + 1)
+        {
+            assertEquals(calendarExpiry(time, 4, 30), expiry.getExpiryTime(time));
+        }
+
+        long declared = calendarExpiry(start, 4, 30);
+        for (long time = declared - 61; time < declared + 61; time++)
+        {
+            assertEquals(calendarExpiry(time, 4, 30), expiry.getExpiryTime(time));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjectPathTest
+{
+    @Test
+    void testSimplePath()
+    {
+        ObjectPath path = ObjectPath.parse("Product:Name");
+
+        assertEquals("Product:Name", path.getPath());
+        assertEquals(2, path.getSegmentCount());
+        assertEquals("Product", path.getName(0));
+        assertEquals("Name", path.getName(1));
+        assertEquals("Name".hashCode(), path.getNameHash(1));
+        assertFalse(path.hasParameters(0));
+        assertEquals(0, path.getParameterCount(1));
+    }
+
+    @Test
+    void testParameters()
+    {
+        ObjectPath path = ObjectPath.parse("A:B(\"x\",C:D(\"y\")):E");
+
+        assertEquals(3, path.getSegmentCount());
+        assertTrue(path.hasParameters(1));
+        assertEquals(2, path.getParameterCount(1));
+        assertEquals("x", path.getParameter(1, 0));
+
+        ObjectPath nested = (ObjectPath)path.getParameter(1, 1);
+        assertEquals("C:D(\"y\")", nested.getPath());
+        assertEquals("y", nested.getParameter(1, 0));
+        assertEquals("E", path.getName(2));
+    }
+
+    @Test
+    void testMalformedPaths()
+    {
+        assertThrows(IllegalArgumentException.class, () -> ObjectPath.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> ObjectPath.parse("A:"));
+        assertThrows(IllegalArgumentException.class, () -> ObjectPath.parse("A(\"x\""));
+        assertThrows(IllegalArgumentException.class, () -> ObjectPath.parse("A(\"x)"));
+        assertThrows(IllegalArgumentException.class, () -> ObjectPath.parse("A(\"x\"y\")"));
+        assertThrows(IllegalArgumentException.class, () -> ObjectPath.parse("A B"));
+    }
+}
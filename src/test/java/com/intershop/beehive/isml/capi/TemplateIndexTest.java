@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateIndexTest
+{
+    @Test
+    void testResolve() throws Exception
+    {
+        Map<String, Collection<String>> templates = new HashMap<>();
+        templates.put("default", Arrays.asList("product/Tile.isml", "Page.isml", "inc/Header.isml"));
+        templates.put("de", Arrays.asList("product/Tile.isml"));
+        templates.put("de_DE", Arrays.asList("Page.isml", "inc/F\u00fc\u00dfe.isml"));
+
+        Path file = Files.createTempDirectory("isml").resolve(ISMLTemplateConstants.TEMPLATE_INDEX);
+        TemplateIndex.write(file, templates);
+        TemplateIndex index = TemplateIndex.open(file);
+
+        assertEquals(Arrays.asList("de", "de_DE", "default"), index.getLanguages());
+        assertEquals(4, index.size());
+
+        assertEquals("de_DE/Page.isml", index.resolve("Page", TemplateIndex.getLocaleChain(Locale.GERMANY)));
+        assertEquals("de/product/Tile.isml", index.resolve("/product/Tile.isml", TemplateIndex.getLocaleChain(Locale.GERMANY)));
+        assertEquals("default/product/Tile.isml", index.resolve("product/Tile", TemplateIndex.getLocaleChain(Locale.FRANCE)));
+        assertEquals("de_DE/inc/F\u00fc\u00dfe.isml", index.resolve("inc\\F\u00fc\u00dfe", TemplateIndex.getLocaleChain(Locale.GERMANY)));
+
+        assertTrue(index.exists("inc/Header", TemplateIndex.getLocaleChain(Locale.GERMANY)));
+        assertFalse(index.exists("inc/F\u00fc\u00dfe", TemplateIndex.getLocaleChain(Locale.GERMAN)));
+        assertNull(index.resolve("inc/Footer", TemplateIndex.getLocaleChain(Locale.GERMANY)));
+        assertNull(index.resolve("product", TemplateIndex.getLocaleChain(Locale.GERMANY)));
+
+        // the index is mapped once
+        assertTrue(index == TemplateIndex.open(file));
+    }
+
+    @Test
+    void testLocaleChain()
+    {
+        assertEquals(Arrays.asList("de_DE", "de", "default"), TemplateIndex.getLocaleChain(Locale.GERMANY));
+        assertEquals(Arrays.asList("en", "default"), TemplateIndex.getLocaleChain(Locale.ENGLISH));
+        assertEquals(Arrays.asList("default"), TemplateIndex.getLocaleChain(Locale.ROOT));
+    }
+}
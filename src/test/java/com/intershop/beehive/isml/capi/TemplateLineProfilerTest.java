@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.capi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateLineProfilerTest
+{
+    @Test
+    void testBuckets()
+    {
+        assertEquals(0, TemplateLineProfiler.getBucket(999));
+        assertEquals(1, TemplateLineProfiler.getBucket(1000));
+        assertEquals(2, TemplateLineProfiler.getBucket(3999));
+        assertEquals(11, TemplateLineProfiler.getBucket(1500000));
+        assertEquals(TemplateLineProfiler.BUCKETS - 1, TemplateLineProfiler.getBucket(Long.MAX_VALUE));
+        assertEquals(2048, TemplateLineProfiler.getBucketLimit(11));
+    }
+
+    @Test
+    void testRecord()
+    {
+        TemplateProbe include = TemplateProbe.get(getClass(), "Page.isml", 12, "ISINCLUDE");
+        TemplateProbe loop = TemplateProbe.get(getClass(), "Page.isml", 20, "ISLOOP");
+        TemplateLineProfiler profiler = new TemplateLineProfiler();
+
+        for (int i = 0; i < 99; i++)
+        {
+            profiler.record(include, 1500);
+        }
+        profiler.record(include, 1500000);
+        profiler.record(loop, 500000000);
+
+        TemplateLineProfiler.Histogram histogram = profiler.getHistograms().get(include);
+        assertEquals(100, histogram.getCount());
+        assertEquals(99 * 1500 + 1500000, histogram.getTotalNanos());
+        assertEquals(2, histogram.getPercentile(0.5));
+        assertEquals(2048, histogram.getPercentile(1));
+        assertEquals(Arrays.asList(loop, include), profiler.getSlowestProbes(5));
+        assertEquals("Page.isml:12 ISINCLUDE", include.toString());
+
+        profiler.reset();
+        assertTrue(profiler.getHistograms().isEmpty());
+    }
+
+    @Test
+    void testProbe()
+    {
+        TemplateProbe probe = TemplateProbe.get(getClass(), "Page.isml", 12, "ISINCLUDE");
+        TemplateLineProfiler profiler = new TemplateLineProfiler();
+
+        // without a profiler nothing is measured
+        probe.end(probe.start());
+
+        TemplateProbe.setProfiler(profiler);
+        try
+        {
+            long start = probe.start();
+            probe.end(start);
+        }
+        finally
+        {
+            TemplateProbe.setProfiler(null);
+        }
+        probe.end(probe.start());
+
+        assertEquals(1, profiler.getHistograms().get(probe).getCount());
+    }
+}
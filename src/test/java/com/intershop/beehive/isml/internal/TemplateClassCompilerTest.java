@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.jar.JarFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateClassCompilerTest
+{
+    private static void write(File dir, String path, String source) throws Exception
+    {
+        File file = new File(dir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testCompile() throws Exception
+    {
+        File dir = Files.createTempDirectory("isml").toFile();
+        write(dir, "org/apache/jsp/default_/Header_jsp.java",
+                        "package org.apache.jsp.default_; public final class Header_jsp { class Renderer {} }");
+        write(dir, "org/apache/jsp/default_/Footer_jsp.java",
+                        "package org.apache.jsp.default_; public final class Footer_jsp { String name = \"\u00fc\"; }");
+        write(dir, "org/apache/jsp/default_/Broken_jsp.java",
+                        "package org.apache.jsp.default_; public final class Broken_jsp { Unknown unknown; }");
+
+        TemplateClassCompiler compiler = new TemplateClassCompiler(null);
+        compiler.setBatchSize(2);
+        compiler.setThreads(2);
+        File jar = new File(dir, "templates.jar");
+
+        // the broken source is compiled alone when its batch fails
+        assertEquals(1, compiler.compile(dir, jar));
+
+        try (JarFile classes = new JarFile(jar))
+        {
+            assertNotNull(classes.getEntry("org/apache/jsp/default_/Header_jsp.class"));
+            assertNotNull(classes.getEntry("org/apache/jsp/default_/Header_jsp$Renderer.class"));
+            assertNotNull(classes.getEntry("org/apache/jsp/default_/Footer_jsp.class"));
+            assertNull(classes.getEntry("org/apache/jsp/default_/Broken_jsp.class"));
+        }
+    }
+
+    @Test
+    void testSourceMap() throws Exception
+    {
+        File dir = Files.createTempDirectory("isml").toFile();
+        String smap = "SMAP\nHeader_jsp.java\nISML\n*S ISML\n*F\n1 Header.isml\n*L\n1#1:1\n*E\n";
+        write(dir, "org/apache/jsp/default_/Header_jsp.java",
+                        "package org.apache.jsp.default_; public final class Header_jsp { class Renderer {} }");
+        write(dir, "org/apache/jsp/default_/Header_jsp.java.smap", smap);
+
+        File jar = new File(dir, "templates.jar");
+        assertEquals(0, new TemplateClassCompiler(null).compile(dir, jar));
+
+        try (JarFile classes = new JarFile(jar);
+             InputStream in = classes.getInputStream(classes.getEntry("org/apache/jsp/default_/Header_jsp.class")))
+        {
+            String content = new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+            assertTrue(content.contains("SourceDebugExtension"));
+            assertTrue(content.contains(smap));
+        }
+
+        // the classes with the attribute are still valid
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null))
+        {
+            assertNotNull(Class.forName("org.apache.jsp.default_.Header_jsp", true, loader));
+            assertNotNull(Class.forName("org.apache.jsp.default_.Header_jsp$Renderer", true, loader));
+        }
+    }
+}
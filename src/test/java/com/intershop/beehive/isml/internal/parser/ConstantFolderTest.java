@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the results of {@link ConstantFolder} with the results of the
+ * unfolded code the parser generates for the same expressions. The unfolded
+ * code is written out as Java, with <code>context.getFormattedValue(s,null)</code>
+ * replaced by <code>s</code>.
+ */
+class ConstantFolderTest implements ISMLtoJSPcompilerConstants
+{
+    @Test
+    void testLiterals()
+    {
+        assertEquals("a\"b'c\\d\n", ConstantFolder.valueOfString("'a\"b''c\\\\d\\n'"));
+        assertEquals("a\"b", ConstantFolder.valueOfString("\"a\\db\""));
+        assertEquals("A", ConstantFolder.valueOfString("'\\101'"));
+        assertNull(ConstantFolder.valueOfString("'\\u0041'"));
+
+        assertEquals(Double.valueOf(15), ConstantFolder.valueOfNumber("15"));
+        assertEquals(Double.valueOf(-1.5e3), ConstantFolder.valueOfNumber("-1.5e3"));
+        assertEquals(Double.valueOf(.5), ConstantFolder.valueOfNumber(".5"));
+        assertEquals(Double.valueOf(-2147483648), ConstantFolder.valueOfNumber("-2147483648"));
+        // octal, too large for an int, too small for a double
+        assertNull(ConstantFolder.valueOfNumber("010"));
+        assertNull(ConstantFolder.valueOfNumber("2147483648"));
+        assertNull(ConstantFolder.valueOfNumber("1e-400"));
+
+        assertEquals(Boolean.TRUE, ConstantFolder.valueOf(new LiteralExpression(Boolean.TRUE)));
+        assertNull(ConstantFolder.valueOf(new ObjectPathExpression("a")));
+    }
+
+    @Test
+    void testFold()
+    {
+        Expression sum = new OperatorExpression(Arrays.<Expression>asList(new LiteralExpression(Double.valueOf(1), "1"),
+                        new LiteralExpression(Double.valueOf(2), "2")), Arrays.asList(Integer.valueOf(ADD)), Arrays.asList("+"));
+        assertEquals(Double.valueOf(3), ConstantFolder.valueOf(ConstantFolder.fold(sum)));
+
+        // the path is unknown, only the constant operand is folded
+        Expression concat = new OperatorExpression(Arrays.<Expression>asList(new ObjectPathExpression("a"),
+                        new BracketExpression(new LiteralExpression("b", "'b'"))), Arrays.asList(Integer.valueOf(CAT)), Arrays.asList("."));
+        assertEquals("a . 'b'", ConstantFolder.fold(concat).toString());
+    }
+
+    @Test
+    void testTemplateText()
+    {
+        assertTrue(ConstantFolder.isTemplateText("a b"));
+        assertFalse(ConstantFolder.isTemplateText("<%"));
+        assertFalse(ConstantFolder.isTemplateText(""));
+        assertFalse(ConstantFolder.isTemplateText(Double.valueOf(1)));
+    }
+
+    @Test
+    void testArithmetic()
+    {
+        assertEquals(Double.valueOf(((Number)Double.valueOf(1)).doubleValue() + ((Number)Double.valueOf(2)).doubleValue()
+                        * ((Number)Double.valueOf(3)).doubleValue()),
+                     arithmetic(1, ADD, 2, MUL, 3));
+        assertEquals(Double.valueOf(((Number)Double.valueOf(10)).doubleValue() - ((Number)Double.valueOf(4)).doubleValue()
+                        - ((Number)Double.valueOf(3)).doubleValue() % ((Number)Double.valueOf(2)).doubleValue()),
+                     arithmetic(10, SUB, 4, SUB, 3, MOD, 2));
+        assertEquals(Double.valueOf(((Number)Double.valueOf(1)).doubleValue() / ((Number)Double.valueOf(3)).doubleValue()
+                        * ((Number)Double.valueOf(3)).doubleValue()),
+                     arithmetic(1, DIV, 3, MUL, 3));
+        assertEquals(Double.valueOf(((Number)Double.valueOf(-0.0)).doubleValue() * ((Number)Double.valueOf(1)).doubleValue()),
+                     arithmetic(-0.0, MUL, 1));
+        assertNull(ConstantFolder.arithmetic(Arrays.<Object>asList("1", Double.valueOf(1)), Arrays.asList(Integer.valueOf(ADD))));
+
+        assertEquals(Boolean.valueOf(((Number)Double.valueOf(1)).doubleValue() < ((Number)(Double.valueOf(2))).doubleValue()),
+                     ConstantFolder.compareNumbers(Double.valueOf(1), I_LT, Double.valueOf(2)));
+        assertEquals(Boolean.FALSE, ConstantFolder.compareNumbers(Double.valueOf(Double.NaN), I_EG, Double.valueOf(Double.NaN)));
+        assertNull(ConstantFolder.compareNumbers("1", I_EG, Double.valueOf(1)));
+    }
+
+    @Test
+    void testStrings()
+    {
+        assertEquals("a" + "b" + "c", ConstantFolder.concat(Arrays.<Object>asList("a", "b", "c")));
+        assertNull(ConstantFolder.concat(Arrays.<Object>asList("a", Double.valueOf(1))));
+
+        assertEquals(Boolean.valueOf(!"a".equals("b")), ConstantFolder.compareStrings("a", NE, "b"));
+        assertEquals(Boolean.valueOf("a".equals("a")), ConstantFolder.compareStrings("a", EQ, "a"));
+        assertNull(ConstantFolder.compareStrings(Double.valueOf(1), EQ, "1"));
+
+        assertEquals(" a ".trim(), ConstantFolder.trim(" a "));
+        assertEquals(Double.valueOf("abc".length()), ConstantFolder.length("abc"));
+        assertEquals("abc", ConstantFolder.lowerCase("ABC"));
+        assertEquals("ABC", ConstantFolder.upperCase("abc"));
+        // case conversion depends on the locale
+        assertNull(ConstantFolder.lowerCase("TITLE"));
+        assertNull(ConstantFolder.upperCase("\u00e4"));
+
+        assertEquals("a-b_c 1.2", ConstantFolder.encode("a-b_c 1.2"));
+        assertNull(ConstantFolder.encode("<b>"));
+        assertNull(ConstantFolder.encode(Double.valueOf(1)));
+    }
+
+    @Test
+    void testLogical()
+    {
+        // a || b && c
+        assertEquals(Boolean.valueOf(Boolean.parseBoolean(String.valueOf("true")) || Boolean.parseBoolean(String.valueOf(Boolean.FALSE))
+                        && Boolean.valueOf(String.valueOf(Double.valueOf(1)))),
+                     ConstantFolder.logical(Arrays.<Object>asList("true", Boolean.FALSE, Double.valueOf(1)),
+                                            Arrays.asList(Boolean.FALSE, Boolean.FALSE, Boolean.FALSE),
+                                            Arrays.asList(Integer.valueOf(OR), Integer.valueOf(AND))));
+        // NOT a AND NOT b
+        assertEquals(Boolean.valueOf(!Boolean.parseBoolean(String.valueOf("x")) && !Boolean.valueOf(String.valueOf(Boolean.TRUE))),
+                     ConstantFolder.logical(Arrays.<Object>asList("x", Boolean.TRUE),
+                                            Arrays.asList(Boolean.TRUE, Boolean.TRUE),
+                                            Arrays.asList(Integer.valueOf(AND))));
+        assertNull(ConstantFolder.logical(Arrays.<Object>asList(Boolean.TRUE, null),
+                                          Arrays.asList(Boolean.FALSE, Boolean.FALSE),
+                                          Arrays.asList(Integer.valueOf(OR))));
+
+        assertEquals(Boolean.valueOf(!Boolean.valueOf(String.valueOf("TRUE"))), ConstantFolder.not("TRUE"));
+        assertEquals(Boolean.TRUE, ConstantFolder.not(Double.valueOf(1)));
+        assertNull(ConstantFolder.not(null));
+    }
+
+    /**
+     * Folds an arithmetic expression given as alternating operands and
+     * operators.
+     */
+    private static Object arithmetic(double first, Object... rest)
+    {
+        Object[] operands = new Object[rest.length / 2 + 1];
+        Integer[] operators = new Integer[rest.length / 2];
+
+        operands[0] = Double.valueOf(first);
+        for (int i = 0; i < operators.length; i++)
+        {
+            operators[i] = (Integer)rest[2 * i];
+            operands[i + 1] = Double.valueOf(((Number)rest[2 * i + 1]).doubleValue());
+        }
+        return ConstantFolder.arithmetic(Arrays.asList(operands), Arrays.asList(operators));
+    }
+}
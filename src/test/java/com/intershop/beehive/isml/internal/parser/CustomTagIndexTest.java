@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import com.intershop.beehive.isml.capi.CustomTagModule;
+import com.intershop.beehive.isml.capi.CustomTagRegistry;
+
+import static com.intershop.beehive.isml.internal.parser.TemplateFixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CustomTagIndexTest
+{
+    @Test
+    void testIndex() throws Exception
+    {
+        CustomTagIndex index = new CustomTagIndex();
+        index.add(parse("<ismodule template=\"modules/ProductImage\" name=\"ProductImage\" strict=\"true\" "
+                        + "attribute=\"product\" returnattribute=\"url\">"));
+        index.add(parse("<ismodule template=\"modules/ProductImage\" name=\"productimage\" strict=\"true\" "
+                        + "attribute=\"product\" returnattribute=\"url\">"));
+        index.add(parse("<ismodule template=\"modules/Price\" name=\"Price\">"));
+        index.add(parse("<ismodule template=\"modules/OtherPrice\" name=\"Price\">"));
+        index.add(parse("<ismodule template=\"#Module#\" name=\"Dynamic\">"));
+
+        CustomTagRegistry registry = index.getRegistry();
+        assertEquals(1, registry.getModules().size());
+        assertEquals(new CustomTagModule("productimage", "modules/ProductImage", true, new String[] { "product" },
+                        new String[] { "url" }), registry.getModule("ProductImage"));
+        assertNull(registry.getModule("price"));
+        assertEquals("[dynamic, price]", index.getUnboundNames().toString());
+    }
+
+    @Test
+    void testRegistryFile() throws Exception
+    {
+        CustomTagRegistry registry = new CustomTagRegistry();
+        registry.add(new CustomTagModule("productimage", "modules/ProductImage", true, new String[] { "product", "size" },
+                        new String[] { "url" }));
+        registry.add(new CustomTagModule("price", "modules/Price", false, null, null));
+
+        File file = File.createTempFile("isml-custom-tags", ".registry");
+        try
+        {
+            registry.write(file.toPath());
+            CustomTagRegistry read = CustomTagRegistry.read(file.toPath());
+            assertEquals(registry, read);
+            assertNull(read.getModule("price").getAttributes());
+
+            read.add(new CustomTagModule("price", "modules/Price", true, null, null));
+            assertNotEquals(registry, read);
+
+            CustomTagRegistry.open(file.toPath());
+            assertEquals("modules/ProductImage", CustomTagRegistry.find("ProductImage").getTemplate());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ISMLExpressionCompilerTest
+{
+    @Test
+    void testConstants()
+    {
+        assertEquals("\"\"", ISMLExpressionCompiler.toCode(""));
+        assertEquals("\"a\\\"b\\\\c\"", ISMLExpressionCompiler.toCode("a\"b\\c"));
+        assertEquals("\"tab\\tnul\\0000\"", ISMLExpressionCompiler.toCode("tab\tnul\u00000"));
+        // a scriptlet end would close the generated JSP scriptlet
+        assertEquals("\"%\\076\"", ISMLExpressionCompiler.toCode("%>"));
+        assertEquals("Double.valueOf(-0.0)", ISMLExpressionCompiler.toCode(Double.valueOf(-0.0)));
+        assertEquals("Double.valueOf(1.0E300)", ISMLExpressionCompiler.toCode(Double.valueOf(1e300)));
+        assertEquals("Boolean.FALSE", ISMLExpressionCompiler.toCode(Boolean.FALSE));
+
+        assertNull(ISMLExpressionCompiler.toCode(Double.valueOf(1.0 / 0)));
+        assertNull(ISMLExpressionCompiler.toCode(null));
+    }
+
+    @Test
+    void testLiterals()
+    {
+        assertEquals("\"a\\'b\\\"\"", ISMLExpressionCompiler.compile(new LiteralExpression("a'b\"", "'a''b\"'")));
+        assertEquals("Double.valueOf(-1.5e3)", ISMLExpressionCompiler.compile(new LiteralExpression(Double.valueOf(-1.5e3), "-1.5e3")));
+        assertEquals("Double.valueOf(3.0)", ISMLExpressionCompiler.compile(new LiteralExpression(Double.valueOf(3))));
+    }
+
+    @Test
+    void testObjectPaths()
+    {
+        ObjectPathExpression path = new ObjectPathExpression("Basket:Item(\"id\",Id)");
+
+        assertEquals("getObject(\"Basket:Item(\\\"id\\\",Id)\")", ISMLExpressionCompiler.compile(path));
+        assertEquals("getObject(PATH_0)", ISMLExpressionCompiler.compile(path.withConstant("PATH_0")));
+        assertEquals("(_p0 != " + ObjectPathHoister.UNRESOLVED + " ? _p0 : (_p0 = getObject(\"Basket:Item(\\\"id\\\",Id)\")))",
+                     ISMLExpressionCompiler.compile(path.withLocal("_p0")));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static com.intershop.beehive.isml.internal.parser.TemplateFixtures.attributes;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ISMLTagCompilerTest implements ISMLtoJSPcompilerConstants
+{
+    private static String compile(int kind, boolean compact, Object... keysAndValues) throws Exception
+    {
+        TagCompilationContext context = new TagCompilationContext();
+        context.setCompactTagCode(compact);
+        return compile(kind, context, keysAndValues);
+    }
+
+    private static String compile(int kind, TagCompilationContext context, Object... keysAndValues) throws Exception
+    {
+        Token tag = new Token(kind, "<isproduct");
+        tag.beginLine = 7;
+
+        StringWriter out = new StringWriter();
+        CompactingWriter result = new CompactingWriter(out, "UTF-8");
+        ISMLTagCompiler.compileTag(tag, result, attributes(keysAndValues), new NestingStack(), context);
+        result.flush();
+        return out.toString();
+    }
+
+    @Test
+    void testCompactCache() throws Exception
+    {
+        assertEquals("<% cachePageDaily(response,4L,30L,7); %>",
+                        compile(ISCACHE, true, ATT_TYPE, "daily", ATT_HOUR, "4", ATT_MINUTE, "30"));
+        assertEquals("<% cachePageRelative(response,0L,15L,7); %>",
+                        compile(ISCACHE, true, ATT_TYPE, "relative", ATT_MINUTE, "15"));
+        assertEquals("<% cachePageForbidden(response,7); %>", compile(ISCACHE, true, ATT_TYPE, "forbidden"));
+
+        // expressions are evaluated by the inline code
+        String inline = compile(ISCACHE, true, ATT_TYPE, "daily", "#" + ATT_HOUR, "getObject(\"Hour\")");
+        assertTrue(inline.contains("long hour=((Number)(getObject(\"Hour\"))).longValue();"));
+        assertEquals(inline, compile(ISCACHE, false, ATT_TYPE, "daily", "#" + ATT_HOUR, "getObject(\"Hour\")"));
+    }
+
+    @Test
+    void testCompactPrint() throws Exception
+    {
+        String code = compile(ISPRINT, true, "#" + ATT_VALUE, "getObject(\"Name\")", ATT_ENCODE, "off");
+        assertTrue(code.contains("value=context.getFormattedValue(getObject(\"Name\"),null,null);"));
+        assertTrue(code.contains("ISPRINT has an invalid expression. Returning empty string. Line: {7}"));
+        assertTrue(code.endsWith("printValue(out,value,false);} %>"));
+
+        assertTrue(compile(ISPRINT, true, "#" + ATT_VALUE, "getObject(\"Name\")", ATT_ENCODE, "xml,url")
+                        .endsWith("printValue(out,value,\"xml,url\");} %>"));
+        assertTrue(compile(ISPRINT, false, "#" + ATT_VALUE, "getObject(\"Name\")")
+                        .endsWith("value = encodeString(value);out.write(value);} %>"));
+    }
+
+    @Test
+    void testCompactCacheKey() throws Exception
+    {
+        assertEquals("<% {addPageCacheKeyword(\"Product\");} %>", compile(ISCACHEKEY, true, ATT_KEYWORD, "Product"));
+    }
+
+    @Test
+    void testPrecomputedCacheExpiry() throws Exception
+    {
+        TagCompilationContext context = new TagCompilationContext();
+        context.setPrecomputeCacheExpiry(true);
+
+        String daily = compile(ISCACHE, context, ATT_TYPE, "daily", ATT_HOUR, "4", ATT_MINUTE, "30");
+        assertTrue(daily.contains("long time = com.intershop.beehive.isml.capi.DailyCacheExpiry.get(4L,30L).getExpiryTime();"));
+        assertFalse(daily.contains("GregorianCalendar"));
+
+        String relative = compile(ISCACHE, context, ATT_TYPE, "relative", ATT_HOUR, "1", ATT_MINUTE, "-5");
+        assertTrue(relative.contains("long time = System.currentTimeMillis()/1000+3600L;"));
+
+        // expressions are evaluated on every request
+        assertTrue(compile(ISCACHE, context, ATT_TYPE, "daily", "#" + ATT_MINUTE, "getObject(\"Minute\")")
+                        .contains("GregorianCalendar"));
+    }
+
+    @Test
+    void testStaticTagParameters() throws Exception
+    {
+        TagCompilationContext context = new TagCompilationContext();
+        context.setStaticTagParameters(true);
+
+        assertEquals("<% {TagParameter[] _tagParameters = _TAG_PARAMETERS_1;"
+                        + "processOpenTag(response, pageContext, \"product\", _tagParameters, 7);} %>",
+                        compile(ISX, context, "sku", "A1", "size", "big"));
+        assertEquals("<% {TagParameter[] _tagParameters = _TAG_PARAMETERS_2.clone();"
+                        + "_tagParameters[1]=new TagParameter(\"product\",getObject(\"Product\"));"
+                        + "processOpenTag(response, pageContext, \"product\", _tagParameters, 7);} %>",
+                        compile(ISX, context, "sku", "A1", "product", new StringBuilder("getObject(\"Product\")")));
+
+        // equal arrays are declared once
+        compile(ISX, context, "sku", "A1", "size", "big");
+        assertEquals(2, context.getDeclarations().size());
+        assertEquals("private static final TagParameter[] _TAG_PARAMETERS_2 = "
+                        + "new TagParameter[] {new TagParameter(\"sku\",\"A1\"),null};", context.getDeclarations().get(1));
+    }
+}
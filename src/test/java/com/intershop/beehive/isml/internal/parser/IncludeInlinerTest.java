@@ -0,0 +1,200 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import com.intershop.beehive.isml.capi.ISMLCompilerConfiguration;
+import com.intershop.beehive.isml.internal.TemplatePrecompileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncludeInlinerTest
+{
+    /**
+     * The template source directory of the test.
+     */
+
+    private final File sourceDirectory;
+
+    /**
+     * The parser of the templates, created for the budget of a test.
+     */
+
+    private TemplatePrecompileUtils utils;
+
+    IncludeInlinerTest() throws Exception
+    {
+        sourceDirectory = Files.createTempDirectory("isml").toFile();
+    }
+
+    private void setBudget(int budget)
+    {
+        utils = new TemplatePrecompileUtils(new ISMLCompilerConfiguration()
+        {
+            @Override
+            public String getDefaultContentEncoding()
+            {
+                return "UTF-8";
+            }
+
+            @Override
+            public String getJspEncoding(String mimeType)
+            {
+                return "UTF-8";
+            }
+
+            @Override
+            public boolean isIncludeInliningEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            public int getIncludeInliningBudget()
+            {
+                return budget;
+            }
+
+            @Override
+            public File getTemplateSourceDirectory()
+            {
+                return sourceDirectory;
+            }
+        });
+    }
+
+    private File write(String name, String source) throws Exception
+    {
+        File file = new File(sourceDirectory, "default/" + name + ".isml");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private Set<File> getDependencies(File file)
+    {
+        return utils.getInlinedTemplates().getOrDefault(file, Collections.<File>emptySet());
+    }
+
+    private static String toString(ISMLTemplate template)
+    {
+        StringBuilder result = new StringBuilder();
+        for (TemplateNode node : template.getNodes())
+        {
+            if (node instanceof TextNode && ((TextNode)node).getText().trim().isEmpty())
+            {
+                // the line breaks between the tags
+                continue;
+            }
+
+            result.append(node.getLine()).append(' ');
+            if (node instanceof SuppressedNode)
+            {
+                result.append("-").append(((TagNode)((SuppressedNode)node).getNode()).getTag().image);
+            }
+            else if (node instanceof TagNode)
+            {
+                result.append(((TagNode)node).getTag().image);
+            }
+            else if (node instanceof TextNode)
+            {
+                result.append(((TextNode)node).isCompactable() ? "text " : "raw ").append(((TextNode)node).getText().trim());
+            }
+            else if (node instanceof ExpressionNode)
+            {
+                result.append(((ExpressionNode)node).getExpression());
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    @Test
+    void testInline() throws Exception
+    {
+        write("Tile", "<div>\n"
+                        + "#Product:Name#\n"
+                        + "<isinclude template=\"Price\">\n"
+                        + "<isinclude template=\"Page\">");
+        File price = write("Price", "<span>");
+        write("Cached", "<span>\n"
+                        + "<iscache type=\"relative\">");
+        write("Loop", "<span>\n"
+                        + "<isloop iterator=\"Products\">");
+        File page = write("Page", "<iscontent type=\"text/html\" compact=\"true\">\n"
+                        + "<isinclude template=\"Tile\">\n"
+                        + "<isinclude template=\"Tile\" dictionary=\"Dict\">\n"
+                        + "<isinclude template=\"#Name#\">\n"
+                        + "<isinclude template=\"Cached\">\n"
+                        + "<isinclude template=\"Loop\">\n"
+                        + "<isinclude template=\"Unknown\">");
+
+        setBudget(IncludeInliner.DEFAULT_BUDGET);
+        ISMLTemplate result = utils.parseISML(page);
+
+        // the content of the inlined templates isn't compacted, and the page is not inlined into itself
+        assertEquals("1 <iscontent\n"
+                        + "2 -<isinclude\n"
+                        + "2 raw <div>\n"
+                        + "2 Product:Name\n"
+                        + "2 -<isinclude\n"
+                        + "2 raw <span>\n"
+                        + "2 <isinclude\n"
+                        + "3 <isinclude\n"
+                        + "4 <isinclude\n"
+                        + "5 <isinclude\n"
+                        + "6 <isinclude\n"
+                        + "7 <isinclude\n", toString(result));
+        assertEquals(2, getDependencies(page).size());
+        assertTrue(getDependencies(page).contains(price.getAbsoluteFile()), getDependencies(page).toString());
+
+        // the source isn't optimized
+        assertEquals("1 <iscontent\n"
+                        + "2 <isinclude\n"
+                        + "3 <isinclude\n"
+                        + "4 <isinclude\n"
+                        + "5 <isinclude\n"
+                        + "6 <isinclude\n"
+                        + "7 <isinclude\n", toString(utils.parseISMLSource(page)));
+    }
+
+    @Test
+    void testBudgetAndEncoding() throws Exception
+    {
+        write("Large", "0123456789");
+        File page = write("Page", "<isinclude template=\"Large\">\n"
+                        + "<isinclude template=\"Large\">");
+
+        setBudget(15);
+        assertEquals("1 <iscontent\n"
+                        + "1 -<isinclude\n"
+                        + "1 text 0123456789\n"
+                        + "2 <isinclude\n", toString(utils.parseISML(page)));
+
+        File xml = write("Xml", "<iscontent type=\"text/xml\">\n"
+                        + "<isinclude template=\"Large\">");
+        assertEquals("1 <iscontent\n"
+                        + "2 <isinclude\n", toString(utils.parseISML(xml)));
+        assertTrue(getDependencies(xml).isEmpty());
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import com.intershop.beehive.isml.capi.CustomTagModule;
+import com.intershop.beehive.isml.capi.CustomTagRegistry;
+
+import static com.intershop.beehive.isml.internal.parser.TemplateFixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JspCodeGeneratorTest
+{
+    private static ISMLTemplate fileBundle(String body) throws Exception
+    {
+        return parse("<isfilebundle name=\"bundle\" processors=\"CSS\"><isrender media=\"print\">"
+                        + "<link href=\"#File:Name#" + body + "</isrender></isfilebundle>");
+    }
+
+    private static String generate(JspCodeGenerator generator, ISMLTemplate template) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamWriter out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+        generator.generate(template, out);
+        out.flush();
+        return bytes.toString("UTF-8");
+    }
+
+    @Test
+    void testNamedRenderer() throws Exception
+    {
+        JspCodeGenerator generator = new JspCodeGenerator();
+        generator.setNamedRenderers(true);
+        String jsp = generate(generator, fileBundle("\"/>"));
+
+        assertTrue(jsp.contains("CustomTag renderer = _fileBundleRenderer1;"));
+        assertTrue(jsp.contains("private final class _FileBundleRenderer1 extends CustomTag {\n_FileBundleRenderer1() {\n"));
+        assertTrue(jsp.contains("out.write(\"<link href=\\\"\");\nout.print(context.getFormattedValue(getObject(\"File:Name\"),null));\n"
+                        + "out.write(\"\\\"/>\");\n}}"));
+        assertTrue(jsp.contains("private final CustomTag _fileBundleRenderer1 = new _FileBundleRenderer1();"));
+        assertFalse(jsp.contains("new CustomTag()"));
+
+        // the generator can be used for the next template
+        assertTrue(generate(generator, fileBundle("\"/>")).contains("_FileBundleRenderer1"));
+    }
+
+    @Test
+    void testAnonymousRenderer() throws Exception
+    {
+        JspCodeGenerator generator = new JspCodeGenerator();
+        generator.setNamedRenderers(true);
+
+        // JSP syntax in the body can't be translated
+        String jsp = generate(generator, fileBundle("${media}\"/>"));
+        assertTrue(jsp.contains("CustomTag renderer = new CustomTag() {{"));
+        assertTrue(jsp.contains("%>${media}\"/><%"));
+        assertFalse(jsp.contains("_FileBundleRenderer1"));
+
+        String inline = generate(new JspCodeGenerator(), fileBundle("${media}\"/>"));
+        assertTrue(inline.contains("CustomTag renderer = new CustomTag() {{"));
+    }
+
+    @Test
+    void testTemplateHooks() throws Exception
+    {
+        JspCodeGenerator generator = new JspCodeGenerator();
+        generator.setMinimalImports(true);
+        generator.setBaseClass("com.example.ShopTemplate");
+        generator.setTemplateHooks(true);
+        String jsp = generate(generator, parse("<p>#Product:Name#"));
+
+        assertTrue(jsp.startsWith("<%@ page import=\"com.intershop.beehive.core.internal.template.*\" %><%@  page buffer=\"none\" extends=\"com.example.ShopTemplate\" %>"), jsp);
+        assertTrue(jsp.contains("out = startTemplate(out, context);"));
+        assertTrue(jsp.contains("endTemplate(out);"));
+        assertFalse(jsp.contains("printHeader(out);"));
+    }
+
+    @Test
+    void testProfilingProbes() throws Exception
+    {
+        String source = "<isloop iterator=\"Products\" alias=\"Product\"><isinclude template=\"product/Tile\">"
+                        + "#URL(Action('Product-Show'))##Product:Name#</isloop>";
+
+        JspCodeGenerator generator = new JspCodeGenerator();
+        generator.setProfilingProbes(true);
+        String jsp = generate(generator, parse(source));
+
+        assertTrue(jsp.contains("<% long _probe1 = _PROBE_1.start(); try { %><% while (loop(\"Products\",\"Product\",null)) { %>"
+                        + "<% long _probe2 = _PROBE_2.start(); try { %><% {out.flush();"), jsp);
+        assertTrue(jsp.contains("} finally { _PROBE_2.end(_probe2); } %><% long _probe3 = _PROBE_3.start(); try { %>"
+                        + "<%=context.getFormattedValue(url(true,"));
+        assertTrue(jsp.contains("<% } finally { _PROBE_3.end(_probe3); } %><%=context.getFormattedValue(getObject(\"Product:Name\"),null)%>"
+                        + "<% } %><% } finally { _PROBE_1.end(_probe1); } %>"));
+        assertTrue(jsp.contains("private static final com.intershop.beehive.isml.capi.TemplateProbe _PROBE_2 = "
+                        + "com.intershop.beehive.isml.capi.TemplateProbe.get(java.lang.invoke.MethodHandles.lookup().lookupClass(), "
+                        + "\"test.isml\", 1, \"ISINCLUDE\");"));
+        assertTrue(jsp.contains("\"test.isml\", 1, \"ISLOOP\");"));
+        assertTrue(jsp.contains("\"test.isml\", 1, \"url\");"));
+        assertFalse(jsp.contains("_PROBE_4"));
+
+        // the probes report the path in the source directory if it is known
+        generator.setTemplatePath("default/inc/Header.isml");
+        jsp = generate(generator, parse(source));
+        assertTrue(jsp.contains("lookupClass(), \"default/inc/Header.isml\", 1, \"ISLOOP\");"));
+        assertFalse(jsp.contains("\"test.isml\""));
+
+        assertFalse(generate(new JspCodeGenerator(), parse(source)).contains("_PROBE_"));
+    }
+
+    @Test
+    void testCustomTagBinding() throws Exception
+    {
+        ISMLTemplate template = parse("<ismodule template=\"modules/ProductImage\" name=\"ProductImage\" strict=\"true\" "
+                        + "attribute=\"product\" attribute=\"size\">"
+                        + "<ismodule template=\"modules/Other\" name=\"Price\">"
+                        + "<isproductimage size=\"S\"><isprice size=\"S\">");
+
+        CustomTagRegistry registry = new CustomTagRegistry();
+        registry.add(new CustomTagModule("productimage", "modules/ProductImage", true, new String[] { "product", "size" }, null));
+        registry.add(new CustomTagModule("price", "modules/Price", false, null, null));
+
+        JspCodeGenerator generator = new JspCodeGenerator();
+        generator.setCustomTagRegistry(registry);
+        String jsp = generate(generator, template);
+
+        // the declaration of price differs from the registry, so it is still registered
+        assertFalse(jsp.contains("setCustomTagTemplateName(\"productimage\""));
+        assertTrue(jsp.contains("context.setCustomTagTemplateName(\"price\",\"modules/Other\",false,null,null);"));
+        assertTrue(jsp.contains("private static final com.intershop.beehive.isml.capi.CustomTagModule _CUSTOM_TAG_1 = "
+                        + "new com.intershop.beehive.isml.capi.CustomTagModule(\"productimage\", \"modules/ProductImage\", true, "
+                        + "new String[]{\"product\",\"size\"}, null);"), jsp);
+        assertTrue(jsp.contains("processOpenTag(response, pageContext, _CUSTOM_TAG_1, new TagParameter[] {"));
+        assertTrue(jsp.contains("processOpenTag(response, pageContext, _CUSTOM_TAG_2, new TagParameter[] {"));
+
+        jsp = generate(new JspCodeGenerator(), template);
+        assertTrue(jsp.contains("context.setCustomTagTemplateName(\"productimage\",\"modules/ProductImage\",true,new String[]{\"product\",\"size\"},null);"));
+        assertTrue(jsp.contains("processOpenTag(response, pageContext, \"productimage\", new TagParameter[] {"));
+    }
+
+    @Test
+    void testSuppressedCustomTag() throws Exception
+    {
+        ISMLTemplate template = parse("<isproductimage size=\"S\">");
+        template = new ISMLTemplate(template.getName(), Collections.singletonList(new SuppressedNode(template.getNodes().get(0))));
+
+        CustomTagRegistry registry = new CustomTagRegistry();
+        registry.add(new CustomTagModule("productimage", "modules/ProductImage", false, null, null));
+
+        JspCodeGenerator generator = new JspCodeGenerator();
+        generator.setCustomTagRegistry(registry);
+        generator.setStaticTagParameters(true);
+        String jsp = generate(generator, template);
+
+        // the code of the tag is discarded, and so are its declarations
+        assertFalse(jsp.contains("processOpenTag"));
+        assertFalse(jsp.contains("_CUSTOM_TAG_"));
+        assertFalse(jsp.contains("_TAG_PARAMETERS_"));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NestingStackTest implements ISMLtoJSPcompilerConstants
+{
+    @Test
+    void testInterleavedKinds()
+    {
+        NestingStack stack = new NestingStack();
+        Token outerIf = new Token(ISIF, "<isif");
+        Token loop = new Token(ISLOOP, "<isloop");
+        Token innerIf = new Token(ISIF, "<isif");
+
+        stack.push(outerIf);
+        stack.push(loop);
+        stack.push(innerIf);
+
+        assertEquals(3, stack.size());
+        assertTrue(stack.isTop(ISIF));
+        assertFalse(stack.isTop(ISLOOP));
+        assertTrue(stack.contains(ISIF));
+        assertTrue(stack.contains(ISLOOP));
+        assertFalse(stack.contains(ISFILEBUNDLE));
+
+        assertTrue(innerIf == stack.pop());
+        assertTrue(stack.isTop(ISLOOP));
+        assertTrue(stack.contains(ISIF));
+
+        assertTrue(loop == stack.pop());
+        assertFalse(stack.contains(ISLOOP));
+        assertTrue(stack.isTop(ISIF));
+
+        assertTrue(outerIf == stack.pop());
+        assertFalse(stack.contains(ISIF));
+        assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    void testGrowth()
+    {
+        NestingStack stack = new NestingStack();
+        for (int i = 0; i < 40; i++)
+        {
+            stack.push(new Token((i % 2 == 0) ? ISIF : ISLOOP, "<is"));
+        }
+
+        assertEquals(40, stack.size());
+        assertTrue(stack.isTop(ISLOOP));
+        for (int i = 0; i < 39; i++)
+        {
+            stack.pop();
+        }
+        assertTrue(stack.isTop(ISIF));
+        assertFalse(stack.contains(ISLOOP));
+    }
+
+    @Test
+    void testPopEmpty()
+    {
+        NestingStack stack = new NestingStack();
+
+        assertNull(stack.pop());
+        assertTrue(stack.isEmpty());
+        assertFalse(stack.isTop(ISIF));
+        assertFalse(stack.contains(ISIF));
+
+        stack.push(new Token(ISIF, "<isif"));
+        stack.pop();
+        assertNull(stack.pop());
+        assertEquals(0, stack.size());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PageImportsTest
+{
+    @Test
+    void testKnownTypes() throws Exception
+    {
+        assertEquals(Arrays.asList("com.intershop.beehive.core.internal.template.*", "com.intershop.beehive.core.capi.log.*"),
+                        PageImports.getImports("<% TemplateExecutionConfig context = getTemplateExecutionConfig(); %>"
+                                        + "<p>List</p><%-- Map --%>"
+                                        + "<% String value = \"Map\"; Logger.debug(this, \"{}\", 4L); %>"));
+
+        assertEquals(Arrays.asList("java.util.*", "com.intershop.beehive.core.capi.util.UUIDMgr"),
+                        PageImports.getImports("<%! private static final List<Object> KEYS = java.util.Collections.emptyList(); %>"
+                                        + "<%=UUIDMgr.getInstance().createUUIDString()%>"));
+
+        assertEquals(Collections.emptyList(), PageImports.getImports("<% class Local { } Local l = new Local(); %>"));
+    }
+
+    @Test
+    void testUnknownTypes() throws Exception
+    {
+        assertEquals(Arrays.asList("java.io.*",
+                        "com.intershop.beehive.core.internal.template.*",
+                        "com.intershop.beehive.core.internal.template.isml.*",
+                        "com.intershop.beehive.core.capi.log.*",
+                        "com.intershop.beehive.core.capi.resource.*",
+                        "com.intershop.beehive.foundation.util.*",
+                        "com.intershop.beehive.core.internal.url.*",
+                        "com.intershop.beehive.core.internal.resource.*"),
+                        PageImports.getImports("<% Writer w = new WrappedJspWriter(out); %>"));
+    }
+}
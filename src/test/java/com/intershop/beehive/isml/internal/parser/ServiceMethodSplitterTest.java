@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceMethodSplitterTest
+{
+    private static final String PRINT = "<%=context.getFormattedValue(getObject(\"Product:Name\"),null)%>";
+
+    private static ServiceMethodSplitter page(String... chunks) throws IOException
+    {
+        ServiceMethodSplitter page = new ServiceMethodSplitter();
+        page.write("<% boolean _boolean_result=false; %>");
+        for (String chunk : chunks)
+        {
+            page.startChunk(true);
+            page.write(chunk);
+        }
+        page.startChunk(false);
+        page.write("<% printFooter(out); %>");
+        return page;
+    }
+
+    @Test
+    void testSmallPage() throws Exception
+    {
+        ServiceMethodSplitter page = page(PRINT + "<p>", PRINT);
+        StringWriter out = new StringWriter();
+
+        int size = page.writeTo(out, true, 8000);
+        assertTrue(size < 8000);
+        assertEquals("<% boolean _boolean_result=false; %>" + PRINT + "<p>" + PRINT + "<% printFooter(out); %>", out.toString());
+    }
+
+    @Test
+    void testSplitPage() throws Exception
+    {
+        String[] chunks = new String[100];
+        for (int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = PRINT + "<td>100%</td>";
+        }
+        chunks[50] = "<% if (getObject(\"A\") == null) return; %>";
+
+        StringWriter out = new StringWriter();
+        int size = page(chunks).writeTo(out, true, 500);
+        String jsp = out.toString();
+
+        assertTrue(size < 500);
+        assertTrue(jsp.contains("<% _jspServicePart1(request,response,pageContext,out,context); %>"));
+        assertTrue(jsp.contains("<% _jspServicePart2(request,response,pageContext,out,context); %>"));
+        assertTrue(jsp.contains("out.print(context.getFormattedValue(getObject(\"Product:Name\"),null));\nout.write(\"<td>100\\045</td>\");"));
+
+        // the return stays in the service method
+        assertTrue(jsp.contains("%><% if (getObject(\"A\") == null) return; %><%"));
+    }
+
+    @Test
+    void testSharedLocals() throws Exception
+    {
+        String[] chunks = new String[100];
+        for (int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = "<% if (_objectPath1 != null) { _boolean_result = true; } %>";
+        }
+        chunks[0] = "<% Object _objectPath1 = _OBJECT_PATH_UNRESOLVED; String name = \"\"; %>";
+        chunks[99] = "<% name = null; %>";
+
+        StringWriter out = new StringWriter();
+        page(chunks).writeTo(out, true, 500);
+        String jsp = out.toString();
+
+        assertTrue(jsp.contains("<% Object _objectPath1 = _OBJECT_PATH_UNRESOLVED; String name = \"\"; %>"));
+        assertTrue(jsp.contains("<% name = null; %>"));
+        assertTrue(jsp.contains("{\nboolean _boolean_result=false;\nObject _objectPath1 = _OBJECT_PATH_UNRESOLVED;\n"));
+    }
+
+    @Test
+    void testScriptletBlock() throws Exception
+    {
+        String[] chunks = new String[100];
+        for (int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = PRINT + "<td>100%</td>";
+        }
+        chunks[10] = "<% for (Product p : products) { %>";
+        chunks[20] = "<% if (p == null) break; %>";
+        chunks[89] = "<% } %>";
+
+        StringWriter out = new StringWriter();
+        page(chunks).writeTo(out, true, 500);
+        String jsp = out.toString();
+
+        // the chunks of the loop stay in the service method
+        int start = jsp.indexOf("<% for (Product p : products) { %>");
+        int end = jsp.indexOf("<% } %>");
+        assertTrue(start > 0 && end > start);
+        assertFalse(jsp.substring(start, end).contains("_jspServicePart"));
+        assertTrue(jsp.contains("<% if (p == null) break; %>"));
+
+        // the chunks before and after the loop are moved
+        assertTrue(jsp.substring(0, start).contains("<% _jspServicePart1(request,response,pageContext,out,context); %>"));
+        assertTrue(jsp.substring(end).contains("<% _jspServicePart2(request,response,pageContext,out,context); %>"));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServletCodeGeneratorTest implements ISMLtoJSPcompilerConstants
+{
+    private static String generate(ServletCodeGenerator generator, String text) throws Exception
+    {
+        TemplateBuilder builder = new TemplateBuilder();
+        Token token = new Token(CONTENT, text);
+        token.beginLine = 1;
+        token.beginColumn = 1;
+        builder.addText(token);
+        builder.addExpression(new ObjectPathExpression("Product:Name"), 1, 1);
+        return generate(generator, builder.build("test.isml"));
+    }
+
+    private static String generate(ServletCodeGenerator generator, ISMLTemplate template) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamWriter out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+        generator.generate(template, out);
+        out.flush();
+        return bytes.toString("UTF-8");
+    }
+
+    @Test
+    void testClassName()
+    {
+        assertEquals("org.apache.jsp.default_.inc.Header_jsp", ServletCodeGenerator.getClassName("default/inc/Header.isml"));
+        assertEquals("org.apache.jsp.en_005fUS._1.product_002ddetail_jsp",
+                        ServletCodeGenerator.getClassName("en_US\\1\\product-detail.isml"));
+    }
+
+    @Test
+    void testServlet() throws Exception
+    {
+        ServletCodeGenerator generator = new ServletCodeGenerator("org.apache.jsp.default_.test_jsp");
+        generator.setServletApiPackage("javax.servlet");
+        String java = generate(generator, "<p class=\"name\">");
+
+        assertTrue(java.startsWith("package org.apache.jsp.default_;\n\nimport javax.servlet.*;\nimport javax.servlet.http.*;\nimport javax.servlet.jsp.*;\nimport java.util.*;\n"));
+        assertTrue(java.contains("public final class test_jsp extends com.intershop.beehive.core.internal.template.AbstractTemplate\n"));
+        assertTrue(java.contains("public void _jspService(HttpServletRequest request, HttpServletResponse response)\n"));
+        assertTrue(java.contains("pageContext = _jspxFactory.getPageContext(this, request, response, null, true, 0, true);\n"));
+        assertTrue(java.contains("out = new WrappedJspWriter(out);\n"));
+        assertTrue(java.contains("out.write(\"<p class=\\\"name\\\">\");\nout.print(context.getFormattedValue(getObject(\"Product:Name\"),null));\n"));
+        assertTrue(java.contains("printFooter(out);\n}\ncatch (Throwable t)\n"));
+        assertFalse(java.contains("<%"));
+    }
+
+    @Test
+    void testJspSyntax() throws Exception
+    {
+        ParseException e = assertThrows(ParseException.class,
+                        () -> generate(new ServletCodeGenerator("test_jsp"), "<p>${product.name}</p>"));
+        assertTrue(e.getMessage().contains("can't be compiled to a servlet"));
+    }
+
+    @Test
+    void testTags() throws Exception
+    {
+        String java = generate(new ServletCodeGenerator("test_jsp"), TemplateFixtures.parse(
+                        "<iscontent type=\"text/xml\" session=\"false\" templatemarker=\"false\">"
+                        + "<isif condition=\"#Product:Online#\"><b>#Product:Name#</b></isif>"
+                        + "<isinclude url=\"#Product:URL#\">"));
+
+        assertTrue(java.contains("import com.intershop.beehive.core.capi.url.*;\n"));
+        assertTrue(java.contains("protected Boolean printTemplateMarker() { return Boolean.FALSE; }\n"));
+        assertTrue(java.contains("response.setContentType(\"text/xml;charset=utf-8\");\n"));
+        assertTrue(java.contains("pageContext = _jspxFactory.getPageContext(this, request, response, null, false, 0, true);\n"));
+        assertTrue(java.contains("if (_boolean_result) {\nout.write(\"<b>\");\n"
+                        + "out.print(context.getFormattedValue(getObject(\"Product:Name\"),null));\nout.write(\"</b>\");\n}"));
+        assertFalse(java.contains("<%"));
+        assertFalse(java.contains("HttpSession session"));
+    }
+
+    @Test
+    void testSplitServiceMethod() throws Exception
+    {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+        {
+            source.append("<isset name=\"Value\" value=\"#Product:Name#\" scope=\"request\"><p>#Value#</p>\n");
+        }
+
+        ServletCodeGenerator generator = new ServletCodeGenerator("test_jsp");
+        generator.setSplitServiceMethod(true);
+        generator.setServiceMethodSizeLimit(1000);
+        String java = generate(generator, TemplateFixtures.parse(source.toString()));
+
+        assertTrue(java.contains("\n_jspServicePart1(request,response,pageContext,out,context);\n"));
+        assertTrue(java.contains("private void _jspServicePart1(HttpServletRequest request, HttpServletResponse response, "));
+        assertTrue(generator.getServiceMethodSize() <= generator.getServiceMethodSizeLimit());
+        assertFalse(java.contains("<%"));
+    }
+
+    @Test
+    void testBufferSize() throws Exception
+    {
+        assertEquals(0, ServletCodeGenerator.getBufferSize("test.isml", null));
+        assertEquals(0, ServletCodeGenerator.getBufferSize("test.isml", "none"));
+        assertEquals(16384, ServletCodeGenerator.getBufferSize("test.isml", "16kb"));
+        assertThrows(ParseException.class, () -> ServletCodeGenerator.getBufferSize("test.isml", "8192"));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SourceMapTest
+{
+    @Test
+    void testJspMarkers()
+    {
+        String code = "<%@ page %>\n" + SourceMap.getMarker(3) + "<p>\n</p>\n"
+                        + SourceMap.getMarker(5) + "<% x(); %>" + SourceMap.getMarker(7) + "<% y(); %>\n"
+                        + SourceMap.getMarker(0) + "<% z(); %>\n";
+        SourceMap map = new SourceMap(code, "test.jsp", "test.isml");
+
+        assertEquals("<%@ page %>\n<p>\n</p>\n<% x(); %><% y(); %>\n<% z(); %>\n", map.getCode());
+        assertEquals("SMAP\ntest.jsp\nISML\n*S ISML\n*F\n1 test.isml\n*L\n3#1:2,2\n5:4\n7:4\n*E\n", map.getSmap());
+    }
+
+    @Test
+    void testJavaMarkers()
+    {
+        // markers of code that was moved into Java methods
+        String code = "void a() {\n/*@isml:2*/\nout.write(\"a\");\nout.write(\"b\");\n/*@isml:4*/out.write(\"c\");\n}\n";
+        SourceMap map = new SourceMap(code, "Test_jsp.java", "test.isml");
+
+        assertEquals("void a() {\nout.write(\"a\");\nout.write(\"b\");\nout.write(\"c\");\n}\n", map.getCode());
+        assertEquals("SMAP\nTest_jsp.java\nISML\n*S ISML\n*F\n1 test.isml\n*L\n2#1:2,2\n4:4,3\n*E\n", map.getSmap());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static com.intershop.beehive.isml.internal.parser.TemplateFixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StaticTemplateTest
+{
+    @Test
+    void testStaticTemplate() throws Exception
+    {
+        StaticTemplate template = StaticTemplate.classify(parse("<iscontent type=\"text/xml\" compact=\"true\" httpstatus=\"404\">"
+                        + "<iscache type=\"daily\" hour=\"4\">\n<a>\n\n   Gr\u00fc\u00dfe\t</a>\n"), "UTF-8");
+        assertNotNull(template);
+        assertEquals("<a>\nGr\u00fc\u00dfe </a>", new String(template.getContent(), StandardCharsets.UTF_8));
+        assertEquals("text/xml;charset=utf-8", template.getProperties().get("contentType"));
+        assertEquals("404", template.getProperties().get("httpStatus"));
+        assertEquals("daily", template.getProperties().get("cache.type"));
+        assertEquals("4", template.getProperties().get("cache.hour"));
+        assertEquals("0", template.getProperties().get("cache.minute"));
+
+        File dir = Files.createTempDirectory("isml").toFile();
+        File jspFile = new File(dir, "test.jsp");
+        template.write(jspFile);
+        assertEquals("<a>\nGr\u00fc\u00dfe </a>", new String(Files.readAllBytes(StaticTemplate.getResourceFile(jspFile).toPath()), StandardCharsets.UTF_8));
+        assertTrue(new String(Files.readAllBytes(StaticTemplate.getDescriptorFile(jspFile).toPath()), StandardCharsets.ISO_8859_1)
+                        .contains("contentType=text/xml;charset=utf-8\n"));
+    }
+
+    @Test
+    void testDynamicTemplates() throws Exception
+    {
+        assertNull(StaticTemplate.classify(parse("<p>#Name#"), "UTF-8"));
+        assertNull(StaticTemplate.classify(parse("<iscontent type=\"#Type#\">"), "UTF-8"));
+        assertNull(StaticTemplate.classify(parse("<p>${pipelineDict.Name}</p>"), "UTF-8"));
+        assertNull(StaticTemplate.classify(parse("Gr\u00fc\u00dfe"), "US-ASCII"));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import com.intershop.beehive.isml.capi.StaticTextBlob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StaticTextStoreTest
+{
+    @Test
+    void testSharedSegments() throws Exception
+    {
+        File dir = Files.createTempDirectory("isml").toFile();
+        StaticTextStore store = StaticTextStore.open(new File(dir, StaticTextStore.DEFAULT_NAME));
+
+        byte[] header = "<header>shared</header>".getBytes(StandardCharsets.UTF_8);
+        byte[] footer = "<footer>shared</footer>".getBytes(StandardCharsets.UTF_8);
+
+        long headerOffset = store.add(header);
+        long footerOffset = store.add(footer);
+        assertEquals(StaticTextBlob.HEADER_LENGTH, headerOffset);
+        assertNotEquals(headerOffset, footerOffset);
+        assertEquals(headerOffset, store.add(header.clone()));
+
+        StaticTextBlob blob = StaticTextBlob.open(store.getBlobFile().toPath());
+        assertEquals(store.getId(), blob.getId());
+        assertEquals(StaticTextBlob.get(store.getId()), blob);
+        assertEquals(ByteBuffer.wrap(footer), blob.slice(footerOffset, footer.length));
+
+        // content appended after the blob was mapped
+        byte[] body = "<body>added later</body>".getBytes(StandardCharsets.UTF_8);
+        assertEquals(ByteBuffer.wrap(body), blob.slice(store.add(body), body.length));
+
+        assertTrue(store.getReport().contains("Segment references: 4 (" + (3 * header.length + body.length) + " bytes)"));
+        assertTrue(store.getReport().contains("Distinct segments referenced: 3"));
+        assertTrue(store.getReport().contains("Deduplication ratio: 1.33"), store.getReport());
+    }
+
+    @Test
+    void testChangedFiles() throws Exception
+    {
+        File dir = Files.createTempDirectory("isml").toFile();
+        File blobFile = new File(dir, StaticTextStore.DEFAULT_NAME);
+        byte[] content = "<header>shared</header>".getBytes(StandardCharsets.UTF_8);
+
+        StaticTextStore store = StaticTextStore.open(blobFile);
+        store.add(content);
+        assertEquals(store, StaticTextStore.open(blobFile));
+
+        // the files were deleted, e.g. by a clean build in the same JVM
+        Files.delete(blobFile.toPath());
+        Files.delete(new File(blobFile.getPath() + StaticTextStore.INDEX_EXTENSION).toPath());
+
+        StaticTextStore newStore = StaticTextStore.open(blobFile);
+        assertNotEquals(store.getId(), newStore.getId());
+        assertEquals(StaticTextBlob.HEADER_LENGTH, newStore.add(content));
+        assertEquals(StaticTextBlob.HEADER_LENGTH + content.length, blobFile.length());
+    }
+
+    @Test
+    void testNewBlobKeepsMappedBlob() throws Exception
+    {
+        File dir = Files.createTempDirectory("isml").toFile();
+        File blobFile = new File(dir, StaticTextStore.DEFAULT_NAME);
+        String oldId = "00000000-0000-0000-0000-000000000000";
+        byte[] content = "<header>old</header>".getBytes(StandardCharsets.UTF_8);
+
+        // a blob whose index is missing
+        Files.write(blobFile.toPath(), (StaticTextBlob.MAGIC + oldId + new String(content, StandardCharsets.UTF_8)).getBytes(StandardCharsets.US_ASCII));
+        StaticTextBlob oldBlob = StaticTextBlob.open(blobFile.toPath());
+        assertEquals(ByteBuffer.wrap(content), oldBlob.slice(StaticTextBlob.HEADER_LENGTH, content.length));
+
+        StaticTextStore store = StaticTextStore.open(blobFile);
+        assertNotEquals(oldId, store.getId());
+        assertEquals(StaticTextBlob.HEADER_LENGTH, store.add("<footer>new</footer>".getBytes(StandardCharsets.UTF_8)));
+
+        // the mapping of the old blob still has its content
+        assertEquals(oldId, oldBlob.getId());
+        assertEquals(ByteBuffer.wrap(content), oldBlob.slice(StaticTextBlob.HEADER_LENGTH, content.length));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.intershop.beehive.isml.internal.parser.TemplateFixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateCostTest implements ISMLtoJSPcompilerConstants
+{
+    @Test
+    void testAnalyze() throws Exception
+    {
+        ISMLTemplate template = parse("<ispipeline pipeline=\"ViewProduct-Start\" alias=\"Dict\">"
+                        + "<isloop iterator=\"Products\">"
+                        + "<isinclude template=\"#Tile:Template#\">"
+                        + "<isloop iterator=\"Product:Variations\">"
+                        + "#URL(Action('Product-Show'))#"
+                        + "</isloop>"
+                        + "</isloop>"
+                        + "<isproductprice product=\"#Product:Price#\">"
+                        + "#localizeText('product.title')#");
+
+        TemplateCost cost = TemplateCost.analyze(template, "default/test.isml");
+        assertEquals(1, cost.getPipelines());
+        assertEquals(2, cost.getLoops());
+        assertEquals(2, cost.getMaxLoopDepth());
+        assertEquals(1, cost.getIncludes());
+        assertEquals(1, cost.getCustomTags());
+        assertEquals(1, cost.getTexts());
+        assertEquals(1, cost.getUrls());
+        // two object paths with two segments, URL, Action, localizeText
+        assertEquals(7, cost.getComplexity());
+
+        long expected = TemplateCost.PIPELINE_WEIGHT
+                        + (TemplateCost.INCLUDE_WEIGHT + 2) * TemplateCost.LOOP_FACTOR
+                        + (TemplateCost.URL_WEIGHT + 2) * TemplateCost.LOOP_FACTOR * TemplateCost.LOOP_FACTOR
+                        + TemplateCost.CUSTOM_TAG_WEIGHT + 2
+                        + TemplateCost.TEXT_WEIGHT + 1;
+        assertEquals(expected, cost.getCost());
+    }
+
+    @Test
+    void testReport() throws Exception
+    {
+        ISMLTemplate expensive = parse("<ispipeline pipeline=\"ViewProduct-Start\" alias=\"Dict\">");
+
+        String report = TemplateCost.getReport(Arrays.asList(
+                        TemplateCost.analyze(new ISMLTemplate("a.isml", Collections.<TemplateNode>emptyList()), "default/a.isml"),
+                        TemplateCost.analyze(expensive, "default/b.isml")));
+
+        assertTrue(report.startsWith("Template cost report: 2 templates\n"));
+        assertTrue(report.indexOf("default/b.isml") < report.indexOf("default/a.isml"), report);
+        assertTrue(report.contains("       1       50         0    0/0         1"), report);
+    }
+}
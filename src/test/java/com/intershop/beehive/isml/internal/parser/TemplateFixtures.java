@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import com.intershop.beehive.isml.capi.ISMLException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates the tokens and attributes of the templates that the tests build
+ * with a {@link TemplateBuilder}, and parses the templates that the tests
+ * write as ISML source.
+ */
+
+final class TemplateFixtures
+{
+    private TemplateFixtures()
+    {
+    }
+
+    static Token token(int kind, String image)
+    {
+        return token(kind, image, 1, 1);
+    }
+
+    static Token token(int kind, String image, int line, int column)
+    {
+        Token token = new Token(kind, image);
+        token.beginLine = line;
+        token.beginColumn = column;
+        return token;
+    }
+
+    /**
+     * Returns the attributes of a tag, the keys are token kinds, with a
+     * leading <code>#</code> for expression values.
+     */
+
+    static Map<String, Object> attributes(Object... keysAndValues)
+    {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+        {
+            result.put(String.valueOf(keysAndValues[i]), keysAndValues[i + 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Parses a template from ISML source with the default configuration, that
+     * is without optimizations. Other characters than ASCII are passed
+     * Unicode-escaped, like {@link com.intershop.beehive.isml.internal.TemplatePrecompileUtils}
+     * does.
+     */
+
+    static ISMLTemplate parse(String source) throws ISMLException
+    {
+        StringBuilder escaped = new StringBuilder(source.length());
+        for (char c : source.toCharArray())
+        {
+            escaped.append((c < 0x80) ? String.valueOf(c) : String.format("\\u%04x", (int)c));
+        }
+        ByteArrayInputStream in = new ByteArrayInputStream(escaped.toString().getBytes(StandardCharsets.US_ASCII));
+
+        return new ISMLtoJSPcompiler(in).parseTemplate(ISMLtoJSPcompiler.ALLOW_ALL, new File("test.isml"), in);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 Intershop Communications AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intershop.beehive.isml.internal.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static com.intershop.beehive.isml.internal.parser.TemplateFixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateLinterTest implements ISMLtoJSPcompilerConstants
+{
+    private static ISMLTemplate loops() throws Exception
+    {
+        return parse("<isloop iterator=\"Products\">\n"
+                        + "  <ispipeline pipeline=\"ViewProduct-Start\" alias=\"Dict\">\n"
+                        + "  <isloop iterator=\" products \">\n"
+                        + "    <p>${product.name}</p>\n"
+                        + "    <isinclude template=\"/product/Tile.isml\">\n"
+                        + "    <isif condition=\"#existsTemplate('product/Tile')#\"></isif>\n"
+                        + "  </isloop>\n"
+                        + "</isloop>\n"
+                        + "<isinclude template=\"product/Footer\">\n"
+                        + "<iscache type=\"Forbidden\">\n");
+    }
+
+    private static String toString(List<TemplateLinter.Finding> findings)
+    {
+        StringBuilder result = new StringBuilder();
+        for (TemplateLinter.Finding finding : findings)
+        {
+            result.append(finding.getLine()).append(':').append(finding.getColumn()).append(' ').append(finding.getRule()).append('\n');
+        }
+        return result.toString();
+    }
+
+    @Test
+    void testFragment() throws Exception
+    {
+        List<TemplateLinter.Finding> findings = new TemplateLinter().lint(loops(), "default/test.isml", true);
+
+        assertEquals("2:3 PIPELINE_IN_LOOP\n"
+                        + "3:3 NESTED_LOOP_SAME_ITERATOR\n"
+                        + "4:8 EL_IN_LOOP\n"
+                        + "5:5 INCLUDE_IN_LOOP\n"
+                        + "6:5 EXISTS_TEMPLATE_IN_LOOP\n"
+                        + "10:1 FORBIDDEN_CACHE_IN_FRAGMENT\n", toString(findings));
+        assertEquals("default/test.isml:2:3: WARNING: ISPIPELINE inside ISLOOP executes the pipeline once per iteration. [PIPELINE_IN_LOOP]",
+                        findings.get(0).toString());
+    }
+
+    @Test
+    void testPage() throws Exception
+    {
+        TemplateLinter linter = new TemplateLinter();
+        Properties configuration = new Properties();
+        configuration.setProperty("pipeline_in_loop", "off");
+        configuration.setProperty("EL_IN_LOOP", "Error");
+        linter.configure(configuration);
+
+        // a forbidden cache is fine in pages
+        List<TemplateLinter.Finding> findings = linter.lint(loops(), "default/test.isml", false);
+        assertEquals("3:3 NESTED_LOOP_SAME_ITERATOR\n"
+                        + "4:8 EL_IN_LOOP\n"
+                        + "5:5 INCLUDE_IN_LOOP\n"
+                        + "6:5 EXISTS_TEMPLATE_IN_LOOP\n", toString(findings));
+        assertEquals(TemplateLinter.Severity.ERROR, findings.get(1).getSeverity());
+
+        assertEquals("1:1 MISSING_CACHE\n", toString(linter.lint(new ISMLTemplate("empty.isml", Collections.<TemplateNode>emptyList()),
+                        "default/empty.isml", false)));
+
+        configuration.setProperty("unknown_rule", "error");
+        assertThrows(IllegalArgumentException.class, () -> linter.configure(configuration));
+    }
+
+    @Test
+    void testLiterals() throws Exception
+    {
+        ISMLTemplate template = parse("<isloop iterator=\"Products\">\n"
+                        + "  #'existsTemplate('# #'${'# $ {\n"
+                        + "  <isset name=\"Name\" value=\"#'existsTemplate(' . '${x}'#\" scope=\"request\">\n"
+                        + "  #${x}# #existsTemplate(Name)#\n"
+                        + "</isloop>\n");
+
+        // string literals are no usages
+        assertEquals("4:3 EL_IN_LOOP\n"
+                        + "4:10 EXISTS_TEMPLATE_IN_LOOP\n", toString(new TemplateLinter().lint(template, "default/test.isml", true)));
+    }
+
+    @Test
+    void testIncludedTemplates() throws Exception
+    {
+        assertEquals(2, TemplateLinter.getIncludedTemplates(loops()).size());
+        assertTrue(TemplateLinter.getIncludedTemplates(loops()).contains("product/Tile"));
+        assertTrue(TemplateLinter.getIncludedTemplates(loops()).contains("product/Footer"));
+        assertEquals("default/product/Tile", TemplateLinter.getTemplateName("default\\product\\Tile.isml"));
+    }
+}
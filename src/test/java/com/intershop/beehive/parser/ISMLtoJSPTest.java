@@ -15,14 +15,28 @@
  */
 package com.intershop.beehive.parser;
 
+import com.intershop.beehive.isml.capi.ISMLCompilerConfiguration;
+import com.intershop.beehive.isml.capi.ISMLException;
+import com.intershop.beehive.isml.internal.parser.ConstantFolder;
+import com.intershop.beehive.isml.internal.parser.ExpressionNode;
+import com.intershop.beehive.isml.internal.parser.ISMLTemplate;
 import com.intershop.beehive.isml.internal.parser.ISMLtoJSPcompiler;
+import com.intershop.beehive.isml.internal.parser.ISMLtoJSPcompilerConstants;
+import com.intershop.beehive.isml.internal.parser.ObjectPathExpression;
+import com.intershop.beehive.isml.internal.parser.OperatorExpression;
+import com.intershop.beehive.isml.internal.parser.TagNode;
+import com.intershop.beehive.isml.internal.parser.TextNode;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -54,11 +68,219 @@ class ISMLtoJSPTest
         assertTrue(compile("#stringToHtml(webroot())#").contains("stringToHtml("));
     }
 
+    @Test
+    void testParseTemplate() throws Exception
+    {
+        ISMLTemplate template = parse("<isif condition=\"#a#\">x #b#</isif>");
+
+        assertEquals(4, template.getNodes().size());
+        assertEquals(ISMLtoJSPcompilerConstants.ISIF, ((TagNode)template.getNodes().get(0)).getKind());
+        assertEquals("a", ((ObjectPathExpression)((TagNode)template.getNodes().get(0)).getExpressionAttribute(ISMLtoJSPcompilerConstants.ATT_CONDITION)).getPath());
+        assertEquals("x ", ((TextNode)template.getNodes().get(1)).getText());
+        assertEquals("b", ((ObjectPathExpression)((ExpressionNode)template.getNodes().get(2)).getExpression()).getPath());
+        assertEquals(ISMLtoJSPcompilerConstants.ISIF_END, ((TagNode)template.getNodes().get(3)).getKind());
+    }
+
+    @Test
+    void testConstantFolding() throws Exception
+    {
+        String source = "#'a' . 'b'#<isif condition=\"#(1 + 2 * 3) == 7#\">#len(trim(' abc '))#</isif>";
+        ISMLTemplate template = parse(source, new TestConfiguration().foldConstants());
+
+        assertEquals(4, template.getNodes().size());
+        assertEquals("ab", ((TextNode)template.getNodes().get(0)).getText());
+        assertEquals(Boolean.TRUE, ConstantFolder.valueOf(((TagNode)template.getNodes().get(1)).getExpressionAttribute(ISMLtoJSPcompilerConstants.ATT_CONDITION)));
+        assertEquals(Double.valueOf(3), ConstantFolder.valueOf(((ExpressionNode)template.getNodes().get(2)).getExpression()));
+
+        // folding is disabled by default
+        assertTrue(((ExpressionNode)parse(source).getNodes().get(0)).getExpression() instanceof OperatorExpression);
+    }
+
+    @Test
+    void testDeadBranchElimination() throws Exception
+    {
+        ISMLCompilerConfiguration configuration = new TestConfiguration().foldConstants().eliminateDeadBranches();
+        String jsp = compile("<isif condition=\"#1 == 0#\">dead<isinclude template=\"inc/Dead\"><iselse>live</isif>", configuration);
+
+        assertTrue(jsp.contains("live"));
+        assertFalse(jsp.contains("dead"));
+        assertFalse(jsp.contains("inc/Dead"));
+        assertFalse(jsp.contains("_boolean_result=("));
+
+        // the nesting of removed tags is still validated
+        assertThrows(ISMLException.class,
+                     () -> compile("<isif condition=\"#'a' EQ 'b'#\"><isloop iterator=\"a\"></isif>", configuration));
+    }
+
+    @Test
+    void testObjectPathHoisting() throws Exception
+    {
+        String jsp = compile("<isif condition=\"#isDefined(A:B)#\">#A:B#</isif><isset name=\"C\" value=\"#A:B#\" scope=\"request\">#A:B#",
+                             new TestConfiguration().hoistObjectPaths());
+
+        assertTrue(jsp.contains("private static final Object _OBJECT_PATH_UNRESOLVED"));
+        assertTrue(jsp.contains("(_objectPath1 = getObject(\"A:B\"))"));
+        // the paths after ISSET are resolved again
+        assertTrue(jsp.substring(jsp.indexOf("getPipelineDictionary().put(")).contains("getObject(\"A:B\"),null)"));
+        assertFalse(compile("#A:B##A:B#").contains("_objectPath"));
+    }
+
+    @Test
+    void testObjectPathPresplitting() throws Exception
+    {
+        String jsp = compile("#A:B(\"x\",C:D)##A:B(\"x\",C:D)##E#", new TestConfiguration().presplitObjectPaths());
+
+        assertTrue(jsp.contains(" _OBJECT_PATH_1 = com.intershop.beehive.isml.capi.ObjectPath.parse(\"A:B(\\\"x\\\",C:D)\");"));
+        assertTrue(jsp.contains(" _OBJECT_PATH_2 = com.intershop.beehive.isml.capi.ObjectPath.parse(\"E\");"));
+        assertFalse(jsp.contains("_OBJECT_PATH_3"));
+        assertFalse(jsp.contains("getObject(\""));
+    }
+
+    @Test
+    void testStaticTextEncoding() throws Exception
+    {
+        String text = "<div class=\"header\">static content of the page</div>";
+        String jsp = compile(text + "#A#" + text + "#B#<p>${el} is left to the JSP compiler</p>",
+                             new TestConfiguration().encodeStaticText());
+
+        assertTrue(jsp.contains("<% writeStaticBytes(out,_STATIC_TEXT_1,_STATIC_TEXT_CHARSET); %><%=context.getFormattedValue(getObject(\"A\"),null)%>"
+                                + "<% writeStaticBytes(out,_STATIC_TEXT_1,_STATIC_TEXT_CHARSET); %>"));
+        assertTrue(jsp.contains("private static final byte[] _STATIC_TEXT_1 = \"<div class=\\042header\\042>static content of the page</div>\""));
+        assertFalse(jsp.contains("_STATIC_TEXT_2"));
+        assertTrue(jsp.contains("<p>${el} is left to the JSP compiler</p>"));
+    }
+
+    /**
+     * The templates of <code>regression/</code> compile to the same JSP as
+     * with the generator before the template tree was introduced. The
+     * <code>.jsp</code> file next to each template is the output of that
+     * generator.
+     */
+    @Test
+    void testBaselineOutput() throws Exception
+    {
+        for (String name : new String[] { "Page", "Text", "Xml", "Module", "Bundle", "Jsp", "Binary", "Redirect" })
+        {
+            assertEquals(new String(readResource("regression/" + name + ".jsp")),
+                         compile(new String(readResource("regression/" + name + ".isml"))), name);
+        }
+    }
+
+    /**
+     * The configuration of the tests with UTF-8 encodings, the optimizations
+     * are enabled one by one.
+     */
+    protected static class TestConfiguration implements ISMLCompilerConfiguration
+    {
+        private boolean foldConstants, eliminateDeadBranches, hoistObjectPaths, presplitObjectPaths, encodeStaticText;
+
+        TestConfiguration foldConstants()
+        {
+            foldConstants = true;
+            return this;
+        }
+
+        TestConfiguration eliminateDeadBranches()
+        {
+            eliminateDeadBranches = true;
+            return this;
+        }
+
+        TestConfiguration hoistObjectPaths()
+        {
+            hoistObjectPaths = true;
+            return this;
+        }
+
+        TestConfiguration presplitObjectPaths()
+        {
+            presplitObjectPaths = true;
+            return this;
+        }
+
+        TestConfiguration encodeStaticText()
+        {
+            encodeStaticText = true;
+            return this;
+        }
+
+        @Override
+        public String getDefaultContentEncoding()
+        {
+            return "UTF-8";
+        }
+
+        @Override
+        public String getJspEncoding(String mimeType)
+        {
+            return "UTF-8";
+        }
+
+        @Override
+        public boolean isConstantFoldingEnabled()
+        {
+            return foldConstants;
+        }
+
+        @Override
+        public boolean isDeadBranchEliminationEnabled()
+        {
+            return eliminateDeadBranches;
+        }
+
+        @Override
+        public boolean isObjectPathHoistingEnabled()
+        {
+            return hoistObjectPaths;
+        }
+
+        @Override
+        public boolean isObjectPathPresplittingEnabled()
+        {
+            return presplitObjectPaths;
+        }
+
+        @Override
+        public boolean isStaticTextEncodingEnabled()
+        {
+            return encodeStaticText;
+        }
+    }
+
+    private byte[] readResource(String name) throws Exception
+    {
+        try (InputStream in = getClass().getResourceAsStream(name))
+        {
+            return in.readAllBytes();
+        }
+    }
+
+    protected ISMLTemplate parse(String source) throws Exception
+    {
+        return parse(source, null);
+    }
+
+    protected ISMLTemplate parse(String source, ISMLCompilerConfiguration configuration) throws Exception
+    {
+        ByteArrayInputStream in = new ByteArrayInputStream(source.getBytes());
+
+        ISMLtoJSPcompiler compiler = new ISMLtoJSPcompiler(in);
+        compiler.setCompilerConfiguration(configuration);
+
+        return compiler.parseTemplate(ISMLtoJSPcompiler.ALLOW_ALL, new File("test"), in);
+    }
+
     protected String compile(String source) throws Exception
+    {
+        return compile(source, null);
+    }
+
+    protected String compile(String source, ISMLCompilerConfiguration configuration) throws Exception
     {
         ByteArrayInputStream in = new ByteArrayInputStream(source.getBytes());
 
         ISMLtoJSPcompiler compiler = new ISMLtoJSPcompiler(in);
+        compiler.setCompilerConfiguration(configuration);
 
         ByteArrayOutputStream jspOut = new ByteArrayOutputStream();
 
@@ -0,0 +1,45 @@
+<%@  page buffer="none" import="java.util.*,java.io.*,com.intershop.beehive.core.internal.template.*,com.intershop.beehive.core.internal.template.isml.*,com.intershop.beehive.core.capi.log.*,com.intershop.beehive.core.capi.resource.*,com.intershop.beehive.core.capi.util.UUIDMgr,com.intershop.beehive.core.capi.util.XMLHelper,com.intershop.beehive.foundation.util.*,com.intershop.beehive.core.internal.url.*,com.intershop.beehive.core.internal.resource.*,com.intershop.beehive.core.capi.pipeline.PipelineDictionary,com.intershop.beehive.core.capi.naming.NamingMgr,com.intershop.beehive.core.capi.pagecache.PageCacheMgr,com.intershop.beehive.core.capi.request.SessionMgr,com.intershop.beehive.core.internal.request.SessionMgrImpl,com.intershop.beehive.core.pipelet.PipelineConstants" extends="com.intershop.beehive.core.internal.template.AbstractTemplate" %><% 
+boolean _boolean_result=false;
+out = new WrappedJspWriter(out);
+TemplateExecutionConfig context = getTemplateExecutionConfig();
+createTemplatePageConfig(context.getServletRequest());
+printHeader(out);
+ %><% { ISFileBundle filebundle = new ISFileBundle("main.css");List<? extends Resource> resources = null;
+boolean processesResources = (filebundle.isCheckSource() || !filebundle.hasCachedResources());if (processesResources) {filebundle.setDefaultProcessors(new String[]{"CSSCompressor","CSSVersioner"}); %>
+    <% {
+String fileName = "css/base.css";
+String[] processors = null;filebundle.addResource(fileName, processors);
+}
+ %>
+    <% {
+String fileName = "css/theme.css";
+String[] processors = null;filebundle.addResource(fileName, processors);
+}
+ %>
+    <% }TagParameter[] parameters = new TagParameter[] {
+};
+CustomTag renderer = new CustomTag() {{
+isStrict = true;
+tagName = "FileBundleRenderer";
+}
+public void processOpenTag(PageContext pageContext, com.intershop.beehive.core.capi.request.ServletResponse response, AbstractTemplate template, int line) throws IOException, ServletException {
+ServletContext application = pageContext.getServletContext();
+ServletConfig config = pageContext.getServletConfig();
+JspWriter out = pageContext.getOut();
+Object page = template;
+TemplateExecutionConfig context = getTemplateExecutionConfig(); %>
+        <link rel="stylesheet" href="<%=context.getFormattedValue(getObject("resource:URL"),null)%>">
+    <% 
+}};
+if (processesResources) { %>
+<% resources = filebundle.process();
+} else {resources = filebundle.getChachedResources();
+}for(Resource resource : resources) {
+PipelineDictionary newDict = context.createPipelineDictionary();
+newDict.put("File", resource);
+for(TagParameter parameter : parameters) {newDict.put(parameter.getKey(), parameter.getValue());}context.pushPipelineDictionary(newDict);renderer.processOpenTag(pageContext, (com.intershop.beehive.core.capi.request.ServletResponse) response, this, 7);
+renderer.processCloseTag(pageContext, (com.intershop.beehive.core.capi.request.ServletResponse) response, this, 7);
+context.popPipelineDictionary();}} %>
+<% out.print(context.prepareWAPlacement("head")); %><meta name="robots" content="index"><% out.print("</waplacement>"); %>
+<% out.print(context.prepareWAPlaceHolder("head", null, ",", null, null, null)); %>
+<% printFooter(out); %>
\ No newline at end of file
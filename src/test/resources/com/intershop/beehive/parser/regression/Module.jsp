@@ -0,0 +1,17 @@
+<%@  page buffer="none" import="java.util.*,java.io.*,com.intershop.beehive.core.internal.template.*,com.intershop.beehive.core.internal.template.isml.*,com.intershop.beehive.core.capi.log.*,com.intershop.beehive.core.capi.resource.*,com.intershop.beehive.core.capi.util.UUIDMgr,com.intershop.beehive.core.capi.util.XMLHelper,com.intershop.beehive.foundation.util.*,com.intershop.beehive.core.internal.url.*,com.intershop.beehive.core.internal.resource.*,com.intershop.beehive.core.capi.pipeline.PipelineDictionary,com.intershop.beehive.core.capi.naming.NamingMgr,com.intershop.beehive.core.capi.pagecache.PageCacheMgr,com.intershop.beehive.core.capi.request.SessionMgr,com.intershop.beehive.core.internal.request.SessionMgrImpl,com.intershop.beehive.core.pipelet.PipelineConstants" extends="com.intershop.beehive.core.internal.template.AbstractTemplate" %><% 
+boolean _boolean_result=false;
+out = new WrappedJspWriter(out);
+TemplateExecutionConfig context = getTemplateExecutionConfig();
+createTemplatePageConfig(context.getServletRequest());
+printHeader(out);
+ %><% context.setCustomTagTemplateName("teaser","inc/Teaser",true,new String[]{"product","mode"},new String[]{"result"}); %>
+<% context.setCustomTagTemplateName("price","inc/Price",false,new String[]{"value"},null); %>
+<% processOpenTag(response, pageContext, "teaser", new TagParameter[] {
+new TagParameter("mode","small"),
+new TagParameter("result","Teaser"),
+new TagParameter("product",getObject("Product"))}, 3); %>
+<% processOpenTag(response, pageContext, "price", new TagParameter[] {
+new TagParameter("value",getObject("Product:Price"))}, 4); %><% processCloseTag(response, pageContext, "price", 4);
+ %>
+<% _boolean_result=false;try {_boolean_result=((Boolean)((disableErrorMessages().isDefined(getObject("Teaser"))))).booleanValue();} catch (Exception e) {Logger.debug(this,"Boolean expression in line {} could not be evaluated. False returned. Consider using the 'isDefined' ISML function.",5,e);}if (_boolean_result) { %><%=context.getFormattedValue(getObject("Teaser"),null)%><% } %>
+<% printFooter(out); %>
\ No newline at end of file
@@ -0,0 +1,19 @@
+<%@  page buffer="none" import="java.util.*,java.io.*,com.intershop.beehive.core.internal.template.*,com.intershop.beehive.core.internal.template.isml.*,com.intershop.beehive.core.capi.log.*,com.intershop.beehive.core.capi.resource.*,com.intershop.beehive.core.capi.util.UUIDMgr,com.intershop.beehive.core.capi.util.XMLHelper,com.intershop.beehive.foundation.util.*,com.intershop.beehive.core.internal.url.*,com.intershop.beehive.core.internal.resource.*,com.intershop.beehive.core.capi.pipeline.PipelineDictionary,com.intershop.beehive.core.capi.naming.NamingMgr,com.intershop.beehive.core.capi.pagecache.PageCacheMgr,com.intershop.beehive.core.capi.request.SessionMgr,com.intershop.beehive.core.internal.request.SessionMgrImpl,com.intershop.beehive.core.pipelet.PipelineConstants" extends="com.intershop.beehive.core.internal.template.AbstractTemplate" %><% 
+boolean _boolean_result=false;
+out = new WrappedJspWriter(out);
+TemplateExecutionConfig context = getTemplateExecutionConfig();
+createTemplatePageConfig(context.getServletRequest());
+printHeader(out);
+ %><% %><%! protected Boolean printTemplateMarker() { return Boolean.TRUE; } %><%%><%@ page contentType="text/html;charset=utf-8" %><%setEncodingType("text/html"); %><% {try{String currentCacheTime = (String)((com.intershop.beehive.core.capi.request.ServletResponse)response).getHeaderValue(TemplateConstants.PAGECACHE_HEADER);if (currentCacheTime!=null && "00".equals(currentCacheTime)) {Logger.debug(this, "ISCACHE declaration is ignored since a prior 'forbidden'.");}else {long time = System.currentTimeMillis()/1000;long minute=30;if (minute <0) minute=0;long hour=1;if (hour <0)  hour=0;time += 60*minute+3600*hour;String extCacheTime = (String)((com.intershop.beehive.core.capi.request.ServletResponse)response).getHeaderValue(TemplateConstants.EXT_PAGECACHE_HEADER);Long oldTime=(currentCacheTime!=null)?Long.valueOf(currentCacheTime):(extCacheTime!=null)?Long.valueOf(extCacheTime):null;if (oldTime!=null && oldTime<time) {Logger.debug(this, "ISCACHE declaration is ignored since a prior declaration with a smaller caching period.");response.setHeader(TemplateConstants.PAGECACHE_HEADER, String.valueOf(oldTime));}else if (oldTime!=null && oldTime>time) {Logger.debug(this, "ISCACHE declaration reduces a caching period set by a prior declaration.");}if (oldTime==null || oldTime>time){if (time > Integer.MAX_VALUE){  time = Integer.MAX_VALUE;} response.setHeader(TemplateConstants.PAGECACHE_HEADER, String.valueOf(time));}}}catch(Exception e){Logger.error(this,"ISCACHE failed. Line: {2}",e);}} %><% {NamingMgr.get(PageCacheMgr.class).getKeywords().add(context.getFormattedValue(getObject("Product:UUID"),null));} %><% {Object key_obj = getObject("Product"); NamingMgr.get(PageCacheMgr.class).registerObject(getObject("Product"));} %><!-- HTML comments are written --><html>
+    <head><% insertIntershopSignature(request,(com.intershop.beehive.core.capi.request.ServletResponse)response); %><title><% {out.write(localizeISText("page.title","",null,null,null,null,null,null,null,null,null,null,null));} %></title>
+</head>
+<body class="<%=context.getFormattedValue(getObject("BodyClass"),null)%>"><% {Object temp_obj = (Double.valueOf(0)); getPipelineDictionary().put("Count", temp_obj);} %><% _boolean_result=false;try {_boolean_result=((Boolean)(((Boolean.parseBoolean(String.valueOf((disableErrorMessages().isDefined(getObject("Products"))))) && Boolean.valueOf(String.valueOf((hasLoopElements("Products") ? Boolean.TRUE : Boolean.FALSE))))))).booleanValue();} catch (Exception e) {Logger.debug(this,"Boolean expression in line {} could not be evaluated. False returned. Consider using the 'isDefined' ISML function.",14,e);}if (_boolean_result) { %><% while (loop("Products","Product","Index")) { %><% _boolean_result=false;try {_boolean_result=((Boolean)((( ((Number) getObject("Index")).doubleValue() ==((Number)(Double.valueOf(10))).doubleValue()) ? Boolean.TRUE : Boolean.FALSE))).booleanValue();} catch (Exception e) {Logger.debug(this,"Boolean expression in line {} could not be evaluated. False returned. Consider using the 'isDefined' ISML function.",16,e);}if (_boolean_result) { %><% if (getLoopStack().isEmpty()) {Logger.error(this,"ISBREAK occured outside ISLOOP. Line: {}",17);}else{getLoopStack().pop();break;} %><% } else {_boolean_result=false;try {_boolean_result=((Boolean)(getObject("Product:Hidden"))).booleanValue();} catch (Exception e) {Logger.debug(this,"Boolean expression in line {} could not be evaluated. False returned. Consider using the 'isDefined' ISML function.",18,e);}if (_boolean_result) { %><% if (getLoopStack().isEmpty()){Logger.error(this,"ISNEXT occured outside ISLOOP. Line: {}",19);}else{LoopStackEntry stackEntry = getLoopStack().peek();if (stackEntry.getIterator().hasNext()){stackEntry.setLoopObject(stackEntry.getIterator().next());}else{continue;}} %><% } else { %><% {String value = null;try{value=context.getFormattedValue(getObject("Product:Name"),null,null);}catch(Exception e){value=null;Logger.error(this,"ISPRINT has an invalid expression. Returning empty string. Line: {21}",e);}if (value==null) value="";value = encodeString(value);out.write(value);} %><% {String value = null;try{value=context.getFormattedValue(getObject("Product:Price"),Integer.valueOf(MONEY_LONG),null);}catch(Exception e){value=null;Logger.error(this,"ISPRINT has an invalid expression. Returning empty string. Line: {22}",e);}if (value==null) value="";value = encodeString(value);out.write(value);} %><%=context.getFormattedValue(getObject("Product:SKU"),null)%> <%=context.getFormattedValue(getObject("Product:Description"),null)%><% }} %><% } %><% } else { %><% {out.flush();processLocalIncludeByServer((com.intershop.beehive.core.capi.request.ServletResponse)response,"inc/Empty", null, "27");} %><% } %><% {out.flush();%><%@page import="com.intershop.beehive.core.capi.url.*"%><%URLRewriteHandler handler = getTemplateExecutionConfig().getURLRewriteHandler();
+try
+{
+getTemplateExecutionConfig().setURLRewriteHandler(NullURLRewriteHandler.getInstance());
+processRemoteIncludeAutomatic((com.intershop.beehive.core.capi.request.ServletResponse)response,context.getFormattedValue(url(true,(new URLPipelineAction(context.getFormattedValue("ViewProduct-Start",null)))),null), null, null, "29");}
+finally
+{
+    getTemplateExecutionConfig().setURLRewriteHandler(handler);
+}} %><% URLPipelineAction action1 = new URLPipelineAction(context.getFormattedValue(url(true,(new URLPipelineAction(context.getFormattedValue("ViewCart-Add",null)))),null));String site1 = null;String serverGroup1 = null;String actionValue1 = context.getFormattedValue(url(true,(new URLPipelineAction(context.getFormattedValue("ViewCart-Add",null)))),null);if (site1 == null){  site1 = action1.getDomain();  if (site1 == null)  {      site1 = com.intershop.beehive.core.capi.request.Request.getCurrent().getRequestSite().getDomainName();  }}if (serverGroup1 == null){  serverGroup1 = action1.getServerGroup();  if (serverGroup1 == null)  {      serverGroup1 = com.intershop.beehive.core.capi.request.Request.getCurrent().getRequestSite().getServerGroup();  }}out.print("<form");out.print(" method=\"");out.print("post");out.print("\"");out.print(" action=\"");out.print(context.getFormattedValue(url(true,(new URLPipelineAction(context.getFormattedValue("ViewCart-Add",null)))),null));out.print("\"");out.print(" name=\"");out.print("AddToCart");out.print("\"");out.print(">");out.print(context.prepareWACSRFTag(actionValue1, site1, serverGroup1,true)); %><% {out.write("<");out.write("SELECT class=\"\" NAME=\"Quantity\">");String value, description;while (loop("Quantities",null)){out.write("<");out.write("OPTION ");_boolean_result=false;try {_boolean_result=((Boolean)((( ((Number) getObject("Quantity")).doubleValue() ==((Number)(Double.valueOf(1))).doubleValue()) ? Boolean.TRUE : Boolean.FALSE))).booleanValue();} catch (Exception e) {Logger.debug(this,"Boolean expression in line {} could not be evaluated. False returned. Consider using the 'isDefined' ISML function.",31,e);}if (_boolean_result) {out.write("SELECTED ");}out.print("VALUE =\"");value = context.getFormattedValue(getObject("Quantity"),null);description = context.getFormattedValue(getObject("Quantity"),null);value = encodeString(value);description = encodeString(description);out.write(value + "\">");out.write(description + "</OPTION>");}out.write("</SELECT>");} %><% out.print("</form>"); %><% {try{getObject("Dictionary")"Dict");}catch(Exception e){Logger.error(this,"ISDICTIONARY has an invalid expression. Line: {33}",e);}} %><% {try{Cookie cookie=new Cookie("LastVisit",context.getFormattedValue(getObject("LastVisit"),null));cookie.setComment("visit");cookie.setPath("/");cookie.setMaxAge(3600);cookie.setVersion(0);cookie.setSecure(false);response.addCookie(cookie);}catch(Exception e){Logger.error(this,"ISCOOKIE could not be set. Line: {34}",e);}} %><% {try{executePipeline("ViewTeaser-Start",((java.util.Map)(((new ParameterMap().addParameter(new ParameterEntry("SKU",getObject("Product:SKU"))))))),"Teaser");}catch(Exception e){Logger.error(this,"ISPIPELINE failed. Line: 35.",e);}} %></body>
+</html><% printFooter(out); %>
\ No newline at end of file
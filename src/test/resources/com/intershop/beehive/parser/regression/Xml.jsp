@@ -0,0 +1,14 @@
+<%@  page buffer="none" import="java.util.*,java.io.*,com.intershop.beehive.core.internal.template.*,com.intershop.beehive.core.internal.template.isml.*,com.intershop.beehive.core.capi.log.*,com.intershop.beehive.core.capi.resource.*,com.intershop.beehive.core.capi.util.UUIDMgr,com.intershop.beehive.core.capi.util.XMLHelper,com.intershop.beehive.foundation.util.*,com.intershop.beehive.core.internal.url.*,com.intershop.beehive.core.internal.resource.*,com.intershop.beehive.core.capi.pipeline.PipelineDictionary,com.intershop.beehive.core.capi.naming.NamingMgr,com.intershop.beehive.core.capi.pagecache.PageCacheMgr,com.intershop.beehive.core.capi.request.SessionMgr,com.intershop.beehive.core.internal.request.SessionMgrImpl,com.intershop.beehive.core.pipelet.PipelineConstants" extends="com.intershop.beehive.core.internal.template.AbstractTemplate" %><% 
+boolean _boolean_result=false;
+out = new WrappedJspWriter(out);
+TemplateExecutionConfig context = getTemplateExecutionConfig();
+createTemplatePageConfig(context.getServletRequest());
+printHeader(out);
+ %><% %><%@ page contentType="text/xml;charset=utf-8" %><%%><%@ page session="false"%><%response.setHeader(TemplateConstants.PERSONALIZED_HEADER, "1");setEncodingType("text/xml"); %>
+<?xml version="1.0" encoding="UTF-8"?>
+<items>
+    <% while (loop("Items","Item",null)) { %>
+        <item id="<%=context.getFormattedValue(getObject("Item:ID"),null)%>"><%=context.getFormattedValue(getObject("Item:Name"),null)%></item>
+    <% } %>
+</items>
+<% printFooter(out); %>
\ No newline at end of file